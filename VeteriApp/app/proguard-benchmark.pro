@@ -0,0 +1,6 @@
+# --- VeteriApp: variante benchmark ---
+# Las pruebas instrumentadas de :app corren sobre esta variante minificada (testBuildType).
+# R8 solo ve los usos del APK, así que eliminaría o renombraría la API de data que solo
+# llaman las pruebas (IndiceBusqueda.tamano, BundlesIniciales.descargar...). Se conservan
+# nombres y miembros sin impedir que R8 optimice a los llamantes del propio APK.
+-keep,allowoptimization class com.example.veteriapp.data.** { *; }
@@ -18,4 +18,12 @@
 
 # If you keep the line number information, uncomment this to
 # hide the original source file name.
-#-renamesourcefileattribute SourceFile
\ No newline at end of file
+#-renamesourcefileattribute SourceFile
+
+# --- VeteriApp ---
+# Modelos deserializados por reflexión (Gson / Firestore toObject)
+-keepattributes Signature,*Annotation*
+-keep class com.example.veteriapp.model.** { *; }
+
+# Interfaces de Retrofit
+-keep,allowobfuscation interface com.example.veteriapp.api.** { *; }
@@ -0,0 +1,189 @@
+package com.example.veteriapp.data;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.FirebaseFirestoreException;
+import com.google.firebase.firestore.QuerySnapshot;
+import com.google.firebase.firestore.Source;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Clase AgendaDisponibilidadTest.
+ *
+ * Reservas concurrentes contra el emulador de Firestore: varios clientes independientes
+ * (como varios dueños con la app abierta) intentan a la vez quedarse con la misma franja
+ * y solo uno debe conseguirlo.
+ *
+ * @author Juan Manuel Moreno Sánchez
+ * @version 1.0 VeteriApp Release
+ */
+@RunWith(AndroidJUnit4.class)
+public class AgendaDisponibilidadTest {
+
+    private static final int CLIENTES = 8;
+    private static final String TIPO = "Vacunación 💉";
+    private static final Clinica CLINICA = Clinica.de(Clinica.POR_DEFECTO);
+
+    @Before
+    public void vaciar() throws Exception {
+        EmuladorFirestore.vaciar();
+    }
+
+    @Test
+    public void unaSolaReservaGanaLaFranja() throws Exception {
+        LocalDate dia = LocalDate.now().plusDays(7);
+        LocalTime hora = AgendaDisponibilidad.horaDeFranja(4);
+
+        List<FirebaseFirestore> clientes = new ArrayList<>();
+        for (int i = 0; i < CLIENTES; i++) clientes.add(EmuladorFirestore.cliente("agenda-" + i));
+
+        // Todas las transacciones salen a la vez, cada una desde su propio hilo y cliente
+        List<Supplier<Task<DocumentReference>>> operaciones = new ArrayList<>();
+        for (int i = 0; i < CLIENTES; i++) {
+            FirebaseFirestore db = clientes.get(i);
+            Map<String, Object> cita = cita(i);
+            operaciones.add(() -> AgendaDisponibilidad.reservar(db, CLINICA, dia, hora, TIPO, cita));
+        }
+        List<Task<DocumentReference>> reservas = EmuladorFirestore.aLaVez(operaciones);
+
+        int ganadoras = 0;
+        for (Task<DocumentReference> t : reservas) {
+            if (t.isSuccessful()) {
+                ganadoras++;
+            } else {
+                // Pierde porque ve la franja ocupada, o agota los reintentos por contención:
+                // en ningún caso se escribe la cita
+                Exception e = t.getException();
+                boolean esperado = e instanceof AgendaDisponibilidad.FranjaOcupadaException
+                        || (e instanceof FirebaseFirestoreException
+                        && ((FirebaseFirestoreException) e).getCode() == FirebaseFirestoreException.Code.ABORTED);
+                assertTrue("Fallo inesperado: " + e, esperado);
+            }
+        }
+        assertEquals(1, ganadoras);
+
+        // En el servidor queda una única cita y la franja marcada como ocupada
+        FirebaseFirestore db = clientes.get(0);
+        QuerySnapshot citas = Tasks.await(CLINICA.citas(db).get(Source.SERVER));
+        assertEquals(1, citas.size());
+        List<LocalTime> libres = Tasks.await(AgendaDisponibilidad.consultarLibres(db, CLINICA, dia, TIPO));
+        assertFalse(libres.contains(hora));
+        assertEquals(AgendaDisponibilidad.NUM_FRANJAS - 1, libres.size());
+    }
+
+    @Test
+    public void consultaFallidaNoOfreceHuecos() throws Exception {
+        FirebaseFirestore db = EmuladorFirestore.cliente("agenda-sin-red");
+        Tasks.await(db.disableNetwork());
+        try {
+            // Sin red y sin el día en caché la lectura falla: no debe devolverse el día entero como libre
+            Task<List<LocalTime>> consulta = AgendaDisponibilidad.consultarLibres(db, CLINICA, LocalDate.now().plusDays(7), TIPO);
+            Tasks.await(Tasks.whenAllComplete(consulta), EmuladorFirestore.ESPERA_S, TimeUnit.SECONDS);
+            assertFalse(consulta.isSuccessful());
+        } finally {
+            Tasks.await(db.enableNetwork());
+        }
+    }
+
+    @Test
+    public void franjaLiberadaVuelveAEstarLibre() throws Exception {
+        FirebaseFirestore db = EmuladorFirestore.cliente("agenda-0");
+        LocalDate dia = LocalDate.now().plusDays(7);
+        LocalTime hora = AgendaDisponibilidad.horaDeFranja(10);
+
+        DocumentReference cita = Tasks.await(AgendaDisponibilidad.reservar(db, CLINICA, dia, hora, TIPO, cita(0)));
+        assertFalse(Tasks.await(AgendaDisponibilidad.consultarLibres(db, CLINICA, dia, TIPO)).contains(hora));
+
+        Tasks.await(AgendaDisponibilidad.eliminarCita(db, CLINICA, cita.getId()));
+        DocumentSnapshot borrada = Tasks.await(cita.get(Source.SERVER));
+        assertFalse(borrada.exists());
+        assertTrue(Tasks.await(AgendaDisponibilidad.consultarLibres(db, CLINICA, dia, TIPO)).contains(hora));
+    }
+
+    @Test
+    public void cadaClinicaTieneSuAgenda() throws Exception {
+        FirebaseFirestore db = EmuladorFirestore.cliente("agenda-0");
+        Clinica otra = Clinica.de("norte");
+        LocalDate dia = LocalDate.now().plusDays(7);
+        LocalTime hora = AgendaDisponibilidad.horaDeFranja(6);
+
+        // La misma franja del mismo día se reserva en las dos clínicas, cada cita en la suya
+        DocumentReference principal = Tasks.await(AgendaDisponibilidad.reservar(db, CLINICA, dia, hora, TIPO, cita(0)));
+        assertTrue(Tasks.await(AgendaDisponibilidad.consultarLibres(db, otra, dia, TIPO)).contains(hora));
+        DocumentReference norte = Tasks.await(AgendaDisponibilidad.reservar(db, otra, dia, hora, TIPO, cita(1)));
+
+        assertEquals(CLINICA.citas(db).getPath(), principal.getParent().getPath());
+        assertEquals(otra.citas(db).getPath(), norte.getParent().getPath());
+        assertFalse(Tasks.await(AgendaDisponibilidad.consultarLibres(db, otra, dia, TIPO)).contains(hora));
+
+        // Y cada reserva ha ocupado solo el documento de día de su clínica
+        assertTrue(Tasks.await(AgendaDisponibilidad.referenciaDia(db, CLINICA, dia).get(Source.SERVER)).exists());
+        assertTrue(Tasks.await(AgendaDisponibilidad.referenciaDia(db, otra, dia).get(Source.SERVER)).exists());
+        assertFalse(Tasks.await(db.collection(AgendaDisponibilidad.COLECCION).document(dia.toString())
+                .get(Source.SERVER)).exists());
+    }
+
+    @Test
+    public void franjaAntiguaSigueOcupadaHastaMigrarla() throws Exception {
+        FirebaseFirestore db = EmuladorFirestore.cliente("agenda-0");
+        LocalDate dia = LocalDate.now().plusDays(7);
+        int franja = 8;
+        LocalTime hora = AgendaDisponibilidad.horaDeFranja(franja);
+
+        // Día anterior a la partición: documento global con la agenda de la clínica principal
+        Map<String, Object> porTipo = new HashMap<>();
+        porTipo.put(AgendaDisponibilidad.claveTipo(TIPO), 1L << franja);
+        Map<String, Object> ocupacion = new HashMap<>();
+        ocupacion.put(AgendaDisponibilidad.AGENDA_CLINICA, porTipo);
+        Map<String, Object> antiguo = new HashMap<>();
+        antiguo.put("ocupacion", ocupacion);
+        Tasks.await(db.collection(AgendaDisponibilidad.COLECCION).document(dia.toString()).set(antiguo));
+
+        assertFalse(Tasks.await(AgendaDisponibilidad.consultarLibres(db, CLINICA, dia, TIPO)).contains(hora));
+        assertTrue(Tasks.await(AgendaDisponibilidad.consultarLibres(db, Clinica.de("norte"), dia, TIPO)).contains(hora));
+        try {
+            Tasks.await(AgendaDisponibilidad.reservar(db, CLINICA, dia, hora, TIPO, cita(0)));
+            throw new AssertionError("La franja antigua se ha reservado dos veces");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof AgendaDisponibilidad.FranjaOcupadaException);
+        }
+
+        assertEquals(Integer.valueOf(1), Tasks.await(AgendaDisponibilidad.migrar(db)));
+        assertFalse(Tasks.await(db.collection(AgendaDisponibilidad.COLECCION).document(dia.toString())
+                .get(Source.SERVER)).exists());
+        assertFalse(Tasks.await(AgendaDisponibilidad.consultarLibres(db, CLINICA, dia, TIPO)).contains(hora));
+    }
+
+    private static Map<String, Object> cita(int cliente) {
+        Map<String, Object> c = new HashMap<>();
+        c.put("uidUsuario", "dueno" + cliente);
+        c.put("nombreUsuario", "Dueño " + cliente);
+        c.put("nombreMascota", "Paciente " + cliente);
+        c.put("tipo", TIPO);
+        c.put("motivo", "Vacuna anual");
+        c.put("estado", "PENDIENTE");
+        return c;
+    }
+}
@@ -0,0 +1,135 @@
+package com.example.veteriapp.data;
+
+import android.content.Context;
+import android.os.SystemClock;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.TextView;
+
+import androidx.test.core.app.ActivityScenario;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.example.veteriapp.R;
+import com.example.veteriapp.bundles.GeneradorBundle;
+import com.example.veteriapp.bundles.HostingBundles;
+import com.example.veteriapp.main.MemorialActivity;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.Timestamp;
+import com.google.firebase.auth.FirebaseAuth;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.QuerySnapshot;
+import com.google.firebase.firestore.WriteBatch;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Clase BundlesInicialesTest.
+ *
+ * Primer pintado sin backend: el bundle "inicio" se genera sobre el emulador, lo sirve
+ * el hosting local (HostingBundles) y la app lo descarga con Firestore sin red. La
+ * consulta con nombre "muro-memorial" debe resolverse desde la caché y el memorial
+ * público debe pintar sus recuerdos.
+ *
+ * @author Juan Manuel Moreno Sánchez
+ * @version 1.0 VeteriApp Release
+ */
+@RunWith(AndroidJUnit4.class)
+public class BundlesInicialesTest {
+
+    private static final int RECUERDOS = 3;
+
+    private final List<String> nombres = new ArrayList<>();
+
+    @Before
+    public void publicarBundle() throws Exception {
+        EmuladorFirestore.vaciar();
+        FirebaseFirestore semilla = EmuladorFirestore.cliente("bundles-semilla");
+
+        // Nombres únicos en cada ejecución: la caché persistente de la app puede guardar
+        // recuerdos de ejecuciones anteriores. Fechas de ahora para que sean los primeros.
+        String marca = Long.toString(System.currentTimeMillis(), 36);
+        long ahora = System.currentTimeMillis();
+        WriteBatch lote = semilla.batch();
+        for (int i = 0; i < RECUERDOS; i++) {
+            String nombre = "Recuerdo " + marca + "-" + i;
+            Map<String, Object> recuerdo = new HashMap<>();
+            recuerdo.put("nombre", nombre);
+            recuerdo.put("uidDueno", "dueno-bundle");
+            recuerdo.put("fechaMemorial", new Timestamp(new Date(ahora - i * 1000L)));
+            lote.set(semilla.collection(MuroMemorial.COLECCION).document("bundle-" + marca + "-" + i), recuerdo);
+            nombres.add(nombre);
+        }
+        Tasks.await(lote.commit(), EmuladorFirestore.ESPERA_S, TimeUnit.SECONDS);
+
+        byte[] bundle = GeneradorBundle.inicio(EmuladorFirestore.url(), EmuladorFirestore.proyecto(),
+                GeneradorBundle.TOKEN_EMULADOR);
+        HostingBundles.publicar(GeneradorBundle.ID_INICIO, bundle);
+    }
+
+    @Test
+    public void muroMemorialSePintaSinBackend() throws Exception {
+        Context contexto = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        FirebaseFirestore db = FirebaseFirestore.getInstance();
+        // El memorial exige sesión; el emulador de Auth sigue accesible
+        Tasks.await(FirebaseAuth.getInstance().signInAnonymously(), EmuladorFirestore.ESPERA_S, TimeUnit.SECONDS);
+        Tasks.await(db.disableNetwork());
+        try {
+            // Solo el hosting responde: Firestore no llega al servidor
+            Tasks.await(BundlesIniciales.descargar(contexto, db, HostingBundles.url(GeneradorBundle.ID_INICIO)),
+                    EmuladorFirestore.ESPERA_S, TimeUnit.SECONDS);
+
+            QuerySnapshot muro = Tasks.await(BundlesIniciales.desdeCache(db, BundlesIniciales.CONSULTA_MEMORIAL),
+                    EmuladorFirestore.ESPERA_S, TimeUnit.SECONDS);
+            Set<String> enCache = new HashSet<>();
+            for (DocumentSnapshot doc : muro.getDocuments()) enCache.add(doc.getString("nombre"));
+            assertTrue("La consulta del bundle no trae " + nombres + ": " + enCache, enCache.containsAll(nombres));
+
+            try (ActivityScenario<MemorialActivity> pantalla = ActivityScenario.launch(MemorialActivity.class)) {
+                Set<String> pintados = esperarTextos(pantalla);
+                assertTrue("El memorial no pinta " + nombres + ": " + pintados, pintados.containsAll(nombres));
+            }
+        } finally {
+            Tasks.await(db.enableNetwork());
+            FirebaseAuth.getInstance().signOut();
+        }
+    }
+
+    /**
+     * Textos del muro en cuanto aparecen todos los recuerdos esperados (o al agotar la espera).
+     */
+    private Set<String> esperarTextos(ActivityScenario<MemorialActivity> pantalla) {
+        long limite = SystemClock.uptimeMillis() + TimeUnit.SECONDS.toMillis(EmuladorFirestore.ESPERA_S);
+        Set<String> textos = new HashSet<>();
+        while (SystemClock.uptimeMillis() < limite) {
+            textos.clear();
+            pantalla.onActivity(a -> recogerTextos(a.findViewById(R.id.contenedorMemorial), textos));
+            if (textos.containsAll(nombres)) break;
+            SystemClock.sleep(100);
+        }
+        return textos;
+    }
+
+    private static void recogerTextos(View vista, Set<String> textos) {
+        if (vista instanceof TextView) {
+            textos.add(((TextView) vista).getText().toString());
+        } else if (vista instanceof ViewGroup) {
+            ViewGroup grupo = (ViewGroup) vista;
+            for (int i = 0; i < grupo.getChildCount(); i++) recogerTextos(grupo.getChildAt(i), textos);
+        }
+    }
+}
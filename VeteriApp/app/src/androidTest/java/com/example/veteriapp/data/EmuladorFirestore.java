@@ -0,0 +1,141 @@
+package com.example.veteriapp.data;
+
+import android.content.Context;
+
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.example.veteriapp.BuildConfig;
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.FirebaseApp;
+import com.google.firebase.auth.FirebaseAuth;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.FirebaseFirestoreSettings;
+import com.google.firebase.firestore.MemoryCacheSettings;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeFalse;
+
+/**
+ * Clase EmuladorFirestore.
+ *
+ * Acceso de las pruebas instrumentadas al emulador de Firestore, el mismo que siembra
+ * DatasetEmulador en :macrobenchmark (host de BuildConfig.EMULADOR_HOST, puertos de firebase.json).
+ * Cada cliente es una FirebaseApp propia con caché en memoria: se comporta como un
+ * dispositivo distinto, sin caché ni cola de transacciones compartidas con los demás.
+ * El emulador aplica firestore/firestore.rules, así que cada cliente entra con su propia
+ * sesión anónima en el emulador de Auth.
+ *
+ * @author Juan Manuel Moreno Sánchez
+ * @version 1.0 VeteriApp Release
+ */
+final class EmuladorFirestore {
+
+    private static final int PUERTO_FIRESTORE = 8080;
+    private static final int PUERTO_AUTH = 9099;
+    static final long ESPERA_S = 60;
+
+    private static final Map<String, FirebaseFirestore> CLIENTES = new HashMap<>();
+
+    private EmuladorFirestore() {}
+
+    /**
+     * Cliente independiente con el nombre indicado (se reutiliza entre pruebas).
+     * Las pruebas se omiten si la variante no apunta a los emuladores.
+     */
+    static synchronized FirebaseFirestore cliente(String nombre) throws Exception {
+        assumeFalse("La variante no apunta a los emuladores de Firebase", BuildConfig.EMULADOR_HOST.isEmpty());
+        FirebaseFirestore db = CLIENTES.get(nombre);
+        if (db != null) return db;
+
+        Context contexto = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        FirebaseApp app = FirebaseApp.initializeApp(contexto, FirebaseApp.getInstance().getOptions(), nombre);
+        db = FirebaseFirestore.getInstance(app);
+        db.useEmulator(BuildConfig.EMULADOR_HOST, PUERTO_FIRESTORE);
+        db.setFirestoreSettings(new FirebaseFirestoreSettings.Builder()
+                .setLocalCacheSettings(MemoryCacheSettings.newBuilder().build())
+                .build());
+        FirebaseAuth auth = FirebaseAuth.getInstance(app);
+        auth.useEmulator(BuildConfig.EMULADOR_HOST, PUERTO_AUTH);
+        Tasks.await(auth.signInAnonymously(), ESPERA_S, TimeUnit.SECONDS);
+        CLIENTES.put(nombre, db);
+        return db;
+    }
+
+    /**
+     * Lanza las operaciones a la vez, cada una desde su propio hilo, y espera a que todas
+     * terminen (con éxito o no).
+     *
+     * @return Tareas en el mismo orden que las operaciones.
+     */
+    static <T> List<Task<T>> aLaVez(List<Supplier<Task<T>>> operaciones) throws Exception {
+        int n = operaciones.size();
+        ExecutorService hilos = Executors.newFixedThreadPool(n);
+        CountDownLatch salida = new CountDownLatch(1);
+        CountDownLatch lanzadas = new CountDownLatch(n);
+        List<Task<T>> tareas = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) tareas.add(null);
+        for (int i = 0; i < n; i++) {
+            int indice = i;
+            hilos.execute(() -> {
+                try {
+                    salida.await();
+                    Task<T> t = operaciones.get(indice).get();
+                    synchronized (tareas) {
+                        tareas.set(indice, t);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    lanzadas.countDown();
+                }
+            });
+        }
+        salida.countDown();
+        assertTrue(lanzadas.await(ESPERA_S, TimeUnit.SECONDS));
+        hilos.shutdown();
+        synchronized (tareas) {
+            for (Task<T> t : tareas) assertTrue("Operación no lanzada", t != null);
+        }
+        Tasks.await(Tasks.whenAllComplete(tareas), ESPERA_S, TimeUnit.SECONDS);
+        return tareas;
+    }
+
+    /**
+     * URL base del emulador de Firestore (http://host:puerto).
+     */
+    static String url() {
+        return "http://" + BuildConfig.EMULADOR_HOST + ":" + PUERTO_FIRESTORE;
+    }
+
+    static String proyecto() {
+        return FirebaseApp.getInstance().getOptions().getProjectId();
+    }
+
+    /**
+     * Borra todos los documentos del emulador, para que cada prueba parta de cero.
+     */
+    static void vaciar() throws IOException {
+        assumeFalse("La variante no apunta a los emuladores de Firebase", BuildConfig.EMULADOR_HOST.isEmpty());
+        URL url = new URL(url() + "/emulator/v1/projects/" + proyecto() + "/databases/(default)/documents");
+        HttpURLConnection con = (HttpURLConnection) url.openConnection();
+        con.setRequestMethod("DELETE");
+        con.setRequestProperty("Authorization", "Bearer owner");
+        int codigo = con.getResponseCode();
+        con.disconnect();
+        if (codigo >= 400) throw new IOException("DELETE " + url + " -> " + codigo);
+    }
+}
@@ -0,0 +1,156 @@
+package com.example.veteriapp.data;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.example.veteriapp.model.EstadoCita;
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.FirebaseFirestoreException;
+import com.google.firebase.firestore.Source;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Clase EscrituraVersionadaTest.
+ *
+ * Contención de escrituras versionadas contra el emulador de Firestore. Varios
+ * veterinarios (clientes independientes) abren la misma cita en la versión 0 y escriben
+ * a la vez: unos cambian el estado (TransicionesEstado.transicionarCita) y otros la nota
+ * clínica (TransicionesEstado.guardarNotaCita).
+ * - Los cambios de campos distintos se fusionan: gana un escritor de cada campo.
+ * - Los demás reciben ConflictoVersionException con el campo que otro cambió.
+ * - Las reglas de seguridad rechazan una escritura directa que no avanza la versión.
+ *
+ * @author Juan Manuel Moreno Sánchez
+ * @version 1.0 VeteriApp Release
+ */
+@RunWith(AndroidJUnit4.class)
+public class EscrituraVersionadaTest {
+
+    private static final int ESCRITORES_POR_CAMPO = 4;
+    private static final String ID_CITA = "cita-contencion";
+    private static final Clinica CLINICA = Clinica.de(Clinica.POR_DEFECTO);
+
+    private FirebaseFirestore semilla;
+
+    @Before
+    public void sembrar() throws Exception {
+        EmuladorFirestore.vaciar();
+        semilla = EmuladorFirestore.cliente("versionada-semilla");
+        Map<String, Object> cita = new HashMap<>();
+        cita.put("uidUsuario", "dueno");
+        cita.put("nombreMascota", "Paciente");
+        cita.put("estado", EstadoCita.PENDIENTE.name());
+        cita.put("notaVeterinario", "");
+        cita.put(EscrituraVersionada.CAMPO_VERSION, 0L);
+        Tasks.await(CLINICA.citas(semilla).document(ID_CITA).set(cita));
+    }
+
+    @Test
+    public void camposDistintosSeFusionan() throws Exception {
+        FirebaseFirestore vetEstado = EmuladorFirestore.cliente("versionada-0");
+        FirebaseFirestore vetNota = EmuladorFirestore.cliente("versionada-1");
+
+        List<Supplier<Task<Void>>> operaciones = new ArrayList<>();
+        operaciones.add(() -> TransicionesEstado.transicionarCita(vetEstado, CLINICA, ID_CITA, 0L,
+                EstadoCita.PENDIENTE, EstadoCita.CONFIRMADA, null, "Paciente"));
+        operaciones.add(() -> TransicionesEstado.guardarNotaCita(vetNota, CLINICA, ID_CITA, 0L, "", "Vacuna puesta"));
+        for (Task<Void> t : EmuladorFirestore.aLaVez(operaciones)) {
+            assertTrue("Escritura fallida: " + t.getException(), t.isSuccessful());
+        }
+
+        DocumentSnapshot cita = Tasks.await(CLINICA.citas(semilla).document(ID_CITA).get(Source.SERVER));
+        assertEquals(EstadoCita.CONFIRMADA.name(), cita.getString("estado"));
+        assertEquals("Vacuna puesta", cita.getString("notaVeterinario"));
+        assertEquals(2L, EscrituraVersionada.version(cita));
+    }
+
+    @Test
+    public void mismoCampoSurgeComoConflicto() throws Exception {
+        EstadoCita[] destinos = {EstadoCita.CONFIRMADA, EstadoCita.RECHAZADA};
+        List<Supplier<Task<Void>>> operaciones = new ArrayList<>();
+        for (int i = 0; i < ESCRITORES_POR_CAMPO; i++) {
+            FirebaseFirestore db = EmuladorFirestore.cliente("versionada-" + (2 * i));
+            EstadoCita destino = destinos[i % destinos.length];
+            operaciones.add(() -> TransicionesEstado.transicionarCita(db, CLINICA, ID_CITA, 0L,
+                    EstadoCita.PENDIENTE, destino, null, "Paciente"));
+        }
+        for (int i = 0; i < ESCRITORES_POR_CAMPO; i++) {
+            FirebaseFirestore db = EmuladorFirestore.cliente("versionada-" + (2 * i + 1));
+            String nota = "Nota del veterinario " + i;
+            operaciones.add(() -> TransicionesEstado.guardarNotaCita(db, CLINICA, ID_CITA, 0L, "", nota));
+        }
+        List<Task<Void>> resultados = EmuladorFirestore.aLaVez(operaciones);
+
+        // Las primeras operaciones escriben el estado y las siguientes la nota
+        int ganadorEstado = ganador(resultados.subList(0, ESCRITORES_POR_CAMPO), "estado");
+        int ganadorNota = ganador(resultados.subList(ESCRITORES_POR_CAMPO, resultados.size()), "notaVeterinario");
+
+        DocumentSnapshot cita = Tasks.await(CLINICA.citas(semilla).document(ID_CITA).get(Source.SERVER));
+        assertEquals(destinos[ganadorEstado % destinos.length].name(), cita.getString("estado"));
+        assertEquals("Nota del veterinario " + ganadorNota, cita.getString("notaVeterinario"));
+        assertEquals(2L, EscrituraVersionada.version(cita));
+    }
+
+    @Test
+    public void reglasRechazanVersionQueNoAvanza() throws Exception {
+        Map<String, Object> obsoleta = new HashMap<>();
+        obsoleta.put("estado", EstadoCita.CONFIRMADA.name());
+        obsoleta.put(EscrituraVersionada.CAMPO_VERSION, 0L);
+        try {
+            Tasks.await(CLINICA.citas(semilla).document(ID_CITA).update(obsoleta));
+            fail("La regla aceptó una escritura sin avanzar la versión");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof FirebaseFirestoreException);
+            assertEquals(FirebaseFirestoreException.Code.PERMISSION_DENIED,
+                    ((FirebaseFirestoreException) e.getCause()).getCode());
+        }
+
+        // Los campos no versionados se escriben libremente
+        Tasks.await(CLINICA.citas(semilla).document(ID_CITA).update("nombreMascota", "Paciente renombrado"));
+        DocumentSnapshot cita = Tasks.await(CLINICA.citas(semilla).document(ID_CITA).get(Source.SERVER));
+        assertEquals(EstadoCita.PENDIENTE.name(), cita.getString("estado"));
+        assertEquals(0L, EscrituraVersionada.version(cita));
+    }
+
+    /**
+     * Comprueba que solo un escritor del campo tuvo éxito y que el resto recibió el
+     * conflicto sobre ese campo.
+     *
+     * @return Índice del escritor ganador.
+     */
+    private static int ganador(List<Task<Void>> escritores, String campo) {
+        int ganador = -1;
+        for (int i = 0; i < escritores.size(); i++) {
+            Task<Void> t = escritores.get(i);
+            if (t.isSuccessful()) {
+                if (ganador >= 0) fail("Dos escritores de \"" + campo + "\" se impusieron a la vez");
+                ganador = i;
+            } else if (t.getException() instanceof EscrituraVersionada.ConflictoVersionException) {
+                EscrituraVersionada.ConflictoVersionException c =
+                        (EscrituraVersionada.ConflictoVersionException) t.getException();
+                assertEquals(Collections.singletonList(campo), c.getCampos());
+            } else {
+                fail("Fallo inesperado en \"" + campo + "\": " + t.getException());
+            }
+        }
+        assertTrue("Ningún escritor de \"" + campo + "\" tuvo éxito", ganador >= 0);
+        return ganador;
+    }
+}
@@ -0,0 +1,200 @@
+package com.example.veteriapp.data;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.example.veteriapp.model.EstadoCita;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.Timestamp;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.WriteBatch;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Clase ExportacionCsvTest.
+ *
+ * Exportación de citas y mascotas sembradas en el emulador de Firestore:
+ * - Se exportan todas las filas de la clínica y solo las suyas, también cuando el total
+ *   es múltiplo exacto del tamaño de página (la última página llega vacía).
+ * - Los campos con comas, comillas dobles o saltos de línea van entre comillas y se
+ *   leen íntegros con un lector CSV estándar.
+ * - Los textos que empiezan como una fórmula llevan delante un apóstrofo; los números
+ *   negativos no.
+ *
+ * @author Juan Manuel Moreno Sánchez
+ * @version 1.0 VeteriApp Release
+ */
+@RunWith(AndroidJUnit4.class)
+public class ExportacionCsvTest {
+
+    private static final int CITAS = 1000; // dos páginas completas de 500 y una vacía
+    private static final int MASCOTAS = 150;
+    private static final Clinica CLINICA = Clinica.de(Clinica.POR_DEFECTO);
+    private static final Clinica OTRA = Clinica.de("exportacion-otra");
+
+    private static final String MOTIVO_COMILLAS = "Cojea, \"mucho\"\r\ndesde ayer";
+    private static final String NOTA_FORMULA = "=HYPERLINK(\"http://ejemplo.com\",\"ver\")";
+    private static final String NOTA_MENOS = "-Revisar en 2 semanas";
+
+    private FirebaseFirestore db;
+
+    @Before
+    public void sembrar() throws Exception {
+        EmuladorFirestore.vaciar();
+        db = EmuladorFirestore.cliente("exportacion");
+
+        WriteBatch batch = db.batch();
+        for (int i = 1; i <= CITAS; i++) {
+            Map<String, Object> cita = cita(i, "Paciente " + i, "Revisión", "");
+            // Las primeras filas por ID de documento llevan los casos especiales
+            if (i == 1) cita.put("motivo", MOTIVO_COMILLAS);
+            if (i == 2) cita.put("notaVeterinario", NOTA_FORMULA);
+            if (i == 3) cita.put("notaVeterinario", NOTA_MENOS);
+            if (i == 4) cita.put("id_cita", -4L);
+            batch.set(CLINICA.citas(db).document(String.format(Locale.ROOT, "cita-%04d", i)), cita);
+            if (i % 500 == 0) {
+                Tasks.await(batch.commit());
+                batch = db.batch();
+            }
+        }
+        batch.set(OTRA.citas(db).document("cita-ajena"), cita(1, "Ajena", "Ajena", ""));
+
+        for (int i = 1; i <= MASCOTAS; i++) {
+            batch.set(db.collection(Clinica.MASCOTAS).document(String.format(Locale.ROOT, "mascota-%04d", i)),
+                    mascota(i, CLINICA, i == 1 ? "+34 600 000 000" : "9410" + i));
+        }
+        batch.set(db.collection(Clinica.MASCOTAS).document("mascota-ajena"), mascota(0, OTRA, "0"));
+        Tasks.await(batch.commit());
+    }
+
+    @Test
+    public void citasCompletasEntrecomilladasYNeutralizadas() throws Exception {
+        List<List<String>> filas = exportar(ExportacionCsv.Tipo.CITAS);
+
+        assertEquals(Arrays.asList("id_cita", "uidUsuario", "nombreUsuario", "nombreMascota", "tipo", "motivo",
+                "fechaHora", "estado", "notaVeterinario"), filas.get(0));
+        assertEquals(CITAS + 1, filas.size());
+        for (List<String> fila : filas.subList(1, filas.size())) {
+            assertEquals(9, fila.size());
+            assertFalse("Cita de otra clínica exportada", "Ajena".equals(fila.get(3)));
+            assertTrue(fila.get(6), fila.get(6).matches("\\d{4}-\\d{2}-\\d{2} \\d{2}:\\d{2}:\\d{2}"));
+        }
+
+        assertEquals(MOTIVO_COMILLAS, filas.get(1).get(5));
+        assertEquals("'" + NOTA_FORMULA, filas.get(2).get(8));
+        assertEquals("'" + NOTA_MENOS, filas.get(3).get(8));
+        assertEquals("-4", filas.get(4).get(0));
+        assertEquals("", filas.get(5).get(8));
+    }
+
+    @Test
+    public void mascotasSoloDeLaClinica() throws Exception {
+        List<List<String>> filas = exportar(ExportacionCsv.Tipo.MASCOTAS);
+
+        assertEquals(MASCOTAS + 1, filas.size());
+        assertEquals("chip", filas.get(0).get(7));
+        assertEquals("'+34 600 000 000", filas.get(1).get(7));
+        assertEquals("12.5", filas.get(1).get(6));
+        for (List<String> fila : filas.subList(1, filas.size())) {
+            assertFalse("Mascota de otra clínica exportada", "Ajena".equals(fila.get(1)));
+        }
+    }
+
+    // --- AUXILIARES ---
+
+    private static Map<String, Object> cita(int id, String mascota, String motivo, String nota) {
+        Map<String, Object> c = new HashMap<>();
+        c.put("id_cita", (long) id);
+        c.put("uidUsuario", "dueno-" + id);
+        c.put("nombreUsuario", "Dueño " + id);
+        c.put("nombreMascota", mascota);
+        c.put("tipo", "General");
+        c.put("motivo", motivo);
+        c.put("fechaHora", new Timestamp(1_700_000_000L + id * 3600L, 0));
+        c.put("estado", EstadoCita.PENDIENTE.name());
+        c.put("notaVeterinario", nota);
+        c.put(EscrituraVersionada.CAMPO_VERSION, 0L);
+        return c;
+    }
+
+    private static Map<String, Object> mascota(int id, Clinica clinica, String chip) {
+        Map<String, Object> m = new HashMap<>();
+        m.put("id_mascota", (long) id);
+        m.put("nombre", clinica == OTRA ? "Ajena" : "Paciente " + id);
+        m.put("especie", "Perro");
+        m.put("raza", "Mestizo");
+        m.put("genero", "MACHO");
+        m.put("peso", 12.5);
+        m.put("chip", chip);
+        m.put("estado", "ACEPTADA");
+        m.put("uidDueno", "dueno-" + id);
+        m.put(Clinica.CAMPO_CLINICA, clinica.getId());
+        return m;
+    }
+
+    private List<List<String>> exportar(ExportacionCsv.Tipo tipo) throws Exception {
+        File fichero = new File(InstrumentationRegistry.getInstrumentation().getTargetContext().getCacheDir(),
+                tipo.nombreFichero());
+        int exportadas = Tasks.await(ExportacionCsv.aFichero(db, CLINICA, tipo, fichero, null),
+                EmuladorFirestore.ESPERA_S, TimeUnit.SECONDS);
+
+        String csv = new String(Files.readAllBytes(fichero.toPath()), StandardCharsets.UTF_8);
+        assertTrue("Falta el BOM", csv.startsWith("\uFEFF"));
+        List<List<String>> filas = leerCsv(csv.substring(1));
+        assertEquals(exportadas + 1, filas.size());
+        return filas;
+    }
+
+    /**
+     * Lector CSV (RFC 4180) independiente del escritor: filas terminadas en CRLF y
+     * campos entre comillas que pueden contener comas, comillas dobladas y saltos de línea.
+     */
+    private static List<List<String>> leerCsv(String csv) {
+        List<List<String>> filas = new ArrayList<>();
+        List<String> fila = new ArrayList<>();
+        StringBuilder campo = new StringBuilder();
+        boolean entreComillas = false;
+        for (int i = 0; i < csv.length(); i++) {
+            char c = csv.charAt(i);
+            if (entreComillas) {
+                if (c != '"') campo.append(c);
+                else if (i + 1 < csv.length() && csv.charAt(i + 1) == '"') campo.append(csv.charAt(++i));
+                else entreComillas = false;
+            } else if (c == '"') {
+                entreComillas = true;
+            } else if (c == ',') {
+                fila.add(campo.toString());
+                campo.setLength(0);
+            } else if (c == '\r' && i + 1 < csv.length() && csv.charAt(i + 1) == '\n') {
+                i++;
+                fila.add(campo.toString());
+                campo.setLength(0);
+                filas.add(fila);
+                fila = new ArrayList<>();
+            } else {
+                campo.append(c);
+            }
+        }
+        assertFalse("Comillas sin cerrar", entreComillas);
+        assertTrue("Última fila sin CRLF", fila.isEmpty() && campo.length() == 0);
+        return filas;
+    }
+}
@@ -0,0 +1,169 @@
+package com.example.veteriapp.data;
+
+import android.content.Context;
+import android.net.Uri;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.firestore.AggregateSource;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FieldValue;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.Query;
+import com.google.firebase.firestore.SetOptions;
+import com.google.firebase.firestore.Source;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Clase ImportacionCsvTest.
+ *
+ * Importación masiva de mascotas contra el emulador de Firestore:
+ * - Una importación interrumpida con su último lote escrito pero sin confirmar se
+ *   reanuda reescribiendo ese lote con los mismos id_mascota y sin duplicar mascotas.
+ * - Las filas inválidas se anotan con su número y no detienen la importación; los
+ *   campos entre comillas (comas, comillas dobles, saltos de línea) llegan íntegros.
+ * - Los dueños se encuentran aunque su perfil sea anterior al email normalizado.
+ *
+ * @author Juan Manuel Moreno Sánchez
+ * @version 1.0 VeteriApp Release
+ */
+@RunWith(AndroidJUnit4.class)
+public class ImportacionCsvTest {
+
+    private static final int FILAS = 1200; // tres lotes: 500 + 500 + 200
+    private static final String EMAIL = "Dueno.Importacion@Ejemplo.com";
+    private static final String UID_DUENO = "dueno-importacion";
+    private static final String CABECERA = "nombre,especie,raza,genero,fechaNacimiento,peso,chip,estado,emailDueno";
+    private static final Clinica CLINICA = Clinica.de(Clinica.POR_DEFECTO);
+
+    private Context contexto;
+    private FirebaseFirestore db;
+
+    @Before
+    public void sembrar() throws Exception {
+        EmuladorFirestore.vaciar();
+        contexto = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        db = EmuladorFirestore.cliente("importacion");
+
+        // Perfil anterior al directorio paginado: sin "emailBusqueda"
+        Map<String, Object> dueno = new HashMap<>();
+        dueno.put("nombre", "Dueño Importación");
+        dueno.put("email", EMAIL);
+        dueno.put("rol", "DUEÑO");
+        Tasks.await(db.collection("users").document(UID_DUENO).set(dueno));
+    }
+
+    @Test
+    public void reanudarConservaIdsYNoDuplica() throws Exception {
+        StringBuilder csv = new StringBuilder(CABECERA).append('\n');
+        for (int i = 1; i <= FILAS; i++) {
+            csv.append("Paciente ").append(i).append(",Perro,\"Mestizo, mediano\",MACHO,2020-01-15,\"12,5\",9410")
+                    .append(i).append(",,").append(EMAIL).append('\n');
+        }
+        Uri fichero = fichero("censo.csv", csv.toString());
+
+        ImportacionCsv.Resultado primera = importar(fichero);
+        assertEquals(FILAS, primera.getImportadas());
+        assertFalse(primera.isReanudada());
+        Map<String, Long> ids = idsPorDocumento();
+        assertEquals(FILAS, ids.size());
+        assertEquals(FILAS, new HashSet<>(ids.values()).size());
+        long primerId = Collections.min(ids.values());
+
+        // Estado que deja una interrupción tras escribir el tercer lote y antes de
+        // confirmarlo: punto de control en la fila 1000 y el bloque del lote anotado
+        Map<String, Object> interrumpida = new HashMap<>();
+        interrumpida.put("filasConfirmadas", 1000L);
+        interrumpida.put("importadas", 1000L);
+        interrumpida.put("rechazadas", 0L);
+        interrumpida.put("terminada", FieldValue.delete());
+        interrumpida.put("bloques", Collections.singletonMap("1001", primerId + 1000));
+        DocumentSnapshot control = unicoControl();
+        Tasks.await(control.getReference().set(interrumpida, SetOptions.merge()));
+        long contador = Tasks.await(db.document("config/contadores").get(Source.SERVER)).getLong(Clinica.MASCOTAS);
+
+        ImportacionCsv.Resultado reanudada = importar(fichero);
+        assertTrue(reanudada.isReanudada());
+        assertEquals(FILAS, reanudada.getImportadas());
+        assertEquals(ids, idsPorDocumento());
+        assertEquals(contador, (long) Tasks.await(db.document("config/contadores").get(Source.SERVER))
+                .getLong(Clinica.MASCOTAS));
+        assertEquals(FILAS, Tasks.await(CLINICA.mascotas(db).count().get(AggregateSource.SERVER)).getCount());
+    }
+
+    @Test
+    public void filasInvalidasSeAnotanSinDetenerLaImportacion() throws Exception {
+        String csv = CABECERA + "\n"
+                + "Luna,Gato,Común,HEMBRA,2019-03-01,4,,ACEPTADA,dueno.importacion@ejemplo.com\n"
+                + "Sin especie,,Común,HEMBRA,2019-03-01,4,,," + EMAIL + "\n"
+                + "Fecha mala,Gato,Común,HEMBRA,2019-13-01,4,,," + EMAIL + "\n"
+                + "Sin dueño,Gato,Común,HEMBRA,2019-03-01,4,,,nadie@ejemplo.com\n"
+                + "Toby,Perro,\"Cruce \"\"grande\"\"\ncon pastor\",MACHO,15/06/2018,,,PENDIENTE," + EMAIL + "\n";
+
+        ImportacionCsv.Resultado r = importar(fichero("errores.csv", csv));
+
+        assertEquals(2, r.getImportadas());
+        assertEquals(3, r.getRechazadas());
+        assertEquals(3, r.getErrores().size());
+        assertTrue(r.getErrores().get(0).startsWith("Fila 2:"));
+        assertTrue(r.getErrores().get(1).startsWith("Fila 3:"));
+        assertTrue(r.getErrores().get(2).startsWith("Fila 4:"));
+
+        List<DocumentSnapshot> toby = Tasks.await(CLINICA.mascotas(db).whereEqualTo("nombre", "Toby")
+                .get(Source.SERVER)).getDocuments();
+        assertEquals(1, toby.size());
+        assertEquals("Cruce \"grande\"\ncon pastor", toby.get(0).getString("raza"));
+        assertEquals(UID_DUENO, toby.get(0).getString("uidDueno"));
+    }
+
+    // --- AUXILIARES ---
+
+    private ImportacionCsv.Resultado importar(Uri fichero) throws Exception {
+        return Tasks.await(ImportacionCsv.mascotas(contexto, db, CLINICA, fichero, null),
+                EmuladorFirestore.ESPERA_S, TimeUnit.SECONDS);
+    }
+
+    private Uri fichero(String nombre, String contenido) throws Exception {
+        File f = new File(contexto.getCacheDir(), nombre);
+        try (Writer w = new OutputStreamWriter(new FileOutputStream(f), StandardCharsets.UTF_8)) {
+            w.write(contenido);
+        }
+        return Uri.fromFile(f);
+    }
+
+    private Map<String, Long> idsPorDocumento() throws Exception {
+        Map<String, Long> ids = new HashMap<>();
+        for (DocumentSnapshot doc : Tasks.await(CLINICA.mascotas(db).get(Source.SERVER)).getDocuments()) {
+            ids.put(doc.getId(), doc.getLong("id_mascota"));
+        }
+        return ids;
+    }
+
+    private DocumentSnapshot unicoControl() throws Exception {
+        Query controles = db.collection(ImportacionCsv.COLECCION_CONTROL);
+        List<DocumentSnapshot> docs = Tasks.await(controles.get(Source.SERVER)).getDocuments();
+        assertEquals(1, docs.size());
+        return docs.get(0);
+    }
+}
@@ -0,0 +1,166 @@
+package com.example.veteriapp.data;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Clase IndiceBusquedaBenchmark.
+ *
+ * Coste de construir y consultar el índice de trigramas con 100.000 registros con la forma
+ * de los del censo (nombre, especie, raza, chip, nombre y email del dueño):
+ * - construcción completa, como al recibir el censo entero;
+ * - reindexado de un registro, como al llegar un cambio;
+ * - consultas por prefijo corto, por término frecuente, por término raro y de varias palabras.
+ *
+ * {@link #consultasPorDebajoDelObjetivo} comprueba además el objetivo de la petición:
+ * ninguna de esas consultas pasa de 10 ms (mediana) con 100.000 registros.
+ *
+ * @author Juan Manuel Moreno Sánchez
+ * @version 1.0 VeteriApp Release
+ */
+@RunWith(AndroidJUnit4.class)
+public class IndiceBusquedaBenchmark {
+
+    private static final int NUM_REGISTROS = 100_000;
+    private static final long OBJETIVO_NS = 10_000_000L;
+    private static final int REPETICIONES_OBJETIVO = 51;
+
+    // --- VOCABULARIO DEL DATASET SINTÉTICO ---
+    private static final String[] NOMBRES = {"Luna", "Toby", "Nala", "Rocky", "Kira", "Simba", "Coco", "Lola",
+            "Thor", "Bruno", "Canela", "Canelo", "Milo", "Nieve", "Lúa", "Zeus", "Maya", "Duna", "Kiko", "Chispa"};
+    private static final String[] ESPECIES = {"Perro", "Gato", "Conejo", "Hurón", "Loro"};
+    private static final String[] RAZAS = {"Mestizo", "Labrador", "Pastor Alemán", "Siamés", "Persa",
+            "Bulldog Francés", "Galgo Español", "Cabeza de León", "Beagle", "Común Europeo"};
+    private static final String[] DUENOS = {"María", "José", "Lucía", "Antonio", "Carmen", "Manuel", "Ana",
+            "Francisco", "Laura", "David", "Elena", "Javier", "Marta", "Sergio", "Pilar"};
+    private static final String[] APELLIDOS = {"García", "Fernández", "González", "Rodríguez", "López",
+            "Martínez", "Sánchez", "Pérez", "Gómez", "Moreno", "Jiménez", "Ruiz", "Núñez", "Muñoz"};
+
+    // --- CONSULTAS MEDIDAS ---
+    private static final String PREFIJO = "ca";
+    private static final String FRECUENTE = "mestizo";
+    private static final String RARO = "941000012345";
+    private static final String VARIAS_PALABRAS = "canela galgo nunez";
+
+    private static String[][] registros;
+    private static IndiceBusqueda indice;
+
+    @Rule
+    public BenchmarkRule regla = new BenchmarkRule();
+
+    /** Destino de los resultados, para que el compilador no descarte el trabajo. */
+    private Object sumidero;
+
+    @BeforeClass
+    public static void preparar() {
+        Random aleatorio = new Random(42);
+        registros = new String[NUM_REGISTROS][];
+        for (int i = 0; i < NUM_REGISTROS; i++) {
+            String dueno = elegir(aleatorio, DUENOS);
+            String apellido = elegir(aleatorio, APELLIDOS);
+            registros[i] = new String[]{
+                    "m" + i,
+                    elegir(aleatorio, NOMBRES),
+                    elegir(aleatorio, ESPECIES),
+                    elegir(aleatorio, RAZAS),
+                    String.valueOf(941000000000L + i),
+                    dueno + " " + apellido,
+                    IndiceBusqueda.normalizar(dueno + "." + apellido + i % 1000) + "@correo.es"};
+        }
+        indice = construir();
+    }
+
+    // --- CONSTRUCCIÓN ---
+
+    @Test
+    public void construccionCompleta() {
+        BenchmarkState estado = regla.getState();
+        while (estado.keepRunning()) sumidero = construir();
+    }
+
+    @Test
+    public void reindexadoDeUnRegistro() {
+        BenchmarkState estado = regla.getState();
+        int i = 0;
+        while (estado.keepRunning()) {
+            String[] r = registros[i++ % NUM_REGISTROS];
+            indice.indexar(r[0], Arrays.copyOfRange(r, 1, r.length));
+        }
+    }
+
+    // --- CONSULTAS ---
+
+    @Test
+    public void consultaPrefijo() {
+        medirConsulta(PREFIJO);
+    }
+
+    @Test
+    public void consultaTerminoFrecuente() {
+        medirConsulta(FRECUENTE);
+    }
+
+    @Test
+    public void consultaTerminoRaro() {
+        medirConsulta(RARO);
+    }
+
+    @Test
+    public void consultaVariasPalabras() {
+        medirConsulta(VARIAS_PALABRAS);
+    }
+
+    /**
+     * Objetivo de la petición: menos de 10 ms por consulta con 100.000 registros. Se toma la
+     * mediana de varias repeticiones, tras calentar, para no depender de una pausa del GC.
+     */
+    @Test
+    public void consultasPorDebajoDelObjetivo() {
+        assertEquals(NUM_REGISTROS, indice.tamano());
+        for (String consulta : new String[]{PREFIJO, FRECUENTE, RARO, VARIAS_PALABRAS}) {
+            Set<String> resultado = indice.buscar(consulta);
+            assertFalse("Sin resultados para \"" + consulta + "\"", resultado.isEmpty());
+
+            long[] tiempos = new long[REPETICIONES_OBJETIVO];
+            for (int i = 0; i < REPETICIONES_OBJETIVO; i++) {
+                long inicio = System.nanoTime();
+                sumidero = indice.buscar(consulta);
+                tiempos[i] = System.nanoTime() - inicio;
+            }
+            Arrays.sort(tiempos);
+            long mediana = tiempos[REPETICIONES_OBJETIVO / 2];
+            assertTrue("\"" + consulta + "\" tarda " + mediana / 1000 + " µs", mediana < OBJETIVO_NS);
+        }
+    }
+
+    // --- AUXILIARES ---
+
+    private void medirConsulta(String consulta) {
+        BenchmarkState estado = regla.getState();
+        while (estado.keepRunning()) sumidero = indice.buscar(consulta);
+    }
+
+    private static IndiceBusqueda construir() {
+        IndiceBusqueda nuevo = new IndiceBusqueda();
+        for (String[] r : registros) nuevo.indexar(r[0], Arrays.copyOfRange(r, 1, r.length));
+        return nuevo;
+    }
+
+    private static String elegir(Random aleatorio, String[] opciones) {
+        return opciones[aleatorio.nextInt(opciones.length)];
+    }
+}
@@ -0,0 +1,185 @@
+package com.example.veteriapp.model;
+
+import android.content.Context;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.FirebaseApp;
+import com.google.firebase.FirebaseOptions;
+import com.google.firebase.Timestamp;
+import com.google.firebase.firestore.CollectionReference;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.FirebaseFirestoreSettings;
+import com.google.firebase.firestore.MemoryCacheSettings;
+import com.google.firebase.firestore.Source;
+
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Clase MapeadoresBenchmark.
+ *
+ * Coste de convertir snapshots de citas y mensajes en modelos por tres vías:
+ * - el mapeador generado (CitaMapeador / MensajeMapeador);
+ * - toObject, que resuelve getters y setters por reflexión;
+ * - la extracción manual campo a campo que hacían las actividades.
+ *
+ * toObject avisa en el log por cada campo sin setter ("id_cita", "version"); ese coste
+ * es parte de lo que paga hoy con los documentos reales y se mide tal cual.
+ *
+ * Los documentos viven solo en la caché en memoria de una instancia de Firestore
+ * propia y sin red, así que la medición no depende del backend ni deja datos.
+ *
+ * @author Juan Manuel Moreno Sánchez
+ * @version 1.0 VeteriApp Release
+ */
+@RunWith(AndroidJUnit4.class)
+public class MapeadoresBenchmark {
+
+    private static final int NUM_DOCUMENTOS = 100;
+
+    private static List<DocumentSnapshot> citas;
+    private static List<DocumentSnapshot> mensajes;
+
+    @Rule
+    public BenchmarkRule regla = new BenchmarkRule();
+
+    /** Destino de los resultados, para que el compilador no descarte el trabajo. */
+    private Object sumidero;
+
+    @BeforeClass
+    public static void preparar() throws Exception {
+        Context contexto = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        FirebaseOptions opciones = new FirebaseOptions.Builder()
+                .setProjectId("mapeo-benchmark")
+                .setApplicationId("1:000000000000:android:0000000000000000")
+                .setApiKey("benchmark")
+                .build();
+        FirebaseFirestore db = FirebaseFirestore.getInstance(FirebaseApp.initializeApp(contexto, opciones, "mapeo-benchmark"));
+        db.setFirestoreSettings(new FirebaseFirestoreSettings.Builder()
+                .setLocalCacheSettings(MemoryCacheSettings.newBuilder().build())
+                .build());
+        Tasks.await(db.disableNetwork());
+
+        // Sin red las escrituras no se confirman, pero ya son visibles en la caché
+        CollectionReference colCitas = db.collection("citas");
+        CollectionReference colMensajes = db.collection("mensajes");
+        for (int i = 1; i <= NUM_DOCUMENTOS; i++) {
+            colCitas.document("c" + i).set(cita(i));
+            colMensajes.document("msg" + i).set(mensaje(i));
+        }
+        citas = Tasks.await(colCitas.get(Source.CACHE)).getDocuments();
+        mensajes = Tasks.await(colMensajes.get(Source.CACHE)).getDocuments();
+    }
+
+    // --- CITAS ---
+
+    @Test
+    public void citaGenerado() {
+        BenchmarkState estado = regla.getState();
+        while (estado.keepRunning()) {
+            for (DocumentSnapshot doc : citas) sumidero = CitaMapeador.desde(doc);
+        }
+    }
+
+    @Test
+    public void citaToObject() {
+        BenchmarkState estado = regla.getState();
+        while (estado.keepRunning()) {
+            for (DocumentSnapshot doc : citas) sumidero = doc.toObject(Cita.class);
+        }
+    }
+
+    @Test
+    public void citaManual() {
+        BenchmarkState estado = regla.getState();
+        while (estado.keepRunning()) {
+            for (DocumentSnapshot doc : citas) {
+                Cita c = new Cita();
+                c.setId(doc.getId());
+                c.setIdCita(doc.getLong("id_cita"));
+                c.setUidUsuario(doc.getString("uidUsuario"));
+                c.setNombreUsuario(doc.getString("nombreUsuario"));
+                c.setNombreMascota(doc.getString("nombreMascota"));
+                c.setTipo(doc.getString("tipo"));
+                c.setMotivo(doc.getString("motivo"));
+                c.setFechaHora(doc.getTimestamp("fechaHora"));
+                c.setEstado(doc.getString("estado"));
+                c.setNotaVeterinario(doc.getString("notaVeterinario"));
+                sumidero = c;
+            }
+        }
+    }
+
+    // --- MENSAJES ---
+
+    @Test
+    public void mensajeGenerado() {
+        BenchmarkState estado = regla.getState();
+        while (estado.keepRunning()) {
+            for (DocumentSnapshot doc : mensajes) sumidero = MensajeMapeador.desde(doc);
+        }
+    }
+
+    @Test
+    public void mensajeToObject() {
+        BenchmarkState estado = regla.getState();
+        while (estado.keepRunning()) {
+            for (DocumentSnapshot doc : mensajes) sumidero = doc.toObject(Mensaje.class);
+        }
+    }
+
+    @Test
+    public void mensajeManual() {
+        BenchmarkState estado = regla.getState();
+        while (estado.keepRunning()) {
+            for (DocumentSnapshot doc : mensajes) {
+                Mensaje m = new Mensaje();
+                m.setId(doc.getId());
+                m.setUidRemitente(doc.getString("uidRemitente"));
+                m.setTexto(doc.getString("texto"));
+                m.setIdSala(doc.getString("idSala"));
+                m.setTimestamp(doc.getTimestamp("timestamp"));
+                m.setSecuenciaCliente(doc.getLong("secuenciaCliente"));
+                sumidero = m;
+            }
+        }
+    }
+
+    // --- DOCUMENTOS DE PRUEBA (forma de producción) ---
+
+    private static Map<String, Object> cita(int i) {
+        Map<String, Object> c = new HashMap<>();
+        c.put("id_cita", (long) i);
+        c.put("uidUsuario", "dueno" + (i % 10));
+        c.put("nombreUsuario", "Dueño " + (i % 10));
+        c.put("nombreMascota", "Paciente " + (i % 50));
+        c.put("tipo", "Cita General 🩺");
+        c.put("motivo", "Revisión anual");
+        c.put("fechaHora", new Timestamp(1767225600L + i * 3600L, 0));
+        c.put("estado", i % 2 == 0 ? "PENDIENTE" : "CONFIRMADA");
+        c.put("version", 1L);
+        return c;
+    }
+
+    private static Map<String, Object> mensaje(int i) {
+        Map<String, Object> m = new HashMap<>();
+        m.put("uidRemitente", i % 3 == 0 ? "vet" : "dueno");
+        m.put("texto", "Mensaje de prueba número " + i + " sobre la revisión de Paciente " + (i % 50));
+        m.put("idSala", "dueno");
+        m.put("timestamp", new Timestamp(1767225600L + i * 60L, 0));
+        m.put("secuenciaCliente", 1767225600000L + i);
+        return m;
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.veteriapp;
+
+import android.app.Application;
+
+import com.example.veteriapp.data.BundlesIniciales;
+import com.example.veteriapp.data.Clinica;
+import com.example.veteriapp.data.ColaEscrituras;
+import com.example.veteriapp.data.MuroNoticias;
+import com.example.veteriapp.data.PresupuestoMemoria;
+import com.example.veteriapp.utils.Imagenes;
+import com.example.veteriapp.utils.MetricasFrames;
+import com.google.firebase.auth.FirebaseAuth;
+import com.google.firebase.firestore.FirebaseFirestore;
+
+/**
+ * Clase VeteriApplication.
+ * 
+ * Punto de entrada del proceso de la aplicación.
+ * Configura los servicios de Firebase antes de que cualquier actividad los utilice,
+ * redirigiendo Firestore y Authentication a los emuladores locales cuando la
+ * variante de compilación así lo indica (build type benchmark), fija el presupuesto
+ * de memoria de las cachés, arranca la cola persistente de escrituras, carga el bundle
+ * de datos iniciales en la caché y engancha la medición de frames a todas las actividades.
+ * 
+ * @author Juan Manuel Moreno Sánchez
+ * @version 1.0 VeteriApp Release
+ */
+public class VeteriApplication extends Application {
+
+    // --- PUERTOS DE LA SUITE DE EMULADORES (firebase.json) ---
+    private static final int PUERTO_FIRESTORE = 8080;
+    private static final int PUERTO_AUTH = 9099;
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+
+        // Conexión al dataset sembrado del emulador (solo variantes de medición)
+        if (!BuildConfig.EMULADOR_HOST.isEmpty()) {
+            FirebaseFirestore.getInstance().useEmulator(BuildConfig.EMULADOR_HOST, PUERTO_FIRESTORE);
+            FirebaseAuth.getInstance().useEmulator(BuildConfig.EMULADOR_HOST, PUERTO_AUTH);
+        }
+
+        // Presupuesto de memoria del dispositivo y cachés que ceden ante onTrimMemory
+        PresupuestoMemoria.iniciar(this);
+        Imagenes.iniciarCache(PresupuestoMemoria.get());
+        MuroNoticias.registrarMemoria(PresupuestoMemoria.get());
+
+        // Bandeja de salida persistente: reenvía lo que quedó pendiente en el proceso anterior
+        ColaEscrituras.iniciar(this);
+
+        // Clínica de la última sesión, hasta que el login vuelva a resolverla
+        Clinica.iniciar(this);
+
+        // Contenido casi estático en caché antes del primer panel (sin esperar a la red)
+        BundlesIniciales.iniciar(this);
+
+        // Duración de frames y tirones por pantalla (telemetría en "metricas")
+        MetricasFrames.iniciar(this);
+    }
+}
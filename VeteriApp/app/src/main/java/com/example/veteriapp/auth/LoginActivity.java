@@ -12,6 +12,8 @@ import android.widget.Toast;
 import androidx.appcompat.app.AppCompatActivity;
 
 import com.example.veteriapp.R;
+import com.example.veteriapp.data.Clinica;
+import com.example.veteriapp.data.MigracionesEsquema;
 import com.example.veteriapp.main.AdminActivity;
 import com.example.veteriapp.main.UsuarioActivity;
 import com.example.veteriapp.main.VeterinarioActivity;
@@ -19,8 +21,6 @@ import com.example.veteriapp.utils.Logger;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.firestore.FirebaseFirestore;
 
-import java.util.List;
-
 /**
  * Clase LoginActivity.
  * 
@@ -98,15 +98,8 @@ public class LoginActivity extends AppCompatActivity {
         
         String uid = mAuth.getCurrentUser().getUid();
         FirebaseFirestore.getInstance().collection("users").document(uid).get().addOnSuccessListener(doc -> {
-            String rolStr = "";
-            Object rolObj = doc.get("rol");
-            
-            // Puente de compatibilidad para el campo rol
-            if (rolObj instanceof String) rolStr = (String) rolObj;
-            else if (rolObj instanceof List) {
-                List<?> l = (List<?>) rolObj;
-                if (!l.isEmpty()) rolStr = l.get(0).toString();
-            }
+            Clinica.fijar(doc);
+            String rolStr = MigracionesEsquema.rolDeSesion(doc);
 
             Logger.log("Usuario logueado: " + email + " con rol: " + rolStr);
 
@@ -10,6 +10,9 @@ import android.widget.Toast;
 import androidx.appcompat.app.AppCompatActivity;
 
 import com.example.veteriapp.R;
+import com.example.veteriapp.data.Clinica;
+import com.example.veteriapp.data.ColaEscrituras;
+import com.example.veteriapp.data.DirectorioUsuarios;
 import com.example.veteriapp.utils.Logger;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.firestore.FirebaseFirestore;
@@ -97,11 +100,13 @@ public class RegistroActivity extends AppCompatActivity {
                             user.put("nombre", nombre);
                             user.put("email", email);
                             user.put("rol", "DUEÑO");
+                            user.put(Clinica.CAMPO_CLINICA, Clinica.POR_DEFECTO);
+                            user.putAll(DirectorioUsuarios.camposBusqueda(nombre, email));
 
-                            db.collection("users").document(uid).set(user).addOnSuccessListener(aVoid -> {
-                                Logger.log("Nuevo usuario registrado: " + email + " con ID: " + finalId);
-                                finish();
-                            });
+                            // El perfil queda en la cola persistente: sin red se envía al reconectar
+                            ColaEscrituras.get().set(db.collection("users").document(uid), user).addOnSuccessListener(aVoid ->
+                                    Logger.log("Nuevo usuario registrado: " + email + " con ID: " + finalId));
+                            finish();
                         });
             } else {
                 Toast.makeText(this, "Error: " + task.getException().getMessage(), Toast.LENGTH_LONG).show();
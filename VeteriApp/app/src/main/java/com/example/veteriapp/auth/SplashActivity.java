@@ -12,14 +12,14 @@ import android.widget.ImageView;
 import androidx.appcompat.app.AppCompatActivity;
 
 import com.example.veteriapp.R;
+import com.example.veteriapp.data.Clinica;
+import com.example.veteriapp.data.MigracionesEsquema;
 import com.example.veteriapp.main.AdminActivity;
 import com.example.veteriapp.main.UsuarioActivity;
 import com.example.veteriapp.main.VeterinarioActivity;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.firestore.FirebaseFirestore;
 
-import java.util.List;
-
 /**
  * Clase SplashActivity.
  * 
@@ -81,16 +81,8 @@ public class SplashActivity extends AppCompatActivity {
                         .document(uid)
                         .get()
                         .addOnSuccessListener(doc -> {
-                            String rolStr = "";
-                            Object rolObj = doc.get("rol");
-                            
-                            // Puente de compatibilidad de roles (String/List)
-                            if (rolObj instanceof String) {
-                                rolStr = (String) rolObj;
-                            } else if (rolObj instanceof List) {
-                                List<?> roles = (List<?>) rolObj;
-                                if (!roles.isEmpty()) rolStr = roles.get(0).toString();
-                            }
+                            Clinica.fijar(doc);
+                            String rolStr = MigracionesEsquema.rolDeSesion(doc);
 
                             if ("ADMIN".equals(rolStr)) {
                                 startActivity(new Intent(this, AdminActivity.class));
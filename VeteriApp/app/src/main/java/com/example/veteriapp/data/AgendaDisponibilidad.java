@@ -0,0 +1,352 @@
+package com.example.veteriapp.data;
+
+import com.example.veteriapp.model.EstadoCita;
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.Timestamp;
+import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FieldValue;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.FirebaseFirestoreException;
+import com.google.firebase.firestore.Query;
+import com.google.firebase.firestore.SetOptions;
+import com.google.firebase.firestore.Source;
+import com.google.firebase.firestore.Transaction;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Clase AgendaDisponibilidad.
+ *
+ * Motor de disponibilidad de la agenda clínica.
+ * Cada día se representa con un único documento compacto en
+ * "clinicas/{idClinica}/disponibilidad/{yyyy-MM-dd}" que guarda, por veterinario (agenda)
+ * y tipo de servicio, un mapa de bits de franjas ocupadas. El selector de horas obtiene
+ * los huecos libres con una sola lectura y la reserva reclama la franja y crea la cita
+ * dentro de la misma transacción, de modo que dos dueños nunca pueden quedarse con el
+ * mismo hueco. Cada clínica tiene sus propios documentos de día: las reservas de una no
+ * compiten con las de otra.
+ *
+ * Las franjas anteriores a la partición están en "disponibilidad/{día}" (agenda "CLINICA")
+ * y son de la clínica principal. Mientras queden, sus lecturas y transacciones leen
+ * también el documento antiguo y al escribir trasladan esa franja al nuevo; el resto lo
+ * traslada {@link #migrar}.
+ *
+ * @author Juan Manuel Moreno Sánchez
+ * @version 1.0 VeteriApp Release
+ */
+public final class AgendaDisponibilidad {
+
+    // --- CONFIGURACIÓN DEL HORARIO ---
+    public static final int HORA_APERTURA = 9;
+    public static final int MINUTOS_FRANJA = 30;
+    public static final int NUM_FRANJAS = 24; // 09:00 - 21:00
+
+    // --- ESTRUCTURA EN FIRESTORE ---
+    public static final String COLECCION = "disponibilidad";
+    private static final String CAMPO_OCUPACION = "ocupacion";
+    private static final DateTimeFormatter ID_DIA = DateTimeFormatter.ISO_LOCAL_DATE;
+    private static final int LOTE_MIGRACION = 100;
+
+    /** Las citas aún no se asignan a un veterinario concreto: toda la clínica comparte una agenda. */
+    public static final String AGENDA_CLINICA = "CLINICA";
+
+    // --- CAMPOS AÑADIDOS AL DOCUMENTO DE CITA ---
+    public static final String CAMPO_DIA = "diaAgenda";
+    public static final String CAMPO_FRANJA = "franja";
+    public static final String CAMPO_AGENDA = "agenda";
+    public static final String CAMPO_TIPO = "tipoAgenda";
+
+    private AgendaDisponibilidad() {}
+
+    /**
+     * Excepción de negocio: la franja se ha ocupado entre la consulta y la reserva.
+     * Es una excepción no comprobada a propósito: los códigos de FirebaseFirestoreException
+     * harían que el SDK repitiera la transacción inútilmente.
+     */
+    public static final class FranjaOcupadaException extends IllegalStateException {
+        public FranjaOcupadaException() {
+            super("La franja seleccionada ya está reservada");
+        }
+    }
+
+    /**
+     * Documento de un día leído en una transacción, con el documento global anterior a la
+     * partición en la clínica principal (null en las demás).
+     */
+    static final class Dia {
+        final DocumentSnapshot actual;
+        final DocumentSnapshot antiguo;
+
+        Dia(DocumentSnapshot actual, DocumentSnapshot antiguo) {
+            this.actual = actual;
+            this.antiguo = antiguo;
+        }
+    }
+
+    // --- CONSULTA ---
+
+    /**
+     * Devuelve las franjas libres de un día para un tipo de servicio con una única lectura
+     * (dos en la clínica principal mientras quede su documento antiguo). En el día actual
+     * se descartan las horas ya pasadas. Si la lectura falla, la tarea falla: no se
+     * ofrecen como libres huecos que la reserva rechazaría después.
+     *
+     * @param tipoVisible Texto del spinner de tipos ("Vacunación 💉", etc.).
+     */
+    public static Task<List<LocalTime>> consultarLibres(FirebaseFirestore db, Clinica clinica, LocalDate dia,
+                                                        String tipoVisible) {
+        String tipo = claveTipo(tipoVisible);
+        Task<DocumentSnapshot> actual = referenciaDia(db, clinica, dia).get();
+        Task<DocumentSnapshot> antiguo = clinica.esPrincipal()
+                ? referenciaAntigua(db, ID_DIA.format(dia)).get() : Tasks.forResult(null);
+        return Tasks.whenAllComplete(actual, antiguo).continueWith(t -> {
+            if (!actual.isSuccessful()) throw actual.getException();
+            if (!antiguo.isSuccessful()) throw antiguo.getException();
+            long ocupadas = bitmap(new Dia(actual.getResult(), antiguo.getResult()), AGENDA_CLINICA, tipo);
+            List<LocalTime> libres = new ArrayList<>();
+            LocalDateTime ahora = LocalDateTime.now();
+            for (int franja = 0; franja < NUM_FRANJAS; franja++) {
+                if ((ocupadas & (1L << franja)) != 0) continue;
+                LocalTime hora = horaDeFranja(franja);
+                if (dia.atTime(hora).isAfter(ahora)) libres.add(hora);
+            }
+            return Collections.unmodifiableList(libres);
+        });
+    }
+
+    // --- RESERVA ---
+
+    /**
+     * Reclama la franja y crea la cita en una sola transacción.
+     * Si otro dueño la ha reservado antes, la tarea falla con FranjaOcupadaException.
+     *
+     * @param datosCita Campos de la cita; se completan con fechaHora y la referencia a la franja.
+     * @return Referencia del documento de cita creado.
+     */
+    public static Task<DocumentReference> reservar(FirebaseFirestore db, Clinica clinica, LocalDate dia, LocalTime hora,
+                                                   String tipoVisible, Map<String, Object> datosCita) {
+        String tipo = claveTipo(tipoVisible);
+        int franja = franjaDeHora(hora);
+        String idDia = ID_DIA.format(dia);
+        DocumentReference citaRef = clinica.citas(db).document();
+
+        Map<String, Object> cita = new HashMap<>(datosCita);
+        cita.put("fechaHora", new Timestamp(Date.from(dia.atTime(hora).atZone(ZoneId.systemDefault()).toInstant())));
+        cita.put(CAMPO_DIA, idDia);
+        cita.put(CAMPO_FRANJA, franja);
+        cita.put(CAMPO_AGENDA, AGENDA_CLINICA);
+        cita.put(CAMPO_TIPO, tipo);
+        cita.put(EscrituraVersionada.CAMPO_VERSION, 0L);
+
+        return db.runTransaction(transaction -> {
+            Dia diaLeido = leerDia(transaction, db, clinica, idDia);
+            long ocupadas = bitmap(diaLeido, AGENDA_CLINICA, tipo);
+            if ((ocupadas & (1L << franja)) != 0) throw new FranjaOcupadaException();
+
+            escribirBitmap(transaction, diaLeido, AGENDA_CLINICA, tipo, ocupadas | (1L << franja));
+            transaction.set(citaRef, cita);
+            return citaRef;
+        });
+    }
+
+    // --- LIBERACIÓN ---
+
+    /**
+     * Elimina una cita devolviendo su franja a la agenda si la tenía reservada.
+     */
+    public static Task<Void> eliminarCita(FirebaseFirestore db, Clinica clinica, String idDoc) {
+        DocumentReference citaRef = clinica.citas(db).document(idDoc);
+        return db.runTransaction(transaction -> {
+            DocumentSnapshot cita = transaction.get(citaRef);
+            if (!cita.exists()) return null;
+            Dia dia = leerDia(transaction, db, cita);
+            if (ocupaFranja(cita.getString("estado"))) liberar(transaction, dia, cita);
+            transaction.delete(citaRef);
+            return null;
+        });
+    }
+
+    /**
+     * Ajusta el mapa de bits dentro de la transacción de cambio de estado de una cita:
+     * RECHAZADA/CANCELADA liberan la franja y volver a un estado activo la reclama de nuevo
+     * (fallando con FranjaOcupadaException si entretanto la ha tomado otra cita).
+     *
+     * @param dia Día leído con {@link #leerDia}; null en citas sin franja.
+     */
+    static void ajustarFranja(Transaction transaction, Dia dia, DocumentSnapshot cita, String nuevoEstado)
+            throws FirebaseFirestoreException {
+        boolean ocupabaAntes = ocupaFranja(cita.getString("estado"));
+        boolean ocupaAhora = ocupaFranja(nuevoEstado);
+
+        if (ocupabaAntes && !ocupaAhora) liberar(transaction, dia, cita);
+        else if (!ocupabaAntes && ocupaAhora) reclamar(transaction, dia, cita);
+    }
+
+    /**
+     * Las citas rechazadas o canceladas no retienen hueco en la agenda.
+     */
+    public static boolean ocupaFranja(String estado) {
+        return !EstadoCita.RECHAZADA.name().equals(estado) && !EstadoCita.CANCELADA.name().equals(estado);
+    }
+
+    // --- MIGRACIÓN ---
+
+    /**
+     * Traslada los días globales anteriores a la partición a la clínica principal. Cada día
+     * se mueve en su propia transacción, sumando sus franjas a las que ya tenga el día nuevo
+     * y borrando el antiguo, así que puede convivir con reservas en curso y repetirse tras
+     * una interrupción. Sin días antiguos solo cuesta una consulta vacía.
+     *
+     * @return Número de días trasladados.
+     */
+    public static Task<Integer> migrar(FirebaseFirestore db) {
+        return migrarLote(db, db.collection(COLECCION).limit(LOTE_MIGRACION), 0);
+    }
+
+    private static Task<Integer> migrarLote(FirebaseFirestore db, Query pendientes, int acumulado) {
+        Clinica principal = Clinica.de(Clinica.POR_DEFECTO);
+        return pendientes.get(Source.SERVER).onSuccessTask(lote -> {
+            List<DocumentSnapshot> docs = lote.getDocuments();
+            if (docs.isEmpty()) return Tasks.forResult(acumulado);
+
+            List<Task<Void>> traslados = new ArrayList<>();
+            for (DocumentSnapshot doc : docs) {
+                DocumentReference destino = principal.coleccion(db, COLECCION).document(doc.getId());
+                traslados.add(db.runTransaction(transaction -> {
+                    DocumentSnapshot antiguo = transaction.get(doc.getReference());
+                    DocumentSnapshot actual = transaction.get(destino);
+                    Map<String, Object> porTipo = new HashMap<>();
+                    Object tipos = antiguo.get(CAMPO_OCUPACION + "." + AGENDA_CLINICA);
+                    if (tipos instanceof Map) {
+                        for (Object tipo : ((Map<?, ?>) tipos).keySet()) {
+                            String clave = tipo.toString();
+                            porTipo.put(clave, bitmap(antiguo, AGENDA_CLINICA, clave) | bitmap(actual, AGENDA_CLINICA, clave));
+                        }
+                    }
+                    if (!porTipo.isEmpty()) transaction.set(destino, ocupacion(AGENDA_CLINICA, porTipo), SetOptions.merge());
+                    transaction.delete(doc.getReference());
+                    return null;
+                }));
+            }
+            int total = acumulado + docs.size();
+            // Los antiguos se borran, así que la misma consulta devuelve el siguiente lote
+            return Tasks.whenAll(traslados).onSuccessTask(x -> migrarLote(db, pendientes, total));
+        });
+    }
+
+    // --- CONVERSIONES ---
+
+    public static LocalTime horaDeFranja(int franja) {
+        return LocalTime.of(HORA_APERTURA, 0).plusMinutes((long) franja * MINUTOS_FRANJA);
+    }
+
+    public static int franjaDeHora(LocalTime hora) {
+        int minutos = (hora.getHour() - HORA_APERTURA) * 60 + hora.getMinute();
+        if (minutos < 0 || minutos % MINUTOS_FRANJA != 0 || minutos / MINUTOS_FRANJA >= NUM_FRANJAS) {
+            throw new IllegalArgumentException("Hora fuera del horario de la clínica: " + hora);
+        }
+        return minutos / MINUTOS_FRANJA;
+    }
+
+    /**
+     * Normaliza el texto del spinner a una clave estable (los servicios no comparten recurso).
+     */
+    public static String claveTipo(String tipoVisible) {
+        if (tipoVisible == null) return "GENERAL";
+        if (tipoVisible.startsWith("Vacunación")) return "VACUNACION";
+        if (tipoVisible.startsWith("Peluquería")) return "PELUQUERIA";
+        return "GENERAL";
+    }
+
+    // --- AUXILIARES ---
+
+    static DocumentReference referenciaDia(FirebaseFirestore db, Clinica clinica, LocalDate dia) {
+        return clinica.coleccion(db, COLECCION).document(ID_DIA.format(dia));
+    }
+
+    private static DocumentReference referenciaAntigua(FirebaseFirestore db, String idDia) {
+        return db.collection(COLECCION).document(idDia);
+    }
+
+    /**
+     * Lee el día de una cita; null si es una cita heredada sin franja. La clínica es la
+     * del propio documento de cita ("clinicas/{id}/citas/{cita}").
+     * Todas las lecturas de una transacción deben hacerse antes de cualquier escritura.
+     */
+    static Dia leerDia(Transaction transaction, FirebaseFirestore db, DocumentSnapshot cita)
+            throws FirebaseFirestoreException {
+        String idDia = cita.getString(CAMPO_DIA);
+        if (idDia == null || cita.getLong(CAMPO_FRANJA) == null) return null;
+        DocumentReference clinica = cita.getReference().getParent().getParent();
+        return leerDia(transaction, db, Clinica.de(clinica != null ? clinica.getId() : Clinica.POR_DEFECTO), idDia);
+    }
+
+    private static Dia leerDia(Transaction transaction, FirebaseFirestore db, Clinica clinica, String idDia)
+            throws FirebaseFirestoreException {
+        DocumentSnapshot actual = transaction.get(clinica.coleccion(db, COLECCION).document(idDia));
+        DocumentSnapshot antiguo = clinica.esPrincipal() ? transaction.get(referenciaAntigua(db, idDia)) : null;
+        return new Dia(actual, antiguo);
+    }
+
+    private static void liberar(Transaction transaction, Dia dia, DocumentSnapshot cita) {
+        if (dia == null) return;
+        String agenda = cita.getString(CAMPO_AGENDA);
+        String tipo = cita.getString(CAMPO_TIPO);
+        long bit = 1L << cita.getLong(CAMPO_FRANJA).intValue();
+        escribirBitmap(transaction, dia, agenda, tipo, bitmap(dia, agenda, tipo) & ~bit);
+    }
+
+    private static void reclamar(Transaction transaction, Dia dia, DocumentSnapshot cita)
+            throws FirebaseFirestoreException {
+        if (dia == null) return;
+        String agenda = cita.getString(CAMPO_AGENDA);
+        String tipo = cita.getString(CAMPO_TIPO);
+        long bit = 1L << cita.getLong(CAMPO_FRANJA).intValue();
+        long ocupadas = bitmap(dia, agenda, tipo);
+        if ((ocupadas & bit) != 0) throw new FranjaOcupadaException();
+        escribirBitmap(transaction, dia, agenda, tipo, ocupadas | bit);
+    }
+
+    private static long bitmap(Dia dia, String agenda, String tipo) {
+        return bitmap(dia.actual, agenda, tipo) | bitmap(dia.antiguo, agenda, tipo);
+    }
+
+    private static long bitmap(DocumentSnapshot dia, String agenda, String tipo) {
+        if (dia == null || !dia.exists()) return 0L;
+        Long valor = dia.getLong(CAMPO_OCUPACION + "." + agenda + "." + tipo);
+        return valor != null ? valor : 0L;
+    }
+
+    /**
+     * Escribe el mapa de bits en el día de la clínica. Si venía en parte del documento
+     * antiguo, esa franja se retira de él: desde ahora solo cuenta la copia nueva.
+     */
+    private static void escribirBitmap(Transaction transaction, Dia dia, String agenda, String tipo, long valor) {
+        transaction.set(dia.actual.getReference(), ocupacion(agenda, Collections.singletonMap(tipo, valor)),
+                SetOptions.merge());
+        if (dia.antiguo != null && dia.antiguo.exists() && bitmap(dia.antiguo, agenda, tipo) != 0) {
+            transaction.set(dia.antiguo.getReference(),
+                    ocupacion(agenda, Collections.singletonMap(tipo, FieldValue.delete())), SetOptions.merge());
+        }
+    }
+
+    private static Map<String, Object> ocupacion(String agenda, Map<String, ?> porTipo) {
+        Map<String, Object> porAgenda = new HashMap<>();
+        porAgenda.put(agenda, porTipo);
+        Map<String, Object> campos = new HashMap<>();
+        campos.put(CAMPO_OCUPACION, porAgenda);
+        return campos;
+    }
+}
@@ -0,0 +1,215 @@
+package com.example.veteriapp.data;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.AtomicFile;
+import android.util.Log;
+
+import com.example.veteriapp.BuildConfig;
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.TaskCompletionSource;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.QuerySnapshot;
+import com.google.firebase.firestore.Source;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Clase BundlesIniciales.
+ *
+ * Carga de paquetes de datos de Firestore (bundles) para el primer pintado.
+ * El bundle "inicio" empaqueta las consultas casi estáticas de los paneles (muro de
+ * noticias con su documento de versión y primera página del memorial público) como
+ * consultas con nombre. Al arrancar el proceso se carga en la caché local desde el
+ * último bundle descargado o, en una instalación limpia, desde los assets; las
+ * pantallas lo leen con Source.CACHE sin esperar a ningún viaje de red.
+ *
+ * El asset lo genera la build de release a partir de los datos publicados (tarea
+ * :app:generarBundleInicio, solo si la build tiene token de lectura: sin él no hay asset y
+ * una instalación limpia espera a la descarga) y la misma tarea, programada, lo publica
+ * en Firebase Hosting.
+ * Si la variante define BUNDLE_URL, después se descarga la versión publicada (con
+ * ETag, así que un bundle sin cambios no se vuelve a bajar) y queda guardada para el
+ * siguiente arranque. Firestore descarta los documentos de un bundle más antiguos
+ * que los que ya tiene en caché, de modo que cargarlo nunca retrocede datos.
+ *
+ * @author Juan Manuel Moreno Sánchez
+ * @version 1.0 VeteriApp Release
+ */
+public final class BundlesIniciales {
+
+    private static final String TAG = "VeteriApp";
+
+    // --- CONSULTAS CON NOMBRE DEL BUNDLE "inicio" ---
+    // (el muro de noticias, "muro-noticias", se lee con su propia consulta vía MuroNoticias)
+    public static final String CONSULTA_MEMORIAL = "muro-memorial";
+
+    // --- ORIGENES DEL BUNDLE ---
+    private static final String ASSET = "bundles/inicio.bundle";
+    private static final String FICHERO = "bundle_inicio";
+    private static final String PREFERENCIAS = "bundles";
+    private static final String CLAVE_ETAG = "etagInicio";
+    private static final int TIMEOUT_MS = 10_000;
+
+    private static final ExecutorService HILO = Executors.newSingleThreadExecutor(r -> new Thread(r, "VeteriApp-Bundles"));
+    private static final TaskCompletionSource<Void> LISTO = new TaskCompletionSource<>();
+
+    private BundlesIniciales() {}
+
+    /**
+     * Carga el bundle local y, si procede, busca uno más reciente. Se llama una vez al
+     * crear el proceso; no bloquea el hilo principal.
+     */
+    public static void iniciar(Context context) {
+        Context app = context.getApplicationContext();
+        HILO.execute(() -> {
+            FirebaseFirestore db = FirebaseFirestore.getInstance();
+            byte[] local = leerLocal(app);
+            if (local != null) cargar(app, db, local);
+            LISTO.trySetResult(null);
+
+            if (!BuildConfig.BUNDLE_URL.isEmpty()) actualizar(app, db, BuildConfig.BUNDLE_URL);
+        });
+    }
+
+    /**
+     * Descarga y carga en la caché de db el bundle publicado en la URL indicada, en el
+     * hilo de los bundles. Para las pruebas, que lo sirven desde un hosting local.
+     */
+    static Task<Void> descargar(Context context, FirebaseFirestore db, String url) {
+        Context app = context.getApplicationContext();
+        return Tasks.call(HILO, () -> {
+            actualizar(app, db, url);
+            return null;
+        });
+    }
+
+    /**
+     * Se completa (siempre con éxito) cuando el bundle local ya está en la caché o no hay ninguno.
+     */
+    public static Task<Void> listo() {
+        return LISTO.getTask();
+    }
+
+    /**
+     * Ejecuta una consulta con nombre del bundle contra la caché local.
+     * Falla si el bundle no estaba disponible.
+     */
+    public static Task<QuerySnapshot> desdeCache(FirebaseFirestore db, String nombre) {
+        return listo()
+                .continueWithTask(t -> db.getNamedQuery(nombre))
+                .onSuccessTask(consulta -> consulta != null
+                        ? consulta.get(Source.CACHE)
+                        : Tasks.forException(new IllegalStateException("Consulta sin bundle: " + nombre)));
+    }
+
+    // --- CARGA ---
+
+    private static void cargar(Context app, FirebaseFirestore db, byte[] bundle) {
+        try {
+            Long antes = versionEnCache(db);
+            Tasks.await(db.loadBundle(bundle));
+            // Si el bundle ha aportado la versión del muro, trae también sus noticias
+            Long despues = versionEnCache(db);
+            if (despues != null && !despues.equals(antes)) MuroNoticias.adoptarVersionLocal(app, despues);
+        } catch (Exception e) {
+            Log.w(TAG, "Bundle de inicio no cargado", e);
+        }
+    }
+
+    private static Long versionEnCache(FirebaseFirestore db) {
+        try {
+            DocumentSnapshot doc = Tasks.await(db.document(MuroNoticias.DOC_VERSION).get(Source.CACHE));
+            return doc.getLong(MuroNoticias.CAMPO_VERSION);
+        } catch (Exception e) {
+            return null; // aún no está en caché
+        }
+    }
+
+    private static byte[] leerLocal(Context app) {
+        AtomicFile fichero = fichero(app);
+        try (FileInputStream in = fichero.openRead()) {
+            return leerTodo(in);
+        } catch (FileNotFoundException e) {
+            // Sin descarga previa: el bundle empaquetado con la app
+        } catch (IOException e) {
+            Log.w(TAG, "Bundle guardado ilegible", e);
+        }
+        try (InputStream in = app.getAssets().open(ASSET)) {
+            return leerTodo(in);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Descarga el bundle publicado si ha cambiado, lo guarda y lo carga.
+     */
+    private static void actualizar(Context app, FirebaseFirestore db, String url) {
+        SharedPreferences prefs = app.getSharedPreferences(PREFERENCIAS, Context.MODE_PRIVATE);
+        HttpURLConnection con = null;
+        try {
+            con = (HttpURLConnection) new URL(url).openConnection();
+            con.setConnectTimeout(TIMEOUT_MS);
+            con.setReadTimeout(TIMEOUT_MS);
+            String etag = prefs.getString(CLAVE_ETAG, null);
+            if (etag != null && fichero(app).getBaseFile().exists()) con.setRequestProperty("If-None-Match", etag);
+
+            int code = con.getResponseCode();
+            if (code == HttpURLConnection.HTTP_NOT_MODIFIED) return;
+            if (code != HttpURLConnection.HTTP_OK) {
+                Log.w(TAG, "Bundle de inicio no disponible: HTTP " + code);
+                return;
+            }
+
+            byte[] bundle;
+            try (InputStream in = con.getInputStream()) {
+                bundle = leerTodo(in);
+            }
+            guardar(app, bundle);
+            prefs.edit().putString(CLAVE_ETAG, con.getHeaderField("ETag")).apply();
+            cargar(app, db, bundle);
+        } catch (IOException e) {
+            Log.w(TAG, "No se pudo descargar el bundle de inicio", e);
+        } finally {
+            if (con != null) con.disconnect();
+        }
+    }
+
+    private static void guardar(Context app, byte[] bundle) {
+        AtomicFile fichero = fichero(app);
+        FileOutputStream out = null;
+        try {
+            out = fichero.startWrite();
+            out.write(bundle);
+            fichero.finishWrite(out);
+        } catch (IOException e) {
+            if (out != null) fichero.failWrite(out);
+            Log.e(TAG, "No se pudo guardar el bundle de inicio", e);
+        }
+    }
+
+    private static AtomicFile fichero(Context app) {
+        return new AtomicFile(new File(app.getFilesDir(), FICHERO));
+    }
+
+    private static byte[] leerTodo(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buf = new byte[8192];
+        int n;
+        while ((n = in.read(buf)) > 0) out.write(buf, 0, n);
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,223 @@
+package com.example.veteriapp.data;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.Timestamp;
+import com.google.firebase.firestore.CollectionReference;
+import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.Query;
+import com.google.firebase.firestore.Source;
+import com.google.firebase.firestore.WriteBatch;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Clase Clinica.
+ *
+ * Partición de los datos por clínica: "clinicas/{idClinica}/...".
+ * - avisos: bandeja del personal. Sustituye a las notificaciones con destinatario
+ *   literal "CLINICA", que concentraban el tráfico de todas las clínicas en una clave.
+ * - citas: agenda de la clínica.
+ * - disponibilidad: ocupación de la agenda, un documento por día (ver AgendaDisponibilidad).
+ * - salas: conversaciones de chat de sus clientes (ver SalasChat).
+ * Las mascotas siguen en la colección global "mascotas" (el dueño y el memorial las leen
+ * sin clínica) y llevan su clínica en "idClinica"; las pantallas de la clínica las filtran
+ * con {@link #mascotas}. Las anteriores a ese campo lo reciben en MigracionesEsquema.
+ *
+ * Cada instancia es inmutable y representa una clínica concreta. La de la sesión se
+ * resuelve al despachar al usuario según su perfil ("idClinica" en users/{uid}; los
+ * perfiles sin él pertenecen a la clínica principal) y se conserva entre reinicios del
+ * proceso. Cada pantalla la toma una sola vez al crearse ({@link #actual()}) y pasa esa
+ * instancia a todas sus lecturas y escrituras: un cambio de sesión posterior no reparte
+ * los datos de una misma pantalla entre dos clínicas.
+ *
+ * Los datos anteriores a la partición pertenecen a la clínica principal; las migraciones
+ * de esta clase (y la del chat en SalasChat) los trasladan conservando sus IDs.
+ *
+ * @author Juan Manuel Moreno Sánchez
+ * @version 1.0 VeteriApp Release
+ */
+public final class Clinica {
+
+    public static final String COLECCION = "clinicas";
+    public static final String POR_DEFECTO = "principal";
+    public static final String CAMPO_CLINICA = "idClinica";
+
+    // --- SUBCOLECCIONES DE LA CLÍNICA ---
+    public static final String AVISOS = "avisos";
+    public static final String CITAS = "citas";
+    public static final String SALAS = "salas";
+
+    // --- COLECCIONES GLOBALES FILTRADAS POR CLÍNICA ---
+    public static final String MASCOTAS = "mascotas";
+
+    // --- SESIÓN ---
+    private static final String PREFERENCIAS = "sesion_clinica";
+    private static SharedPreferences prefs;
+    private static volatile Clinica sesion = new Clinica(POR_DEFECTO);
+
+    // --- MIGRACIÓN DE LOS DATOS GLOBALES ---
+    private static final String DESTINATARIO_ANTIGUO = "CLINICA";
+    private static final String CITAS_ANTIGUAS = "citas";
+    private static final int LOTE = 200;
+
+    private final String id;
+
+    private Clinica(String id) {
+        this.id = id;
+    }
+
+    /**
+     * Clínica con el ID indicado (migraciones, administración y pruebas).
+     */
+    public static Clinica de(String id) {
+        return new Clinica(id);
+    }
+
+    /**
+     * Recupera la clínica de la última sesión. Se llama al crear el proceso.
+     */
+    public static synchronized void iniciar(Context context) {
+        prefs = context.getApplicationContext().getSharedPreferences(PREFERENCIAS, Context.MODE_PRIVATE);
+        sesion = new Clinica(prefs.getString(CAMPO_CLINICA, POR_DEFECTO));
+    }
+
+    /**
+     * Fija la clínica de la sesión a partir del perfil del usuario recién identificado.
+     * Solo afecta a las pantallas que se abran a partir de ahora.
+     */
+    public static synchronized void fijar(DocumentSnapshot perfil) {
+        String clinica = perfil != null ? perfil.getString(CAMPO_CLINICA) : null;
+        sesion = new Clinica((clinica != null && !clinica.isEmpty()) ? clinica : POR_DEFECTO);
+        if (prefs != null) prefs.edit().putString(CAMPO_CLINICA, sesion.id).apply();
+    }
+
+    /**
+     * Clínica de la sesión. Las pantallas la leen una vez, en onCreate, y la conservan.
+     */
+    public static Clinica actual() {
+        return sesion;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public boolean esPrincipal() {
+        return POR_DEFECTO.equals(id);
+    }
+
+    // --- RUTAS ---
+
+    public DocumentReference referencia(FirebaseFirestore db) {
+        return db.collection(COLECCION).document(id);
+    }
+
+    /**
+     * Colección de esta clínica.
+     */
+    public CollectionReference coleccion(FirebaseFirestore db, String nombre) {
+        return referencia(db).collection(nombre);
+    }
+
+    /**
+     * Bandeja de avisos del personal de la clínica.
+     */
+    public CollectionReference avisos(FirebaseFirestore db) {
+        return coleccion(db, AVISOS);
+    }
+
+    /**
+     * Avisos sin leer de la clínica (punto rojo de los paneles).
+     */
+    public Query avisosPendientes(FirebaseFirestore db) {
+        return avisos(db).whereEqualTo("leida", false);
+    }
+
+    /**
+     * Citas de la clínica.
+     */
+    public CollectionReference citas(FirebaseFirestore db) {
+        return coleccion(db, CITAS);
+    }
+
+    /**
+     * Mascotas atendidas en la clínica.
+     */
+    public Query mascotas(FirebaseFirestore db) {
+        return db.collection(MASCOTAS).whereEqualTo(CAMPO_CLINICA, id);
+    }
+
+    /**
+     * Documento de un aviso nuevo para el personal.
+     */
+    public static Map<String, Object> aviso(String mensaje) {
+        Map<String, Object> n = new HashMap<>();
+        n.put("mensaje", mensaje);
+        n.put("leida", false);
+        n.put("timestamp", Timestamp.now());
+        return n;
+    }
+
+    // --- MIGRACIÓN ---
+
+    /**
+     * Traslada los avisos antiguos ("notificaciones" con destinatario "CLINICA") a la bandeja
+     * de la clínica principal, a la que pertenecen todos los datos previos a la partición.
+     * Conserva los IDs, así que repetirla tras una interrupción es idempotente; cuando ya no
+     * queda ninguno solo cuesta una consulta vacía.
+     *
+     * @return Número de avisos trasladados.
+     */
+    public static Task<Integer> migrarAvisos(FirebaseFirestore db) {
+        Query pendientes = db.collection("notificaciones")
+                .whereEqualTo("uidDestinatario", DESTINATARIO_ANTIGUO).limit(LOTE);
+        return migrarLote(db, pendientes, de(POR_DEFECTO).avisos(db), "uidDestinatario", 0);
+    }
+
+    /**
+     * Traslada las citas de la antigua colección global a la clínica principal, con las
+     * mismas garantías que {@link #migrarAvisos}. Debe ejecutarse después de
+     * MigracionesEsquema, que normaliza la forma de esas citas donde están. Su franja no
+     * se toca: la agenda de la clínica principal es la que ya ocupaban.
+     *
+     * @return Número de citas trasladadas.
+     */
+    public static Task<Integer> migrarCitas(FirebaseFirestore db) {
+        Query pendientes = db.collection(CITAS_ANTIGUAS).limit(LOTE);
+        return migrarLote(db, pendientes, de(POR_DEFECTO).citas(db), null, 0);
+    }
+
+    /**
+     * Copia cada documento a su destino conservando el ID y borra el original.
+     *
+     * @param campoRetirado Campo que deja de tener sentido en el destino (o null).
+     */
+    private static Task<Integer> migrarLote(FirebaseFirestore db, Query pendientes, CollectionReference destino,
+                                            String campoRetirado, int acumulado) {
+        // Del servidor: un lote vacío servido por la caché pararía la migración antes de tiempo
+        return pendientes.get(Source.SERVER).onSuccessTask(lote -> {
+            List<DocumentSnapshot> docs = lote.getDocuments();
+            if (docs.isEmpty()) return Tasks.forResult(acumulado);
+
+            WriteBatch batch = db.batch();
+            for (DocumentSnapshot doc : docs) {
+                Map<String, Object> datos = doc.getData();
+                if (datos == null) continue;
+                if (campoRetirado != null) datos.remove(campoRetirado);
+                batch.set(destino.document(doc.getId()), datos);
+                batch.delete(doc.getReference());
+            }
+            int total = acumulado + docs.size();
+            // Los originales se borran, así que la misma consulta devuelve el siguiente lote
+            return batch.commit().onSuccessTask(x -> migrarLote(db, pendientes, destino, campoRetirado, total));
+        });
+    }
+}
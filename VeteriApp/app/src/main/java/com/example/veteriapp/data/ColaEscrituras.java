@@ -0,0 +1,618 @@
+package com.example.veteriapp.data;
+
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.net.Network;
+import android.util.AtomicFile;
+import android.util.Base64;
+import android.util.Log;
+
+import androidx.tracing.Trace;
+
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.TaskCompletionSource;
+import com.google.firebase.Timestamp;
+import com.google.firebase.firestore.Blob;
+import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.FieldValue;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.FirebaseFirestoreException;
+import com.google.firebase.firestore.GeoPoint;
+import com.google.firebase.firestore.SetOptions;
+import com.google.firebase.firestore.WriteBatch;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Clase ColaEscrituras.
+ *
+ * Bandeja de salida persistente para las escrituras simples de la aplicación
+ * (mensajes, avisos, logs, altas y ediciones sin transacción).
+ * Cada operación se guarda en disco, en su propio fichero, antes de enviarse y ese
+ * fichero solo se borra cuando el servidor confirma el commit, de modo que una
+ * escritura en vuelo sobrevive a la muerte del proceso y se reenvía en el siguiente
+ * arranque. Encolar o confirmar cuesta así una escritura o un borrado de ese tamaño,
+ * no reescribir la cola entera (con las fotos que lleve). El nombre del fichero fija
+ * el orden de envío al restaurar.
+ *
+ * Las operaciones que se acumulan se agrupan en lotes (WriteBatch) y los fallos
+ * transitorios se reintentan con espera exponencial, reiniciada en cuanto vuelve la
+ * conectividad. Un error ajeno a Firestore solo se reintenta unas pocas veces
+ * ({@link #MAX_FALLOS_INESPERADOS}); después se trata como permanente.
+ *
+ * Las operaciones son idempotentes (set/update/delete sobre un ID ya generado en el
+ * cliente), así que un reenvío tras un cierre inesperado no duplica documentos.
+ * Las transacciones (reservas, transiciones de estado) no pasan por aquí: necesitan
+ * leer del servidor y no tiene sentido diferirlas.
+ *
+ * Todo el estado se maneja en un único hilo propio; la interfaz nunca espera a la red.
+ *
+ * @author Juan Manuel Moreno Sánchez
+ * @version 1.0 VeteriApp Release
+ */
+public final class ColaEscrituras {
+
+    private static final String TAG = "ColaEscrituras";
+    private static final String DIRECTORIO = "cola_escrituras";
+    private static final String FICHERO_ANTIGUO = "cola_escrituras.json"; // cola entera de versiones previas
+    private static final String EXTENSION = ".json";
+
+    // --- POLÍTICA DE ENVÍO ---
+    private static final int MAX_LOTE = 500;               // límite de Firestore por commit
+    private static final long DEMORA_AGRUPACION_MS = 50;
+    private static final long ESPERA_BASE_MS = 1_000;
+    private static final long ESPERA_MAXIMA_MS = 5 * 60_000;
+    private static final int MAX_FALLOS_INESPERADOS = 5;
+
+    private static ColaEscrituras instancia;
+
+    /** Tipo de mutación registrada. */
+    private enum Tipo { SET, MERGE, UPDATE, DELETE }
+
+    // --- ESTADO (solo desde el hilo de la cola) ---
+    private final ScheduledExecutorService hilo = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "VeteriApp-Cola");
+        t.setPriority(Thread.NORM_PRIORITY - 1);
+        return t;
+    });
+    private final FirebaseFirestore db;
+    private final File directorio;
+    private final File ficheroAntiguo;
+    private final List<Operacion> pendientes = new ArrayList<>();
+    private final Set<String> enVuelo = new HashSet<>();
+    private final Map<String, TaskCompletionSource<Void>> esperas = new HashMap<>();
+    private ScheduledFuture<?> programado;
+    private long siguienteOrden;
+    private int fallosSeguidos;
+    private long pausaHasta; // fin del backoff en curso (0 = sin pausa)
+    private long confirmadas, descartadas, reintentos;
+
+    private volatile Metricas metricas = new Metricas(0, 0, 0, 0, 0, 0);
+
+    private ColaEscrituras(Context contexto) {
+        db = FirebaseFirestore.getInstance();
+        directorio = new File(contexto.getFilesDir(), DIRECTORIO);
+        ficheroAntiguo = new File(contexto.getFilesDir(), FICHERO_ANTIGUO);
+        hilo.execute(() -> {
+            restaurar();
+            drenar();
+        });
+        vigilarConectividad(contexto);
+    }
+
+    /**
+     * Arranca la cola y reenvía lo que quedara pendiente del proceso anterior.
+     * Se invoca una vez desde VeteriApplication.
+     */
+    public static synchronized void iniciar(Context contexto) {
+        if (instancia == null) instancia = new ColaEscrituras(contexto.getApplicationContext());
+    }
+
+    public static ColaEscrituras get() {
+        if (instancia == null) throw new IllegalStateException("ColaEscrituras no iniciada");
+        return instancia;
+    }
+
+    // --- OPERACIONES ---
+
+    /**
+     * Crea o sustituye un documento. La tarea se completa cuando el servidor confirma
+     * (o falla si la escritura se descarta por un error no recuperable); sin conexión
+     * queda pendiente hasta que vuelva la red. La interfaz no debe esperarla para
+     * reflejar el cambio: lo pinta al instante y lo revierte si la tarea falla.
+     *
+     * @throws IllegalArgumentException Si los datos llevan un valor que la cola no sabe persistir.
+     */
+    public Task<Void> set(DocumentReference ref, Map<String, Object> datos) {
+        return encolar(Tipo.SET, ref, datos);
+    }
+
+    /** Fusiona los campos indicados, creando el documento si no existe. */
+    public Task<Void> setMerge(DocumentReference ref, Map<String, Object> datos) {
+        return encolar(Tipo.MERGE, ref, datos);
+    }
+
+    public Task<Void> update(DocumentReference ref, Map<String, Object> campos) {
+        return encolar(Tipo.UPDATE, ref, campos);
+    }
+
+    public Task<Void> delete(DocumentReference ref) {
+        return encolar(Tipo.DELETE, ref, null);
+    }
+
+    /**
+     * Estado actual de la cola (seguro desde cualquier hilo).
+     */
+    public Metricas getMetricas() {
+        return metricas;
+    }
+
+    private Task<Void> encolar(Tipo tipo, DocumentReference ref, Map<String, Object> datos) {
+        Operacion op;
+        try {
+            // Se serializa ya para rechazar en el acto valores que no se pueden persistir
+            op = new Operacion(UUID.randomUUID().toString(), tipo, ref.getPath(),
+                    datos != null ? Json.objeto(datos) : null, System.currentTimeMillis());
+        } catch (JSONException e) {
+            throw new IllegalArgumentException("Valor no admitido en la cola de escrituras", e);
+        }
+
+        TaskCompletionSource<Void> espera = new TaskCompletionSource<>();
+        hilo.execute(() -> {
+            op.orden = siguienteOrden++;
+            pendientes.add(op);
+            esperas.put(op.id, espera);
+            guardar(op);
+            programar(DEMORA_AGRUPACION_MS);
+        });
+        return espera.getTask();
+    }
+
+    // --- DRENAJE ---
+
+    private void programar(long demoraMs) {
+        // Durante el backoff, las nuevas operaciones esperan con las que fallaron
+        demoraMs = Math.max(demoraMs, pausaHasta - System.currentTimeMillis());
+        if (programado != null && !programado.isDone()) {
+            if (programado.getDelay(TimeUnit.MILLISECONDS) <= demoraMs) return;
+            programado.cancel(false);
+        }
+        programado = hilo.schedule(this::drenar, demoraMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Envía en lotes todas las operaciones que no estén ya en vuelo. Varios lotes pueden
+     * estar en vuelo a la vez: el SDK los aplica en orden sobre su caché local, así que
+     * los listeners ven el cambio aunque no haya red.
+     */
+    private void drenar() {
+        List<Operacion> lote = new ArrayList<>();
+        for (Operacion op : pendientes) {
+            if (enVuelo.contains(op.id)) continue;
+            // Una operación aislada tras un fallo viaja sola para no bloquear a las demás
+            if (op.aislada && !lote.isEmpty()) continue;
+            lote.add(op);
+            if (op.aislada || lote.size() == MAX_LOTE) break;
+        }
+        if (lote.isEmpty()) {
+            publicarMetricas();
+            return;
+        }
+
+        WriteBatch batch = db.batch();
+        try {
+            for (Operacion op : lote) aplicar(batch, op);
+        } catch (JSONException e) {
+            // No debería ocurrir: el contenido ya se validó al encolar
+            for (Operacion op : lote) descartar(op, e);
+            drenar();
+            return;
+        }
+
+        for (Operacion op : lote) enVuelo.add(op.id);
+        publicarMetricas();
+        batch.commit().addOnCompleteListener(hilo, t -> {
+            for (Operacion op : lote) enVuelo.remove(op.id);
+            if (t.isSuccessful()) confirmar(lote);
+            else fallar(lote, t.getException());
+            publicarMetricas();
+        });
+
+        // Quedan más operaciones que las cabidas en este lote
+        if (pendientes.size() > enVuelo.size()) drenar();
+    }
+
+    private void confirmar(List<Operacion> lote) {
+        fallosSeguidos = 0;
+        pausaHasta = 0;
+        for (Operacion op : lote) {
+            pendientes.remove(op);
+            borrar(op);
+            confirmadas++;
+            TaskCompletionSource<Void> espera = esperas.remove(op.id);
+            if (espera != null) espera.trySetResult(null);
+        }
+        if (pendientes.size() > enVuelo.size()) programar(0);
+    }
+
+    private void fallar(List<Operacion> lote, Exception e) {
+        if (esTransitorio(lote, e)) {
+            fallosSeguidos++;
+            reintentos += lote.size();
+            long espera = Math.min(ESPERA_MAXIMA_MS, ESPERA_BASE_MS << Math.min(fallosSeguidos - 1, 16));
+            // Variación aleatoria (±20%) para que los dispositivos no reintenten a la vez
+            espera += (long) (espera * 0.2 * (Math.random() * 2 - 1));
+            Log.w(TAG, "Lote de " + lote.size() + " reintentado en " + espera + " ms", e);
+            pausaHasta = System.currentTimeMillis() + espera;
+            programar(espera);
+        } else if (lote.size() > 1) {
+            // Un error permanente tumba todo el lote: se reenvían una a una para aislar la culpable
+            for (Operacion op : lote) op.aislada = true;
+            programar(0);
+        } else {
+            descartar(lote.get(0), e);
+            programar(0);
+        }
+    }
+
+    private void descartar(Operacion op, Exception e) {
+        Log.e(TAG, "Escritura descartada en " + op.ruta, e);
+        pendientes.remove(op);
+        borrar(op);
+        descartadas++;
+        TaskCompletionSource<Void> espera = esperas.remove(op.id);
+        if (espera != null) espera.trySetException(e);
+    }
+
+    /**
+     * Un error de Firestore es transitorio según su código. Cualquier otro (p.ej. un fallo
+     * interno del SDK) se da por pasajero solo mientras ninguna operación del lote lo haya
+     * sufrido {@link #MAX_FALLOS_INESPERADOS} veces; así no se reintenta para siempre.
+     */
+    private static boolean esTransitorio(List<Operacion> lote, Exception e) {
+        if (!(e instanceof FirebaseFirestoreException)) {
+            int fallos = 0;
+            for (Operacion op : lote) fallos = Math.max(fallos, ++op.fallosInesperados);
+            return fallos < MAX_FALLOS_INESPERADOS;
+        }
+        switch (((FirebaseFirestoreException) e).getCode()) {
+            case UNAVAILABLE:
+            case DEADLINE_EXCEEDED:
+            case ABORTED:
+            case RESOURCE_EXHAUSTED:
+            case INTERNAL:
+            case UNKNOWN:
+            case CANCELLED:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private void aplicar(WriteBatch batch, Operacion op) throws JSONException {
+        DocumentReference ref = db.document(op.ruta);
+        switch (op.tipo) {
+            case SET: batch.set(ref, Json.mapa(op.datos, db)); break;
+            case MERGE: batch.set(ref, Json.mapa(op.datos, db), SetOptions.merge()); break;
+            case UPDATE: batch.update(ref, Json.mapa(op.datos, db)); break;
+            case DELETE: batch.delete(ref); break;
+        }
+    }
+
+    /**
+     * Al recuperar la red se reintenta de inmediato en lugar de esperar al final del backoff.
+     */
+    private void vigilarConectividad(Context contexto) {
+        ConnectivityManager cm = contexto.getSystemService(ConnectivityManager.class);
+        if (cm == null) return;
+        cm.registerDefaultNetworkCallback(new ConnectivityManager.NetworkCallback() {
+            @Override
+            public void onAvailable(Network network) {
+                hilo.execute(() -> {
+                    fallosSeguidos = 0;
+                    pausaHasta = 0;
+                    programar(0);
+                });
+            }
+        });
+    }
+
+    // --- PERSISTENCIA ---
+
+    /**
+     * Escribe el fichero de una operación recién encolada.
+     */
+    private void guardar(Operacion op) {
+        if (!directorio.isDirectory() && !directorio.mkdirs()) {
+            Log.e(TAG, "No se pudo crear " + directorio);
+            return;
+        }
+        AtomicFile fichero = fichero(op);
+        FileOutputStream out = null;
+        try {
+            out = fichero.startWrite();
+            out.write(op.aJson().toString().getBytes(StandardCharsets.UTF_8));
+            fichero.finishWrite(out);
+        } catch (IOException | JSONException e) {
+            if (out != null) fichero.failWrite(out);
+            Log.e(TAG, "No se pudo guardar la escritura en " + op.ruta, e);
+        }
+    }
+
+    private void borrar(Operacion op) {
+        fichero(op).delete();
+    }
+
+    /**
+     * Fichero de una operación. El orden va con ceros a la izquierda para que el orden
+     * alfabético de los nombres sea el de encolado.
+     */
+    private AtomicFile fichero(Operacion op) {
+        return new AtomicFile(new File(directorio, String.format(Locale.ROOT, "%019d", op.orden) + EXTENSION));
+    }
+
+    /**
+     * Recupera las operaciones del proceso anterior en su orden de encolado. Un fichero
+     * ilegible se descarta sin afectar al resto.
+     */
+    private void restaurar() {
+        importarColaAntigua();
+        String[] nombres = directorio.list((dir, nombre) -> nombre.endsWith(EXTENSION));
+        if (nombres != null) {
+            Arrays.sort(nombres);
+            for (String nombre : nombres) {
+                AtomicFile fichero = new AtomicFile(new File(directorio, nombre));
+                try {
+                    Operacion op = Operacion.deJson(new JSONObject(leer(fichero)));
+                    op.orden = Long.parseLong(nombre.substring(0, nombre.length() - EXTENSION.length()));
+                    pendientes.add(op);
+                    siguienteOrden = op.orden + 1;
+                } catch (IOException | JSONException | NumberFormatException e) {
+                    Log.e(TAG, "Escritura pendiente ilegible (" + nombre + "); se descarta", e);
+                    fichero.delete();
+                }
+            }
+        }
+        if (!pendientes.isEmpty()) Log.i(TAG, pendientes.size() + " escrituras recuperadas del arranque anterior");
+    }
+
+    /**
+     * Pasa a ficheros individuales la cola que las versiones anteriores guardaban entera
+     * en un único fichero, para no perder lo que quedara pendiente al actualizar.
+     */
+    private void importarColaAntigua() {
+        AtomicFile antiguo = new AtomicFile(ficheroAntiguo);
+        if (!antiguo.getBaseFile().exists()) return;
+        try {
+            JSONArray array = new JSONArray(leer(antiguo));
+            for (int i = 0; i < array.length(); i++) {
+                Operacion op = Operacion.deJson(array.getJSONObject(i));
+                op.orden = siguienteOrden++;
+                guardar(op);
+            }
+        } catch (IOException | JSONException e) {
+            Log.e(TAG, "Cola de escrituras antigua ilegible; se descarta", e);
+        }
+        // Si se corta antes de borrarlo, la próxima importación reescribe los mismos ficheros
+        antiguo.delete();
+    }
+
+    private static String leer(AtomicFile fichero) throws IOException {
+        return new String(fichero.readFully(), StandardCharsets.UTF_8);
+    }
+
+    private void publicarMetricas() {
+        long masAntigua = 0;
+        if (!pendientes.isEmpty()) masAntigua = System.currentTimeMillis() - pendientes.get(0).creada;
+        metricas = new Metricas(pendientes.size(), enVuelo.size(), confirmadas, descartadas, reintentos, masAntigua);
+        Trace.setCounter("ColaEscrituras:profundidad", pendientes.size());
+    }
+
+    // --- TIPOS ---
+
+    /**
+     * Instantánea de la cola para diagnóstico y trazas.
+     */
+    public static final class Metricas {
+        private final int profundidad;
+        private final int enVuelo;
+        private final long confirmadas;
+        private final long descartadas;
+        private final long reintentos;
+        private final long antiguedadMs;
+
+        Metricas(int profundidad, int enVuelo, long confirmadas, long descartadas, long reintentos, long antiguedadMs) {
+            this.profundidad = profundidad;
+            this.enVuelo = enVuelo;
+            this.confirmadas = confirmadas;
+            this.descartadas = descartadas;
+            this.reintentos = reintentos;
+            this.antiguedadMs = antiguedadMs;
+        }
+
+        /** Operaciones aún no confirmadas por el servidor (incluidas las que están en vuelo). */
+        public int getProfundidad() { return profundidad; }
+        public int getEnVuelo() { return enVuelo; }
+        public long getConfirmadas() { return confirmadas; }
+        /** Operaciones abandonadas por un error no recuperable (p.ej. permisos). */
+        public long getDescartadas() { return descartadas; }
+        public long getReintentos() { return reintentos; }
+        /** Edad de la operación pendiente más antigua (0 si la cola está vacía). */
+        public long getAntiguedadMs() { return antiguedadMs; }
+    }
+
+    private static final class Operacion {
+        final String id;
+        final Tipo tipo;
+        final String ruta;
+        final JSONObject datos;
+        final long creada;
+        long orden;             // posición en la cola; da nombre a su fichero
+        boolean aislada;        // tras un fallo permanente de su lote viaja sola
+        int fallosInesperados;  // fallos con errores ajenos a Firestore
+
+        Operacion(String id, Tipo tipo, String ruta, JSONObject datos, long creada) {
+            this.id = id;
+            this.tipo = tipo;
+            this.ruta = ruta;
+            this.datos = datos;
+            this.creada = creada;
+        }
+
+        JSONObject aJson() throws JSONException {
+            JSONObject o = new JSONObject();
+            o.put("id", id);
+            o.put("tipo", tipo.name());
+            o.put("ruta", ruta);
+            if (datos != null) o.put("datos", datos);
+            o.put("creada", creada);
+            return o;
+        }
+
+        static Operacion deJson(JSONObject o) throws JSONException {
+            return new Operacion(o.getString("id"), Tipo.valueOf(o.getString("tipo")), o.getString("ruta"),
+                    o.optJSONObject("datos"), o.getLong("creada"));
+        }
+    }
+
+    /**
+     * Conversión de los valores de Firestore a JSON y vuelta. Los tipos que JSON no
+     * distingue viajan como un objeto marcado con la clave reservada "__tipo__" (Firestore
+     * no admite nombres de campo con la forma __x__): números decimales (en texto, para
+     * que 3.0 no vuelva como entero), Timestamp y Date, Blob, GeoPoint, DocumentReference
+     * y los centinelas FieldValue.delete() y FieldValue.serverTimestamp(). El resto de
+     * FieldValue (increment, arrayUnion, arrayRemove) no expone su operando, así que se
+     * rechaza al encolar.
+     */
+    private static final class Json {
+        private static final String MARCA_TIPO = "__tipo__";
+        private static final String MARCA_VALOR = "__valor__";
+        private static final String MARCA_NS = "__ns";
+        private static final String MARCA_TS_ANTIGUA = "__ts"; // Timestamp de versiones previas
+
+        private static final String DECIMAL = "decimal";
+        private static final String INSTANTE = "instante";
+        private static final String BINARIO = "binario";
+        private static final String GEO = "geo";
+        private static final String REFERENCIA = "referencia";
+        private static final String BORRAR = "borrar";
+        private static final String HORA_SERVIDOR = "horaServidor";
+
+        static JSONObject objeto(Map<String, Object> mapa) throws JSONException {
+            JSONObject o = new JSONObject();
+            for (Map.Entry<String, Object> e : mapa.entrySet()) o.put(e.getKey(), valor(e.getValue()));
+            return o;
+        }
+
+        @SuppressWarnings("unchecked")
+        private static Object valor(Object v) throws JSONException {
+            if (v == null) return JSONObject.NULL;
+            if (v instanceof String || v instanceof Boolean || v instanceof Integer || v instanceof Long) return v;
+            if (v instanceof Double || v instanceof Float) {
+                return marcado(DECIMAL).put(MARCA_VALOR, Double.toString(((Number) v).doubleValue()));
+            }
+            if (v instanceof Date) v = new Timestamp((Date) v);
+            if (v instanceof Timestamp) {
+                return marcado(INSTANTE)
+                        .put(MARCA_VALOR, ((Timestamp) v).getSeconds())
+                        .put(MARCA_NS, ((Timestamp) v).getNanoseconds());
+            }
+            if (v instanceof Blob) {
+                return marcado(BINARIO).put(MARCA_VALOR, Base64.encodeToString(((Blob) v).toBytes(), Base64.NO_WRAP));
+            }
+            if (v instanceof GeoPoint) {
+                GeoPoint g = (GeoPoint) v;
+                return marcado(GEO).put(MARCA_VALOR, new JSONArray()
+                        .put(Double.toString(g.getLatitude()))
+                        .put(Double.toString(g.getLongitude())));
+            }
+            if (v instanceof DocumentReference) return marcado(REFERENCIA).put(MARCA_VALOR, ((DocumentReference) v).getPath());
+            if (v instanceof FieldValue) {
+                if (v.equals(FieldValue.delete())) return marcado(BORRAR);
+                if (v.equals(FieldValue.serverTimestamp())) return marcado(HORA_SERVIDOR);
+                throw new JSONException("FieldValue no admitido en la cola (solo delete y serverTimestamp)");
+            }
+            if (v instanceof Map) return objeto((Map<String, Object>) v);
+            if (v instanceof List) {
+                JSONArray a = new JSONArray();
+                for (Object x : (List<Object>) v) a.put(valor(x));
+                return a;
+            }
+            throw new JSONException("Tipo no serializable: " + v.getClass().getName());
+        }
+
+        private static JSONObject marcado(String tipo) throws JSONException {
+            return new JSONObject().put(MARCA_TIPO, tipo);
+        }
+
+        /**
+         * @param db Instancia con la que se reconstruyen las DocumentReference.
+         */
+        static Map<String, Object> mapa(JSONObject o, FirebaseFirestore db) throws JSONException {
+            Map<String, Object> m = new HashMap<>();
+            Iterator<String> claves = o.keys();
+            while (claves.hasNext()) {
+                String k = claves.next();
+                m.put(k, deValor(o.get(k), db));
+            }
+            return m;
+        }
+
+        private static Object deValor(Object v, FirebaseFirestore db) throws JSONException {
+            if (v == JSONObject.NULL) return null;
+            if (v instanceof JSONObject) {
+                JSONObject o = (JSONObject) v;
+                if (o.has(MARCA_TIPO)) return deMarcado(o, db);
+                if (o.has(MARCA_TS_ANTIGUA)) return new Timestamp(o.getLong(MARCA_TS_ANTIGUA), o.getInt(MARCA_NS));
+                return mapa(o, db);
+            }
+            if (v instanceof JSONArray) {
+                JSONArray a = (JSONArray) v;
+                List<Object> l = new ArrayList<>(a.length());
+                for (int i = 0; i < a.length(); i++) l.add(deValor(a.get(i), db));
+                return l;
+            }
+            // Las colas de versiones previas guardaban los decimales como números sin marca
+            return v;
+        }
+
+        private static Object deMarcado(JSONObject o, FirebaseFirestore db) throws JSONException {
+            String tipo = o.getString(MARCA_TIPO);
+            switch (tipo) {
+                case DECIMAL: return Double.parseDouble(o.getString(MARCA_VALOR));
+                case INSTANTE: return new Timestamp(o.getLong(MARCA_VALOR), o.getInt(MARCA_NS));
+                case BINARIO: return Blob.fromBytes(Base64.decode(o.getString(MARCA_VALOR), Base64.NO_WRAP));
+                case GEO: {
+                    JSONArray a = o.getJSONArray(MARCA_VALOR);
+                    return new GeoPoint(Double.parseDouble(a.getString(0)), Double.parseDouble(a.getString(1)));
+                }
+                case REFERENCIA: return db.document(o.getString(MARCA_VALOR));
+                case BORRAR: return FieldValue.delete();
+                case HORA_SERVIDOR: return FieldValue.serverTimestamp();
+                default: throw new JSONException("Tipo marcado desconocido: " + tipo);
+            }
+        }
+    }
+}
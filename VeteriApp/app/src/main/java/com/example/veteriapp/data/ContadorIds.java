@@ -0,0 +1,57 @@
+package com.example.veteriapp.data;
+
+import com.google.android.gms.tasks.Task;
+import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.Query;
+import com.google.firebase.firestore.SetOptions;
+import com.google.firebase.firestore.Source;
+
+import java.util.Collections;
+
+/**
+ * Clase ContadorIds.
+ *
+ * Reserva de IDs secuenciales (id_mascota, id_cita...) por bloques.
+ * El documento "config/contadores" guarda, por colección, el último ID entregado.
+ * Una reserva de n IDs es una única transacción que lo avanza n posiciones, así que
+ * una importación masiva obtiene cientos de IDs en un viaje y dos altas simultáneas
+ * nunca reciben el mismo número.
+ *
+ * Antes de cada reserva se consulta el mayor ID ya escrito: el contador nunca queda
+ * por detrás de los documentos creados sin él (altas antiguas o hechas sin conexión).
+ *
+ * @author Juan Manuel Moreno Sánchez
+ * @version 1.0 VeteriApp Release
+ */
+public final class ContadorIds {
+
+    private static final String DOC_CONTADORES = "config/contadores";
+
+    private ContadorIds() {}
+
+    /**
+     * Reserva un bloque de IDs consecutivos.
+     *
+     * @param coleccion Colección numerada (p.ej. "mascotas").
+     * @param campo     Campo del ID secuencial en sus documentos (p.ej. "id_mascota").
+     * @param cantidad  Número de IDs a reservar.
+     * @return Tarea con el primer ID del bloque; el bloque es [primero, primero + cantidad).
+     */
+    public static Task<Long> reservar(FirebaseFirestore db, String coleccion, String campo, int cantidad) {
+        DocumentReference contadores = db.document(DOC_CONTADORES);
+        return db.collection(coleccion).orderBy(campo, Query.Direction.DESCENDING).limit(1).get(Source.SERVER)
+                .onSuccessTask(snap -> {
+                    Long mayor = snap.isEmpty() ? null : snap.getDocuments().get(0).getLong(campo);
+                    long escrito = mayor != null ? mayor : 0L;
+                    return db.runTransaction(tx -> {
+                        DocumentSnapshot actual = tx.get(contadores);
+                        Long ultimo = actual.getLong(coleccion);
+                        long base = Math.max(escrito, ultimo != null ? ultimo : 0L);
+                        tx.set(contadores, Collections.singletonMap(coleccion, base + cantidad), SetOptions.merge());
+                        return base + 1;
+                    });
+                });
+    }
+}
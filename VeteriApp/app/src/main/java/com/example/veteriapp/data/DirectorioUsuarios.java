@@ -0,0 +1,126 @@
+package com.example.veteriapp.data;
+
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FieldPath;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.Query;
+import com.google.firebase.firestore.Source;
+import com.google.firebase.firestore.WriteBatch;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Clase DirectorioUsuarios.
+ *
+ * Consultas paginadas del directorio de perfiles para la gestión de roles.
+ * Cada perfil guarda, junto a "nombre" y "email", sus versiones normalizadas
+ * (minúsculas y sin tildes) en "nombreBusqueda" y "emailBusqueda". Sobre ellas la
+ * búsqueda por prefijo es una consulta de rango ordenada que Firestore resuelve
+ * con su índice, de modo que solo viaja la página visible y no la colección entera.
+ *
+ * El filtro por rol combinado con el orden requiere los índices compuestos
+ * (rol ASC, nombreBusqueda ASC) y (rol ASC, emailBusqueda ASC), declarados en
+ * firestore/firestore.indexes.json.
+ *
+ * @author Juan Manuel Moreno Sánchez
+ * @version 1.0 VeteriApp Release
+ */
+public final class DirectorioUsuarios {
+
+    public static final int TAM_PAGINA = 25;
+
+    // --- CAMPOS NORMALIZADOS DEL PERFIL ---
+    public static final String CAMPO_NOMBRE = "nombreBusqueda";
+    public static final String CAMPO_EMAIL = "emailBusqueda";
+
+    // --- MIGRACIÓN DE PERFILES ANTERIORES ---
+    private static final String DOC_MARCA = "config/directorioUsuarios";
+    private static final String CAMPO_MARCA = "normalizado";
+    private static final int LOTE = 500;
+
+    private DirectorioUsuarios() {}
+
+    /**
+     * Campos normalizados a guardar junto al nombre y el email de un perfil.
+     */
+    public static Map<String, Object> camposBusqueda(String nombre, String email) {
+        Map<String, Object> campos = new HashMap<>();
+        campos.put(CAMPO_NOMBRE, nombre != null ? IndiceBusqueda.normalizar(nombre.trim()) : "");
+        campos.put(CAMPO_EMAIL, email != null ? IndiceBusqueda.normalizar(email.trim()) : "");
+        return campos;
+    }
+
+    /**
+     * Consulta ordenada del directorio, sin límite ni cursor (los añade el paginador).
+     * Si el texto contiene "@" se busca por email; en otro caso, por nombre.
+     *
+     * @param texto Prefijo buscado; vacío o null lista todo el directorio.
+     * @param rol   Rol a filtrar; null muestra todos.
+     */
+    public static Query consulta(FirebaseFirestore db, String texto, String rol) {
+        String prefijo = texto != null ? IndiceBusqueda.normalizar(texto.trim()) : "";
+        String campo = prefijo.contains("@") ? CAMPO_EMAIL : CAMPO_NOMBRE;
+
+        Query q = db.collection("users");
+        if (rol != null) q = q.whereEqualTo("rol", rol);
+        q = q.orderBy(campo);
+        if (!prefijo.isEmpty()) q = q.startAt(prefijo).endAt(prefijo + "\uf8ff");
+        return q;
+    }
+
+    /**
+     * Completa una única vez los campos normalizados de los perfiles creados antes del
+     * directorio paginado (sin ellos quedarían fuera de las consultas ordenadas).
+     * Recorre la colección por lotes y deja una marca en "config" al terminar; las
+     * siguientes llamadas solo leen esa marca. Lo usan el directorio y la importación de
+     * mascotas, que busca a los dueños por ese email. Todo se lee del servidor: un lote
+     * corto servido por la caché dejaría la marca puesta con perfiles sin normalizar.
+     *
+     * @return Número de perfiles actualizados (0 si ya estaba hecho).
+     */
+    public static Task<Integer> asegurarNormalizado(FirebaseFirestore db) {
+        DocumentReference marca = db.document(DOC_MARCA);
+        return marca.get(Source.SERVER).continueWithTask(t -> {
+            if (t.isSuccessful() && Boolean.TRUE.equals(t.getResult().getBoolean(CAMPO_MARCA))) {
+                return Tasks.forResult(0);
+            }
+            return normalizarDesde(db, null, 0).onSuccessTask(n -> {
+                Map<String, Object> hecho = new HashMap<>();
+                hecho.put(CAMPO_MARCA, true);
+                return marca.set(hecho).onSuccessTask(x -> Tasks.forResult(n));
+            });
+        });
+    }
+
+    private static Task<Integer> normalizarDesde(FirebaseFirestore db, DocumentSnapshot cursor, int acumulado) {
+        Query q = db.collection("users").orderBy(FieldPath.documentId()).limit(LOTE);
+        if (cursor != null) q = q.startAfter(cursor);
+
+        return q.get(Source.SERVER).onSuccessTask(lote -> {
+            List<DocumentSnapshot> docs = lote.getDocuments();
+            if (docs.isEmpty()) return Tasks.forResult(acumulado);
+
+            WriteBatch batch = db.batch();
+            int cambiados = 0;
+            for (DocumentSnapshot doc : docs) {
+                Map<String, Object> campos = camposBusqueda(doc.getString("nombre"), doc.getString("email"));
+                if (Objects.equals(doc.get(CAMPO_NOMBRE), campos.get(CAMPO_NOMBRE))
+                        && Objects.equals(doc.get(CAMPO_EMAIL), campos.get(CAMPO_EMAIL))) continue;
+                batch.update(doc.getReference(), campos);
+                cambiados++;
+            }
+
+            int total = acumulado + cambiados;
+            DocumentSnapshot ultimo = docs.get(docs.size() - 1);
+            Task<Void> escritura = cambiados > 0 ? batch.commit() : Tasks.forResult(null);
+            if (docs.size() < LOTE) return escritura.onSuccessTask(x -> Tasks.forResult(total));
+            return escritura.onSuccessTask(x -> normalizarDesde(db, ultimo, total));
+        });
+    }
+}
@@ -0,0 +1,152 @@
+package com.example.veteriapp.data;
+
+import com.google.android.gms.tasks.Task;
+import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.FirebaseFirestoreException;
+import com.google.firebase.firestore.Source;
+import com.google.firebase.firestore.WriteBatch;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+/**
+ * Clase EscrituraVersionada.
+ *
+ * Concurrencia optimista por versión para citas y pacientes.
+ * Cada documento lleva un contador "version" que se incrementa en cada escritura.
+ * El cliente indica la versión sobre la que trabajó y el valor que vio en cada campo
+ * que modifica (base). Si nadie ha escrito entretanto, se aplica directamente; si la
+ * versión ha avanzado pero los campos tocados siguen con su valor base, los cambios
+ * se fusionan a nivel de campo; solo cuando otro usuario cambió el mismo campo se
+ * produce un conflicto que la interfaz debe mostrar.
+ *
+ * {@link #actualizar} no lee antes de escribir: envía los cambios con la versión
+ * esperada más uno y las reglas de seguridad (firestore/firestore.rules) solo aceptan
+ * la escritura si la versión almacenada es justo la anterior. Sin contención el coste
+ * es un único commit. Si otro se adelantó, la regla la rechaza y solo entonces se lee
+ * el documento para fusionar los cambios o informar del conflicto. Las transiciones
+ * que además ajustan la agenda siguen validando con {@link #preparar} dentro de su
+ * transacción, y escriben la versión que la regla espera.
+ *
+ * @author Juan Manuel Moreno Sánchez
+ * @version 1.0 VeteriApp Release
+ */
+public final class EscrituraVersionada {
+
+    public static final String CAMPO_VERSION = "version";
+
+    /** Fusiones tras un rechazo de la regla antes de rendirse ante una contención continua. */
+    private static final int MAX_REINTENTOS = 5;
+
+    private EscrituraVersionada() {}
+
+    /**
+     * Otro usuario ha cambiado alguno de los campos que se pretendían modificar.
+     * Reintentar no lo resolvería, así que no se lanza como error de Firestore.
+     */
+    public static final class ConflictoVersionException extends IllegalStateException {
+        private final List<String> campos;
+
+        public ConflictoVersionException(List<String> campos) {
+            super("Conflicto de edición en " + campos);
+            this.campos = Collections.unmodifiableList(campos);
+        }
+
+        /** Campos en conflicto. */
+        public List<String> getCampos() { return campos; }
+    }
+
+    /**
+     * Versión almacenada en un documento (0 para documentos anteriores al versionado).
+     */
+    public static long version(DocumentSnapshot doc) {
+        Long v = doc.getLong(CAMPO_VERSION);
+        return v != null ? v : 0L;
+    }
+
+    /**
+     * Compare-and-set de un documento con fusión a nivel de campo.
+     *
+     * @param versionEsperada Versión sobre la que el usuario hizo el cambio.
+     * @param base            Valor visto por el usuario en cada campo modificado.
+     * @param cambios         Nuevos valores.
+     * @param adicionales     Escrituras a confirmar en el mismo commit; puede ser null.
+     */
+    public static Task<Void> actualizar(FirebaseFirestore db, DocumentReference ref, long versionEsperada,
+                                        Map<String, Object> base, Map<String, Object> cambios,
+                                        Consumer<WriteBatch> adicionales) {
+        Map<String, Object> escritura = new HashMap<>(cambios);
+        escritura.put(CAMPO_VERSION, versionEsperada + 1);
+        return escribir(db, ref, escritura, versionEsperada, base, cambios, adicionales, 0);
+    }
+
+    private static Task<Void> escribir(FirebaseFirestore db, DocumentReference ref, Map<String, Object> escritura,
+                                       long versionEsperada, Map<String, Object> base, Map<String, Object> cambios,
+                                       Consumer<WriteBatch> adicionales, int intento) {
+        WriteBatch batch = db.batch();
+        batch.update(ref, escritura);
+        if (adicionales != null) adicionales.accept(batch);
+        long versionEscrita = (Long) escritura.get(CAMPO_VERSION);
+        return batch.commit().continueWithTask(t -> {
+            if (t.isSuccessful() || intento >= MAX_REINTENTOS || !rechazada(t.getException())) return t;
+            // La regla rechazó la versión: se lee la vigente y se fusiona o se informa del conflicto
+            return ref.get(Source.SERVER).continueWithTask(lectura -> {
+                if (!lectura.isSuccessful() || version(lectura.getResult()) == versionEscrita - 1) {
+                    return t; // El rechazo no se debía a la versión
+                }
+                Map<String, Object> fusion = preparar(lectura.getResult(), versionEsperada, base, cambios);
+                return escribir(db, ref, fusion, versionEsperada, base, cambios, adicionales, intento + 1);
+            });
+        });
+    }
+
+    private static boolean rechazada(Exception e) {
+        return e instanceof FirebaseFirestoreException
+                && ((FirebaseFirestoreException) e).getCode() == FirebaseFirestoreException.Code.PERMISSION_DENIED;
+    }
+
+    /**
+     * Valida la versión de un documento ya leído en la transacción y devuelve los campos
+     * a escribir (cambios más la versión incrementada).
+     *
+     * @throws FirebaseFirestoreException NOT_FOUND si el documento ya no existe.
+     * @throws ConflictoVersionException   si la versión avanzó y los cambios no son fusionables.
+     */
+    static Map<String, Object> preparar(DocumentSnapshot actual, long versionEsperada,
+                                        Map<String, Object> base, Map<String, Object> cambios)
+            throws FirebaseFirestoreException {
+        if (!actual.exists()) {
+            throw new FirebaseFirestoreException("El documento ya no existe", FirebaseFirestoreException.Code.NOT_FOUND);
+        }
+
+        long versionActual = version(actual);
+        if (versionActual != versionEsperada) {
+            // Fusión a nivel de campo: solo hay conflicto si alguien tocó lo mismo
+            List<String> enConflicto = new ArrayList<>();
+            for (String campo : cambios.keySet()) {
+                if (!Objects.equals(actual.get(campo), base.get(campo))) enConflicto.add(campo);
+            }
+            if (!enConflicto.isEmpty()) throw new ConflictoVersionException(enConflicto);
+        }
+
+        Map<String, Object> escritura = new HashMap<>(cambios);
+        escritura.put(CAMPO_VERSION, versionActual + 1);
+        return escritura;
+    }
+
+    /**
+     * Atajo para un único campo.
+     */
+    public static Map<String, Object> campo(String nombre, Object valor) {
+        Map<String, Object> m = new HashMap<>();
+        m.put(nombre, valor);
+        return m;
+    }
+}
@@ -0,0 +1,276 @@
+package com.example.veteriapp.data;
+
+import android.content.Context;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.ParcelFileDescriptor;
+
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.TaskCompletionSource;
+import com.google.firebase.Timestamp;
+import com.google.firebase.firestore.Blob;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FieldPath;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.Query;
+import com.google.firebase.firestore.Source;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+
+/**
+ * Clase ExportacionCsv.
+ *
+ * Exportación en streaming de citas y mascotas a CSV. Las citas son las de la clínica
+ * indicada ("clinicas/{id}/citas"); las mascotas, las de su censo ("idClinica").
+ * Recorre la colección por páginas ordenadas por ID de documento y escribe cada
+ * página en un canal NIO con un búfer fijo antes de pedir la siguiente, de modo
+ * que en memoria nunca hay más de una página, sea cual sea el tamaño de la colección.
+ * Solo se exportan columnas de texto y números: las fotos Base64 y los blobs se omiten.
+ * Los textos que una hoja de cálculo interpretaría como fórmula (empiezan por =, +, -, @,
+ * tabulador o retorno de carro) se escriben precedidos de un apóstrofo: el CSV lleva datos
+ * que escriben los dueños y no debe ejecutar nada al abrirse.
+ *
+ * Las páginas se leen siempre del servidor: sin conexión la exportación falla en
+ * lugar de entregar en silencio una copia parcial sacada de la caché.
+ *
+ * @author Juan Manuel Moreno Sánchez
+ * @version 1.0 VeteriApp Release
+ */
+public final class ExportacionCsv {
+
+    /** Colecciones exportables, con sus columnas y el tamaño de página. */
+    public enum Tipo {
+        CITAS(Clinica.CITAS, Clinica::citas, 500, "id_cita", "uidUsuario", "nombreUsuario", "nombreMascota", "tipo", "motivo",
+                "fechaHora", "estado", "notaVeterinario"),
+        // Página menor: el SDK descarga el documento entero, foto incluida, aunque no se exporte
+        MASCOTAS(Clinica.MASCOTAS, Clinica::mascotas, 100, "id_mascota", "nombre", "especie", "raza", "genero", "fechaNacimiento",
+                "peso", "chip", "estado", "uidDueno");
+
+        final String coleccion;
+        /** Documentos de la clínica: su subcolección o, si la colección es global, su filtro. */
+        final BiFunction<Clinica, FirebaseFirestore, Query> deClinica;
+        final int tamPagina;
+        final String[] columnas;
+
+        Tipo(String coleccion, BiFunction<Clinica, FirebaseFirestore, Query> deClinica, int tamPagina,
+             String... columnas) {
+            this.coleccion = coleccion;
+            this.deClinica = deClinica;
+            this.tamPagina = tamPagina;
+            this.columnas = columnas;
+        }
+
+        Query base(FirebaseFirestore db, Clinica clinica) {
+            return deClinica.apply(clinica, db).orderBy(FieldPath.documentId());
+        }
+
+        /** Nombre de fichero sugerido (p.ej. "citas.csv"). */
+        public String nombreFichero() {
+            return coleccion + ".csv";
+        }
+    }
+
+    /** Fechas en un formato que las hojas de cálculo reconocen y ordenan. */
+    private static final DateTimeFormatter FECHA_CSV = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final int TAM_BUFER = 64 * 1024;
+
+    private static final ExecutorService HILO = Executors.newSingleThreadExecutor(r -> new Thread(r, "VeteriApp-Exportacion"));
+    private static final Handler HILO_UI = new Handler(Looper.getMainLooper());
+
+    private ExportacionCsv() {}
+
+    // --- DESTINOS ---
+
+    /**
+     * Exporta a un documento elegido por el usuario (Storage Access Framework).
+     *
+     * @param progreso Recibe en el hilo principal las filas escritas tras cada página (puede ser null).
+     * @return Tarea con el número total de filas exportadas.
+     */
+    public static Task<Integer> aUri(Context contexto, FirebaseFirestore db, Clinica clinica, Tipo tipo, Uri uri,
+                                     Consumer<Integer> progreso) {
+        Context app = contexto.getApplicationContext();
+        return exportar(tipo.base(db, clinica), tipo, () -> {
+            ParcelFileDescriptor pfd = app.getContentResolver().openFileDescriptor(uri, "wt");
+            if (pfd == null) throw new FileNotFoundException(uri.toString());
+            return new ParcelFileDescriptor.AutoCloseOutputStream(pfd).getChannel();
+        }, progreso);
+    }
+
+    /**
+     * Exporta a un fichero del almacenamiento de la aplicación, sustituyéndolo si existe.
+     */
+    public static Task<Integer> aFichero(FirebaseFirestore db, Clinica clinica, Tipo tipo, File fichero,
+                                         Consumer<Integer> progreso) {
+        return exportar(tipo.base(db, clinica), tipo, () -> FileChannel.open(fichero.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING), progreso);
+    }
+
+    // --- RECORRIDO ---
+
+    private static Task<Integer> exportar(Query base, Tipo tipo, Callable<WritableByteChannel> abrir,
+                                          Consumer<Integer> progreso) {
+        TaskCompletionSource<Integer> resultado = new TaskCompletionSource<>();
+        HILO.execute(() -> {
+            EscritorCsv escritor;
+            try {
+                escritor = new EscritorCsv(abrir.call());
+                escritor.cabecera(tipo.columnas);
+            } catch (Exception e) {
+                resultado.setException(e);
+                return;
+            }
+            pagina(base, tipo, null, 0, escritor, progreso, resultado);
+        });
+        return resultado.getTask();
+    }
+
+    /**
+     * Pide la página que sigue al documento indicado. Solo se retiene el ID del último
+     * documento como cursor, de modo que la página escrita queda libre para el recolector.
+     */
+    private static void pagina(Query base, Tipo tipo, String ultimoId, int filas, EscritorCsv escritor,
+                               Consumer<Integer> progreso, TaskCompletionSource<Integer> resultado) {
+        Query consulta = ultimoId != null ? base.startAfter(ultimoId) : base;
+        consulta.limit(tipo.tamPagina).get(Source.SERVER).addOnCompleteListener(HILO, t -> {
+            if (!t.isSuccessful() || t.getResult() == null) {
+                escritor.cerrarSinError();
+                resultado.setException(t.getException() != null ? t.getException() : new IOException("Consulta sin resultado"));
+                return;
+            }
+            List<DocumentSnapshot> docs = t.getResult().getDocuments();
+            int total = filas + docs.size();
+            try {
+                for (DocumentSnapshot doc : docs) escritor.fila(doc, tipo.columnas);
+                if (docs.size() < tipo.tamPagina) escritor.cerrar();
+            } catch (IOException e) {
+                escritor.cerrarSinError();
+                resultado.setException(e);
+                return;
+            }
+            if (progreso != null) HILO_UI.post(() -> progreso.accept(total));
+
+            if (docs.size() < tipo.tamPagina) resultado.setResult(total);
+            else pagina(base, tipo, docs.get(docs.size() - 1).getId(), total, escritor, progreso, resultado);
+        });
+    }
+
+    // --- ESCRITURA ---
+
+    /**
+     * Codifica las filas en UTF-8 sobre un búfer directo fijo y lo vuelca al canal cada vez
+     * que se llena: la memoria de escritura no crece con el número de filas.
+     */
+    private static final class EscritorCsv {
+        private final WritableByteChannel canal;
+        private final ByteBuffer bufer = ByteBuffer.allocateDirect(TAM_BUFER);
+        private final CharsetEncoder codificador = StandardCharsets.UTF_8.newEncoder();
+        private final StringBuilder linea = new StringBuilder(256);
+
+        EscritorCsv(WritableByteChannel canal) {
+            this.canal = canal;
+        }
+
+        void cabecera(String[] columnas) throws IOException {
+            linea.setLength(0);
+            linea.append('\uFEFF'); // BOM: las hojas de cálculo detectan así el UTF-8 (tildes, eñes)
+            for (int i = 0; i < columnas.length; i++) {
+                if (i > 0) linea.append(',');
+                linea.append(columnas[i]);
+            }
+            volcarLinea();
+        }
+
+        void fila(DocumentSnapshot doc, String[] columnas) throws IOException {
+            linea.setLength(0);
+            for (int i = 0; i < columnas.length; i++) {
+                if (i > 0) linea.append(',');
+                celda(doc.get(columnas[i]));
+            }
+            volcarLinea();
+        }
+
+        private void celda(Object valor) {
+            if (valor == null || valor instanceof Blob) return;
+            String texto;
+            if (valor instanceof Timestamp) texto = Formatos.formatear((Timestamp) valor, FECHA_CSV);
+            else if (valor instanceof String) texto = neutralizarFormula((String) valor);
+            else texto = valor.toString(); // Los números negativos siguen siendo números
+
+            boolean comillas = texto.indexOf(',') >= 0 || texto.indexOf('"') >= 0
+                    || texto.indexOf('\n') >= 0 || texto.indexOf('\r') >= 0;
+            if (!comillas) {
+                linea.append(texto);
+                return;
+            }
+            linea.append('"');
+            for (int i = 0; i < texto.length(); i++) {
+                char c = texto.charAt(i);
+                if (c == '"') linea.append('"');
+                linea.append(c);
+            }
+            linea.append('"');
+        }
+
+        private static String neutralizarFormula(String texto) {
+            if (texto.isEmpty()) return texto;
+            switch (texto.charAt(0)) {
+                case '=': case '+': case '-': case '@': case '\t': case '\r':
+                    return "'" + texto;
+                default:
+                    return texto;
+            }
+        }
+
+        private void volcarLinea() throws IOException {
+            linea.append("\r\n");
+            CharBuffer entrada = CharBuffer.wrap(linea);
+            while (true) {
+                CoderResult r = codificador.encode(entrada, bufer, false);
+                if (r.isOverflow()) vaciar();
+                else if (r.isError()) r.throwException();
+                else break;
+            }
+        }
+
+        private void vaciar() throws IOException {
+            bufer.flip();
+            while (bufer.hasRemaining()) canal.write(bufer);
+            bufer.clear();
+        }
+
+        void cerrar() throws IOException {
+            try {
+                vaciar();
+            } finally {
+                canal.close();
+            }
+        }
+
+        void cerrarSinError() {
+            try {
+                canal.close();
+            } catch (IOException ignorada) {
+                // El error original es el que se comunica
+            }
+        }
+    }
+}
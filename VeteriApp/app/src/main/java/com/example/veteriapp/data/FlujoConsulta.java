@@ -0,0 +1,216 @@
+package com.example.veteriapp.data;
+
+import android.app.Activity;
+import android.os.Handler;
+import android.os.Looper;
+import android.view.Choreographer;
+
+import androidx.tracing.Trace;
+
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.ListenerRegistration;
+import com.google.firebase.firestore.Query;
+import com.google.firebase.firestore.QuerySnapshot;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Clase FlujoConsulta.
+ *
+ * Flujo de estado sobre una consulta en tiempo real, pensado para los paneles que
+ * repintan a partir de lo que escuchan:
+ * - cada snapshot se reduce al estado que la vista necesita (un booleano, un contador,
+ *   una lista de filas) en el hilo de mapeo;
+ * - los estados que llegan dentro del mismo frame se agrupan y solo se entrega el último
+ *   (los intermedios se descartan: la vista nunca acumula trabajo atrasado);
+ * - opcionalmente se espera a que una ráfaga se calme antes de entregar;
+ * - el estado se entrega en el hilo principal, al inicio del siguiente frame, y solo si
+ *   difiere (equals) del último entregado. Los snapshots que cambian solo metadatos o
+ *   documentos que no afectan al estado no provocan ningún repintado.
+ *
+ * El último estado entregado se conserva entre suscripciones: al reanudar la pantalla,
+ * el primer snapshot no repinta si nada cambió mientras estaba pausada. Por eso el flujo
+ * se crea una sola vez, fuera de la función de alta que se pasa a {@link RegistroEscuchas}.
+ * Admite una única suscripción a la vez.
+ *
+ * Cada entrega se registra como sección de traza "Flujo:<nombre>".
+ *
+ * @author Juan Manuel Moreno Sánchez
+ * @version 1.0 VeteriApp Release
+ */
+public final class FlujoConsulta<T> {
+
+    /** Ventana de calma habitual para las ráfagas de avisos. */
+    public static final long VENTANA_RAFAGA_MS = 250;
+
+    private static final Handler HILO_UI = new Handler(Looper.getMainLooper());
+
+    private final Query consulta;
+    private final String nombre;
+    private final Function<QuerySnapshot, T> reductor;
+    private long ventanaMs;
+
+    // --- ESTADO ENTREGADO (solo hilo principal) ---
+    private T entregado;
+    private boolean hayEntregado;
+
+    private FlujoConsulta(Query consulta, String nombre, Function<QuerySnapshot, T> reductor) {
+        this.consulta = consulta;
+        this.nombre = nombre;
+        this.reductor = reductor;
+    }
+
+    // --- CREACIÓN ---
+
+    /**
+     * Flujo del estado que calcula el reductor a partir de cada snapshot.
+     * El estado debe implementar equals por contenido.
+     */
+    public static <T> FlujoConsulta<T> de(Query consulta, String nombre, Function<QuerySnapshot, T> reductor) {
+        return new FlujoConsulta<>(consulta, nombre, reductor);
+    }
+
+    /**
+     * Flujo que indica si la consulta tiene algún resultado (puntos de aviso).
+     */
+    public static FlujoConsulta<Boolean> hayResultados(Query consulta, String nombre) {
+        return de(consulta, nombre, snap -> !snap.isEmpty());
+    }
+
+    /**
+     * Flujo de la lista de filas de la consulta, mapeadas con las funciones de {@link Mapeadores}.
+     * Las filas deben implementar equals por contenido.
+     */
+    public static <R> FlujoConsulta<List<R>> filas(Query consulta, String nombre, Function<DocumentSnapshot, R> mapeador) {
+        return de(consulta, nombre, snap -> {
+            List<R> filas = new ArrayList<>(snap.size());
+            for (DocumentSnapshot doc : snap.getDocuments()) {
+                R fila = mapeador.apply(doc);
+                if (fila != null) filas.add(fila);
+            }
+            return Collections.unmodifiableList(filas);
+        });
+    }
+
+    /**
+     * Espera a que pasen los milisegundos indicados sin cambios antes de entregar
+     * (p.ej. una ráfaga de avisos creados a la vez). La entrega sigue alineada al frame.
+     */
+    public FlujoConsulta<T> sinRafagas(long ventanaMs) {
+        this.ventanaMs = ventanaMs;
+        return this;
+    }
+
+    // --- SUSCRIPCIÓN ---
+
+    /**
+     * Empieza a escuchar la consulta. Debe llamarse desde el hilo principal.
+     *
+     * @param activity Actividad destinataria (no se entrega si ya se ha destruido).
+     * @param alCambiar Recibe cada estado distinto del anterior, en el hilo principal.
+     * @return Registro para retirar el listener y descartar lo que quede por entregar.
+     */
+    public ListenerRegistration observar(Activity activity, Consumer<T> alCambiar) {
+        Suscripcion s = new Suscripcion(activity, alCambiar);
+        s.listener = consulta.addSnapshotListener(MapeoSnapshots.EJECUTOR, (value, error) -> {
+            if (error != null || value == null) return;
+            T estado;
+            Trace.beginSection("Mapeo:" + nombre);
+            try {
+                estado = reductor.apply(value);
+            } finally {
+                Trace.endSection();
+            }
+            s.recibir(estado);
+        });
+        return s;
+    }
+
+    private final class Suscripcion implements ListenerRegistration, Choreographer.FrameCallback {
+        private final WeakReference<Activity> destino;
+        private Consumer<T> alCambiar;
+        private ListenerRegistration listener;
+
+        // Último estado recibido y aún no entregado; lo escribe el hilo de mapeo
+        private T pendiente;
+        private boolean hayPendiente;
+        private boolean programada;
+
+        private final Runnable alCalmarse = this::programarFrame;
+        private boolean frameProgramado;
+
+        Suscripcion(Activity activity, Consumer<T> alCambiar) {
+            this.destino = new WeakReference<>(activity);
+            this.alCambiar = alCambiar;
+        }
+
+        /** Hilo de mapeo: sustituye el pendiente y programa una sola entrega. */
+        void recibir(T estado) {
+            boolean programar;
+            synchronized (this) {
+                pendiente = estado;
+                hayPendiente = true;
+                programar = !programada || ventanaMs > 0;
+                programada = true;
+            }
+            if (!programar) return;
+            if (ventanaMs > 0) {
+                HILO_UI.removeCallbacks(alCalmarse);
+                HILO_UI.postDelayed(alCalmarse, ventanaMs);
+            } else {
+                HILO_UI.post(alCalmarse);
+            }
+        }
+
+        private void programarFrame() {
+            if (frameProgramado || alCambiar == null) return;
+            frameProgramado = true;
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            frameProgramado = false;
+            T estado;
+            synchronized (this) {
+                if (!hayPendiente) return;
+                estado = pendiente;
+                pendiente = null;
+                hayPendiente = false;
+                programada = false;
+            }
+            Consumer<T> d = alCambiar;
+            Activity activity = destino.get();
+            if (d == null || activity == null || activity.isFinishing() || activity.isDestroyed()) return;
+            if (hayEntregado && Objects.equals(entregado, estado)) return;
+            entregado = estado;
+            hayEntregado = true;
+
+            Trace.beginSection("Flujo:" + nombre);
+            try {
+                d.accept(estado);
+            } finally {
+                Trace.endSection();
+            }
+        }
+
+        @Override
+        public void remove() {
+            if (listener != null) listener.remove();
+            alCambiar = null;
+            HILO_UI.removeCallbacks(alCalmarse);
+            if (frameProgramado) Choreographer.getInstance().removeFrameCallback(this);
+            frameProgramado = false;
+            synchronized (this) {
+                pendiente = null;
+                hayPendiente = false;
+            }
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.example.veteriapp.data;
+
+import com.google.firebase.Timestamp;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Clase Formatos.
+ * 
+ * Formateadores de fecha compartidos por toda la aplicación.
+ * Basados en java.time, son inmutables y seguros entre hilos, por lo que
+ * se instancian una sola vez en lugar de crear un SimpleDateFormat por fila.
+ * 
+ * @author Juan Manuel Moreno Sánchez
+ * @version 1.0 VeteriApp Release
+ */
+public final class Formatos {
+
+    /** Fecha y hora de citas y avisos (dd/MM/yyyy HH:mm). */
+    public static final DateTimeFormatter FECHA_HORA = DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm");
+
+    /** Fecha sin hora para fichas de pacientes (dd/MM/yyyy). */
+    public static final DateTimeFormatter FECHA = DateTimeFormatter.ofPattern("dd/MM/yyyy");
+
+    private static final String SIN_FECHA = "---";
+
+    private Formatos() {}
+
+    /**
+     * Formatea un Timestamp de Firestore en la zona horaria del dispositivo.
+     * 
+     * @param ts      Marca de tiempo (puede ser nula).
+     * @param formato Formateador a aplicar.
+     * @return Cadena formateada o "---" si no hay fecha.
+     */
+    public static String formatear(Timestamp ts, DateTimeFormatter formato) {
+        if (ts == null) return SIN_FECHA;
+        Instant instante = Instant.ofEpochSecond(ts.getSeconds(), ts.getNanoseconds());
+        return formato.format(instante.atZone(ZoneId.systemDefault()));
+    }
+}
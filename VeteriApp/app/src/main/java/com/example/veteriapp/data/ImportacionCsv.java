@@ -0,0 +1,571 @@
+package com.example.veteriapp.data;
+
+import android.content.Context;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+
+import com.example.veteriapp.model.EstadoMascota;
+import com.example.veteriapp.model.GeneroMascota;
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.TaskCompletionSource;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.Timestamp;
+import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FieldValue;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.SetOptions;
+import com.google.firebase.firestore.Source;
+import com.google.firebase.firestore.WriteBatch;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+/**
+ * Clase ImportacionCsv.
+ *
+ * Alta masiva de mascotas desde un CSV, para dar de alta el censo de una clínica.
+ * - El fichero se lee en streaming, fila a fila, y se valida cada fila (los errores
+ *   se anotan con su número de fila y no detienen la importación).
+ * - Los dueños se identifican por su email (columna "emailDueno") y deben tener ya
+ *   cuenta en la aplicación: las cuentas de Authentication no pueden crearse desde
+ *   el cliente en nombre de otros. Se resuelven con consultas "in" sobre el email
+ *   normalizado (completado antes en los perfiles que aún no lo tengan, ver
+ *   DirectorioUsuarios.asegurarNormalizado) y se recuerdan durante toda la importación.
+ * - Los id_mascota se reservan en bloque con {@link ContadorIds}: un viaje por lote.
+ *   El bloque se anota en el punto de control antes de lanzar el lote, así que un lote
+ *   que se reescribe al reanudar conserva los id_mascota que ya tenía.
+ * - Cada lote de 500 mascotas es un único WriteBatch; hay como mucho tres en vuelo.
+ * - Tras confirmarse cada lote (en orden) se guarda el punto de control en
+ *   "importaciones/{sha256 del contenido}". Si la importación se interrumpe, al repetirla
+ *   con el mismo fichero se salta lo ya confirmado; un fichero distinto nunca hereda el
+ *   punto de control de otro aunque compartan nombre y tamaño. Los IDs de documento se
+ *   derivan del contenido y la fila, así que un lote reescrito no duplica mascotas.
+ *
+ * Columnas: nombre, especie, raza, genero, fechaNacimiento, peso, chip, estado, emailDueno.
+ * Obligatorias: nombre, especie, genero, fechaNacimiento y emailDueno.
+ *
+ * @author Juan Manuel Moreno Sánchez
+ * @version 1.0 VeteriApp Release
+ */
+public final class ImportacionCsv {
+
+    public static final String COLECCION_CONTROL = "importaciones";
+    public static final int TAM_LOTE = 500;
+
+    private static final int MAX_EN_VUELO = 3;
+    private static final int MAX_ERRORES = 100;
+    /** Límite de valores de una consulta "in". */
+    private static final int MAX_IN = 30;
+    /** Una fila mayor indica un fichero corrupto (p.ej. unas comillas sin cerrar). */
+    private static final int MAX_FILA = 64 * 1024;
+    private static final int TAM_BUFER = 64 * 1024;
+    private static final String CAMPO_BLOQUES = "bloques"; // primera fila del lote -> primer id_mascota
+
+    private static final String[] OBLIGATORIAS = {"nombre", "especie", "genero", "fechaNacimiento", "emailDueno"};
+    private static final DateTimeFormatter FECHA_ISO = DateTimeFormatter.ISO_LOCAL_DATE;
+
+    private static final ExecutorService HILO = Executors.newSingleThreadExecutor(r -> new Thread(r, "VeteriApp-Importacion"));
+    private static final Handler HILO_UI = new Handler(Looper.getMainLooper());
+
+    private ImportacionCsv() {}
+
+    /**
+     * Importa las mascotas del documento indicado (Storage Access Framework).
+     *
+     * @param clinica  Clínica a la que se incorpora el censo.
+     * @param progreso Recibe en el hilo principal el avance tras cada lote confirmado (puede ser null).
+     * @return Tarea con el resumen; falla si el fichero no es válido o un lote no se confirma.
+     */
+    public static Task<Resultado> mascotas(Context contexto, FirebaseFirestore db, Clinica clinica, Uri uri,
+                                           Consumer<Progreso> progreso) {
+        Context app = contexto.getApplicationContext();
+        TaskCompletionSource<Resultado> resultado = new TaskCompletionSource<>();
+        HILO.execute(() -> {
+            try {
+                resultado.setResult(new Importacion(app, db, clinica, uri, progreso).ejecutar());
+            } catch (Exception e) {
+                resultado.setException(e);
+            }
+        });
+        return resultado.getTask();
+    }
+
+    // --- RESULTADOS ---
+
+    /** Avance de la importación. */
+    public static final class Progreso {
+        private final long filas;
+        private final long importadas;
+        private final long rechazadas;
+
+        Progreso(long filas, long importadas, long rechazadas) {
+            this.filas = filas;
+            this.importadas = importadas;
+            this.rechazadas = rechazadas;
+        }
+
+        /** Filas del fichero ya confirmadas (importadas o rechazadas). */
+        public long getFilas() { return filas; }
+        public long getImportadas() { return importadas; }
+        public long getRechazadas() { return rechazadas; }
+    }
+
+    /** Resumen final de la importación. */
+    public static final class Resultado {
+        private final long importadas;
+        private final long rechazadas;
+        private final List<String> errores;
+        private final boolean reanudada;
+
+        Resultado(long importadas, long rechazadas, List<String> errores, boolean reanudada) {
+            this.importadas = importadas;
+            this.rechazadas = rechazadas;
+            this.errores = errores;
+            this.reanudada = reanudada;
+        }
+
+        public long getImportadas() { return importadas; }
+        public long getRechazadas() { return rechazadas; }
+        /** Primeros errores de validación de esta ejecución ("Fila N: motivo"). */
+        public List<String> getErrores() { return errores; }
+        /** Si continuó una importación anterior del mismo fichero. */
+        public boolean isReanudada() { return reanudada; }
+    }
+
+    // --- EJECUCIÓN (hilo de importación) ---
+
+    private static final class Importacion {
+        private final Context contexto;
+        private final FirebaseFirestore db;
+        private final Clinica clinica;
+        private final Uri uri;
+        private final Consumer<Progreso> progreso;
+
+        private final Map<String, String> duenos = new HashMap<>(); // email normalizado -> uid ("" si no existe)
+        private final List<String> errores = new ArrayList<>();
+        private final Map<String, Long> bloques = new HashMap<>(); // reservados y aún sin confirmar
+        private String clave;
+        private DocumentReference control;
+        private long confirmadas, importadas, rechazadas;
+
+        Importacion(Context contexto, FirebaseFirestore db, Clinica clinica, Uri uri, Consumer<Progreso> progreso) {
+            this.contexto = contexto;
+            this.db = db;
+            this.clinica = clinica;
+            this.uri = uri;
+            this.progreso = progreso;
+        }
+
+        Resultado ejecutar() throws Exception {
+            clave = clave();
+            control = db.collection(COLECCION_CONTROL).document(clave);
+            DocumentSnapshot previo = Tasks.await(control.get(Source.SERVER));
+            confirmadas = valor(previo, "filasConfirmadas");
+            importadas = valor(previo, "importadas");
+            rechazadas = valor(previo, "rechazadas");
+            Object reservados = previo.get(CAMPO_BLOQUES);
+            if (reservados instanceof Map) {
+                for (Map.Entry<?, ?> e : ((Map<?, ?>) reservados).entrySet()) {
+                    if (e.getValue() instanceof Number) bloques.put(e.getKey().toString(), ((Number) e.getValue()).longValue());
+                }
+            }
+            boolean reanudada = confirmadas > 0;
+            if (Boolean.TRUE.equals(previo.getBoolean("terminada"))) {
+                return new Resultado(importadas, rechazadas, Collections.emptyList(), true);
+            }
+
+            // Los dueños se buscan por el email normalizado: los perfiles anteriores al
+            // directorio paginado lo reciben antes de la primera consulta
+            Tasks.await(DirectorioUsuarios.asegurarNormalizado(db));
+
+            try (InputStream in = contexto.getContentResolver().openInputStream(uri)) {
+                if (in == null) throw new IOException("No se puede abrir " + uri);
+                LectorCsv lector = new LectorCsv(new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8)));
+                Map<String, Integer> columnas = columnas(lector.siguiente());
+
+                ArrayDeque<Lote> enVuelo = new ArrayDeque<>();
+                long fila = 0;
+                boolean fin = false;
+                while (!fin) {
+                    // Los lotes empiezan siempre en la misma fila: tras el último confirmado
+                    long primeraFila = Math.max(fila, confirmadas) + 1;
+                    List<Pendiente> pendientes = new ArrayList<>(TAM_LOTE);
+                    int rechazadasLote = 0;
+                    while (pendientes.size() < TAM_LOTE) {
+                        List<String> celdas = lector.siguiente();
+                        if (celdas == null) {
+                            fin = true;
+                            break;
+                        }
+                        fila++;
+                        if (fila <= confirmadas) continue; // confirmada en una ejecución anterior
+                        if (vacia(celdas)) continue;
+                        Pendiente p = new Pendiente(fila, pendientes.size(), celdas, columnas);
+                        String error = p.validar();
+                        if (error != null) {
+                            rechazadasLote++;
+                            anotar(fila, error);
+                        } else {
+                            pendientes.add(p);
+                        }
+                    }
+                    if (fila <= confirmadas) continue;
+
+                    int tamBloque = pendientes.size();
+                    rechazadasLote += resolverDuenos(pendientes);
+                    enVuelo.add(escribir(pendientes, primeraFila, tamBloque, fila, rechazadasLote));
+                    while (enVuelo.size() >= MAX_EN_VUELO) confirmar(enVuelo.poll());
+                }
+                while (!enVuelo.isEmpty()) confirmar(enVuelo.poll());
+            }
+
+            Map<String, Object> terminada = new HashMap<>();
+            terminada.put("terminada", true);
+            terminada.put("actualizada", Timestamp.now());
+            Tasks.await(control.set(terminada, SetOptions.merge()));
+            return new Resultado(importadas, rechazadas, Collections.unmodifiableList(errores), reanudada);
+        }
+
+        /**
+         * Clave del fichero: SHA-256 de su contenido en hexadecimal, usada para el punto de
+         * control y para derivar los IDs de documento. Se calcula en una pasada en streaming
+         * con un búfer fijo, sin cargar el fichero en memoria.
+         */
+        private String clave() throws Exception {
+            MessageDigest sha = MessageDigest.getInstance("SHA-256");
+            try (InputStream in = contexto.getContentResolver().openInputStream(uri)) {
+                if (in == null) throw new IOException("No se puede abrir " + uri);
+                byte[] bufer = new byte[TAM_BUFER];
+                for (int n = in.read(bufer); n != -1; n = in.read(bufer)) sha.update(bufer, 0, n);
+            }
+            StringBuilder hex = new StringBuilder(64);
+            for (byte b : sha.digest()) hex.append(String.format(Locale.ROOT, "%02x", b));
+            return hex.toString();
+        }
+
+        private Map<String, Integer> columnas(List<String> cabecera) throws IOException {
+            if (cabecera == null) throw new IOException("El fichero está vacío");
+            Map<String, Integer> columnas = new HashMap<>();
+            for (int i = 0; i < cabecera.size(); i++) {
+                String nombre = cabecera.get(i).replace("\uFEFF", "").trim();
+                columnas.put(nombre, i);
+            }
+            for (String c : OBLIGATORIAS) {
+                if (!columnas.containsKey(c)) throw new IOException("Falta la columna \"" + c + "\"");
+            }
+            return columnas;
+        }
+
+        /**
+         * Asigna el uid del dueño a cada fila, consultando solo los emails aún no vistos.
+         *
+         * @return Filas descartadas por no encontrar al dueño (se retiran de la lista).
+         */
+        private int resolverDuenos(List<Pendiente> pendientes) throws Exception {
+            List<String> nuevos = new ArrayList<>();
+            for (Pendiente p : pendientes) {
+                if (!duenos.containsKey(p.email) && !nuevos.contains(p.email)) nuevos.add(p.email);
+            }
+            for (int i = 0; i < nuevos.size(); i += MAX_IN) {
+                List<String> tramo = nuevos.subList(i, Math.min(nuevos.size(), i + MAX_IN));
+                for (String email : tramo) duenos.put(email, "");
+                for (DocumentSnapshot doc : Tasks.await(db.collection("users")
+                        .whereIn(DirectorioUsuarios.CAMPO_EMAIL, new ArrayList<>(tramo)).get(Source.SERVER)).getDocuments()) {
+                    if ("DUEÑO".equals(MigracionesEsquema.rol(doc))) duenos.put(doc.getString(DirectorioUsuarios.CAMPO_EMAIL), doc.getId());
+                }
+            }
+
+            int sinDueno = 0;
+            for (int i = pendientes.size() - 1; i >= 0; i--) {
+                Pendiente p = pendientes.get(i);
+                p.uidDueno = duenos.get(p.email);
+                if (p.uidDueno == null || p.uidDueno.isEmpty()) {
+                    anotar(p.fila, "no hay ningún dueño registrado con el email " + p.email);
+                    pendientes.remove(i);
+                    sinDueno++;
+                }
+            }
+            return sinDueno;
+        }
+
+        /**
+         * Obtiene el bloque de id_mascota del lote y lanza su commit sin esperarlo.
+         *
+         * @param tamBloque Filas válidas del lote antes de descartar las de dueños desconocidos:
+         *                  cada fila conserva su posición en el bloque aunque otra se descarte.
+         */
+        private Lote escribir(List<Pendiente> pendientes, long primeraFila, int tamBloque, long ultimaFila,
+                              int rechazadasLote) throws Exception {
+            String bloque = String.valueOf(primeraFila);
+            if (pendientes.isEmpty()) return new Lote(Tasks.forResult(null), bloque, ultimaFila, 0, rechazadasLote);
+
+            long primerId = bloque(bloque, tamBloque);
+            WriteBatch batch = db.batch();
+            Timestamp ahora = Timestamp.now();
+            for (Pendiente p : pendientes) {
+                Map<String, Object> mascota = p.mascota(primerId + p.indice, ahora);
+                mascota.put(Clinica.CAMPO_CLINICA, clinica.getId());
+                batch.set(db.collection(Clinica.MASCOTAS).document(idDocumento(p.fila)), mascota);
+            }
+            return new Lote(batch.commit(), bloque, ultimaFila, pendientes.size(), rechazadasLote);
+        }
+
+        /**
+         * Primer id_mascota del lote. Si una ejecución anterior ya lo reservó (el lote pudo
+         * escribirse sin llegar a confirmarse) se reutiliza; si no, se reserva y se anota en
+         * el punto de control antes de escribir ninguna mascota con él.
+         */
+        private long bloque(String bloque, int tamBloque) throws Exception {
+            Long reservado = bloques.get(bloque);
+            if (reservado != null) return reservado;
+
+            long primerId = Tasks.await(ContadorIds.reservar(db, "mascotas", "id_mascota", tamBloque));
+            Map<String, Object> anotado = new HashMap<>();
+            anotado.put(CAMPO_BLOQUES, Collections.singletonMap(bloque, primerId));
+            Tasks.await(control.set(anotado, SetOptions.merge()));
+            bloques.put(bloque, primerId);
+            return primerId;
+        }
+
+        /** ID de documento fijo para cada fila del fichero, repartido (no secuencial). */
+        private String idDocumento(long fila) {
+            return UUID.nameUUIDFromBytes((clave + ":" + fila).getBytes(StandardCharsets.UTF_8)).toString();
+        }
+
+        /**
+         * Espera al lote más antiguo y avanza el punto de control hasta su última fila.
+         */
+        private void confirmar(Lote lote) throws Exception {
+            Tasks.await(lote.commit);
+            confirmadas = lote.ultimaFila;
+            importadas += lote.importadas;
+            rechazadas += lote.rechazadas;
+
+            Map<String, Object> punto = new HashMap<>();
+            punto.put("filasConfirmadas", confirmadas);
+            punto.put("importadas", importadas);
+            punto.put("rechazadas", rechazadas);
+            punto.put(CAMPO_BLOQUES, Collections.singletonMap(lote.bloque, FieldValue.delete()));
+            punto.put("actualizada", Timestamp.now());
+            Tasks.await(control.set(punto, SetOptions.merge()));
+            bloques.remove(lote.bloque);
+
+            if (progreso != null) {
+                Progreso p = new Progreso(confirmadas, importadas, rechazadas);
+                HILO_UI.post(() -> progreso.accept(p));
+            }
+        }
+
+        private void anotar(long fila, String error) {
+            if (errores.size() < MAX_ERRORES) errores.add("Fila " + fila + ": " + error);
+        }
+
+        private static long valor(DocumentSnapshot doc, String campo) {
+            Long v = doc.getLong(campo);
+            return v != null ? v : 0L;
+        }
+
+        private static boolean vacia(List<String> celdas) {
+            for (String c : celdas) if (!c.trim().isEmpty()) return false;
+            return true;
+        }
+    }
+
+    /** Lote escrito (o en vuelo) y lo que aporta al punto de control al confirmarse. */
+    private static final class Lote {
+        final Task<Void> commit;
+        final String bloque;
+        final long ultimaFila;
+        final int importadas;
+        final int rechazadas;
+
+        Lote(Task<Void> commit, String bloque, long ultimaFila, int importadas, int rechazadas) {
+            this.commit = commit;
+            this.bloque = bloque;
+            this.ultimaFila = ultimaFila;
+            this.importadas = importadas;
+            this.rechazadas = rechazadas;
+        }
+    }
+
+    // --- VALIDACIÓN ---
+
+    /** Fila leída del fichero, pendiente de validar y escribir. */
+    private static final class Pendiente {
+        final long fila;
+        /** Posición entre las filas válidas del lote: desplazamiento en su bloque de id_mascota. */
+        final int indice;
+        final String nombre, especie, raza, genero, peso, chip, estado, email;
+        final String fecha;
+        LocalDate fechaNacimiento;
+        String uidDueno;
+
+        Pendiente(long fila, int indice, List<String> celdas, Map<String, Integer> columnas) {
+            this.fila = fila;
+            this.indice = indice;
+            nombre = celda(celdas, columnas, "nombre");
+            especie = celda(celdas, columnas, "especie");
+            raza = celda(celdas, columnas, "raza");
+            genero = celda(celdas, columnas, "genero").toUpperCase(Locale.ROOT);
+            fecha = celda(celdas, columnas, "fechaNacimiento");
+            peso = celda(celdas, columnas, "peso").replace(',', '.');
+            chip = celda(celdas, columnas, "chip");
+            String e = celda(celdas, columnas, "estado").toUpperCase(Locale.ROOT);
+            estado = e.isEmpty() ? EstadoMascota.ACEPTADA.name() : e;
+            email = IndiceBusqueda.normalizar(celda(celdas, columnas, "emailDueno"));
+        }
+
+        /** @return Motivo del rechazo, o null si la fila es válida. */
+        String validar() {
+            if (nombre.isEmpty()) return "falta el nombre";
+            if (especie.isEmpty()) return "falta la especie";
+            if (email.isEmpty()) return "falta el email del dueño";
+            try {
+                GeneroMascota.valueOf(genero);
+            } catch (IllegalArgumentException ex) {
+                return "género \"" + genero + "\" no válido (MACHO o HEMBRA)";
+            }
+            EstadoMascota e = EstadoMascota.desde(estado);
+            if (e == null || e == EstadoMascota.MEMORIAL) {
+                return "estado \"" + estado + "\" no importable (PENDIENTE, ACEPTADA o RECHAZADA)";
+            }
+            fechaNacimiento = fecha(fecha);
+            if (fechaNacimiento == null) return "fecha de nacimiento \"" + fecha + "\" no válida (aaaa-mm-dd o dd/mm/aaaa)";
+            if (fechaNacimiento.isAfter(LocalDate.now())) return "fecha de nacimiento futura";
+            if (!peso.isEmpty()) {
+                try {
+                    if (Double.parseDouble(peso) < 0) return "peso negativo";
+                } catch (NumberFormatException ex) {
+                    return "peso \"" + peso + "\" no numérico";
+                }
+            }
+            return null;
+        }
+
+        /** Documento con la misma forma que el alta manual (AltaMascotaActivity), sin foto. */
+        Map<String, Object> mascota(long idMascota, Timestamp ahora) {
+            Map<String, Object> m = new HashMap<>();
+            m.put("id_mascota", idMascota);
+            m.put("nombre", nombre);
+            m.put("especie", especie);
+            m.put("raza", raza);
+            m.put("genero", genero);
+            m.put("fechaNacimiento", new Timestamp(Date.from(fechaNacimiento.atStartOfDay(ZoneId.systemDefault()).toInstant())));
+            m.put("peso", peso);
+            m.put("chip", chip);
+            m.put("uidDueno", uidDueno);
+            m.put("estado", estado);
+            m.put(EscrituraVersionada.CAMPO_VERSION, 0L);
+            m.put("timestamp", ahora);
+            return m;
+        }
+
+        private static String celda(List<String> celdas, Map<String, Integer> columnas, String nombre) {
+            Integer i = columnas.get(nombre);
+            if (i == null || i >= celdas.size()) return "";
+            return celdas.get(i).trim();
+        }
+
+        private static LocalDate fecha(String texto) {
+            for (DateTimeFormatter f : new DateTimeFormatter[]{FECHA_ISO, Formatos.FECHA}) {
+                try {
+                    return LocalDate.parse(texto, f);
+                } catch (DateTimeParseException ignorada) {
+                    // Se prueba el siguiente formato
+                }
+            }
+            return null;
+        }
+    }
+
+    // --- LECTURA ---
+
+    /**
+     * Lector de registros CSV (RFC 4180) en streaming: comillas dobles, comillas escapadas
+     * y saltos de línea dentro de un campo entrecomillado.
+     */
+    private static final class LectorCsv {
+        private final Reader entrada;
+        private final StringBuilder campo = new StringBuilder();
+        private int siguienteCaracter = -2; // -2: nada leído por adelantado
+
+        LectorCsv(Reader entrada) {
+            this.entrada = entrada;
+        }
+
+        /** @return Celdas del siguiente registro, o null al final del fichero. */
+        List<String> siguiente() throws IOException {
+            int c = leer();
+            if (c == -1) return null;
+
+            List<String> celdas = new ArrayList<>();
+            boolean entreComillas = false;
+            int longitud = 0;
+            campo.setLength(0);
+            while (true) {
+                if (++longitud > MAX_FILA) throw new IOException("Fila demasiado larga (¿comillas sin cerrar?)");
+                if (entreComillas) {
+                    if (c == -1) throw new IOException("Comillas sin cerrar al final del fichero");
+                    if (c == '"') {
+                        int d = leer();
+                        if (d == '"') campo.append('"');
+                        else {
+                            entreComillas = false;
+                            c = d;
+                            continue;
+                        }
+                    } else {
+                        campo.append((char) c);
+                    }
+                } else if (c == '"' && campo.length() == 0) {
+                    entreComillas = true;
+                } else if (c == ',') {
+                    celdas.add(campo.toString());
+                    campo.setLength(0);
+                } else if (c == '\r' || c == '\n' || c == -1) {
+                    if (c == '\r') {
+                        int d = leer();
+                        if (d != '\n') siguienteCaracter = d;
+                    }
+                    celdas.add(campo.toString());
+                    return celdas;
+                } else {
+                    campo.append((char) c);
+                }
+                c = leer();
+            }
+        }
+
+        private int leer() throws IOException {
+            if (siguienteCaracter != -2) {
+                int c = siguienteCaracter;
+                siguienteCaracter = -2;
+                return c;
+            }
+            return entrada.read();
+        }
+    }
+}
@@ -0,0 +1,278 @@
+package com.example.veteriapp.data;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Clase IndiceBusqueda.
+ *
+ * Índice invertido de trigramas en memoria para la búsqueda local de pacientes y dueños.
+ * Cada registro (clave + campos de texto) se normaliza (minúsculas, sin tildes) y se
+ * descompone en los trigramas de cada palabra y en sus prefijos de una y dos letras,
+ * de forma que una consulta se resuelve a partir de la lista más corta de sus trigramas
+ * sin recorrer la colección. Los registros se añaden, sustituyen o eliminan de uno en uno
+ * a medida que llegan los documentos, sin reconstruir el índice.
+ *
+ * Para que 100.000 registros quepan en el heap de un móvil, cada registro se identifica
+ * internamente con un número y las listas son arrays de enteros; del registro solo se
+ * guarda su texto normalizado, que sirve para confirmar los candidatos y para volver a
+ * calcular sus trigramas al sustituirlo o eliminarlo.
+ *
+ * Las consultas de varias palabras exigen que todas aparezcan (AND). Es seguro entre
+ * hilos: se alimenta desde el hilo de mapeo y se consulta desde la interfaz.
+ *
+ * @author Juan Manuel Moreno Sánchez
+ * @version 1.0 VeteriApp Release
+ */
+public final class IndiceBusqueda {
+
+    private static final int N = 3;
+    private static final String MARCA_PREFIJO = "^";
+    private static final Pattern MARCAS_DIACRITICAS = Pattern.compile("\\p{M}+");
+    private static final Pattern SEPARADORES = Pattern.compile("[^\\p{L}\\p{N}@._-]+");
+    private static final int CAPACIDAD_INICIAL = 64;
+
+    // --- ESTIMACIÓN DE MEMORIA (ART, referencias comprimidas) ---
+    private static final int BYTES_CADENA = 40;     // String con su array, sin los caracteres
+    private static final int BYTES_ENTRADA_MAPA = 32;
+    private static final int BYTES_LISTA = 32;      // ListaIds con la cabecera de su array
+
+    // --- ESTRUCTURAS DEL ÍNDICE ---
+    /** Registros (por número interno) que contienen cada trigrama o prefijo. */
+    private final Map<String, ListaIds> listas = new HashMap<>();
+    private final Map<String, Integer> idPorClave = new HashMap<>();
+    private String[] claves = new String[CAPACIDAD_INICIAL];
+    /** Texto normalizado de cada registro: sus palabras separadas por espacios. */
+    private String[] textos = new String[CAPACIDAD_INICIAL];
+    private final ListaIds libres = new ListaIds();
+    private int siguienteId;
+
+    /**
+     * Indexa (o reindexa) un registro con los campos de texto indicados. Los campos nulos se ignoran.
+     */
+    public synchronized void indexar(String clave, String... campos) {
+        eliminarSinBloqueo(clave);
+
+        StringBuilder texto = new StringBuilder();
+        for (String campo : campos) {
+            if (campo == null) continue;
+            for (String palabra : palabras(campo)) texto.append(palabra).append(' ');
+        }
+        if (texto.length() == 0) return;
+
+        int id = libres.tamano > 0 ? libres.ids[--libres.tamano] : siguienteId++;
+        if (id >= claves.length) {
+            claves = Arrays.copyOf(claves, claves.length * 2);
+            textos = Arrays.copyOf(textos, textos.length * 2);
+        }
+        claves[id] = clave;
+        textos[id] = texto.toString();
+        idPorClave.put(clave, id);
+
+        for (String g : gramas(textos[id])) {
+            ListaIds lista = listas.get(g);
+            if (lista == null) {
+                lista = new ListaIds();
+                listas.put(g, lista);
+            }
+            lista.anadir(id);
+        }
+    }
+
+    public synchronized void eliminar(String clave) {
+        eliminarSinBloqueo(clave);
+    }
+
+    public synchronized void limpiar() {
+        listas.clear();
+        idPorClave.clear();
+        claves = new String[CAPACIDAD_INICIAL];
+        textos = new String[CAPACIDAD_INICIAL];
+        libres.tamano = 0;
+        siguienteId = 0;
+    }
+
+    public synchronized int tamano() {
+        return idPorClave.size();
+    }
+
+    /**
+     * Estimación de los bytes que retiene el índice, para PresupuestoMemoria.
+     * Recorre las listas, así que no debe llamarse en cada consulta.
+     */
+    public synchronized long bytesEstimados() {
+        long bytes = 8L * claves.length; // claves y textos: una referencia por hueco
+        for (int i = 0; i < siguienteId; i++) {
+            if (claves[i] != null) bytes += 2 * BYTES_CADENA + claves[i].length() + textos[i].length();
+        }
+        bytes += (long) idPorClave.size() * (BYTES_ENTRADA_MAPA + 16);
+        for (Map.Entry<String, ListaIds> e : listas.entrySet()) {
+            bytes += BYTES_ENTRADA_MAPA + BYTES_CADENA + e.getKey().length() + BYTES_LISTA + 4L * e.getValue().ids.length;
+        }
+        return bytes + 4L * libres.ids.length;
+    }
+
+    /**
+     * Devuelve las claves que contienen todas las palabras de la consulta.
+     * Una consulta vacía devuelve null (sin filtro).
+     */
+    public synchronized Set<String> buscar(String consulta) {
+        List<String> terminos = terminos(consulta);
+        if (terminos.isEmpty()) return null;
+        return filtrar(terminos);
+    }
+
+    // --- AUXILIARES ---
+
+    /**
+     * Recorre la lista más corta entre las de todos los términos y confirma cada candidato
+     * sobre su texto: descarta los falsos positivos de los trigramas (presentes pero no
+     * contiguos) y resuelve el resto de términos sin intersecar más listas.
+     */
+    private Set<String> filtrar(List<String> terminos) {
+        ListaIds menor = null;
+        String guia = null;
+        for (String termino : terminos) {
+            ListaIds lista = candidatos(termino);
+            if (lista == null) return new LinkedHashSet<>();
+            if (menor == null || lista.tamano < menor.tamano) {
+                menor = lista;
+                guia = termino;
+            }
+        }
+        // La lista de un prefijo ya es exacta: su término no necesita confirmación
+        String confirmado = guia.length() < N ? guia : null;
+
+        Set<String> resultado = new LinkedHashSet<>();
+        recorrido:
+        for (int i = 0; i < menor.tamano; i++) {
+            int id = menor.ids[i];
+            for (String termino : terminos) {
+                if (termino != confirmado && !contiene(textos[id], termino)) continue recorrido;
+            }
+            resultado.add(claves[id]);
+        }
+        return resultado;
+    }
+
+    /**
+     * Lista más corta entre las de los trigramas del término; null si alguno no aparece.
+     */
+    private ListaIds candidatos(String termino) {
+        // Términos cortos: búsqueda por inicio de palabra
+        if (termino.length() < N) return listas.get(MARCA_PREFIJO + termino);
+
+        ListaIds menor = null;
+        for (int i = 0; i + N <= termino.length(); i++) {
+            ListaIds lista = listas.get(termino.substring(i, i + N));
+            if (lista == null) return null;
+            if (menor == null || lista.tamano < menor.tamano) menor = lista;
+        }
+        return menor;
+    }
+
+    private static boolean contiene(String texto, String termino) {
+        if (termino.length() >= N) return texto.contains(termino);
+        // Los términos cortos solo cuentan al inicio de una palabra
+        for (int i = texto.indexOf(termino); i >= 0; i = texto.indexOf(termino, i + 1)) {
+            if (i == 0 || texto.charAt(i - 1) == ' ') return true;
+        }
+        return false;
+    }
+
+    private void eliminarSinBloqueo(String clave) {
+        Integer id = idPorClave.remove(clave);
+        if (id == null) return;
+        for (String g : gramas(textos[id])) {
+            ListaIds lista = listas.get(g);
+            if (lista == null) continue;
+            lista.quitar(id);
+            if (lista.tamano == 0) listas.remove(g);
+        }
+        claves[id] = null;
+        textos[id] = null;
+        libres.anadir(id);
+    }
+
+    /**
+     * Trigramas y prefijos (sin repetir) de las palabras de un texto ya normalizado.
+     */
+    private static Set<String> gramas(String texto) {
+        Set<String> gramas = new HashSet<>();
+        int inicio = 0;
+        for (int fin = texto.indexOf(' '); fin >= 0; inicio = fin + 1, fin = texto.indexOf(' ', inicio)) {
+            if (fin > inicio) gramasDePalabra(texto.substring(inicio, fin), gramas);
+        }
+        return gramas;
+    }
+
+    private static void gramasDePalabra(String palabra, Set<String> destino) {
+        destino.add(MARCA_PREFIJO + palabra.substring(0, 1));
+        if (palabra.length() >= 2) destino.add(MARCA_PREFIJO + palabra.substring(0, 2));
+        for (int i = 0; i + N <= palabra.length(); i++) destino.add(palabra.substring(i, i + N));
+    }
+
+    /**
+     * Lista de números de registro, sin orden: añadir es inmediato y quitar sustituye
+     * el hueco por el último.
+     */
+    private static final class ListaIds {
+        int[] ids = new int[4];
+        int tamano;
+
+        void anadir(int id) {
+            if (tamano == ids.length) ids = Arrays.copyOf(ids, tamano * 2);
+            ids[tamano++] = id;
+        }
+
+        void quitar(int id) {
+            for (int i = 0; i < tamano; i++) {
+                if (ids[i] == id) {
+                    ids[i] = ids[--tamano];
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Descompone una consulta en términos normalizados.
+     */
+    public static List<String> terminos(String consulta) {
+        return palabras(consulta);
+    }
+
+    private static List<String> palabras(String texto) {
+        List<String> resultado = new ArrayList<>();
+        if (texto == null) return resultado;
+        for (String p : SEPARADORES.split(normalizar(texto))) {
+            if (!p.isEmpty()) resultado.add(p);
+        }
+        return resultado;
+    }
+
+    /**
+     * Minúsculas y sin tildes ni diéresis ("Dueño" → "dueno").
+     */
+    public static String normalizar(String texto) {
+        if (esAscii(texto)) return texto.toLowerCase(Locale.ROOT);
+        String sinMarcas = MARCAS_DIACRITICAS.matcher(Normalizer.normalize(texto, Normalizer.Form.NFD)).replaceAll("");
+        return sinMarcas.toLowerCase(Locale.ROOT);
+    }
+
+    private static boolean esAscii(String texto) {
+        for (int i = 0; i < texto.length(); i++) {
+            if (texto.charAt(i) > 0x7F) return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,280 @@
+package com.example.veteriapp.data;
+
+import android.graphics.Bitmap;
+import android.graphics.Color;
+
+import com.example.veteriapp.model.Cita;
+import com.example.veteriapp.model.CitaFila;
+import com.example.veteriapp.model.CitaMapeador;
+import com.example.veteriapp.model.EstadoCita;
+import com.example.veteriapp.model.EstadoMascota;
+import com.example.veteriapp.model.MascotaFila;
+import com.example.veteriapp.model.Mensaje;
+import com.example.veteriapp.model.MensajeFila;
+import com.example.veteriapp.model.MensajeMapeador;
+import com.example.veteriapp.model.NoticiaFila;
+import com.example.veteriapp.model.UsuarioFila;
+import com.example.veteriapp.utils.Imagenes;
+import com.google.firebase.Timestamp;
+import com.google.firebase.firestore.DocumentSnapshot;
+
+/**
+ * Clase Mapeadores.
+ *
+ * Funciones de conversión documento a fila usadas por MapeoSnapshots.
+ * Concentra la extracción de campos, los valores por defecto, el semáforo de
+ * colores por estado y la composición de textos que antes se repetían en cada
+ * callback de las actividades. Todas se ejecutan en el hilo de mapeo.
+ * Citas y mensajes se leen con los mapeadores generados de sus modelos.
+ *
+ * @author Juan Manuel Moreno Sánchez
+ * @version 1.0 VeteriApp Release
+ */
+public final class Mapeadores {
+
+    // --- SEMÁFORO DE ESTADOS ---
+    private static final int COLOR_PENDIENTE = Color.parseColor("#FFF59D");
+    private static final int COLOR_CONFIRMADA = Color.parseColor("#A5D6A7");
+    private static final int COLOR_ARCHIVADA = Color.parseColor("#E0E0E0");
+    private static final int COLOR_RECHAZADA = Color.parseColor("#EF9A9A");
+    private static final int COLOR_ACEPTADA = Color.parseColor("#C8E6C9");
+    private static final int COLOR_MASCOTA_RECHAZADA = Color.parseColor("#FFCDD2");
+
+    // --- TAMAÑO DE LAS MINIATURAS (px) ---
+    public static final int LADO_MINIATURA = 300;
+    public static final int LADO_MEMORIAL = 400;
+
+    private Mapeadores() {}
+
+    // --- CITAS ---
+
+    /**
+     * Fila de la agenda clínica (AdminCitasActivity).
+     */
+    public static CitaFila citaAgenda(DocumentSnapshot doc) {
+        Cita c = CitaMapeador.desde(doc);
+        String idNum = c.getIdCita() != null ? c.getIdCita().toString() : "---";
+        String tipo = c.getTipo() != null ? c.getTipo() : "General";
+        String fecha = Formatos.formatear(c.getFechaHora(), Formatos.FECHA_HORA);
+
+        String texto = "📌 Cita #" + idNum + " [" + tipo + "]\n👤 " + c.getNombreUsuario() + " | 🐾 " + c.getNombreMascota()
+                + "\n📅 " + fecha + "\n📝 " + c.getMotivo();
+        return new CitaFila(c.getId(), c.getUidUsuario(), c.getNombreMascota(), c.getEstado(),
+                c.getNotaVeterinario(), EscrituraVersionada.version(doc), texto, colorCita(c.getEstado()));
+    }
+
+    /**
+     * Fila del historial propio del dueño (PedirCitaActivity).
+     */
+    public static CitaFila citaPropia(DocumentSnapshot doc) {
+        Cita c = CitaMapeador.desde(doc);
+        String tipo = c.getTipo() != null ? c.getTipo() : "General";
+        String fecha = Formatos.formatear(c.getFechaHora(), Formatos.FECHA_HORA);
+
+        String texto = "🐾 " + c.getNombreMascota() + " (" + tipo + ")\n📅 " + fecha + "\nEstado: " + c.getEstado();
+        return new CitaFila(c.getId(), c.getUidUsuario(), c.getNombreMascota(), c.getEstado(),
+                c.getNotaVeterinario(), EscrituraVersionada.version(doc), texto, colorCita(c.getEstado()));
+    }
+
+    private static int colorCita(String estado) {
+        if (EstadoCita.PENDIENTE.name().equals(estado)) return COLOR_PENDIENTE;
+        if (EstadoCita.CONFIRMADA.name().equals(estado)) return COLOR_CONFIRMADA;
+        if (EstadoCita.ARCHIVADA.name().equals(estado)) return COLOR_ARCHIVADA;
+        return COLOR_RECHAZADA;
+    }
+
+    // --- MASCOTAS ---
+
+    /**
+     * Ficha del censo clínico (AdminMascotasActivity).
+     */
+    public static MascotaFila mascotaCenso(DocumentSnapshot doc) {
+        String idNum = idSecuencial(doc, "id_mascota");
+        String nombre = doc.getString("nombre");
+        String especie = doc.getString("especie");
+        String raza = doc.getString("raza");
+        String genero = doc.getString("genero") != null ? doc.getString("genero") : "---";
+        String estado = doc.getString("estado");
+        Object udObj = doc.get("uidDueno");
+        String uidDueno = (udObj != null) ? udObj.toString() : "";
+        Bitmap miniatura = Imagenes.miniatura(doc.getReference().getPath(), doc.getString("fotoBase64"), LADO_MINIATURA);
+
+        String texto = "🐾 Paciente #" + idNum + " | " + nombre + " (" + genero + ")\n" + especie + " (" + raza + ")\nEstado: " + estado;
+        return new MascotaFila(doc.getId(), nombre, especie, raza, genero, estado, uidDueno,
+                null, null, doc.getString("chip"), null, null, miniatura, texto, colorCenso(estado), EscrituraVersionada.version(doc));
+    }
+
+    private static int colorCenso(String estado) {
+        if (EstadoMascota.PENDIENTE.name().equals(estado)) return COLOR_PENDIENTE;
+        if (EstadoMascota.MEMORIAL.name().equals(estado)) return COLOR_ARCHIVADA;
+        if (EstadoMascota.RECHAZADA.name().equals(estado)) return COLOR_MASCOTA_RECHAZADA;
+        return Color.WHITE;
+    }
+
+    /**
+     * Ficha del censo personal del dueño (MisMascotasActivity).
+     * Conserva la foto Base64 porque se reenvía a DetalleMascotaActivity.
+     */
+    public static MascotaFila mascotaPropia(DocumentSnapshot doc) {
+        String idNum = idSecuencial(doc, "id_mascota");
+        String nombre = doc.getString("nombre");
+        String especie = doc.getString("especie");
+        String raza = doc.getString("raza");
+        String genero = doc.getString("genero") != null ? doc.getString("genero") : "---";
+        String estado = doc.getString("estado");
+        String fotoBase64 = doc.getString("fotoBase64");
+        String peso = (doc.get("peso") != null) ? doc.get("peso").toString() : "0";
+        String chip = (doc.get("chip") != null) ? doc.get("chip").toString() : "0";
+
+        String fecha = "---";
+        Object fObj = doc.get("fechaNacimiento");
+        if (fObj instanceof Timestamp) fecha = Formatos.formatear((Timestamp) fObj, Formatos.FECHA);
+        else if (fObj != null) fecha = fObj.toString();
+
+        int color;
+        if (EstadoMascota.ACEPTADA.name().equals(estado)) color = COLOR_ACEPTADA;
+        else if (EstadoMascota.RECHAZADA.name().equals(estado)) color = COLOR_MASCOTA_RECHAZADA;
+        else color = Color.WHITE;
+
+        String texto = "🐾 [" + idNum + "] " + nombre + " (" + genero + ")\n" + especie + " - " + raza + "\nEstado: " + estado;
+        return new MascotaFila(doc.getId(), nombre, especie, raza, genero, estado, doc.getString("uidDueno"),
+                fecha, peso, chip, null, fotoBase64,
+                Imagenes.miniatura(doc.getReference().getPath(), fotoBase64, LADO_MINIATURA), texto, color, EscrituraVersionada.version(doc));
+    }
+
+    /**
+     * Tarjeta de homenaje del memorial (MemorialActivity), leída de la proyección ligera
+     * "memorial/{idMascota}": la miniatura ya viene reducida.
+     */
+    public static MascotaFila mascotaMemorial(DocumentSnapshot doc) {
+        return new MascotaFila(doc.getId(), doc.getString("nombre"), null, null, null, EstadoMascota.MEMORIAL.name(),
+                doc.getString("uidDueno"), null, null, null, doc.getString("dedicatoria"), null,
+                Imagenes.miniatura(doc.getReference().getPath(), doc.getString("miniaturaBase64"), LADO_MEMORIAL),
+                textoDedicatoria(doc.getString("dedicatoria")), Color.WHITE, 0L);
+    }
+
+    private static String textoDedicatoria(String dedicatoria) {
+        return dedicatoria != null ? "\"" + dedicatoria + "\"" : "\"Siempre en nuestros corazones\"";
+    }
+
+    // --- USUARIOS ---
+
+    /**
+     * Tarjeta de gestión de privilegios (GestionRolesActivity).
+     */
+    public static UsuarioFila usuarioRol(DocumentSnapshot doc) {
+        String nombre = doc.getString("nombre");
+        String email = doc.getString("email");
+        String rol = MigracionesEsquema.rol(doc);
+        return new UsuarioFila(doc.getString("uid"), nombre, email, rol,
+                "👤 " + nombre + "\n📧 " + email + "\n🔑 ROL: " + rol);
+    }
+
+    /**
+     * Tarjeta de cliente de la bandeja de chat (BandejaChatActivity). Descarta perfiles sin UID.
+     */
+    public static UsuarioFila usuarioCliente(DocumentSnapshot doc) {
+        String uid = doc.getString("uid");
+        if (uid == null) return null;
+        return new UsuarioFila(uid, doc.getString("nombre"), doc.getString("email"), null, null);
+    }
+
+    // --- CHAT, NOTICIAS Y AVISOS ---
+
+    /**
+     * Burbuja de chat ya orientada respecto al usuario actual. Descarta mensajes incompletos.
+     * Los mensajes propios aún no confirmados por el servidor se marcan como pendientes.
+     */
+    public static MensajeFila mensaje(DocumentSnapshot doc, String miUid) {
+        Mensaje m = MensajeMapeador.desde(doc);
+        if (m.getTexto() == null || m.getUidRemitente() == null) return null;
+        return new MensajeFila(m.getId(), m.getTexto(), m.getUidRemitente().equals(miUid), doc.getMetadata().hasPendingWrites());
+    }
+
+    /**
+     * Entrada del muro de noticias de los paneles.
+     */
+    public static NoticiaFila noticia(DocumentSnapshot doc) {
+        return new NoticiaFila(doc.getId(), doc.getString("titulo"), doc.getString("contenido"), true, instante(doc));
+    }
+
+    /**
+     * Entrada de la bandeja de notificaciones.
+     */
+    public static NoticiaFila notificacion(DocumentSnapshot doc) {
+        String mensaje = doc.getString("mensaje");
+        Boolean leida = doc.getBoolean("leida");
+        return new NoticiaFila(doc.getId(), null, mensaje != null ? mensaje : "Aviso sin contenido",
+                leida != null && leida, instante(doc));
+    }
+
+    /**
+     * Línea de auditoría del panel de administración.
+     */
+    public static NoticiaFila log(DocumentSnapshot doc) {
+        return new NoticiaFila(doc.getId(), null, "• " + doc.getString("mensaje"), true, instante(doc));
+    }
+
+    // --- VERSIONES OPTIMISTAS (MutacionesOptimistas) ---
+
+    /**
+     * Copia de una fila de cita con el estado cambiado antes de que lo confirme el servidor.
+     * La versión se adelanta en uno, que es la que tendrá si no hay escrituras concurrentes.
+     */
+    public static CitaFila citaConEstado(CitaFila f, String estado) {
+        String texto = f.getTexto().replace("Estado: " + f.getEstado(), "Estado: " + estado);
+        return new CitaFila(f.getIdDoc(), f.getUidDueno(), f.getNombreMascota(), estado,
+                f.getNotaVeterinario(), f.getVersion() + 1, texto, colorCita(estado));
+    }
+
+    /**
+     * Copia de una fila de cita con la nota clínica cambiada.
+     */
+    public static CitaFila citaConNota(CitaFila f, String nota) {
+        return new CitaFila(f.getIdDoc(), f.getUidDueno(), f.getNombreMascota(), f.getEstado(),
+                nota, f.getVersion() + 1, f.getTexto(), f.getColorFondo());
+    }
+
+    /**
+     * Copia de una ficha del censo clínico con el estado cambiado.
+     */
+    public static MascotaFila mascotaConEstado(MascotaFila f, String estado) {
+        String texto = f.getTexto().replace("Estado: " + f.getEstado(), "Estado: " + estado);
+        return new MascotaFila(f.getIdDoc(), f.getNombre(), f.getEspecie(), f.getRaza(), f.getGenero(), estado,
+                f.getUidDueno(), f.getFechaNacimiento(), f.getPeso(), f.getChip(), f.getDedicatoria(),
+                f.getFotoBase64(), f.getMiniatura(), texto, colorCenso(estado), f.getVersion() + 1);
+    }
+
+    /**
+     * Copia de una tarjeta de homenaje con la dedicatoria cambiada.
+     */
+    public static MascotaFila mascotaConDedicatoria(MascotaFila f, String dedicatoria) {
+        return new MascotaFila(f.getIdDoc(), f.getNombre(), f.getEspecie(), f.getRaza(), f.getGenero(), f.getEstado(),
+                f.getUidDueno(), f.getFechaNacimiento(), f.getPeso(), f.getChip(), dedicatoria,
+                f.getFotoBase64(), f.getMiniatura(), textoDedicatoria(dedicatoria), f.getColorFondo(), f.getVersion());
+    }
+
+    /**
+     * Copia de una tarjeta de privilegios con el rol cambiado.
+     */
+    public static UsuarioFila usuarioConRol(UsuarioFila f, String rol) {
+        return new UsuarioFila(f.getUid(), f.getNombre(), f.getEmail(), rol,
+                "👤 " + f.getNombre() + "\n📧 " + f.getEmail() + "\n🔑 ROL: " + rol);
+    }
+
+    // --- AUXILIARES ---
+
+    /**
+     * Lectura del identificador secuencial ("id_mascota"), con el "id" heredado mientras
+     * MigracionesEsquema no haya normalizado el documento.
+     */
+    private static String idSecuencial(DocumentSnapshot doc, String campo) {
+        Object idObj = doc.get(campo) != null ? doc.get(campo) : doc.get("id");
+        return (idObj != null) ? idObj.toString() : "---";
+    }
+
+    private static long instante(DocumentSnapshot doc) {
+        Timestamp ts = doc.getTimestamp("timestamp");
+        return ts != null ? ts.toDate().getTime() : 0L;
+    }
+}
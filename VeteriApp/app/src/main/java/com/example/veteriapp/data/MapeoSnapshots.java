@@ -0,0 +1,276 @@
+package com.example.veteriapp.data;
+
+import android.app.Activity;
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.tracing.Trace;
+
+import com.google.android.gms.tasks.Task;
+import com.google.firebase.firestore.DocumentChange;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.ListenerRegistration;
+import com.google.firebase.firestore.MetadataChanges;
+import com.google.firebase.firestore.Query;
+import com.google.firebase.firestore.QuerySnapshot;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Clase MapeoSnapshots.
+ * 
+ * Etapa de mapeo fuera del hilo principal.
+ * Convierte los QuerySnapshot de Firestore en listas inmutables de filas listas
+ * para pintar (extracción de campos, formateo de fechas, decodificación de fotos)
+ * en un ejecutor en segundo plano, y entrega al hilo de UI únicamente el resultado.
+ * Cada mapeo se registra como sección de traza "Mapeo:<nombre>" para los benchmarks.
+ * 
+ * @author Juan Manuel Moreno Sánchez
+ * @version 1.0 VeteriApp Release
+ */
+public final class MapeoSnapshots {
+
+    // Un único hilo garantiza que los snapshots de un listener se entregan en orden
+    static final ExecutorService EJECUTOR = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "VeteriApp-Mapeo");
+        t.setPriority(Thread.NORM_PRIORITY - 1);
+        return t;
+    });
+
+    private static final Handler HILO_UI = new Handler(Looper.getMainLooper());
+
+    private MapeoSnapshots() {}
+
+    /**
+     * Mapea el resultado de una consulta puntual (get) en segundo plano.
+     * 
+     * @param activity    Actividad destinataria (no se entrega si ya se ha destruido).
+     * @param tarea       Tarea de la consulta.
+     * @param nombre      Nombre de la sección de traza.
+     * @param mapeador    Conversión documento a fila; devolver null descarta el documento.
+     * @param alTerminar  Recibe la lista de filas, o null si la consulta ha fallado.
+     */
+    public static <T> void cargar(Activity activity, Task<QuerySnapshot> tarea, String nombre,
+                                  Function<DocumentSnapshot, T> mapeador, Consumer<List<T>> alTerminar) {
+        cargar(activity, tarea, nombre, mapeador, null, alTerminar);
+    }
+
+    /**
+     * Variante de cargar que además ordena las filas en segundo plano.
+     * 
+     * @param orden Comparador a aplicar tras el mapeo (null conserva el orden del servidor).
+     */
+    public static <T> void cargar(Activity activity, Task<QuerySnapshot> tarea, String nombre,
+                                  Function<DocumentSnapshot, T> mapeador, Comparator<? super T> orden,
+                                  Consumer<List<T>> alTerminar) {
+        WeakReference<Activity> destino = new WeakReference<>(activity);
+        tarea.addOnCompleteListener(EJECUTOR, t -> {
+            List<T> filas = (t.isSuccessful() && t.getResult() != null)
+                    ? mapear(t.getResult(), nombre, mapeador, orden)
+                    : null;
+            entregar(destino, filas, alTerminar);
+        });
+    }
+
+    /**
+     * Escucha una consulta en tiempo real mapeando cada snapshot en segundo plano.
+     * 
+     * @return Registro del listener para poder retirarlo.
+     */
+    public static <T> ListenerRegistration escuchar(Activity activity, Query consulta, String nombre,
+                                                    Function<DocumentSnapshot, T> mapeador, Consumer<List<T>> alRecibir) {
+        WeakReference<Activity> destino = new WeakReference<>(activity);
+        return consulta.addSnapshotListener(EJECUTOR, (value, error) -> {
+            if (error != null || value == null) return;
+            entregar(destino, mapear(value, nombre, mapeador, null), alRecibir);
+        });
+    }
+
+    /**
+     * Escucha una consulta en tiempo real entregando solo los cambios de cada snapshot
+     * (altas, modificaciones y bajas) ya mapeados, para actualizar la vista de forma incremental.
+     * El primer snapshot llega como una serie de altas.
+     *
+     * @return Registro del listener para poder retirarlo.
+     */
+    public static <T> ListenerRegistration escucharCambios(Activity activity, Query consulta, String nombre,
+                                                           Function<DocumentSnapshot, T> mapeador,
+                                                           Consumer<List<Cambio<T>>> alRecibir) {
+        return escucharCambios(activity, consulta, MetadataChanges.EXCLUDE, nombre, mapeador, alRecibir);
+    }
+
+    /**
+     * Variante de escucharCambios que puede incluir los cambios solo de metadatos: con
+     * MetadataChanges.INCLUDE, un documento escrito en local llega primero como alta pendiente
+     * y después como modificación cuando el servidor confirma la escritura.
+     */
+    public static <T> ListenerRegistration escucharCambios(Activity activity, Query consulta, MetadataChanges metadatos,
+                                                           String nombre, Function<DocumentSnapshot, T> mapeador,
+                                                           Consumer<List<Cambio<T>>> alRecibir) {
+        WeakReference<Activity> destino = new WeakReference<>(activity);
+        return consulta.addSnapshotListener(EJECUTOR, metadatos, (value, error) -> {
+            if (error != null || value == null) return;
+            Trace.beginSection("Mapeo:" + nombre);
+            List<DocumentChange> documentos = value.getDocumentChanges(metadatos);
+            List<Cambio<T>> cambios = new ArrayList<>(documentos.size());
+            try {
+                for (DocumentChange dc : documentos) {
+                    T fila = dc.getType() == DocumentChange.Type.REMOVED ? null : mapeador.apply(dc.getDocument());
+                    cambios.add(new Cambio<>(dc.getType(), dc.getDocument().getId(), fila, dc.getNewIndex()));
+                }
+            } finally {
+                Trace.endSection();
+            }
+            entregar(destino, Collections.unmodifiableList(cambios), alRecibir);
+        });
+    }
+
+    /**
+     * Carga puntual de una página de una consulta ordenada (mismo criterio que escucharPagina).
+     *
+     * @param alTerminar Recibe la página, o null si la consulta ha fallado.
+     */
+    public static <T> void cargarPagina(Activity activity, Query consulta, int tamano, String nombre,
+                                        Function<DocumentSnapshot, T> mapeador, Consumer<Pagina<T>> alTerminar) {
+        WeakReference<Activity> destino = new WeakReference<>(activity);
+        consulta.limit(tamano + 1).get().addOnCompleteListener(EJECUTOR, t -> {
+            Pagina<T> pagina = (t.isSuccessful() && t.getResult() != null)
+                    ? paginar(t.getResult(), tamano, nombre, mapeador)
+                    : null;
+            entregar(destino, pagina, alTerminar);
+        });
+    }
+
+    /**
+     * Escucha una única página de una consulta ordenada. Se pide un documento de más para
+     * saber si existe página siguiente sin otra lectura; ese documento no se entrega.
+     *
+     * @param consulta Consulta ordenada, ya posicionada con su cursor (startAfter) si procede.
+     * @param tamano   Filas por página.
+     * @return Registro del listener para poder retirarlo al cambiar de página.
+     */
+    public static <T> ListenerRegistration escucharPagina(Activity activity, Query consulta, int tamano, String nombre,
+                                                          Function<DocumentSnapshot, T> mapeador,
+                                                          Consumer<Pagina<T>> alRecibir) {
+        WeakReference<Activity> destino = new WeakReference<>(activity);
+        return consulta.limit(tamano + 1).addSnapshotListener(EJECUTOR, (value, error) -> {
+            if (error != null || value == null) return;
+            entregar(destino, paginar(value, tamano, nombre, mapeador), alRecibir);
+        });
+    }
+
+    private static <T> Pagina<T> paginar(QuerySnapshot snap, int tamano, String nombre,
+                                         Function<DocumentSnapshot, T> mapeador) {
+        Trace.beginSection("Mapeo:" + nombre);
+        try {
+            List<DocumentSnapshot> docs = snap.getDocuments();
+            int visibles = Math.min(docs.size(), tamano);
+            List<T> filas = new ArrayList<>(visibles);
+            for (int i = 0; i < visibles; i++) {
+                T fila = mapeador.apply(docs.get(i));
+                if (fila != null) filas.add(fila);
+            }
+            DocumentSnapshot ultimo = visibles > 0 ? docs.get(visibles - 1) : null;
+            return new Pagina<>(Collections.unmodifiableList(filas), ultimo, docs.size() > tamano);
+        } finally {
+            Trace.endSection();
+        }
+    }
+
+    /**
+     * Página de resultados ya mapeada, con el cursor para pedir la siguiente.
+     */
+    public static final class Pagina<T> {
+        private final List<T> filas;
+        private final DocumentSnapshot ultimo;
+        private final boolean hayMas;
+
+        Pagina(List<T> filas, DocumentSnapshot ultimo, boolean hayMas) {
+            this.filas = filas;
+            this.ultimo = ultimo;
+            this.hayMas = hayMas;
+        }
+
+        public List<T> getFilas() { return filas; }
+        /** Último documento de la página (cursor de la siguiente); null si está vacía. */
+        public DocumentSnapshot getUltimo() { return ultimo; }
+        public boolean hayMas() { return hayMas; }
+    }
+
+    /**
+     * Cambio individual de un snapshot ya mapeado a fila.
+     */
+    public static final class Cambio<T> {
+        private final DocumentChange.Type tipo;
+        private final String idDoc;
+        private final T fila;
+        private final int nuevoIndice;
+
+        Cambio(DocumentChange.Type tipo, String idDoc, T fila, int nuevoIndice) {
+            this.tipo = tipo;
+            this.idDoc = idDoc;
+            this.fila = fila;
+            this.nuevoIndice = nuevoIndice;
+        }
+
+        public DocumentChange.Type getTipo() { return tipo; }
+        public String getIdDoc() { return idDoc; }
+        /** Fila mapeada (null en las bajas o si el mapeador la descarta). */
+        public T getFila() { return fila; }
+        /** Posición en el resultado ordenado de la consulta (-1 en las bajas). */
+        public int getNuevoIndice() { return nuevoIndice; }
+    }
+
+    /**
+     * Ejecuta una tarea arbitraria en el hilo de mapeo (p.ej. decodificar una imagen suelta).
+     */
+    public static <T> void ejecutar(Activity activity, Callable<T> trabajo, Consumer<T> alTerminar) {
+        WeakReference<Activity> destino = new WeakReference<>(activity);
+        EJECUTOR.execute(() -> {
+            T resultado;
+            try {
+                resultado = trabajo.call();
+            } catch (Exception e) {
+                resultado = null;
+            }
+            entregar(destino, resultado, alTerminar);
+        });
+    }
+
+    private static <T> List<T> mapear(QuerySnapshot snap, String nombre, Function<DocumentSnapshot, T> mapeador,
+                                      Comparator<? super T> orden) {
+        Trace.beginSection("Mapeo:" + nombre);
+        try {
+            List<T> filas = new ArrayList<>(snap.size());
+            for (DocumentSnapshot doc : snap.getDocuments()) {
+                T fila = mapeador.apply(doc);
+                if (fila != null) filas.add(fila);
+            }
+            if (orden != null) filas.sort(orden);
+            return Collections.unmodifiableList(filas);
+        } finally {
+            Trace.endSection();
+        }
+    }
+
+    /**
+     * La actividad se retiene de forma débil: una consulta lenta no la mantiene viva
+     * después de destruirse.
+     */
+    private static <R> void entregar(WeakReference<Activity> destino, R resultado, Consumer<R> alEntregar) {
+        HILO_UI.post(() -> {
+            Activity activity = destino.get();
+            if (activity == null || activity.isFinishing() || activity.isDestroyed()) return;
+            alEntregar.accept(resultado);
+        });
+    }
+}
@@ -0,0 +1,265 @@
+package com.example.veteriapp.data;
+
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FieldPath;
+import com.google.firebase.firestore.FieldValue;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.Query;
+import com.google.firebase.firestore.SetOptions;
+import com.google.firebase.firestore.Source;
+import com.google.firebase.firestore.WriteBatch;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Clase MigracionesEsquema.
+ *
+ * Migraciones versionadas de la forma de los documentos. Cada versión normaliza una
+ * colección a su forma canónica para que las lecturas no tengan que adivinarla:
+ * 1. users: "rol" siempre como texto (había perfiles con una lista de roles).
+ * 2. mascotas: identificador secuencial solo en "id_mascota" (sin el "id" heredado).
+ * 3. citas: "id_cita", "tipo" y "motivo" (sin "id", "tipoAsignado" ni "motivoDueño").
+ * 4. mensajes de las salas de todas las clínicas: "secuenciaCliente", que ordena la
+ *    conversación junto a "timestamp" (los mensajes anteriores a ese campo quedarían fuera
+ *    de la consulta). Los que aún no se han trasladado a su clínica lo reciben al moverse
+ *    (SalasChat.migrar), así que aquí se saltan.
+ * 5. mascotas: "idClinica", por el que las pantallas de la clínica filtran el censo. Las
+ *    anteriores a ese campo son de la clínica principal.
+ *
+ * La colección se recorre en páginas por ID de documento (por ruta completa en las
+ * consultas de grupo, como la de los mensajes) y solo se reescriben los
+ * documentos que no tienen ya la forma canónica, en lotes pequeños. El punto de
+ * control ("config/esquema") avanza en el mismo commit que el último lote de cada
+ * página, así que una ejecución interrumpida continúa desde la última página
+ * confirmada; reescribir un documento ya migrado no lo cambia. Con todo aplicado solo
+ * cuesta la lectura del punto de control.
+ *
+ * @author Juan Manuel Moreno Sánchez
+ * @version 1.0 VeteriApp Release
+ */
+public final class MigracionesEsquema {
+
+    private static final String DOC_ESQUEMA = "config/esquema";
+    private static final String CAMPO_VERSION = "version";
+    private static final String CAMPO_EN_CURSO = "enCurso";
+    private static final String CAMPO_ULTIMO_ID = "ultimoId";
+
+    private static final int PAGINA = 300;
+    private static final int ESCRITURAS_POR_LOTE = 100;
+
+    private static final List<Migracion> MIGRACIONES = Arrays.asList(
+            new Migracion(1, "users", MigracionesEsquema::rolComoTexto),
+            new Migracion(2, "mascotas", doc -> idSecuencial(doc, "id_mascota")),
+            new Migracion(3, "citas", MigracionesEsquema::citaCanonica),
+            Migracion.deGrupo(4, SalasChat.SUBCOLECCION_MENSAJES, MigracionesEsquema::mensajeConSecuencia),
+            new Migracion(5, Clinica.MASCOTAS, MigracionesEsquema::mascotaConClinica));
+
+    private MigracionesEsquema() {}
+
+    /**
+     * Aplica, en orden, las migraciones pendientes.
+     *
+     * @return Número de documentos reescritos en esta llamada.
+     */
+    public static Task<Integer> ejecutar(FirebaseFirestore db) {
+        DocumentReference control = db.document(DOC_ESQUEMA);
+        // Todo se lee del servidor: sin conexión la caché podría dar por recorrida una
+        // colección con una página vacía o parcial. Si falla la lectura del punto de
+        // control, no se empieza de cero: la llamada falla y se reintenta en otra ocasión.
+        return control.get(Source.SERVER).onSuccessTask(estado -> {
+            Long version = estado.getLong(CAMPO_VERSION);
+            int aplicada = version != null ? version.intValue() : 0;
+
+            // El cursor solo vale para la migración que lo dejó a medias
+            Migracion siguiente = siguiente(aplicada);
+            Long enCurso = estado.getLong(CAMPO_EN_CURSO);
+            String ultimoId = (siguiente != null && enCurso != null && enCurso == siguiente.version)
+                    ? estado.getString(CAMPO_ULTIMO_ID) : null;
+            return continuar(db, control, aplicada, ultimoId, 0);
+        });
+    }
+
+    /**
+     * Rol del perfil recién leído al iniciar sesión. Si el perfil no está migrado, además
+     * lo reescribe como texto a través de la cola de escrituras.
+     *
+     * @return Nombre del rol, o cadena vacía si el perfil no tiene.
+     */
+    public static String rolDeSesion(DocumentSnapshot perfil) {
+        Map<String, Object> corregido = rolComoTexto(perfil);
+        if (corregido == null) return rol(perfil);
+        ColaEscrituras.get().update(perfil.getReference(), corregido);
+        return (String) corregido.get("rol");
+    }
+
+    /**
+     * Rol de cualquier perfil, en texto o en la lista heredada. Todas las lecturas de "rol"
+     * pasan por aquí: un perfil queda sin migrar hasta que la versión 1 termina (o hasta
+     * que su dueño inicia sesión) y getString fallaría con la lista.
+     *
+     * @return Nombre del rol, o cadena vacía si el perfil no tiene.
+     */
+    public static String rol(DocumentSnapshot perfil) {
+        Object rol = perfil.get("rol");
+        if (rol instanceof String) return (String) rol;
+        if (rol instanceof List) {
+            List<?> roles = (List<?>) rol;
+            return roles.isEmpty() ? "" : String.valueOf(roles.get(0));
+        }
+        return "";
+    }
+
+    // --- RECORRIDO ---
+
+    private static Migracion siguiente(int aplicada) {
+        for (Migracion m : MIGRACIONES) if (m.version > aplicada) return m;
+        return null;
+    }
+
+    private static Task<Integer> continuar(FirebaseFirestore db, DocumentReference control, int aplicada,
+                                           String ultimoId, int acumulado) {
+        Migracion m = siguiente(aplicada);
+        if (m == null) return Tasks.forResult(acumulado);
+
+        Query base = m.grupo ? db.collectionGroup(m.coleccion) : db.collection(m.coleccion);
+        Query q = base.orderBy(FieldPath.documentId()).limit(PAGINA);
+        if (ultimoId != null) q = q.startAfter(ultimoId);
+
+        return q.get(Source.SERVER).onSuccessTask(pagina -> {
+            List<DocumentSnapshot> docs = pagina.getDocuments();
+            if (docs.isEmpty()) {
+                // Colección recorrida: la versión queda aplicada y el cursor se retira
+                Map<String, Object> fin = new HashMap<>();
+                fin.put(CAMPO_VERSION, m.version);
+                fin.put(CAMPO_EN_CURSO, FieldValue.delete());
+                fin.put(CAMPO_ULTIMO_ID, FieldValue.delete());
+                return control.set(fin, SetOptions.merge())
+                        .onSuccessTask(x -> continuar(db, control, m.version, null, acumulado));
+            }
+
+            List<DocumentReference> refs = new ArrayList<>();
+            List<Map<String, Object>> cambios = new ArrayList<>();
+            for (DocumentSnapshot doc : docs) {
+                Map<String, Object> c = m.reescritura.apply(doc);
+                if (c == null) continue;
+                refs.add(doc.getReference());
+                cambios.add(c);
+            }
+
+            // En una consulta de grupo el cursor por ID ha de ser la ruta completa del documento
+            DocumentSnapshot ultimo = docs.get(docs.size() - 1);
+            String nuevoUltimo = m.grupo ? ultimo.getReference().getPath() : ultimo.getId();
+            Map<String, Object> avance = new HashMap<>();
+            avance.put(CAMPO_EN_CURSO, m.version);
+            avance.put(CAMPO_ULTIMO_ID, nuevoUltimo);
+
+            int total = acumulado + cambios.size();
+            return escribir(db, control, avance, refs, cambios, 0)
+                    .onSuccessTask(x -> continuar(db, control, aplicada, nuevoUltimo, total));
+        });
+    }
+
+    /**
+     * Confirma los cambios de una página en lotes de {@link #ESCRITURAS_POR_LOTE}; el
+     * punto de control viaja en el último.
+     */
+    private static Task<Void> escribir(FirebaseFirestore db, DocumentReference control, Map<String, Object> avance,
+                                       List<DocumentReference> refs, List<Map<String, Object>> cambios, int desde) {
+        int hasta = Math.min(desde + ESCRITURAS_POR_LOTE, refs.size());
+        WriteBatch batch = db.batch();
+        for (int i = desde; i < hasta; i++) batch.update(refs.get(i), cambios.get(i));
+        if (hasta == refs.size()) {
+            batch.set(control, avance, SetOptions.merge());
+            return batch.commit();
+        }
+        return batch.commit().onSuccessTask(x -> escribir(db, control, avance, refs, cambios, hasta));
+    }
+
+    // --- REESCRITURAS (null si el documento ya es canónico) ---
+
+    private static Map<String, Object> rolComoTexto(DocumentSnapshot doc) {
+        Object rol = doc.get("rol");
+        if (!(rol instanceof List)) return null;
+        List<?> roles = (List<?>) rol;
+        Map<String, Object> c = new HashMap<>();
+        c.put("rol", roles.isEmpty() ? "" : roles.get(0).toString());
+        return c;
+    }
+
+    private static Map<String, Object> idSecuencial(DocumentSnapshot doc, String campo) {
+        Map<String, Object> c = new HashMap<>();
+        renombrar(doc, c, "id", campo);
+        return c.isEmpty() ? null : c;
+    }
+
+    private static Map<String, Object> citaCanonica(DocumentSnapshot doc) {
+        Map<String, Object> c = new HashMap<>();
+        renombrar(doc, c, "id", "id_cita");
+        renombrar(doc, c, "tipoAsignado", "tipo");
+        renombrar(doc, c, "motivoDueño", "motivo");
+        return c.isEmpty() ? null : c;
+    }
+
+    private static Map<String, Object> mensajeConSecuencia(DocumentSnapshot doc) {
+        if (!SalasChat.enClinica(doc)) return null;
+        Long secuencia = SalasChat.secuenciaHeredada(doc);
+        if (secuencia == null) return null;
+        Map<String, Object> c = new HashMap<>();
+        c.put(SalasChat.CAMPO_SECUENCIA, secuencia);
+        return c;
+    }
+
+    private static Map<String, Object> mascotaConClinica(DocumentSnapshot doc) {
+        if (doc.getString(Clinica.CAMPO_CLINICA) != null) return null;
+        Map<String, Object> c = new HashMap<>();
+        c.put(Clinica.CAMPO_CLINICA, Clinica.POR_DEFECTO);
+        return c;
+    }
+
+    /**
+     * Pasa el valor del campo antiguo al nuevo (si este aún no existe) y retira el antiguo.
+     */
+    private static void renombrar(DocumentSnapshot doc, Map<String, Object> cambios, String antiguo, String nuevo) {
+        Object valor = doc.get(antiguo);
+        if (valor == null) return;
+        if (doc.get(nuevo) == null) cambios.put(nuevo, valor);
+        cambios.put(antiguo, FieldValue.delete());
+    }
+
+    // --- DEFINICIÓN ---
+
+    private static final class Migracion {
+        final int version;
+        final String coleccion;
+        final boolean grupo;
+        final Function<DocumentSnapshot, Map<String, Object>> reescritura;
+
+        Migracion(int version, String coleccion, Function<DocumentSnapshot, Map<String, Object>> reescritura) {
+            this(version, coleccion, false, reescritura);
+        }
+
+        private Migracion(int version, String coleccion, boolean grupo,
+                          Function<DocumentSnapshot, Map<String, Object>> reescritura) {
+            this.version = version;
+            this.coleccion = coleccion;
+            this.grupo = grupo;
+            this.reescritura = reescritura;
+        }
+
+        /**
+         * Migración sobre todas las colecciones con ese nombre (consulta de grupo).
+         */
+        static Migracion deGrupo(int version, String coleccion,
+                                 Function<DocumentSnapshot, Map<String, Object>> reescritura) {
+            return new Migracion(version, coleccion, true, reescritura);
+        }
+    }
+}
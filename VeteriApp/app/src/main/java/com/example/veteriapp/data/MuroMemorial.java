@@ -0,0 +1,137 @@
+package com.example.veteriapp.data;
+
+import com.example.veteriapp.model.EstadoMascota;
+import com.example.veteriapp.utils.Imagenes;
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.Timestamp;
+import com.google.firebase.firestore.CollectionReference;
+import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FieldPath;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.Query;
+import com.google.firebase.firestore.WriteBatch;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+/**
+ * Clase MuroMemorial.
+ *
+ * Proyección ligera de los pacientes en MEMORIAL para "El Puente del Arcoíris".
+ * El SDK de Android no permite pedir solo algunos campos de un documento, así que el
+ * muro no lee "mascotas" (con la foto completa en Base64) sino "memorial/{idMascota}":
+ * nombre, dueño, dedicatoria, fecha y una miniatura ya reducida. La proyección se
+ * escribe en la misma transacción que pasa al paciente a MEMORIAL.
+ *
+ * Las vistas pública y privada son consultas distintas resueltas por índice y
+ * paginadas por cursor. La privada necesita el índice compuesto
+ * (uidDueno ASC, fechaMemorial DESC), declarado en firestore/firestore.indexes.json.
+ *
+ * @author Juan Manuel Moreno Sánchez
+ * @version 1.0 VeteriApp Release
+ */
+public final class MuroMemorial {
+
+    public static final String COLECCION = "memorial";
+    public static final int TAM_PAGINA = 10;
+    public static final String CAMPO_FECHA = "fechaMemorial";
+
+    /** Lado de la miniatura guardada (coincide con el de la tarjeta del muro). */
+    private static final int LADO_MINIATURA = Mapeadores.LADO_MEMORIAL;
+
+    // --- RELLENO DE LA PROYECCIÓN PARA PACIENTES ANTERIORES ---
+    private static final String DOC_MARCA = "config/memorial";
+    private static final int LOTE = 50; // las fotos originales pesan: lotes pequeños
+    private static final Executor HILO = Executors.newSingleThreadExecutor(r -> new Thread(r, "VeteriApp-Memorial"));
+
+    private MuroMemorial() {}
+
+    public static CollectionReference coleccion(FirebaseFirestore db) {
+        return db.collection(COLECCION);
+    }
+
+    public static DocumentReference referencia(FirebaseFirestore db, String idMascota) {
+        return coleccion(db).document(idMascota);
+    }
+
+    // --- CONSULTAS ---
+
+    /**
+     * Muro público: todos los recuerdos, del más reciente al más antiguo.
+     */
+    public static Query muroPublico(FirebaseFirestore db) {
+        return coleccion(db).orderBy(CAMPO_FECHA, Query.Direction.DESCENDING);
+    }
+
+    /**
+     * Recuerdos propios de un dueño.
+     */
+    public static Query recuerdosDe(FirebaseFirestore db, String uidDueno) {
+        return coleccion(db).whereEqualTo("uidDueno", uidDueno).orderBy(CAMPO_FECHA, Query.Direction.DESCENDING);
+    }
+
+    // --- PROYECCIÓN ---
+
+    /**
+     * Documento de proyección a partir del paciente completo. Decodifica y reduce la foto,
+     * así que debe llamarse fuera del hilo principal.
+     *
+     * @param fecha Momento de paso al memorial.
+     */
+    public static Map<String, Object> proyeccion(DocumentSnapshot mascota, Timestamp fecha) {
+        Map<String, Object> m = new HashMap<>();
+        m.put("nombre", mascota.getString("nombre"));
+        m.put("uidDueno", mascota.getString("uidDueno"));
+        m.put("dedicatoria", mascota.getString("dedicatoria"));
+        m.put("miniaturaBase64", Imagenes.reducirBase64(mascota.getString("fotoBase64"), LADO_MINIATURA));
+        m.put(CAMPO_FECHA, fecha);
+        return m;
+    }
+
+    /**
+     * Genera una única vez la proyección de los pacientes que ya estaban en MEMORIAL antes
+     * de existir el muro ligero. Deja una marca en "config" al terminar.
+     *
+     * @return Número de recuerdos generados (0 si ya estaba hecho).
+     */
+    public static Task<Integer> asegurarProyeccion(FirebaseFirestore db) {
+        DocumentReference marca = db.document(DOC_MARCA);
+        return marca.get().continueWithTask(t -> {
+            if (t.isSuccessful() && Boolean.TRUE.equals(t.getResult().getBoolean("proyectado"))) {
+                return Tasks.forResult(0);
+            }
+            return proyectarDesde(db, null, 0).onSuccessTask(n -> {
+                Map<String, Object> hecho = new HashMap<>();
+                hecho.put("proyectado", true);
+                return marca.set(hecho).onSuccessTask(x -> Tasks.forResult(n));
+            });
+        });
+    }
+
+    private static Task<Integer> proyectarDesde(FirebaseFirestore db, DocumentSnapshot cursor, int acumulado) {
+        Query q = db.collection("mascotas").whereEqualTo("estado", EstadoMascota.MEMORIAL.name())
+                .orderBy(FieldPath.documentId()).limit(LOTE);
+        if (cursor != null) q = q.startAfter(cursor);
+
+        // La reducción de fotos se hace en un hilo propio, nunca en el principal
+        return q.get().onSuccessTask(HILO, lote -> {
+            List<DocumentSnapshot> docs = lote.getDocuments();
+            if (docs.isEmpty()) return Tasks.forResult(acumulado);
+
+            WriteBatch batch = db.batch();
+            for (DocumentSnapshot doc : docs) {
+                Timestamp fecha = doc.getTimestamp("timestamp");
+                batch.set(referencia(db, doc.getId()), proyeccion(doc, fecha != null ? fecha : Timestamp.now()));
+            }
+            int total = acumulado + docs.size();
+            DocumentSnapshot ultimo = docs.get(docs.size() - 1);
+            if (docs.size() < LOTE) return batch.commit().onSuccessTask(x -> Tasks.forResult(total));
+            return batch.commit().onSuccessTask(HILO, x -> proyectarDesde(db, ultimo, total));
+        });
+    }
+}
@@ -0,0 +1,211 @@
+package com.example.veteriapp.data;
+
+import android.app.Activity;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.view.View;
+import android.widget.LinearLayout;
+
+import com.example.veteriapp.model.NoticiaFila;
+import com.google.android.gms.tasks.Task;
+import com.google.firebase.Timestamp;
+import com.google.firebase.firestore.FieldValue;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.ListenerRegistration;
+import com.google.firebase.firestore.Query;
+import com.google.firebase.firestore.SetOptions;
+import com.google.firebase.firestore.Source;
+import com.google.firebase.firestore.WriteBatch;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Clase MuroNoticias.
+ *
+ * Muro de noticias de los paneles, sincronizado por versión.
+ * Los paneles no escuchan la colección "noticias" sino un documento diminuto,
+ * "config/noticias", cuyo contador "version" se incrementa en el mismo commit que
+ * cada publicación. Mientras la versión no cambia, el muro sale de la caché del
+ * proceso o, tras reiniciar la app, de la caché local de Firestore (alimentada también
+ * por el bundle de inicio); solo un cambio de versión provoca una nueva lectura del servidor.
+ *
+ * Incluye el pintado por diferencias: las noticias ya presentes en el contenedor
+ * conservan su vista y solo se crean, mueven o retiran las que cambian.
+ *
+ * @author Juan Manuel Moreno Sánchez
+ * @version 1.0 VeteriApp Release
+ */
+public final class MuroNoticias {
+
+    public static final String COLECCION = "noticias";
+    public static final int TAM_MURO = 5;
+
+    // --- DOCUMENTO DE VERSIÓN ---
+    static final String DOC_VERSION = "config/noticias";
+    static final String CAMPO_VERSION = "version";
+
+    // --- CACHÉ (solo se toca desde el hilo principal) ---
+    private static final String PREFERENCIAS = "muro_noticias";
+    private static long versionEnMemoria = -1;
+    private static List<NoticiaFila> filasEnMemoria;
+
+    private MuroNoticias() {}
+
+    /**
+     * Da de alta la copia en memoria del muro en el presupuesto. Se puede soltar en
+     * cualquier momento: la siguiente entrega la repone desde la caché local sin red.
+     */
+    public static void registrarMemoria(PresupuestoMemoria presupuesto) {
+        presupuesto.registrar("Noticias", PresupuestoMemoria.Nivel.PRESCINDIBLE, new PresupuestoMemoria.Consumidor() {
+            @Override
+            public long bytesEnUso() {
+                List<NoticiaFila> filas = filasEnMemoria;
+                if (filas == null) return 0;
+                long bytes = 0;
+                for (NoticiaFila f : filas) {
+                    bytes += 64 + 2L * (longitud(f.getTitulo()) + longitud(f.getContenido()) + longitud(f.getIdDoc()));
+                }
+                return bytes;
+            }
+
+            @Override
+            public void recortar(float conservar) {
+                filasEnMemoria = null;
+                versionEnMemoria = -1;
+            }
+        });
+    }
+
+    private static int longitud(String s) {
+        return s != null ? s.length() : 0;
+    }
+
+    /**
+     * Últimas noticias, de la más reciente a la más antigua.
+     */
+    public static Query muro(FirebaseFirestore db) {
+        return db.collection(COLECCION).orderBy("timestamp", Query.Direction.DESCENDING).limit(TAM_MURO);
+    }
+
+    /**
+     * Publica una noticia e incrementa la versión del muro en un único commit, de modo
+     * que ningún panel ve la versión nueva sin la noticia ni al revés.
+     */
+    public static Task<Void> publicar(FirebaseFirestore db, String titulo, String contenido) {
+        Map<String, Object> noticia = new HashMap<>();
+        noticia.put("titulo", titulo);
+        noticia.put("contenido", contenido);
+        noticia.put("timestamp", Timestamp.now());
+
+        Map<String, Object> version = new HashMap<>();
+        version.put(CAMPO_VERSION, FieldValue.increment(1));
+
+        WriteBatch batch = db.batch();
+        batch.set(db.collection(COLECCION).document(), noticia);
+        batch.set(db.document(DOC_VERSION), version, SetOptions.merge());
+        return batch.commit();
+    }
+
+    /**
+     * Observa la versión del muro y entrega las noticias solo cuando cambian.
+     * La primera entrega llega en cuanto se conoce la versión.
+     *
+     * @return Registro del listener de la versión, a retirar al destruir la actividad.
+     */
+    public static ListenerRegistration escuchar(Activity activity, FirebaseFirestore db,
+                                                Consumer<List<NoticiaFila>> alCambiar) {
+        long[] vista = {-1}; // última versión pedida por este panel
+        return db.document(DOC_VERSION).addSnapshotListener((snap, error) -> {
+            if (error != null || snap == null) return;
+            Long leida = snap.getLong(CAMPO_VERSION);
+            long version = leida != null ? leida : 0L;
+            if (version == vista[0]) return;
+            vista[0] = version;
+
+            if (version == versionEnMemoria && filasEnMemoria != null) {
+                alCambiar.accept(filasEnMemoria);
+                return;
+            }
+            // Se decide tras cargar el bundle de inicio, que puede dejar el muro ya en caché
+            BundlesIniciales.listo().addOnCompleteListener(t -> {
+                if (vista[0] != version) return;
+                // La misma versión ya descargada (o traída por el bundle): basta la caché local
+                boolean vigente = preferencias(activity).getLong(CAMPO_VERSION, -1) == version;
+                descargar(activity, db, version, vigente ? Source.CACHE : Source.DEFAULT, vista, alCambiar);
+            });
+        });
+    }
+
+    /**
+     * Anota que la caché local ya contiene el muro de la versión indicada (lo llama la
+     * carga de bundles). Nunca retrocede a una versión anterior.
+     */
+    static void adoptarVersionLocal(Context context, long version) {
+        SharedPreferences prefs = preferencias(context);
+        if (prefs.getLong(CAMPO_VERSION, -1) < version) prefs.edit().putLong(CAMPO_VERSION, version).apply();
+    }
+
+    private static void descargar(Activity activity, FirebaseFirestore db, long version, Source origen,
+                                  long[] vista, Consumer<List<NoticiaFila>> alCambiar) {
+        MapeoSnapshots.cargar(activity, muro(db).get(origen), "Noticias", Mapeadores::noticia, filas -> {
+            if (vista[0] != version) return; // llegó otra versión mientras tanto
+            if (origen == Source.CACHE && (filas == null || filas.isEmpty())) {
+                // La caché local se ha purgado: se lee del servidor
+                descargar(activity, db, version, Source.DEFAULT, vista, alCambiar);
+                return;
+            }
+            if (filas == null) return;
+            if (version >= versionEnMemoria) {
+                versionEnMemoria = version;
+                filasEnMemoria = filas;
+                preferencias(activity).edit().putLong(CAMPO_VERSION, version).apply();
+            }
+            alCambiar.accept(filas);
+        });
+    }
+
+    private static SharedPreferences preferencias(Context context) {
+        return context.getApplicationContext().getSharedPreferences(PREFERENCIAS, Context.MODE_PRIVATE);
+    }
+
+    // --- PINTADO POR DIFERENCIAS ---
+
+    /**
+     * Ajusta el contenedor a la lista de noticias reutilizando las vistas existentes.
+     * Cada vista guarda su noticia como tag; las que no han cambiado no se recrean.
+     *
+     * @param crearVista Construye la vista de una noticia nueva o modificada.
+     */
+    public static void pintar(LinearLayout contenedor, List<NoticiaFila> filas, Function<NoticiaFila, View> crearVista) {
+        Map<String, View> actuales = new HashMap<>();
+        for (int i = 0; i < contenedor.getChildCount(); i++) {
+            View v = contenedor.getChildAt(i);
+            if (v.getTag() instanceof NoticiaFila) actuales.put(((NoticiaFila) v.getTag()).getIdDoc(), v);
+        }
+
+        for (int i = 0; i < filas.size(); i++) {
+            NoticiaFila fila = filas.get(i);
+            View vista = actuales.remove(fila.getIdDoc());
+            if (vista == null || !igual((NoticiaFila) vista.getTag(), fila)) {
+                if (vista != null) contenedor.removeView(vista);
+                vista = crearVista.apply(fila);
+                vista.setTag(fila);
+            }
+            if (contenedor.getChildAt(i) == vista) continue;
+            if (vista.getParent() != null) contenedor.removeView(vista);
+            contenedor.addView(vista, i);
+        }
+
+        for (View sobrante : actuales.values()) contenedor.removeView(sobrante);
+        while (contenedor.getChildCount() > filas.size()) contenedor.removeViewAt(filas.size());
+    }
+
+    private static boolean igual(NoticiaFila a, NoticiaFila b) {
+        return Objects.equals(a.getTitulo(), b.getTitulo()) && Objects.equals(a.getContenido(), b.getContenido());
+    }
+}
@@ -0,0 +1,112 @@
+package com.example.veteriapp.data;
+
+import android.app.Activity;
+
+import com.google.android.gms.tasks.Task;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Clase MutacionesOptimistas.
+ *
+ * Capa de mutaciones optimistas para los listados de gestión.
+ * Cada cambio (modificación o borrado) se pinta al instante sobre la fila local,
+ * queda marcado como pendiente mientras la escritura viaja a Firestore y, al
+ * resolverse, se consolida como estado confirmado o se deshace repintando la
+ * última versión conocida del servidor. Así desaparece la recarga completa del
+ * listado tras cada acción.
+ *
+ * Todas las llamadas se hacen desde el hilo principal.
+ *
+ * @author Juan Manuel Moreno Sánchez
+ * @version 1.0 VeteriApp Release
+ */
+public final class MutacionesOptimistas<T> {
+
+    private final Activity activity;
+    private final BiConsumer<String, T> pintarFila;
+
+    // --- ESTADO LOCAL ---
+    private final Map<String, T> confirmadas = new HashMap<>();
+    private final Map<String, Integer> pendientes = new HashMap<>();
+
+    /**
+     * @param activity   Actividad propietaria (las respuestas tras su destrucción se ignoran).
+     * @param pintarFila Repinta la fila de una clave; recibe null cuando la fila debe ocultarse.
+     */
+    public MutacionesOptimistas(Activity activity, BiConsumer<String, T> pintarFila) {
+        this.activity = activity;
+        this.pintarFila = pintarFila;
+    }
+
+    /**
+     * Registra la versión del servidor de una fila (tras una carga o un snapshot).
+     */
+    public void registrarConfirmada(String clave, T fila) {
+        confirmadas.put(clave, fila);
+    }
+
+    /**
+     * Olvida una fila que ya no existe en el servidor.
+     */
+    public void olvidar(String clave) {
+        confirmadas.remove(clave);
+    }
+
+    /**
+     * Descarta todo el estado local (p.ej. al recargar el listado completo).
+     */
+    public void limpiar() {
+        confirmadas.clear();
+        pendientes.clear();
+    }
+
+    public boolean estaPendiente(String clave) {
+        return pendientes.containsKey(clave);
+    }
+
+    /**
+     * Sustituye la fila por su versión optimista y lanza la escritura.
+     *
+     * @param optimista Nueva versión de la fila.
+     * @param escritura Operación de Firestore que materializa el cambio.
+     * @param alFallar  Se invoca tras deshacer el cambio si la escritura falla.
+     */
+    public void modificar(String clave, T optimista, Supplier<Task<?>> escritura, Consumer<Exception> alFallar) {
+        aplicar(clave, optimista, escritura, alFallar);
+    }
+
+    /**
+     * Oculta la fila al instante y lanza el borrado.
+     */
+    public void eliminar(String clave, Supplier<Task<?>> escritura, Consumer<Exception> alFallar) {
+        aplicar(clave, null, escritura, alFallar);
+    }
+
+    private void aplicar(String clave, T optimista, Supplier<Task<?>> escritura, Consumer<Exception> alFallar) {
+        Integer enVuelo = pendientes.get(clave);
+        pendientes.put(clave, enVuelo == null ? 1 : enVuelo + 1);
+        pintarFila.accept(clave, optimista);
+
+        // Ligado a la actividad: si se destruye, la respuesta no toca vistas muertas
+        escritura.get().addOnCompleteListener(activity, t -> {
+            Integer restantes = pendientes.get(clave);
+            if (restantes == null || restantes <= 1) pendientes.remove(clave);
+            else pendientes.put(clave, restantes - 1);
+
+            if (t.isSuccessful()) {
+                if (optimista == null) confirmadas.remove(clave);
+                else confirmadas.put(clave, optimista);
+                if (!estaPendiente(clave)) pintarFila.accept(clave, optimista);
+            } else {
+                // Reversión a la última versión confirmada por el servidor
+                pintarFila.accept(clave, confirmadas.get(clave));
+                if (alFallar != null) alFallar.accept(t.getException());
+            }
+        });
+    }
+}
@@ -0,0 +1,198 @@
+package com.example.veteriapp.data;
+
+import android.app.ActivityManager;
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.lifecycle.DefaultLifecycleObserver;
+import androidx.lifecycle.LifecycleOwner;
+import androidx.tracing.Trace;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Clase PresupuestoMemoria.
+ *
+ * Gestor central de la memoria que retienen las cachés y las pantallas pesadas.
+ * El presupuesto se calcula a partir de ActivityManager.getMemoryClass(): cada consumidor
+ * pide su parte con {@link #presupuesto(double)} y se da de alta con un nivel que
+ * indica lo fácil que es reconstruir lo que guarda.
+ *
+ * Ante onTrimMemory se recortan los niveles de menos a más valioso:
+ * - PRESCINDIBLE: se vacía en cuanto el sistema avisa de presión o la app deja de verse;
+ * - RECONSTRUIBLE: se reduce a la mitad con presión baja o al ocultarse la app y se
+ *   vacía con presión crítica o en segundo plano;
+ * - VISIBLE: lo que la pantalla muestra; solo se recorta con presión crítica o cuando
+ *   el proceso está a punto de morir.
+ *
+ * El uso de cada consumidor se publica como contador de traza "Memoria:<nombre>" y se
+ * resume en el log tras cada recorte.
+ *
+ * Solo debe usarse desde el hilo principal.
+ *
+ * @author Juan Manuel Moreno Sánchez
+ * @version 1.0 VeteriApp Release
+ */
+public final class PresupuestoMemoria implements ComponentCallbacks2 {
+
+    private static final String TAG = "VeteriApp";
+    private static final long MB = 1024L * 1024L;
+
+    /** Nivel de recorte de un consumidor, de menos a más valioso. */
+    public enum Nivel { PRESCINDIBLE, RECONSTRUIBLE, VISIBLE }
+
+    /**
+     * Caché o almacén que retiene memoria reconstruible.
+     */
+    public interface Consumidor {
+        /** Estimación de los bytes retenidos ahora mismo. */
+        long bytesEnUso();
+
+        /**
+         * Libera memoria hasta conservar la fracción indicada de lo retenido
+         * (0 = vaciar por completo).
+         */
+        void recortar(float conservar);
+    }
+
+    private static PresupuestoMemoria instancia;
+    private static final Handler HILO_UI = new Handler(Looper.getMainLooper());
+
+    private final long memoriaClase;
+    private final Map<String, Alta> altas = new LinkedHashMap<>();
+
+    private PresupuestoMemoria(long memoriaClase) {
+        this.memoriaClase = memoriaClase;
+    }
+
+    /**
+     * Calcula el presupuesto del dispositivo y escucha los avisos de memoria.
+     * Se invoca una vez desde VeteriApplication.
+     */
+    public static synchronized void iniciar(Context contexto) {
+        if (instancia != null) return;
+        ActivityManager am = (ActivityManager) contexto.getSystemService(Context.ACTIVITY_SERVICE);
+        instancia = new PresupuestoMemoria(am.getMemoryClass() * MB);
+        contexto.getApplicationContext().registerComponentCallbacks(instancia);
+    }
+
+    public static PresupuestoMemoria get() {
+        if (instancia == null) throw new IllegalStateException("PresupuestoMemoria no iniciado");
+        return instancia;
+    }
+
+    // --- PRESUPUESTO ---
+
+    /**
+     * Bytes que corresponden a la fracción indicada del heap de la aplicación.
+     */
+    public long presupuesto(double fraccion) {
+        return (long) (memoriaClase * fraccion);
+    }
+
+    // --- ALTAS ---
+
+    /**
+     * Da de alta un consumidor para toda la vida del proceso (cachés estáticas).
+     */
+    public void registrar(String nombre, Nivel nivel, Consumidor consumidor) {
+        altas.put(nombre, new Alta(nivel, consumidor));
+    }
+
+    /**
+     * Da de alta el consumidor de una pantalla; se retira solo al destruirse.
+     */
+    public void registrar(LifecycleOwner owner, String nombre, Nivel nivel, Consumidor consumidor) {
+        registrar(nombre, nivel, consumidor);
+        owner.getLifecycle().addObserver(new DefaultLifecycleObserver() {
+            @Override
+            public void onDestroy(@NonNull LifecycleOwner o) {
+                Alta alta = altas.get(nombre);
+                if (alta != null && alta.consumidor == consumidor) altas.remove(nombre);
+            }
+        });
+    }
+
+    // --- CONSULTA ---
+
+    /**
+     * Bytes estimados por consumidor, en orden de alta.
+     */
+    public Map<String, Long> informe() {
+        Map<String, Long> uso = new LinkedHashMap<>();
+        for (Map.Entry<String, Alta> e : altas.entrySet()) {
+            long bytes = e.getValue().consumidor.bytesEnUso();
+            uso.put(e.getKey(), bytes);
+            Trace.setCounter("Memoria:" + e.getKey(), bytes);
+        }
+        return uso;
+    }
+
+    // --- AVISOS DEL SISTEMA ---
+
+    @Override
+    public void onTrimMemory(int nivel) {
+        // Los avisos pueden llegar desde otros hilos en algunas versiones
+        if (Looper.myLooper() != Looper.getMainLooper()) {
+            HILO_UI.post(() -> onTrimMemory(nivel));
+            return;
+        }
+        recortar(Nivel.PRESCINDIBLE, conservar(Nivel.PRESCINDIBLE, nivel));
+        recortar(Nivel.RECONSTRUIBLE, conservar(Nivel.RECONSTRUIBLE, nivel));
+        recortar(Nivel.VISIBLE, conservar(Nivel.VISIBLE, nivel));
+        Log.d(TAG, "Memoria: aviso " + nivel + " de " + memoriaClase / MB + " MB, uso " + informe());
+    }
+
+    @Override
+    public void onLowMemory() {
+        onTrimMemory(TRIM_MEMORY_COMPLETE);
+    }
+
+    @Override
+    public void onConfigurationChanged(@NonNull Configuration nuevaConfiguracion) {}
+
+    /**
+     * Fracción que conserva cada nivel ante un aviso (1 = intacto).
+     */
+    static float conservar(Nivel tipo, int nivel) {
+        boolean critico = nivel == TRIM_MEMORY_RUNNING_CRITICAL || nivel >= TRIM_MEMORY_COMPLETE;
+        boolean fondo = nivel >= TRIM_MEMORY_BACKGROUND;
+        switch (tipo) {
+            case PRESCINDIBLE:
+                return 0f;
+            case RECONSTRUIBLE:
+                if (critico || fondo) return 0f;
+                if (nivel >= TRIM_MEMORY_RUNNING_LOW) return 0.5f;
+                return 1f;
+            default:
+                if (critico) return 0.25f;
+                return 1f;
+        }
+    }
+
+    private void recortar(Nivel tipo, float conservar) {
+        if (conservar >= 1f) return;
+        // Copia: un recorte puede provocar bajas (p.ej. una pantalla que se cierra)
+        List<Alta> afectadas = new ArrayList<>();
+        for (Alta a : altas.values()) if (a.nivel == tipo) afectadas.add(a);
+        for (Alta a : afectadas) a.consumidor.recortar(conservar);
+    }
+
+    private static final class Alta {
+        final Nivel nivel;
+        final Consumidor consumidor;
+
+        Alta(Nivel nivel, Consumidor consumidor) {
+            this.nivel = nivel;
+            this.consumidor = consumidor;
+        }
+    }
+}
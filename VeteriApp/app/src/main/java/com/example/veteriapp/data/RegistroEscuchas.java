@@ -0,0 +1,213 @@
+package com.example.veteriapp.data;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.lifecycle.DefaultLifecycleObserver;
+import androidx.lifecycle.Lifecycle;
+import androidx.lifecycle.LifecycleOwner;
+import androidx.tracing.Trace;
+
+import com.google.android.gms.tasks.OnSuccessListener;
+import com.google.firebase.firestore.ListenerRegistration;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Clase RegistroEscuchas.
+ *
+ * Registro de listeners de Firestore y peticiones puntuales ligado al ciclo de vida
+ * de una pantalla. Cada listener se da de alta con la función que lo crea, de modo que:
+ * - se activa en onStart (o al instante si la pantalla ya está visible);
+ * - se pausa poco después de onStop, retirando el listener para que deje de leer;
+ * - se reactiva en el siguiente onStart. Firestore reanuda la escucha desde su caché
+ *   local y su token de reanudación, así que solo se vuelven a leer los documentos
+ *   que cambiaron mientras tanto;
+ * - se cancela definitivamente en onDestroy, junto con los callbacks de las
+ *   peticiones aún en curso, que dejan de retener la actividad.
+ *
+ * El número de listeners vivos se publica como contador de traza "Escuchas:activas".
+ *
+ * Solo debe usarse desde el hilo principal.
+ *
+ * @author Juan Manuel Moreno Sánchez
+ * @version 1.0 VeteriApp Release
+ */
+public final class RegistroEscuchas implements DefaultLifecycleObserver {
+
+    private static final String TAG = "VeteriApp";
+
+    /** Margen antes de pausar: un cambio de pantalla breve no corta las escuchas. */
+    private static final long GRACIA_PAUSA_MS = 5_000;
+
+    private static final Handler HILO_UI = new Handler(Looper.getMainLooper());
+    private static int activasTotales;
+
+    // --- ESTADO DE LA PANTALLA ---
+    private final String nombre;
+    private final List<Escucha> escuchas = new ArrayList<>();
+    private final Set<Peticion<?>> peticiones = new HashSet<>();
+    private final Runnable pausa = this::pausar;
+    private boolean visible;
+    private boolean destruido;
+
+    /**
+     * Crea el registro y lo enlaza al ciclo de vida indicado (normalmente la propia actividad,
+     * como inicializador de campo).
+     *
+     * @param nombre Nombre de la pantalla para el registro de actividad.
+     */
+    public RegistroEscuchas(LifecycleOwner owner, String nombre) {
+        this.nombre = nombre;
+        owner.getLifecycle().addObserver(this);
+        visible = owner.getLifecycle().getCurrentState().isAtLeast(Lifecycle.State.STARTED);
+    }
+
+    // --- ALTAS ---
+
+    /**
+     * Da de alta un listener. La función se invoca cada vez que hay que (re)activarlo.
+     *
+     * @return Registro para retirarlo antes de tiempo (p.ej. al cambiar de página).
+     */
+    public ListenerRegistration escuchar(Supplier<ListenerRegistration> alta) {
+        Escucha escucha = new Escucha(alta);
+        if (destruido) return escucha;
+        escuchas.add(escucha);
+        if (visible) escucha.activar();
+        return escucha;
+    }
+
+    /**
+     * Envuelve el destino de una petición puntual: si la pantalla se destruye antes de
+     * la respuesta, el resultado se descarta y el destino se libera.
+     */
+    public <T> Consumer<T> peticion(Consumer<T> destino) {
+        Peticion<T> p = new Peticion<>(destino);
+        if (destruido) p.cancelar();
+        else peticiones.add(p);
+        return p;
+    }
+
+    /**
+     * Variante de {@link #peticion} para los listeners de éxito de las tareas de Firebase.
+     */
+    public <T> OnSuccessListener<T> alExito(OnSuccessListener<T> destino) {
+        Consumer<T> p = peticion(destino::onSuccess);
+        return p::accept;
+    }
+
+    // --- CONSULTA ---
+
+    /**
+     * Listeners activos en esta pantalla.
+     */
+    public int activas() {
+        int n = 0;
+        for (Escucha e : escuchas) if (e.actual != null) n++;
+        return n;
+    }
+
+    /**
+     * Listeners activos en toda la aplicación.
+     */
+    public static int activasTotales() {
+        return activasTotales;
+    }
+
+    // --- CICLO DE VIDA ---
+
+    @Override
+    public void onStart(@NonNull LifecycleOwner owner) {
+        visible = true;
+        HILO_UI.removeCallbacks(pausa);
+        for (Escucha e : escuchas) e.activar();
+    }
+
+    @Override
+    public void onStop(@NonNull LifecycleOwner owner) {
+        visible = false;
+        HILO_UI.postDelayed(pausa, GRACIA_PAUSA_MS);
+    }
+
+    @Override
+    public void onDestroy(@NonNull LifecycleOwner owner) {
+        destruido = true;
+        HILO_UI.removeCallbacks(pausa);
+        for (Escucha e : escuchas) e.desactivar();
+        escuchas.clear();
+        for (Peticion<?> p : peticiones) p.cancelar();
+        peticiones.clear();
+        owner.getLifecycle().removeObserver(this);
+    }
+
+    private void pausar() {
+        if (visible) return;
+        for (Escucha e : escuchas) e.desactivar();
+    }
+
+    private void informar() {
+        Trace.setCounter("Escuchas:activas", activasTotales);
+        Log.d(TAG, "Escuchas " + nombre + ": " + activas() + " activas (total " + activasTotales + ")");
+    }
+
+    // --- ELEMENTOS DEL REGISTRO ---
+
+    private final class Escucha implements ListenerRegistration {
+        private final Supplier<ListenerRegistration> alta;
+        private ListenerRegistration actual;
+
+        Escucha(Supplier<ListenerRegistration> alta) {
+            this.alta = alta;
+        }
+
+        void activar() {
+            if (actual != null) return;
+            actual = alta.get();
+            activasTotales++;
+            informar();
+        }
+
+        void desactivar() {
+            if (actual == null) return;
+            actual.remove();
+            actual = null;
+            activasTotales--;
+            informar();
+        }
+
+        @Override
+        public void remove() {
+            desactivar();
+            escuchas.remove(this);
+        }
+    }
+
+    private final class Peticion<T> implements Consumer<T> {
+        private Consumer<T> destino;
+
+        Peticion(Consumer<T> destino) {
+            this.destino = destino;
+        }
+
+        @Override
+        public void accept(T resultado) {
+            Consumer<T> d = destino;
+            if (d == null) return;
+            destino = null;
+            peticiones.remove(this);
+            d.accept(resultado);
+        }
+
+        void cancelar() {
+            destino = null;
+        }
+    }
+}
@@ -0,0 +1,229 @@
+package com.example.veteriapp.data;
+
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.Timestamp;
+import com.google.firebase.firestore.CollectionReference;
+import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FieldPath;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.Query;
+import com.google.firebase.firestore.SetOptions;
+import com.google.firebase.firestore.Source;
+import com.google.firebase.firestore.WriteBatch;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Clase SalasChat.
+ *
+ * Ubicación de los mensajes de chat por sala, dentro de la clínica del cliente:
+ * "clinicas/{idClinica}/salas/{idSala}/mensajes".
+ * Cada conversación es una subcolección independiente, de modo que la lectura de una
+ * sala solo ordena sus propios mensajes (índice compuesto "timestamp" + "secuenciaCliente")
+ * y el crecimiento del chat de un cliente o de una clínica no afecta al resto. Para
+ * herramientas de administración sigue disponible la consulta de grupo sobre todas las salas.
+ *
+ * Incluye la migración de los mensajes anteriores a la partición, que pertenecen a la
+ * clínica principal: primero la antigua colección global "mensajes" y después las salas
+ * de primer nivel "salas/{idSala}/mensajes". Es en streaming y reanudable: cada lote copia
+ * los mensajes conservando su ID, borra los originales y avanza el punto de control en el
+ * mismo commit.
+ *
+ * @author Juan Manuel Moreno Sánchez
+ * @version 1.0 VeteriApp Release
+ */
+public final class SalasChat {
+
+    public static final String SUBCOLECCION_MENSAJES = "mensajes";
+    static final String CAMPO_SECUENCIA = "secuenciaCliente";
+
+    // --- MIGRACIÓN DE LOS DATOS ANTERIORES A LA PARTICIÓN ---
+    private static final String COLECCION_ANTIGUA = "mensajes";
+    private static final String SALAS_ANTIGUAS = "salas";
+    private static final String DOC_PUNTO_CONTROL = "config/migracionSalas";
+    private static final String CAMPO_GLOBAL_COMPLETADA = "completada";
+    private static final String CAMPO_SALAS_COMPLETADA = "salasCompletada";
+    private static final int LOTE = 200; // 2 escrituras por mensaje + punto de control < 500
+
+    private SalasChat() {}
+
+    /**
+     * Mensajes de una sala de la clínica.
+     */
+    public static CollectionReference mensajes(FirebaseFirestore db, Clinica clinica, String idSala) {
+        return clinica.coleccion(db, Clinica.SALAS).document(idSala).collection(SUBCOLECCION_MENSAJES);
+    }
+
+    /**
+     * Conversación de una sala en orden cronológico. Dos mensajes con la misma marca de
+     * tiempo se ordenan por su secuencia de cliente, así que los envíos seguidos de un
+     * mismo dispositivo no se cruzan. La consulta excluye los mensajes sin ese campo: los
+     * anteriores a él lo reciben de MigracionesEsquema (versión 4) o al trasladarse.
+     */
+    public static Query conversacion(FirebaseFirestore db, Clinica clinica, String idSala) {
+        return mensajes(db, clinica, idSala)
+                .orderBy("timestamp", Query.Direction.ASCENDING)
+                .orderBy(CAMPO_SECUENCIA, Query.Direction.ASCENDING);
+    }
+
+    /**
+     * Secuencia de un mensaje que no la trae: los milisegundos de su marca de tiempo, que es
+     * el mismo valor de partida que usa el cliente al enviar.
+     *
+     * @return Valor para "secuenciaCliente", o null si el mensaje ya la tiene o no tiene marca de tiempo.
+     */
+    static Long secuenciaHeredada(DocumentSnapshot doc) {
+        if (doc.get(CAMPO_SECUENCIA) != null) return null;
+        Timestamp ts = doc.getTimestamp("timestamp");
+        return ts != null ? ts.toDate().getTime() : null;
+    }
+
+    /**
+     * El mensaje está en una sala de clínica (y no en una ubicación anterior a la partición).
+     */
+    static boolean enClinica(DocumentSnapshot doc) {
+        return doc.getReference().getPath().startsWith(Clinica.COLECCION + "/");
+    }
+
+    /**
+     * Mensajes de todas las salas (consulta de grupo, para auditoría y administración).
+     */
+    public static Query todosLosMensajes(FirebaseFirestore db) {
+        return db.collectionGroup(SUBCOLECCION_MENSAJES);
+    }
+
+    // --- MIGRACIÓN ---
+
+    /**
+     * Traslada a las salas de la clínica principal, lote a lote, la colección global y
+     * después las salas de primer nivel. Si se interrumpe, la siguiente llamada continúa
+     * desde el último lote confirmado; una vez completada, solo cuesta la lectura del
+     * punto de control.
+     *
+     * @return Número de mensajes trasladados en esta llamada.
+     */
+    public static Task<Integer> migrar(FirebaseFirestore db) {
+        DocumentReference control = db.document(DOC_PUNTO_CONTROL);
+        // Todo se lee del servidor: un punto de control o un lote vacío servidos por la caché
+        // darían la migración por terminada sin estarlo. Sin servidor, la migración no avanza.
+        return control.get(Source.SERVER).onSuccessTask(estado -> {
+            boolean global = estado != null && Boolean.TRUE.equals(estado.getBoolean(CAMPO_GLOBAL_COMPLETADA));
+            String ultimaRuta = estado != null ? estado.getString("ultimaRuta") : null;
+            if (global) return migrarSalasDesde(db, control, ultimaRuta, estado, 0);
+
+            String ultimoId = estado != null ? estado.getString("ultimoId") : null;
+            return migrarDesde(db, control, ultimoId, 0)
+                    .onSuccessTask(n -> migrarSalasDesde(db, control, ultimaRuta, estado, n));
+        });
+    }
+
+    /**
+     * Traslada solo los mensajes de una sala (al abrir una conversación aún no migrada),
+     * para que el cliente no tenga que esperar a la migración global. Los datos anteriores
+     * a la partición son todos de la clínica principal: en otra clínica no hay nada que mover.
+     */
+    public static Task<Integer> migrarSala(FirebaseFirestore db, Clinica clinica, String idSala) {
+        if (!clinica.esPrincipal()) return Tasks.forResult(0);
+        return db.document(DOC_PUNTO_CONTROL).get(Source.SERVER).onSuccessTask(estado -> {
+            boolean global = estado != null && Boolean.TRUE.equals(estado.getBoolean(CAMPO_GLOBAL_COMPLETADA));
+            boolean salas = estado != null && Boolean.TRUE.equals(estado.getBoolean(CAMPO_SALAS_COMPLETADA));
+            Task<Integer> antiguos = global ? Tasks.forResult(0) : migrarConsulta(db,
+                    db.collection(COLECCION_ANTIGUA).whereEqualTo("idSala", idSala).limit(LOTE), 0);
+            if (salas) return antiguos;
+            Query deLaSala = db.collection(SALAS_ANTIGUAS).document(idSala).collection(SUBCOLECCION_MENSAJES).limit(LOTE);
+            return antiguos.onSuccessTask(n -> migrarConsulta(db, deLaSala, n));
+        });
+    }
+
+    private static Task<Integer> migrarDesde(FirebaseFirestore db, DocumentReference control, String ultimoId, int acumulado) {
+        Query q = db.collection(COLECCION_ANTIGUA).orderBy(FieldPath.documentId()).limit(LOTE);
+        if (ultimoId != null) q = q.startAfter(ultimoId);
+
+        return q.get(Source.SERVER).onSuccessTask(lote -> {
+            List<DocumentSnapshot> docs = lote.getDocuments();
+            Map<String, Object> avance = new HashMap<>();
+            if (docs.isEmpty()) {
+                avance.put(CAMPO_GLOBAL_COMPLETADA, true);
+                return control.set(avance, SetOptions.merge()).onSuccessTask(x -> Tasks.forResult(acumulado));
+            }
+
+            String nuevoUltimo = docs.get(docs.size() - 1).getId();
+            avance.put("ultimoId", nuevoUltimo);
+            WriteBatch batch = trasladar(db, docs);
+            batch.set(control, avance, SetOptions.merge());
+            int total = acumulado + docs.size();
+            return batch.commit().onSuccessTask(x -> migrarDesde(db, control, nuevoUltimo, total));
+        });
+    }
+
+    /**
+     * Recorre todos los mensajes (consulta de grupo por ruta completa) y traslada los que
+     * siguen en una sala de primer nivel; los que ya están en una clínica se saltan.
+     */
+    private static Task<Integer> migrarSalasDesde(FirebaseFirestore db, DocumentReference control, String ultimaRuta,
+                                                  DocumentSnapshot estado, int acumulado) {
+        if (estado != null && Boolean.TRUE.equals(estado.getBoolean(CAMPO_SALAS_COMPLETADA))) {
+            return Tasks.forResult(acumulado);
+        }
+        Query q = todosLosMensajes(db).orderBy(FieldPath.documentId()).limit(LOTE);
+        if (ultimaRuta != null) q = q.startAfter(ultimaRuta);
+
+        return q.get(Source.SERVER).onSuccessTask(lote -> {
+            List<DocumentSnapshot> docs = lote.getDocuments();
+            Map<String, Object> avance = new HashMap<>();
+            if (docs.isEmpty()) {
+                avance.put(CAMPO_SALAS_COMPLETADA, true);
+                return control.set(avance, SetOptions.merge()).onSuccessTask(x -> Tasks.forResult(acumulado));
+            }
+
+            List<DocumentSnapshot> antiguos = new ArrayList<>();
+            for (DocumentSnapshot doc : docs) {
+                if (doc.getReference().getPath().startsWith(SALAS_ANTIGUAS + "/")) antiguos.add(doc);
+            }
+            String nuevaRuta = docs.get(docs.size() - 1).getReference().getPath();
+            avance.put("ultimaRuta", nuevaRuta);
+            WriteBatch batch = trasladar(db, antiguos);
+            batch.set(control, avance, SetOptions.merge());
+            int total = acumulado + antiguos.size();
+            return batch.commit().onSuccessTask(x -> migrarSalasDesde(db, control, nuevaRuta, null, total));
+        });
+    }
+
+    private static Task<Integer> migrarConsulta(FirebaseFirestore db, Query pendientes, int acumulado) {
+        return pendientes.get(Source.SERVER).onSuccessTask(lote -> {
+            List<DocumentSnapshot> docs = lote.getDocuments();
+            if (docs.isEmpty()) return Tasks.forResult(acumulado);
+            int total = acumulado + docs.size();
+            // Los originales se borran, así que la misma consulta devuelve el siguiente lote
+            return trasladar(db, docs).commit().onSuccessTask(x -> migrarConsulta(db, pendientes, total));
+        });
+    }
+
+    /**
+     * Copia cada mensaje a su sala de la clínica principal conservando el ID (reintentar es
+     * idempotente) y borra el original. La sala es la del documento padre en las salas de
+     * primer nivel y el campo "idSala" en la colección global; los mensajes sin sala se dejan
+     * donde están: no pertenecían a ninguna conversación.
+     * La copia lleva ya la secuencia de cliente para que la consulta de la sala la incluya.
+     */
+    private static WriteBatch trasladar(FirebaseFirestore db, List<DocumentSnapshot> docs) {
+        Clinica principal = Clinica.de(Clinica.POR_DEFECTO);
+        WriteBatch batch = db.batch();
+        for (DocumentSnapshot doc : docs) {
+            DocumentReference sala = doc.getReference().getParent().getParent();
+            String idSala = sala != null ? sala.getId() : doc.getString("idSala");
+            Map<String, Object> datos = doc.getData();
+            if (idSala == null || datos == null) continue;
+            Long secuencia = secuenciaHeredada(doc);
+            if (secuencia != null) datos.put(CAMPO_SECUENCIA, secuencia);
+            batch.set(mensajes(db, principal, idSala).document(doc.getId()), datos);
+            batch.delete(doc.getReference());
+        }
+        return batch;
+    }
+}
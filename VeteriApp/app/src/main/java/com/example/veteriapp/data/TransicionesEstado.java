@@ -0,0 +1,132 @@
+package com.example.veteriapp.data;
+
+import com.example.veteriapp.model.EstadoCita;
+import com.example.veteriapp.model.EstadoMascota;
+import com.example.veteriapp.utils.Logger;
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.Timestamp;
+import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FirebaseFirestore;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Clase TransicionesEstado.
+ *
+ * Servicio único de cambios de estado de citas y pacientes.
+ * Valida cada transición contra la máquina de estados del modelo (EstadoCita,
+ * EstadoMascota) y confirma en un solo commit el nuevo estado, el aviso al dueño
+ * y la entrada de auditoría: ninguna transición queda aplicada a medias.
+ * Las escrituras son compare-and-set sobre el campo "version" (EscrituraVersionada),
+ * de modo que dos veterinarios no se pisan los cambios sin enterarse.
+ *
+ * @author Juan Manuel Moreno Sánchez
+ * @version 1.0 VeteriApp Release
+ */
+public final class TransicionesEstado {
+
+    private TransicionesEstado() {}
+
+    // --- CITAS ---
+
+    /**
+     * Aplica una transición de cita en una única transacción: compare-and-set del estado
+     * sobre la versión vista por el usuario, ajuste de la franja de la agenda si el cambio
+     * la libera o la reclama, aviso al dueño y auditoría.
+     *
+     * @param versionVista Versión de la cita cuando se abrió el menú.
+     */
+    public static Task<Void> transicionarCita(FirebaseFirestore db, Clinica clinica, String idDoc, long versionVista,
+                                              EstadoCita actual, EstadoCita destino,
+                                              String uidDueno, String nombreMascota) {
+        if (actual == null || !actual.puedePasarA(destino)) return rechazar(actual, destino);
+
+        DocumentReference citaRef = clinica.citas(db).document(idDoc);
+        DocumentReference notifRef = db.collection("notificaciones").document();
+        DocumentReference logRef = db.collection("logs").document();
+        String aviso = "Estado de cita para " + nombreMascota + ": " + destino.name().toLowerCase();
+        String auditoria = "Cita " + idDoc + " (" + nombreMascota + "): " + actual + " -> " + destino;
+
+        return db.runTransaction(transaction -> {
+            // Lecturas primero: la cita y, si tiene franja, su documento de día
+            DocumentSnapshot cita = transaction.get(citaRef);
+            Map<String, Object> escritura = EscrituraVersionada.preparar(cita, versionVista,
+                    EscrituraVersionada.campo("estado", actual.name()),
+                    EscrituraVersionada.campo("estado", destino.name()));
+            AgendaDisponibilidad.Dia dia = AgendaDisponibilidad.leerDia(transaction, db, cita);
+
+            AgendaDisponibilidad.ajustarFranja(transaction, dia, cita, destino.name());
+            transaction.update(citaRef, escritura);
+            if (uidDueno != null) transaction.set(notifRef, notificacion(uidDueno, aviso));
+            transaction.set(logRef, Logger.entrada(auditoria));
+            return null;
+        });
+    }
+
+    /**
+     * Guarda la nota clínica del veterinario con compare-and-set: si otro veterinario
+     * la ha cambiado desde que se abrió el editor, falla con ConflictoVersionException.
+     *
+     * @param notaVista Nota que mostraba el editor al abrirse.
+     */
+    public static Task<Void> guardarNotaCita(FirebaseFirestore db, Clinica clinica, String idDoc, long versionVista,
+                                             String notaVista, String notaNueva) {
+        return EscrituraVersionada.actualizar(db, clinica.citas(db).document(idDoc), versionVista,
+                EscrituraVersionada.campo("notaVeterinario", notaVista),
+                EscrituraVersionada.campo("notaVeterinario", notaNueva),
+                batch -> batch.set(db.collection("logs").document(),
+                        Logger.entrada("Nota clínica actualizada en la cita " + idDoc)));
+    }
+
+    // --- PACIENTES ---
+
+    /**
+     * Aplica una transición de paciente con compare-and-set del estado, aviso al dueño
+     * y auditoría en el mismo commit. El paso a MEMORIAL publica además su recuerdo
+     * ligero en el muro (MuroMemorial).
+     *
+     * @param versionVista Versión del paciente cuando se abrió el menú.
+     */
+    public static Task<Void> transicionarMascota(FirebaseFirestore db, String idDoc, long versionVista,
+                                                 EstadoMascota actual, EstadoMascota destino,
+                                                 String uidDueno, String nombreMascota) {
+        if (actual == null || !actual.puedePasarA(destino)) return rechazar(actual, destino);
+
+        DocumentReference mascotaRef = db.collection("mascotas").document(idDoc);
+        DocumentReference notifRef = db.collection("notificaciones").document();
+        DocumentReference logRef = db.collection("logs").document();
+        return db.runTransaction(transaction -> {
+            DocumentSnapshot mascota = transaction.get(mascotaRef);
+            transaction.update(mascotaRef, EscrituraVersionada.preparar(mascota, versionVista,
+                    EscrituraVersionada.campo("estado", actual.name()),
+                    EscrituraVersionada.campo("estado", destino.name())));
+            if (destino == EstadoMascota.MEMORIAL) {
+                transaction.set(MuroMemorial.referencia(db, idDoc), MuroMemorial.proyeccion(mascota, Timestamp.now()));
+            }
+            if (uidDueno != null && !uidDueno.isEmpty()) {
+                transaction.set(notifRef, notificacion(uidDueno,
+                        "Informe Clínico: " + nombreMascota + " ahora está " + destino.name().toLowerCase()));
+            }
+            transaction.set(logRef, Logger.entrada("Paciente " + nombreMascota + ": " + actual + " -> " + destino));
+            return null;
+        });
+    }
+
+    // --- AUXILIARES ---
+
+    private static Map<String, Object> notificacion(String uidDestinatario, String mensaje) {
+        Map<String, Object> notif = new HashMap<>();
+        notif.put("uidDestinatario", uidDestinatario);
+        notif.put("mensaje", mensaje);
+        notif.put("leida", false);
+        notif.put("timestamp", Timestamp.now());
+        return notif;
+    }
+
+    private static Task<Void> rechazar(Object actual, Object destino) {
+        return Tasks.forException(new IllegalStateException("Transición no permitida: " + actual + " -> " + destino));
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.veteriapp.data;
+
+import com.google.firebase.Timestamp;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.temporal.TemporalAdjusters;
+import java.util.Date;
+
+/**
+ * Clase VentanaAgenda.
+ *
+ * Rango de fechas visible en la agenda clínica (un día o una semana de lunes a domingo).
+ * Es inmutable: navegar devuelve una ventana nueva, lo que permite conservar las ventanas
+ * adyacentes para la precarga. Los límites se expresan como Timestamp para usarlos
+ * directamente en el rango de la consulta sobre "fechaHora".
+ *
+ * @author Juan Manuel Moreno Sánchez
+ * @version 1.0 VeteriApp Release
+ */
+public final class VentanaAgenda {
+
+    public enum Modo { DIA, SEMANA }
+
+    private final Modo modo;
+    private final LocalDate inicio;
+
+    private VentanaAgenda(Modo modo, LocalDate inicio) {
+        this.modo = modo;
+        this.inicio = inicio;
+    }
+
+    /**
+     * Ventana del modo indicado que contiene la fecha dada.
+     */
+    public static VentanaAgenda conteniendo(Modo modo, LocalDate fecha) {
+        LocalDate inicio = (modo == Modo.SEMANA)
+                ? fecha.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY))
+                : fecha;
+        return new VentanaAgenda(modo, inicio);
+    }
+
+    public static VentanaAgenda hoy(Modo modo) {
+        return conteniendo(modo, LocalDate.now());
+    }
+
+    public VentanaAgenda anterior() {
+        return new VentanaAgenda(modo, inicio.minusDays(dias()));
+    }
+
+    public VentanaAgenda siguiente() {
+        return new VentanaAgenda(modo, inicio.plusDays(dias()));
+    }
+
+    /**
+     * Cambia entre día y semana conservando la fecha de referencia.
+     */
+    public VentanaAgenda alternarModo() {
+        return conteniendo(modo == Modo.DIA ? Modo.SEMANA : Modo.DIA, inicio);
+    }
+
+    /** Límite inferior inclusivo. */
+    public Timestamp desde() {
+        return aTimestamp(inicio);
+    }
+
+    /** Límite superior exclusivo. */
+    public Timestamp hasta() {
+        return aTimestamp(inicio.plusDays(dias()));
+    }
+
+    public String etiqueta() {
+        if (modo == Modo.DIA) return inicio.format(Formatos.FECHA);
+        return inicio.format(Formatos.FECHA) + " - " + inicio.plusDays(6).format(Formatos.FECHA);
+    }
+
+    public Modo getModo() { return modo; }
+
+    private int dias() {
+        return modo == Modo.SEMANA ? 7 : 1;
+    }
+
+    private static Timestamp aTimestamp(LocalDate dia) {
+        return new Timestamp(Date.from(dia.atStartOfDay(ZoneId.systemDefault()).toInstant()));
+    }
+}
@@ -1,6 +1,7 @@
 package com.example.veteriapp.main;
 
 import android.content.Intent;
+import android.net.Uri;
 import android.graphics.Color;
 import android.os.Bundle;
 import android.util.Log;
@@ -12,6 +13,8 @@ import android.widget.LinearLayout;
 import android.widget.TextView;
 import android.widget.Toast;
 
+import androidx.activity.result.ActivityResultLauncher;
+import androidx.activity.result.contract.ActivityResultContracts;
 import androidx.appcompat.app.ActionBarDrawerToggle;
 import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
@@ -22,17 +25,34 @@ import androidx.drawerlayout.widget.DrawerLayout;
 
 import com.example.veteriapp.R;
 import com.example.veteriapp.auth.LoginActivity;
+import com.example.veteriapp.data.AgendaDisponibilidad;
+import com.example.veteriapp.data.Clinica;
+import com.example.veteriapp.data.ExportacionCsv;
+import com.example.veteriapp.data.FlujoConsulta;
+import com.example.veteriapp.data.ImportacionCsv;
+import com.example.veteriapp.data.Mapeadores;
+import com.example.veteriapp.data.MigracionesEsquema;
+import com.example.veteriapp.data.MuroMemorial;
+import com.example.veteriapp.data.RegistroEscuchas;
+import com.example.veteriapp.data.SalasChat;
+import com.example.veteriapp.model.NoticiaFila;
 import com.example.veteriapp.utils.Logger;
 import com.example.veteriapp.utils.SoundManager;
+import com.example.veteriapp.utils.TrazaRendimiento;
+import com.google.android.gms.tasks.Task;
 import com.google.android.material.navigation.NavigationView;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseUser;
+import com.google.firebase.firestore.AggregateSource;
 import com.google.firebase.firestore.FirebaseFirestore;
 import com.google.firebase.firestore.Query;
 import com.google.firebase.firestore.QueryDocumentSnapshot;
 
 import org.checkerframework.checker.nullness.qual.NonNull;
 
+import java.util.List;
+import java.util.function.Consumer;
+
 /**
  * Clase AdminActivity.
  * 
@@ -48,22 +68,43 @@ public class AdminActivity extends AppCompatActivity implements NavigationView.O
     private TextView tvCountUsuarios, tvCountMascotas;
     private DrawerLayout drawerLayout;
     private FirebaseFirestore db;
+    private Clinica clinica; // Fijada al abrir la pantalla
     private FirebaseAuth mAuth;
 
+    // --- LISTENERS LIGADOS AL CICLO DE VIDA ---
+    private final RegistroEscuchas escuchas = new RegistroEscuchas(this, "PanelAdmin");
+
+    // --- EXPORTACIÓN: documento de destino elegido por el usuario ---
+    // El selector de documentos puede llevarse la actividad por delante: el tipo se guarda en el estado
+    private static final String ESTADO_TIPO_EXPORTACION = "tipoExportacion";
+    private ExportacionCsv.Tipo tipoExportacion;
+    private final ActivityResultLauncher<String> elegirDestinoCsv =
+            registerForActivityResult(new ActivityResultContracts.CreateDocument("text/csv"), this::exportar);
+
+    // --- IMPORTACIÓN: fichero de origen elegido por el usuario ---
+    private final ActivityResultLauncher<String[]> elegirOrigenCsv =
+            registerForActivityResult(new ActivityResultContracts.OpenDocument(), this::importar);
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
+        if (savedInstanceState != null) {
+            String tipo = savedInstanceState.getString(ESTADO_TIPO_EXPORTACION);
+            if (tipo != null) tipoExportacion = ExportacionCsv.Tipo.valueOf(tipo);
+        }
         
         // Estética Corporativa
         getWindow().setStatusBarColor(Color.parseColor("#4CAF50"));
         getWindow().getDecorView().setSystemUiVisibility(View.SYSTEM_UI_FLAG_LAYOUT_STABLE);
 
         setContentView(R.layout.activity_admin);
+        TrazaRendimiento.marcarPrimerFrame(this, "PanelAdmin");
 
         contenedorLogs = findViewById(R.id.contenedorLogs);
         tvCountUsuarios = findViewById(R.id.tvCountUsuarios);
         tvCountMascotas = findViewById(R.id.tvCountMascotas);
         db = FirebaseFirestore.getInstance();
+        clinica = Clinica.actual();
         mAuth = FirebaseAuth.getInstance();
         SoundManager.init(this);
 
@@ -95,25 +136,47 @@ public class AdminActivity extends AppCompatActivity implements NavigationView.O
         cargarEstadisticas();
         cargarLogs();
 
+        // Migraciones de datos de una sola vez (no hacen nada si ya se completaron)
+        SalasChat.migrar(db).addOnSuccessListener(n -> {
+            if (n > 0) Logger.log("Migración de chat: " + n + " mensajes trasladados a sus salas");
+        });
+        MuroMemorial.asegurarProyeccion(db).addOnSuccessListener(n -> {
+            if (n > 0) Logger.log("Memorial: " + n + " recuerdos publicados en el muro ligero");
+        });
+        // Las citas se normalizan donde están y después pasan a la clínica principal
+        MigracionesEsquema.ejecutar(db).onSuccessTask(n -> {
+            if (n > 0) Logger.log("Esquema: " + n + " documentos normalizados");
+            return Clinica.migrarCitas(db);
+        }).addOnSuccessListener(n -> {
+            if (n > 0) Logger.log("Citas: " + n + " citas trasladadas a la clínica principal");
+        });
+        Clinica.migrarAvisos(db).addOnSuccessListener(n -> {
+            if (n > 0) Logger.log("Avisos: " + n + " notificaciones de clínica trasladadas a su bandeja");
+        });
+        AgendaDisponibilidad.migrar(db).addOnSuccessListener(n -> {
+            if (n > 0) Logger.log("Agenda: " + n + " días de ocupación trasladados a la clínica principal");
+        });
+
         findViewById(R.id.btnNotificaciones).setOnClickListener(v -> startActivity(new Intent(this, NotificacionesActivity.class)));
         
-        // --- GESTIÓN DE NOTIFICACIONES GLOBALES (PUNTO ROJO) ---
+        // --- GESTIÓN DE AVISOS DE LA CLÍNICA (PUNTO ROJO) ---
         View puntoRojo = findViewById(R.id.puntoRojoNotif);
         if (puntoRojo != null) {
-            db.collection("notificaciones")
-                    .whereEqualTo("uidDestinatario", "CLINICA")
-                    .whereEqualTo("leida", false)
-                    .addSnapshotListener((value, error) -> {
-                        if (error != null) {
-                            Log.e("VeteriApp", "Error Listener Admin", error);
-                            return;
-                        }
-                        puntoRojo.setVisibility((value != null && !value.isEmpty()) ? View.VISIBLE : View.GONE);
-                        Log.d("VeteriApp", "Notif Admin - Bell: " + (value != null && !value.isEmpty()));
-                    });
+            FlujoConsulta<Boolean> avisos = FlujoConsulta.hayResultados(clinica.avisosPendientes(db), "AvisosAdmin")
+                    .sinRafagas(FlujoConsulta.VENTANA_RAFAGA_MS);
+            escuchas.escuchar(() -> avisos.observar(this, hay -> {
+                puntoRojo.setVisibility(hay ? View.VISIBLE : View.GONE);
+                Log.d("VeteriApp", "Notif Admin - Bell: " + hay);
+            }));
         }
     }
 
+    @Override
+    protected void onSaveInstanceState(@NonNull Bundle outState) {
+        super.onSaveInstanceState(outState);
+        if (tipoExportacion != null) outState.putString(ESTADO_TIPO_EXPORTACION, tipoExportacion.name());
+    }
+
     private void actualizarHeader(NavigationView nav, FirebaseUser user) {
         View headerView = nav.getHeaderView(0);
         TextView tvHeaderNombre = headerView.findViewById(R.id.tvHeaderNombre);
@@ -122,36 +185,38 @@ public class AdminActivity extends AppCompatActivity implements NavigationView.O
 
         if (ivHeaderFoto != null) ivHeaderFoto.setImageResource(R.drawable.admin_foto);
         if (tvHeaderEmail != null) tvHeaderEmail.setText(user.getEmail());
-        db.collection("users").document(user.getUid()).get().addOnSuccessListener(document -> {
+        db.collection("users").document(user.getUid()).get().addOnSuccessListener(escuchas.alExito(document -> {
             if (document.exists() && tvHeaderNombre != null) {
                 tvHeaderNombre.setText(document.getString("nombre"));
             }
-        });
+        }));
     }
 
     private void cargarEstadisticas() {
-        db.collection("users").get().addOnSuccessListener(query -> {
+        db.collection("users").get().addOnSuccessListener(escuchas.alExito(query -> {
             if (tvCountUsuarios != null) tvCountUsuarios.setText(String.valueOf(query.size()));
-        });
-        db.collection("mascotas").get().addOnSuccessListener(query -> {
-            if (tvCountMascotas != null) tvCountMascotas.setText(String.valueOf(query.size()));
-        });
+        }));
+        // Recuento agregado en el servidor: no descarga las fichas (ni sus fotos)
+        clinica.mascotas(db).count().get(AggregateSource.SERVER).addOnSuccessListener(escuchas.alExito(recuento -> {
+            if (tvCountMascotas != null) tvCountMascotas.setText(String.valueOf(recuento.getCount()));
+        }));
     }
 
     private void cargarLogs() {
         if (contenedorLogs == null) return;
-        db.collection("logs").orderBy("timestamp", Query.Direction.DESCENDING).limit(10)
-                .addSnapshotListener((value, error) -> {
-                    if (error != null || value == null) return;
-                    contenedorLogs.removeAllViews();
-                    for (QueryDocumentSnapshot doc : value) {
-                        TextView tv = new TextView(this);
-                        tv.setText("• " + doc.getString("mensaje"));
-                        tv.setTextSize(13);
-                        tv.setPadding(0, 5, 0, 5);
-                        contenedorLogs.addView(tv);
-                    }
-                });
+        FlujoConsulta<List<NoticiaFila>> logs = FlujoConsulta.filas(
+                db.collection("logs").orderBy("timestamp", Query.Direction.DESCENDING).limit(10),
+                "Logs", Mapeadores::log);
+        escuchas.escuchar(() -> logs.observar(this, filas -> {
+            contenedorLogs.removeAllViews();
+            for (NoticiaFila fila : filas) {
+                TextView tv = new TextView(this);
+                tv.setText(fila.getContenido());
+                tv.setTextSize(13);
+                tv.setPadding(0, 5, 0, 5);
+                contenedorLogs.addView(tv);
+            }
+        }));
     }
 
     private void mostrarDialogoLimpieza() {
@@ -160,20 +225,120 @@ public class AdminActivity extends AppCompatActivity implements NavigationView.O
                 .setTitle("Mantenimiento de Sistema")
                 .setItems(opciones, (dialog, which) -> {
                     SoundManager.playClick();
-                    if (which == 0) ejecutarLimpieza("mascotas", "RECHAZADA");
-                    else if (which == 1) ejecutarLimpieza("citas", "RECHAZADA");
-                    else ejecutarLimpieza("citas", "ARCHIVADA");
+                    if (which == 0) ejecutarLimpieza(clinica.mascotas(db), Clinica.MASCOTAS, "RECHAZADA");
+                    else if (which == 1) ejecutarLimpieza(clinica.citas(db), clinica.citas(db).getPath(), "RECHAZADA");
+                    else ejecutarLimpieza(clinica.citas(db), clinica.citas(db).getPath(), "ARCHIVADA");
+                })
+                .show();
+    }
+
+    // --- EXPORTACIÓN CSV ---
+
+    private void mostrarDialogoExportacion() {
+        String[] opciones = {"📤 Exportar Citas", "📤 Exportar Mascotas"};
+        new AlertDialog.Builder(this)
+                .setTitle("Exportar Datos (CSV)")
+                .setItems(opciones, (dialog, which) -> {
+                    SoundManager.playClick();
+                    tipoExportacion = which == 0 ? ExportacionCsv.Tipo.CITAS : ExportacionCsv.Tipo.MASCOTAS;
+                    elegirDestinoCsv.launch(tipoExportacion.nombreFichero());
+                })
+                .show();
+    }
+
+    /**
+     * Escribe el CSV en el documento elegido, página a página, mostrando las filas exportadas.
+     */
+    private void exportar(Uri destino) {
+        ExportacionCsv.Tipo tipo = tipoExportacion;
+        if (destino == null || tipo == null) return;
+        AlertDialog progreso = new AlertDialog.Builder(this)
+                .setTitle("Exportando " + tipo.nombreFichero())
+                .setMessage("0 filas")
+                .setCancelable(false)
+                .show();
+        Consumer<Task<Integer>> alTerminar = escuchas.peticion(t -> {
+            progreso.dismiss();
+            if (t.isSuccessful()) {
+                Toast.makeText(this, "Exportadas " + t.getResult() + " filas", Toast.LENGTH_SHORT).show();
+                Logger.log("Mantenimiento: Exportación CSV de " + tipo.nombreFichero() + " (" + t.getResult() + " filas)");
+            } else {
+                Toast.makeText(this, "No se pudo exportar (¿sin conexión?)", Toast.LENGTH_LONG).show();
+            }
+        });
+        ExportacionCsv.aUri(this, db, clinica, tipo, destino, filas -> {
+            if (!isDestroyed() && progreso.isShowing()) progreso.setMessage(filas + " filas");
+        }).addOnCompleteListener(alTerminar::accept);
+    }
+
+    // --- IMPORTACIÓN CSV ---
+
+    private void mostrarDialogoImportacion() {
+        new AlertDialog.Builder(this)
+                .setTitle("Importar Mascotas (CSV)")
+                .setMessage("Columnas: nombre, especie, raza, genero, fechaNacimiento, peso, chip, estado, emailDueno.\n\n"
+                        + "Cada dueño debe tener ya cuenta con ese email. Si la importación se interrumpe, "
+                        + "vuelve a elegir el mismo fichero para continuar donde se quedó.")
+                .setPositiveButton("Elegir fichero", (d, w) -> {
+                    SoundManager.playClick();
+                    elegirOrigenCsv.launch(new String[]{"text/csv", "text/comma-separated-values", "text/plain"});
                 })
+                .setNegativeButton("Cancelar", null)
                 .show();
     }
 
-    private void ejecutarLimpieza(String coleccion, String valor) {
-        db.collection(coleccion).whereEqualTo("estado", valor).get().addOnSuccessListener(query -> {
+    /**
+     * Importa el CSV elegido por lotes, mostrando el avance confirmado y, al final, los rechazos.
+     */
+    private void importar(Uri origen) {
+        if (origen == null) return;
+        AlertDialog progreso = new AlertDialog.Builder(this)
+                .setTitle("Importando mascotas")
+                .setMessage("Leyendo fichero...")
+                .setCancelable(false)
+                .show();
+        Consumer<Task<ImportacionCsv.Resultado>> alTerminar = escuchas.peticion(t -> {
+            progreso.dismiss();
+            if (!t.isSuccessful()) {
+                String motivo = t.getException() != null ? t.getException().getMessage() : null;
+                new AlertDialog.Builder(this)
+                        .setTitle("Importación interrumpida")
+                        .setMessage((motivo != null ? motivo : "Error desconocido")
+                                + "\n\nLo ya confirmado se conserva: vuelve a importar el mismo fichero para continuar.")
+                        .setPositiveButton("Aceptar", null)
+                        .show();
+                return;
+            }
+            ImportacionCsv.Resultado r = t.getResult();
+            StringBuilder resumen = new StringBuilder()
+                    .append("Importadas: ").append(r.getImportadas())
+                    .append("\nRechazadas: ").append(r.getRechazadas());
+            if (r.isReanudada()) resumen.append("\n(continuación de una importación anterior)");
+            for (String error : r.getErrores()) resumen.append("\n• ").append(error);
+            new AlertDialog.Builder(this)
+                    .setTitle("Importación completada")
+                    .setMessage(resumen)
+                    .setPositiveButton("Aceptar", null)
+                    .show();
+            Logger.log("Mantenimiento: Importación CSV de mascotas (" + r.getImportadas() + " altas, "
+                    + r.getRechazadas() + " rechazadas)");
+            cargarEstadisticas();
+        });
+        ImportacionCsv.mascotas(this, db, clinica, origen, p -> {
+            if (!isDestroyed() && progreso.isShowing()) {
+                progreso.setMessage(p.getFilas() + " filas procesadas\n" + p.getImportadas() + " importadas, "
+                        + p.getRechazadas() + " rechazadas");
+            }
+        }).addOnCompleteListener(alTerminar::accept);
+    }
+
+    private void ejecutarLimpieza(Query origen, String nombre, String valor) {
+        origen.whereEqualTo("estado", valor).get().addOnSuccessListener(query -> {
             com.google.firebase.firestore.WriteBatch batch = db.batch();
             for (QueryDocumentSnapshot doc : query) batch.delete(doc.getReference());
             batch.commit().addOnSuccessListener(aVoid -> {
                 Toast.makeText(this, "Limpieza completada", Toast.LENGTH_SHORT).show();
-                Logger.log("Mantenimiento: Limpieza de " + coleccion);
+                Logger.log("Mantenimiento: Limpieza de " + nombre);
                 cargarEstadisticas();
             });
         });
@@ -188,6 +353,8 @@ public class AdminActivity extends AppCompatActivity implements NavigationView.O
             startActivity(new Intent(this, LoginActivity.class));
             finish();
         } else if (id == R.id.nav_limpieza_datos) mostrarDialogoLimpieza();
+        else if (id == R.id.nav_exportar_datos) mostrarDialogoExportacion();
+        else if (id == R.id.nav_importar_datos) mostrarDialogoImportacion();
         else if (id == R.id.nav_gestion_roles) startActivity(new Intent(this, GestionRolesActivity.class));
         else if (id == R.id.nav_memorial) startActivity(new Intent(this, MemorialActivity.class));
         else if (id == R.id.nav_ajustes) mostrarDialogoAjustes();
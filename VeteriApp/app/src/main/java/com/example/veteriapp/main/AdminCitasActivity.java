@@ -2,6 +2,9 @@ package com.example.veteriapp.main;
 
 import android.graphics.Color;
 import android.os.Bundle;
+import android.view.View;
+import android.widget.Button;
+import android.widget.EditText;
 import android.widget.LinearLayout;
 import android.widget.TextView;
 import android.widget.Toast;
@@ -11,13 +14,23 @@ import androidx.appcompat.app.AppCompatActivity;
 import androidx.appcompat.widget.Toolbar;
 
 import com.example.veteriapp.R;
+import com.example.veteriapp.data.AgendaDisponibilidad;
+import com.example.veteriapp.data.Clinica;
+import com.example.veteriapp.data.EscrituraVersionada;
+import com.example.veteriapp.data.Mapeadores;
+import com.example.veteriapp.data.MapeoSnapshots;
+import com.example.veteriapp.data.MutacionesOptimistas;
+import com.example.veteriapp.data.TransicionesEstado;
+import com.example.veteriapp.data.VentanaAgenda;
+import com.example.veteriapp.model.CitaFila;
 import com.example.veteriapp.model.EstadoCita;
-import com.google.firebase.Timestamp;
 import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.ListenerRegistration;
 import com.google.firebase.firestore.Query;
-import com.google.firebase.firestore.QueryDocumentSnapshot;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -26,6 +39,9 @@ import java.util.Map;
  * Interfaz de Gestión Clínica de la Agenda.
  * Centraliza la supervisión de solicitudes de consulta, permitiendo al
  * veterinario confirmar, rechazar o archivar las citas registradas.
+ * La agenda se muestra por ventanas de un día o una semana: solo se escucha
+ * en tiempo real el rango visible, se precargan las ventanas contiguas y los
+ * cambios se aplican tarjeta a tarjeta sin recargar la lista.
  * 
  * @author Juan Manuel Moreno Sánchez
  * @version 1.0 VeteriApp Release
@@ -34,9 +50,19 @@ public class AdminCitasActivity extends AppCompatActivity {
 
 	// --- VARIABLES DE LA INTERFAZ ---
     private LinearLayout contenedorCitas;
+    private TextView tvRango;
+    private Button btnModo;
+    private TextView tvVacio;
 
     // --- INSTANCIAS DE FIREBASE ---
     private FirebaseFirestore db;
+    private Clinica clinica; // Fijada al abrir la pantalla
+    private ListenerRegistration escuchaVentana;
+
+    // --- ESTADO DE LA AGENDA ---
+    private VentanaAgenda ventana = VentanaAgenda.hoy(VentanaAgenda.Modo.DIA);
+    private final Map<String, View> tarjetas = new HashMap<>();
+    private MutacionesOptimistas<CitaFila> mutaciones;
 
     /**
      * Inicialización del gestor de agenda.
@@ -55,69 +81,122 @@ public class AdminCitasActivity extends AppCompatActivity {
         setContentView(R.layout.activity_admin_citas);
 
         db = FirebaseFirestore.getInstance();
+        clinica = Clinica.actual();
         contenedorCitas = findViewById(R.id.contenedorCitas);
+        tvRango = findViewById(R.id.tvRangoAgenda);
+        btnModo = findViewById(R.id.btnModoAgenda);
+
+        tvVacio = new TextView(this);
+        tvVacio.setText("No hay citas en la agenda.");
+        mutaciones = new MutacionesOptimistas<>(this, this::repintarTarjeta);
 
         // Configuración de Toolbar
         Toolbar toolbar = findViewById(R.id.toolbarAdminCitas);
         setSupportActionBar(toolbar);
         if (getSupportActionBar() != null) getSupportActionBar().setDisplayShowTitleEnabled(false);
 
-        cargarCitasPendientes();
+        // Navegación entre ventanas
+        findViewById(R.id.btnVentanaAnterior).setOnClickListener(v -> mostrarVentana(ventana.anterior()));
+        findViewById(R.id.btnVentanaSiguiente).setOnClickListener(v -> mostrarVentana(ventana.siguiente()));
+        btnModo.setOnClickListener(v -> mostrarVentana(ventana.alternarModo()));
+
+        mostrarVentana(ventana);
+    }
+
+    /**
+     * Retira la escucha activa al salir de la pantalla.
+     */
+    @Override
+    protected void onDestroy() {
+        if (escuchaVentana != null) escuchaVentana.remove();
+        super.onDestroy();
     }
 
     /**
-     * Recupera y ordena cronológicamente las consultas médicas registradas.
+     * Cambia la ventana visible: sustituye la escucha en tiempo real por la del nuevo
+     * rango y calienta la caché local con las ventanas contiguas.
      */
-    private void cargarCitasPendientes() {
-        if (contenedorCitas == null) return;
+    private void mostrarVentana(VentanaAgenda nueva) {
+        ventana = nueva;
+        tvRango.setText(ventana.etiqueta());
+        btnModo.setText(ventana.getModo() == VentanaAgenda.Modo.DIA ? "Semana" : "Día");
+
+        if (escuchaVentana != null) escuchaVentana.remove();
+        tarjetas.clear();
+        mutaciones.limpiar();
         contenedorCitas.removeAllViews();
 
-        db.collection("citas")
-                .orderBy("fechaHora", Query.Direction.ASCENDING)
-                .get()
-                .addOnCompleteListener(task -> {
-                    if (task.isSuccessful() && !task.getResult().isEmpty()) {
-                        for (QueryDocumentSnapshot doc : task.getResult()) {
-                            String idDoc = doc.getId();
-                            
-                            // Lectura de identificador robusto
-                            Object idObj = doc.get("id_cita") != null ? doc.get("id_cita") : doc.get("id");
-                            String idNumStr = (idObj != null) ? idObj.toString() : "---";
-                            
-                            String d = doc.getString("nombreUsuario");
-                            String m = doc.getString("nombreMascota");
-                            String t = doc.getString("tipo") != null ? doc.getString("tipo") : "General";
-                            String mo = doc.getString("motivo");
-                            String est = doc.getString("estado");
-                            String uidD = doc.getString("uidUsuario");
-
-                            Timestamp ts = doc.getTimestamp("fechaHora");
-                            String f = (ts != null) ? new java.text.SimpleDateFormat("dd/MM/yyyy HH:mm").format(ts.toDate()) : "---";
-
-                            crearTarjetaCita(idDoc, idNumStr, d, m, t, mo, f, est, uidD);
-                        }
-                    } else {
-                        TextView tv = new TextView(this);
-                        tv.setText("No hay citas en la agenda.");
-                        contenedorCitas.addView(tv);
-                    }
+        // El coste depende solo del rango visible, no del histórico de la clínica
+        // Los snapshots de una ventana ya abandonada que estuvieran en cola se descartan
+        escuchaVentana = MapeoSnapshots.escucharCambios(this, consultaVentana(nueva),
+                "AdminCitas", Mapeadores::citaAgenda, cambios -> {
+                    if (ventana == nueva) aplicarCambios(cambios);
                 });
+
+        // Precarga: al navegar, la nueva escucha se sirve primero desde caché
+        consultaVentana(ventana.anterior()).get();
+        consultaVentana(ventana.siguiente()).get();
+    }
+
+    private Query consultaVentana(VentanaAgenda v) {
+        return clinica.citas(db)
+                .whereGreaterThanOrEqualTo("fechaHora", v.desde())
+                .whereLessThan("fechaHora", v.hasta())
+                .orderBy("fechaHora", Query.Direction.ASCENDING);
+    }
+
+    /**
+     * Aplica de forma incremental los cambios del snapshot sobre las tarjetas existentes.
+     */
+    private void aplicarCambios(List<MapeoSnapshots.Cambio<CitaFila>> cambios) {
+        contenedorCitas.removeView(tvVacio);
+        for (MapeoSnapshots.Cambio<CitaFila> cambio : cambios) {
+            View anterior = tarjetas.remove(cambio.getIdDoc());
+            if (anterior != null) contenedorCitas.removeView(anterior);
+            if (cambio.getFila() == null) { // Baja
+                mutaciones.olvidar(cambio.getIdDoc());
+                continue;
+            }
+
+            mutaciones.registrarConfirmada(cambio.getIdDoc(), cambio.getFila());
+            View tarjeta = crearTarjetaCita(cambio.getFila());
+            int indice = Math.min(cambio.getNuevoIndice(), contenedorCitas.getChildCount());
+            contenedorCitas.addView(tarjeta, indice);
+            tarjetas.put(cambio.getIdDoc(), tarjeta);
+        }
+        if (tarjetas.isEmpty()) contenedorCitas.addView(tvVacio);
+    }
+
+    /**
+     * Sustituye en su sitio la tarjeta de una cita (versión optimista, confirmada o revertida).
+     * Una fila nula oculta la tarjeta mientras se resuelve su borrado.
+     */
+    private void repintarTarjeta(String idDoc, CitaFila fila) {
+        View vieja = tarjetas.get(idDoc);
+        if (vieja == null) return;
+        if (fila == null) {
+            vieja.setVisibility(View.GONE);
+            return;
+        }
+        View nueva = crearTarjetaCita(fila);
+        if (mutaciones.estaPendiente(idDoc)) nueva.setAlpha(0.5f);
+        int indice = contenedorCitas.indexOfChild(vieja);
+        contenedorCitas.removeViewAt(indice);
+        contenedorCitas.addView(nueva, indice);
+        tarjetas.put(idDoc, nueva);
     }
 
     /**
      * Construye dinámicamente la representación visual de cada cita en la agenda.
      */
-    private void crearTarjetaCita(String idDoc, String idNum, String dueno, String mascota, String tipo, String motivo, String fecha, String estado, String uidD) {
+    private View crearTarjetaCita(CitaFila fila) {
         LinearLayout tarjeta = new LinearLayout(this);
         tarjeta.setOrientation(LinearLayout.VERTICAL);
         tarjeta.setPadding(30, 30, 30, 30);
         tarjeta.setBackgroundResource(R.drawable.bg_notif_item);
         
-        // Identificación visual por estados
-        if (EstadoCita.PENDIENTE.name().equals(estado)) tarjeta.setBackgroundColor(Color.parseColor("#FFF59D"));
-        else if (EstadoCita.CONFIRMADA.name().equals(estado)) tarjeta.setBackgroundColor(Color.parseColor("#A5D6A7"));
-        else if (EstadoCita.ARCHIVADA.name().equals(estado)) tarjeta.setBackgroundColor(Color.parseColor("#E0E0E0"));
-        else tarjeta.setBackgroundColor(Color.parseColor("#EF9A9A"));
+        // Identificación visual por estados (color resuelto en el mapeo)
+        tarjeta.setBackgroundColor(fila.getColorFondo());
 
         LinearLayout.LayoutParams params = new LinearLayout.LayoutParams(
                 LinearLayout.LayoutParams.MATCH_PARENT, LinearLayout.LayoutParams.WRAP_CONTENT);
@@ -125,71 +204,89 @@ public class AdminCitasActivity extends AppCompatActivity {
         tarjeta.setLayoutParams(params);
 
         TextView tv = new TextView(this);
-        tv.setText("📌 Cita #" + idNum + " [" + tipo + "]\n👤 " + dueno + " | 🐾 " + mascota + "\n📅 " + fecha + "\n📝 " + motivo);
+        tv.setText(fila.getTexto());
         tv.setTextSize(16);
         tv.setTextColor(Color.BLACK);
         tarjeta.addView(tv);
 
-        tarjeta.setOnClickListener(v -> mostrarMenuOpciones(idDoc, uidD, mascota, estado));
-        contenedorCitas.addView(tarjeta);
+        tarjeta.setOnClickListener(v -> mostrarMenuOpciones(fila));
+        return tarjeta;
     }
 
     /**
      * Despliega acciones administrativas según el estado de progresión de la cita.
+     * Las opciones se derivan de la máquina de estados de EstadoCita.
      */
-    private void mostrarMenuOpciones(String idDoc, String uidD, String mascota, String estadoActual) {
-        String[] opciones;
-        if (EstadoCita.PENDIENTE.name().equals(estadoActual)) {
-            opciones = new String[]{"✅ Confirmar Cita", "❌ Rechazar Cita", "🗑️ Eliminar Registro"};
-        } else if (EstadoCita.CONFIRMADA.name().equals(estadoActual)) {
-            opciones = new String[]{"📂 Archivar Cita", "❌ Cancelar Cita", "🗑️ Eliminar Registro"};
-        } else {
-            opciones = new String[]{"♻️ Volver a Pendiente", "🗑️ Eliminar Registro"};
-        }
+    private void mostrarMenuOpciones(CitaFila fila) {
+        EstadoCita actual = EstadoCita.desde(fila.getEstado());
+        List<EstadoCita> destinos = (actual != null) ? new ArrayList<>(actual.siguientes()) : new ArrayList<>();
+
+        String[] opciones = new String[destinos.size() + 2];
+        for (int i = 0; i < destinos.size(); i++) opciones[i] = destinos.get(i).getAccion();
+        opciones[destinos.size()] = "📝 Nota del Veterinario";
+        opciones[destinos.size() + 1] = "🗑️ Eliminar Registro";
 
         new AlertDialog.Builder(this)
                 .setTitle("Gestión de Agenda")
                 .setItems(opciones, (dialog, which) -> {
-                    if (EstadoCita.PENDIENTE.name().equals(estadoActual)) {
-                        if (which == 0) actualizarCitaEnFirebase(idDoc, EstadoCita.CONFIRMADA.name(), uidD, mascota);
-                        else if (which == 1) actualizarCitaEnFirebase(idDoc, EstadoCita.RECHAZADA.name(), uidD, mascota);
-                        else eliminarCita(idDoc);
-                    } else if (EstadoCita.CONFIRMADA.name().equals(estadoActual)) {
-                        if (which == 0) actualizarCitaEnFirebase(idDoc, EstadoCita.ARCHIVADA.name(), uidD, mascota);
-                        else if (which == 1) actualizarCitaEnFirebase(idDoc, EstadoCita.RECHAZADA.name(), uidD, mascota);
-                        else eliminarCita(idDoc);
-                    } else {
-                        if (which == 0) actualizarCitaEnFirebase(idDoc, EstadoCita.PENDIENTE.name(), uidD, mascota);
-                        else eliminarCita(idDoc);
-                    }
+                    if (which < destinos.size()) actualizarCitaEnFirebase(fila, actual, destinos.get(which));
+                    else if (which == destinos.size()) editarNota(fila);
+                    else eliminarCita(fila.getIdDoc());
                 }).show();
     }
 
+    /**
+     * Editor de la nota clínica. La escritura es compare-and-set sobre la versión
+     * mostrada, por lo que nunca sobrescribe a ciegas la nota de otro veterinario.
+     */
+    private void editarNota(CitaFila fila) {
+        EditText input = new EditText(this);
+        input.setText(fila.getNotaVeterinario());
+        new AlertDialog.Builder(this)
+                .setTitle("Nota del Veterinario")
+                .setView(input)
+                .setPositiveButton("Guardar", (d, w) -> {
+                    String nota = input.getText().toString().trim();
+                    mutaciones.modificar(fila.getIdDoc(), Mapeadores.citaConNota(fila, nota),
+                            () -> TransicionesEstado.guardarNotaCita(db, clinica, fila.getIdDoc(), fila.getVersion(),
+                                    fila.getNotaVeterinario(), nota),
+                            this::avisarFallo);
+                })
+                .setNegativeButton("Cancelar", null)
+                .show();
+    }
+
     /**
      * Purga física del registro de cita en Firestore.
+     * La tarjeta se oculta al instante y reaparece si el borrado falla.
      */
     private void eliminarCita(String id) {
-        db.collection("citas").document(id).delete().addOnSuccessListener(aVoid -> {
-            Toast.makeText(this, "Registro eliminado", Toast.LENGTH_SHORT).show();
-            cargarCitasPendientes();
-        });
+        mutaciones.eliminar(id, () -> AgendaDisponibilidad.eliminarCita(db, clinica, id),
+                e -> Toast.makeText(this, "No se pudo eliminar la cita", Toast.LENGTH_SHORT).show());
     }
 
     /**
-     * Sincroniza el cambio de estado en la nube y notifica al cliente final.
+     * Confirma en un solo commit el cambio de estado, el aviso al cliente y la auditoría.
+     * La tarjeta refleja el nuevo estado al instante y se revierte si el commit falla.
      */
-    private void actualizarCitaEnFirebase(String idDoc, String nuevoEstado, String uidD, String mascota) {
-        db.collection("citas").document(idDoc).update("estado", nuevoEstado).addOnSuccessListener(aVoid -> {
-            Toast.makeText(this, "Estado actualizado a " + nuevoEstado, Toast.LENGTH_SHORT).show();
-            
-            Map<String, Object> notif = new HashMap<>();
-            notif.put("uidDestinatario", uidD);
-            notif.put("mensaje", "Estado de cita para " + mascota + ": " + nuevoEstado.toLowerCase());
-            notif.put("leida", false);
-            notif.put("timestamp", Timestamp.now());
-            db.collection("notificaciones").add(notif);
-
-            cargarCitasPendientes();
-        });
+    private void actualizarCitaEnFirebase(CitaFila fila, EstadoCita actual, EstadoCita nuevoEstado) {
+        mutaciones.modificar(fila.getIdDoc(), Mapeadores.citaConEstado(fila, nuevoEstado.name()),
+                () -> TransicionesEstado.transicionarCita(db, clinica, fila.getIdDoc(), fila.getVersion(), actual, nuevoEstado,
+                        fila.getUidDueno(), fila.getNombreMascota()),
+                this::avisarFallo);
+    }
+
+    /**
+     * Traduce el motivo del fallo de una escritura a un aviso para el veterinario.
+     * La tarjeta ya ha sido revertida y la escucha de la ventana trae la versión vigente.
+     */
+    private void avisarFallo(Exception e) {
+        if (e instanceof AgendaDisponibilidad.FranjaOcupadaException) {
+            Toast.makeText(this, "La franja de esta cita ya está ocupada por otra", Toast.LENGTH_LONG).show();
+        } else if (e instanceof EscrituraVersionada.ConflictoVersionException) {
+            Toast.makeText(this, "Otro veterinario acaba de modificar esta cita. Revisa los cambios.", Toast.LENGTH_LONG).show();
+        } else {
+            Toast.makeText(this, "No se pudo actualizar la cita", Toast.LENGTH_SHORT).show();
+        }
     }
-}
\ No newline at end of file
+}
@@ -5,25 +5,44 @@ import androidx.appcompat.app.AppCompatActivity;
 import androidx.appcompat.widget.Toolbar;
 
 import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
-import android.graphics.Color;
 import android.os.Bundle;
-import android.util.Base64;
+import android.text.Editable;
+import android.text.TextWatcher;
 import android.view.Gravity;
 import android.view.View;
+import android.widget.EditText;
 import android.widget.ImageView;
 import android.widget.LinearLayout;
 import android.widget.TextView;
 import android.widget.Toast;
 
 import com.example.veteriapp.R;
-import com.example.veteriapp.utils.Logger;
+import com.example.veteriapp.data.Clinica;
+import com.example.veteriapp.data.ColaEscrituras;
+import com.example.veteriapp.data.EscrituraVersionada;
+import com.example.veteriapp.data.IndiceBusqueda;
+import com.example.veteriapp.data.Mapeadores;
+import com.example.veteriapp.data.MapeoSnapshots;
+import com.example.veteriapp.data.MuroMemorial;
+import com.example.veteriapp.data.MutacionesOptimistas;
+import com.example.veteriapp.data.PresupuestoMemoria;
+import com.example.veteriapp.data.RegistroEscuchas;
+import com.example.veteriapp.data.TransicionesEstado;
+import com.example.veteriapp.model.EstadoMascota;
+import com.example.veteriapp.model.MascotaFila;
+import com.example.veteriapp.model.UsuarioFila;
+import com.example.veteriapp.utils.MetricasFrames;
+import com.google.firebase.firestore.DocumentChange;
 import com.google.firebase.firestore.FirebaseFirestore;
-import com.google.firebase.firestore.Query;
-import com.google.firebase.firestore.QueryDocumentSnapshot;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * Clase AdminMascotasActivity.
@@ -39,9 +58,31 @@ public class AdminMascotasActivity extends AppCompatActivity {
 
 	// --- VARIABLES DE LA INTERFAZ ---
     private LinearLayout contenedorPacientes;
+    private EditText etBuscarPacientes;
     
     // --- INSTANCIAS DE FIREBASE ---
     private FirebaseFirestore db;
+    private Clinica clinica; // Fijada al abrir la pantalla
+
+    // --- ESTADO LOCAL DEL CENSO ---
+    private static final long BYTES_TARJETA = 2 * 1024; // vistas de una ficha, sin su miniatura
+    private final RegistroEscuchas escuchas = new RegistroEscuchas(this, "AdminMascotas");
+    private final Map<String, View> tarjetas = new HashMap<>();
+    private MutacionesOptimistas<MascotaFila> mutaciones;
+
+    // --- BÚSQUEDA LOCAL ---
+    // Cada paciente se indexa junto con el nombre y el email de su dueño: un término del
+    // dueño lleva directamente a sus pacientes, sin cruzar índices al consultar.
+    // El cruce se mantiene desde el hilo de mapeo y desde la interfaz, siempre bajo "censo".
+    // Ante presión crítica el índice se libera y se reconstruye con la siguiente búsqueda.
+    private final IndiceBusqueda indice = new IndiceBusqueda();
+    private boolean indiceLiberado; // bajo "censo"
+    private final Object censo = new Object();
+    private final Map<String, MascotaFila> pacientes = new HashMap<>();
+    private final Map<String, UsuarioFila> duenos = new HashMap<>();
+    private final Map<String, Set<String>> pacientesDeDueno = new HashMap<>();
+    private final Set<String> ocultasPorBorrado = new HashSet<>();
+    private Set<String> filtradas; // Coincidencias del filtro aplicado (null: sin filtro)
 
     /**
      * Inicializa la actividad de revisión de pacientes.
@@ -60,140 +101,342 @@ public class AdminMascotasActivity extends AppCompatActivity {
         setContentView(R.layout.activity_admin_mascotas);
 
         db = FirebaseFirestore.getInstance();
+        clinica = Clinica.actual();
         contenedorPacientes = findViewById(R.id.contenedorPacientes);
+        mutaciones = new MutacionesOptimistas<>(this, this::repintarTarjeta);
+        PresupuestoMemoria.get().registrar(this, "AdminMascotas", PresupuestoMemoria.Nivel.VISIBLE,
+                new PresupuestoMemoria.Consumidor() {
+                    @Override
+                    public long bytesEnUso() {
+                        return bytesCenso();
+                    }
+
+                    @Override
+                    public void recortar(float conservar) {
+                        // Las fichas son lo que se ve: solo se cede el índice, que se puede reconstruir
+                        if (conservar < 1f) liberarIndice();
+                    }
+                });
+
+        etBuscarPacientes = findViewById(R.id.etBuscarPacientes);
+        etBuscarPacientes.addTextChangedListener(new TextWatcher() {
+            @Override public void beforeTextChanged(CharSequence s, int start, int count, int after) {}
+            @Override public void onTextChanged(CharSequence s, int start, int before, int count) {}
+            @Override public void afterTextChanged(Editable s) { aplicarFiltro(); }
+        });
 
         // Configuración de Toolbar
         Toolbar toolbar = findViewById(R.id.toolbarAdminMascotas);
         setSupportActionBar(toolbar);
         if (getSupportActionBar() != null) getSupportActionBar().setDisplayShowTitleEnabled(false);
 
-        cargarPacientes();
+        cargarDuenos();
+        escucharPacientes();
     }
 
     /**
-     * Recupera el censo médico completo sin filtros de ordenación conflictivos.
+     * Escucha el censo médico de la clínica sin filtros de ordenación conflictivos.
+     * Tras la primera carga solo llegan los pacientes que cambian, y cada uno actualiza su
+     * ficha y su entrada del índice sin reconstruir nada. La extracción de campos, la
+     * decodificación de fotos y el indexado se realizan fuera del hilo principal.
      */
-    private void cargarPacientes() {
+    private void escucharPacientes() {
         if (contenedorPacientes == null) return;
-        contenedorPacientes.removeAllViews();
-
-        db.collection("mascotas").get().addOnCompleteListener(task -> {
-            if (task.isSuccessful() && task.getResult() != null) {
-                for (QueryDocumentSnapshot document : task.getResult()) {
-                    String idDoc = document.getId();
-                    
-                    Object idObj = document.get("id_mascota") != null ? document.get("id_mascota") : document.get("id");
-                    String idNumStr = (idObj != null) ? idObj.toString() : "---";
-                    
-                    String nombre = document.getString("nombre");
-                    String especie = document.getString("especie");
-                    String raza = document.getString("raza");
-                    String genero = document.getString("genero") != null ? document.getString("genero") : "---";
-                    String estado = document.getString("estado");
-                    String fotoBase64 = document.getString("fotoBase64");
-                    
-                    Object udObj = document.get("uidDueno");
-                    String udStr = (udObj != null) ? udObj.toString() : "";
-
-                    crearTarjetaMascota(idDoc, idNumStr, nombre, especie, raza, genero, estado, fotoBase64, udStr);
+        escuchas.escuchar(() -> MapeoSnapshots.escucharCambios(this, clinica.mascotas(db), "AdminMascotas",
+                doc -> {
+                    MascotaFila fila = Mapeadores.mascotaCenso(doc);
+                    indexarPaciente(fila);
+                    return fila;
+                },
+                this::aplicarCambios));
+    }
+
+    /**
+     * Aplica altas, modificaciones y bajas sobre las fichas existentes.
+     */
+    private void aplicarCambios(List<MapeoSnapshots.Cambio<MascotaFila>> cambios) {
+        MetricasFrames.medir(this, MetricasFrames.CONSTRUCCION_LISTA, () -> {
+            for (MapeoSnapshots.Cambio<MascotaFila> c : cambios) {
+                String idDoc = c.getIdDoc();
+                View existente = tarjetas.get(idDoc);
+                if (c.getTipo() == DocumentChange.Type.REMOVED || c.getFila() == null) {
+                    if (existente != null) contenedorPacientes.removeView(existente);
+                    tarjetas.remove(idDoc);
+                    ocultasPorBorrado.remove(idDoc);
+                    mutaciones.olvidar(idDoc);
+                    quitarPaciente(idDoc);
+                    continue;
+                }
+                mutaciones.registrarConfirmada(idDoc, c.getFila());
+                if (existente == null) {
+                    View tarjeta = crearTarjetaMascota(c.getFila());
+                    tarjeta.setVisibility(visible(idDoc) ? View.VISIBLE : View.GONE);
+                    contenedorPacientes.addView(tarjeta);
+                    tarjetas.put(idDoc, tarjeta);
+                } else if (!mutaciones.estaPendiente(idDoc) && !mismaFicha(existente, c.getFila())) {
+                    // Al reanudar la escucha todo llega de nuevo como alta: solo se repinta lo que cambió
+                    sustituirTarjeta(idDoc, existente, c.getFila());
                 }
             }
+            aplicarFiltro();
         });
     }
 
+    /**
+     * Indexa los dueños (nombre y email) en las entradas de sus pacientes, para que la
+     * búsqueda también los encuentre por su dueño.
+     */
+    private void cargarDuenos() {
+        MapeoSnapshots.cargar(this, db.collection("users").whereEqualTo("rol", "DUEÑO").get(), "AdminMascotasDuenos",
+                doc -> {
+                    UsuarioFila dueno = Mapeadores.usuarioCliente(doc);
+                    if (dueno != null) indexarDueno(dueno);
+                    return dueno;
+                },
+                duenos -> {
+                    if (duenos != null) aplicarFiltro();
+                });
+    }
+
+    // --- ÍNDICE ---
+
+    private void indexarPaciente(MascotaFila fila) {
+        if (fila == null) return;
+        synchronized (censo) {
+            String idDoc = fila.getIdDoc();
+            MascotaFila anterior = pacientes.put(idDoc, fila);
+            if (anterior != null && !anterior.getUidDueno().equals(fila.getUidDueno())) {
+                desvincular(idDoc, anterior.getUidDueno());
+            }
+            Set<String> suyos = pacientesDeDueno.get(fila.getUidDueno());
+            if (suyos == null) {
+                suyos = new HashSet<>();
+                pacientesDeDueno.put(fila.getUidDueno(), suyos);
+            }
+            suyos.add(idDoc);
+            indexar(fila);
+        }
+    }
+
+    private void quitarPaciente(String idDoc) {
+        synchronized (censo) {
+            MascotaFila anterior = pacientes.remove(idDoc);
+            if (anterior != null) desvincular(idDoc, anterior.getUidDueno());
+            indice.eliminar(idDoc);
+        }
+    }
+
+    /**
+     * Reindexa solo los pacientes del dueño, que ya lo estaban sin sus datos.
+     */
+    private void indexarDueno(UsuarioFila dueno) {
+        synchronized (censo) {
+            duenos.put(dueno.getUid(), dueno);
+            Set<String> suyos = pacientesDeDueno.get(dueno.getUid());
+            if (suyos != null) for (String idDoc : suyos) indexar(pacientes.get(idDoc));
+        }
+    }
+
+    private void indexar(MascotaFila fila) {
+        if (indiceLiberado) return;
+        UsuarioFila dueno = duenos.get(fila.getUidDueno());
+        indice.indexar(fila.getIdDoc(), fila.getNombre(), fila.getEspecie(), fila.getRaza(), fila.getChip(),
+                dueno != null ? dueno.getNombre() : null, dueno != null ? dueno.getEmail() : null);
+    }
+
+    private void liberarIndice() {
+        synchronized (censo) {
+            indice.limpiar();
+            indiceLiberado = true;
+        }
+    }
+
+    /**
+     * Vuelve a indexar los pacientes en memoria si el índice se liberó por falta de memoria.
+     */
+    private void asegurarIndice() {
+        synchronized (censo) {
+            if (!indiceLiberado) return;
+            indiceLiberado = false;
+            for (MascotaFila fila : pacientes.values()) indexar(fila);
+        }
+    }
+
+    private void desvincular(String idDoc, String uidDueno) {
+        Set<String> suyos = pacientesDeDueno.get(uidDueno);
+        if (suyos != null && suyos.remove(idDoc) && suyos.isEmpty()) pacientesDeDueno.remove(uidDueno);
+    }
+
+    // --- BÚSQUEDA ---
+
+    /**
+     * Muestra solo las fichas que contienen todos los términos buscados, ya sea en los datos
+     * del paciente o en los de su dueño. La consulta se resuelve contra el índice y solo se
+     * tocan las fichas que entran o salen respecto al filtro anterior.
+     */
+    private void aplicarFiltro() {
+        if (etBuscarPacientes == null) return;
+        String consulta = etBuscarPacientes.getText().toString();
+        if (!IndiceBusqueda.terminos(consulta).isEmpty()) asegurarIndice();
+        Set<String> coincidencias = indice.buscar(consulta);
+        if (coincidencias == null) {
+            // Sin filtro: vuelven las que el filtro anterior ocultaba
+            if (filtradas != null) for (String idDoc : tarjetas.keySet()) mostrar(idDoc, true);
+        } else {
+            for (String idDoc : filtradas != null ? filtradas : tarjetas.keySet()) {
+                if (!coincidencias.contains(idDoc)) mostrar(idDoc, false);
+            }
+            for (String idDoc : coincidencias) mostrar(idDoc, true);
+        }
+        filtradas = coincidencias;
+    }
+
+    private void mostrar(String idDoc, boolean coincide) {
+        View tarjeta = tarjetas.get(idDoc);
+        if (tarjeta == null) return;
+        tarjeta.setVisibility(coincide && !ocultasPorBorrado.contains(idDoc) ? View.VISIBLE : View.GONE);
+    }
+
+    /**
+     * Visibilidad de una ficha según el filtro vigente (al crearla o sustituirla).
+     */
+    private boolean visible(String idDoc) {
+        return !ocultasPorBorrado.contains(idDoc) && (filtradas == null || filtradas.contains(idDoc));
+    }
+
+    /**
+     * Sustituye en su sitio la ficha de un paciente (versión optimista, confirmada o revertida).
+     * Una fila nula oculta la ficha mientras se resuelve su borrado.
+     */
+    private void repintarTarjeta(String idDoc, MascotaFila fila) {
+        View vieja = tarjetas.get(idDoc);
+        if (vieja == null) return;
+        if (fila == null) {
+            ocultasPorBorrado.add(idDoc);
+            vieja.setVisibility(View.GONE);
+            return;
+        }
+        ocultasPorBorrado.remove(idDoc);
+        // El índice se mantiene al día con cada cambio, sin reconstruirlo
+        indexarPaciente(fila);
+        sustituirTarjeta(idDoc, vieja, fila);
+        aplicarFiltro();
+    }
+
+    private void sustituirTarjeta(String idDoc, View vieja, MascotaFila fila) {
+        View nueva = crearTarjetaMascota(fila);
+        if (mutaciones.estaPendiente(idDoc)) nueva.setAlpha(0.5f);
+        nueva.setVisibility(visible(idDoc) ? View.VISIBLE : View.GONE);
+        int indice = contenedorPacientes.indexOfChild(vieja);
+        contenedorPacientes.removeViewAt(indice);
+        contenedorPacientes.addView(nueva, indice);
+        tarjetas.put(idDoc, nueva);
+    }
+
+    /**
+     * Memoria del censo: el índice, las fichas y sus miniaturas (compartidas con la caché
+     * de Imagenes, pero retenidas mientras la ficha exista).
+     */
+    private long bytesCenso() {
+        Set<Bitmap> miniaturas = Collections.newSetFromMap(new IdentityHashMap<>());
+        long bytes = indice.bytesEstimados() + tarjetas.size() * BYTES_TARJETA;
+        for (View tarjeta : tarjetas.values()) {
+            Bitmap bmp = ((MascotaFila) tarjeta.getTag()).getMiniatura();
+            if (bmp != null && miniaturas.add(bmp)) bytes += bmp.getAllocationByteCount();
+        }
+        return bytes;
+    }
+
+    private static boolean mismaFicha(View tarjeta, MascotaFila fila) {
+        MascotaFila pintada = (MascotaFila) tarjeta.getTag();
+        return pintada != null && pintada.getVersion() == fila.getVersion()
+                && pintada.getTexto().equals(fila.getTexto()) && pintada.getColorFondo() == fila.getColorFondo()
+                && pintada.getMiniatura() == fila.getMiniatura();
+    }
+
     /**
      * Construye la ficha visual de cada paciente en el listado médico.
      */
-    private void crearTarjetaMascota(String idDoc, String idNum, String nombre, String especie, String raza, String genero, String estado, String fotoBase64, String uidDueno) {
+    private View crearTarjetaMascota(MascotaFila fila) {
         LinearLayout tarjeta = new LinearLayout(this);
         tarjeta.setOrientation(LinearLayout.VERTICAL);
         tarjeta.setPadding(30, 30, 30, 30);
         tarjeta.setGravity(Gravity.CENTER_HORIZONTAL);
         tarjeta.setBackgroundResource(R.drawable.bg_notif_item);
 
-        // Semáforo de estados clínicos
-        if ("PENDIENTE".equals(estado)) tarjeta.setBackgroundColor(Color.parseColor("#FFF59D"));
-        else if ("MEMORIAL".equals(estado)) tarjeta.setBackgroundColor(Color.parseColor("#E0E0E0"));
-        else if ("RECHAZADA".equals(estado)) tarjeta.setBackgroundColor(Color.parseColor("#FFCDD2"));
-        else tarjeta.setBackgroundColor(Color.WHITE);
-
-        // Procesamiento multimedia Base64
-        if (fotoBase64 != null && !fotoBase64.isEmpty()) {
-            try {
-                byte[] bytes = Base64.decode(fotoBase64, Base64.DEFAULT);
-                Bitmap bitmap = BitmapFactory.decodeByteArray(bytes, 0, bytes.length);
-                ImageView foto = new ImageView(this);
-                foto.setImageBitmap(bitmap);
-                foto.setLayoutParams(new LinearLayout.LayoutParams(300, 300));
-                foto.setScaleType(ImageView.ScaleType.CENTER_CROP);
-                tarjeta.addView(foto);
-            } catch (Exception e) { e.printStackTrace(); }
+        // Semáforo de estados clínicos (resuelto en el mapeo)
+        tarjeta.setBackgroundColor(fila.getColorFondo());
+
+        // Miniatura ya decodificada en segundo plano
+        if (fila.getMiniatura() != null) {
+            ImageView foto = new ImageView(this);
+            foto.setImageBitmap(fila.getMiniatura());
+            foto.setLayoutParams(new LinearLayout.LayoutParams(300, 300));
+            foto.setScaleType(ImageView.ScaleType.CENTER_CROP);
+            tarjeta.addView(foto);
         }
 
         TextView datos = new TextView(this);
-        datos.setText("🐾 Paciente #" + idNum + " | " + nombre + " (" + genero + ")\n" + especie + " (" + raza + ")\nEstado: " + estado);
+        datos.setText(fila.getTexto());
         datos.setTextSize(16);
         datos.setGravity(Gravity.CENTER);
         tarjeta.addView(datos);
 
-        tarjeta.setOnClickListener(v -> mostrarOpcionesVeterinario(idDoc, nombre, estado, uidDueno));
-        contenedorPacientes.addView(tarjeta);
+        tarjeta.setTag(fila);
+        tarjeta.setOnClickListener(v -> mostrarOpcionesVeterinario(fila));
+        return tarjeta;
     }
 
     /**
      * Despliega el menú de acciones clínicas dinámicas según el estado del paciente.
+     * Las opciones se derivan de la máquina de estados de EstadoMascota.
      */
-    private void mostrarOpcionesVeterinario(String idDoc, String nombre, String estadoActual, String uidDueno) {
-        String[] opciones;
-        if ("PENDIENTE".equals(estadoActual)) opciones = new String[]{"✅ Aprobar Ingreso", "❌ Rechazar Solicitud", "🗑️ Eliminar Registro"};
-        else if ("RECHAZADA".equals(estadoActual)) opciones = new String[]{"🗑️ Eliminar Permanentemente", "♻️ Restaurar Solicitud"};
-        else if ("MEMORIAL".equals(estadoActual)) opciones = new String[]{"🗑️ Depurar Archivo Histórico"};
-        else opciones = new String[]{"🕊️ Trasladar a Memorial", "🗑️ Eliminar Registro"};
+    private void mostrarOpcionesVeterinario(MascotaFila fila) {
+        EstadoMascota actual = EstadoMascota.desde(fila.getEstado());
+        List<EstadoMascota> destinos = (actual != null) ? new ArrayList<>(actual.siguientes()) : new ArrayList<>();
+
+        String[] opciones = new String[destinos.size() + 1];
+        for (int i = 0; i < destinos.size(); i++) opciones[i] = destinos.get(i).getAccion();
+        if (actual == EstadoMascota.MEMORIAL) opciones[destinos.size()] = "🗑️ Depurar Archivo Histórico";
+        else if (actual == EstadoMascota.RECHAZADA) opciones[destinos.size()] = "🗑️ Eliminar Permanentemente";
+        else opciones[destinos.size()] = "🗑️ Eliminar Registro";
 
         new AlertDialog.Builder(this)
-                .setTitle("Gestión Clínica: " + nombre)
+                .setTitle("Gestión Clínica: " + fila.getNombre())
                 .setItems(opciones, (dialog, which) -> {
-                    if ("PENDIENTE".equals(estadoActual)) {
-                        if (which == 0) actualizarEstado(idDoc, "ACEPTADA", uidDueno, nombre);
-                        else if (which == 1) actualizarEstado(idDoc, "RECHAZADA", uidDueno, nombre);
-                        else eliminarRegistro(idDoc);
-                    } else if ("RECHAZADA".equals(estadoActual)) {
-                        if (which == 0) eliminarRegistro(idDoc);
-                        else actualizarEstado(idDoc, "PENDIENTE", uidDueno, nombre);
-                    } else if ("MEMORIAL".equals(estadoActual)) {
-                        if (which == 0) eliminarRegistro(idDoc);
-                    } else {
-                        if (which == 0) actualizarEstado(idDoc, "MEMORIAL", uidDueno, nombre);
-                        else eliminarRegistro(idDoc);
-                    }
+                    if (which < destinos.size()) actualizarEstado(fila, actual, destinos.get(which));
+                    else eliminarRegistro(fila.getIdDoc());
                 }).show();
     }
 
     /**
      * Elimina físicamente el documento de la base de datos.
+     * La ficha se oculta al instante y reaparece si el borrado falla.
      */
     private void eliminarRegistro(String id) {
-        db.collection("mascotas").document(id).delete().addOnSuccessListener(aVoid -> {
-            Toast.makeText(this, "Registro depurado", Toast.LENGTH_SHORT).show();
-            cargarPacientes();
-        });
+        // El recuerdo del muro se retira con la ficha (borrar un documento inexistente no falla)
+        mutaciones.eliminar(id, () -> {
+                    ColaEscrituras.get().delete(MuroMemorial.referencia(db, id));
+                    return ColaEscrituras.get().delete(db.collection(Clinica.MASCOTAS).document(id));
+                },
+                e -> Toast.makeText(this, "No se pudo depurar el registro", Toast.LENGTH_SHORT).show());
     }
 
     /**
-     * Actualiza el estado administrativo del paciente y notifica al dueño.
+     * Confirma en un solo commit el nuevo estado del paciente, el aviso al dueño y la auditoría.
+     * La ficha refleja el nuevo estado al instante y se revierte si el commit falla.
      */
-    private void actualizarEstado(String idDoc, String nuevoEstado, String uidDueno, String nombreMascota) {
-        db.collection("mascotas").document(idDoc).update("estado", nuevoEstado).addOnSuccessListener(aVoid -> {
-            Toast.makeText(this, "Estado Sincronizado", Toast.LENGTH_SHORT).show();
-            if (uidDueno != null && !uidDueno.isEmpty()) {
-                Map<String, Object> notif = new HashMap<>();
-                notif.put("uidDestinatario", uidDueno);
-                notif.put("mensaje", "Informe Clínico: " + nombreMascota + " ahora está " + nuevoEstado.toLowerCase());
-                notif.put("leida", false);
-                notif.put("timestamp", com.google.firebase.Timestamp.now());
-                db.collection("notificaciones").add(notif);
-            }
-            cargarPacientes();
-        });
+    private void actualizarEstado(MascotaFila fila, EstadoMascota actual, EstadoMascota nuevoEstado) {
+        mutaciones.modificar(fila.getIdDoc(), Mapeadores.mascotaConEstado(fila, nuevoEstado.name()),
+                () -> TransicionesEstado.transicionarMascota(db, fila.getIdDoc(), fila.getVersion(), actual, nuevoEstado,
+                        fila.getUidDueno(), fila.getNombre()),
+                e -> {
+                    if (e instanceof EscrituraVersionada.ConflictoVersionException) {
+                        // Otro veterinario se adelantó: la ficha vuelve a la versión que trae la escucha
+                        Toast.makeText(this, "Otro veterinario acaba de modificar este paciente", Toast.LENGTH_LONG).show();
+                    } else {
+                        Toast.makeText(this, "No se pudo actualizar el paciente", Toast.LENGTH_SHORT).show();
+                    }
+                });
     }
-}
\ No newline at end of file
+}
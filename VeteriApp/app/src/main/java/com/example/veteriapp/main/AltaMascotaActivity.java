@@ -20,7 +20,13 @@ import androidx.appcompat.app.AppCompatActivity;
 import androidx.appcompat.widget.Toolbar;
 
 import com.example.veteriapp.R;
+import com.example.veteriapp.data.Clinica;
+import com.example.veteriapp.data.ColaEscrituras;
+import com.example.veteriapp.data.ContadorIds;
+import com.example.veteriapp.data.EscrituraVersionada;
+import com.example.veteriapp.model.EstadoMascota;
 import com.example.veteriapp.model.GeneroMascota;
+import com.example.veteriapp.utils.MetricasFrames;
 import com.google.firebase.Timestamp;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.firestore.FirebaseFirestore;
@@ -56,6 +62,7 @@ public class AltaMascotaActivity extends AppCompatActivity {
     private Bitmap bitmapImagenOriginal;
     private FirebaseAuth mAuth;
     private FirebaseFirestore db;
+    private Clinica clinica; // Fijada al abrir la pantalla
     private Date fechaNacimientoElegida;
 
     /**
@@ -77,6 +84,7 @@ public class AltaMascotaActivity extends AppCompatActivity {
 
         mAuth = FirebaseAuth.getInstance();
         db = FirebaseFirestore.getInstance();
+        clinica = Clinica.actual();
 
         // Configuración de la Barra de Herramientas
         Toolbar toolbar = findViewById(R.id.toolbarAlta);
@@ -130,15 +138,17 @@ public class AltaMascotaActivity extends AppCompatActivity {
         super.onActivityResult(requestCode, resultCode, data);
         if (resultCode == RESULT_OK && requestCode == 100 && data != null) {
             uriImagenSeleccionada = data.getData();
-            try {
-                InputStream is = getContentResolver().openInputStream(uriImagenSeleccionada);
-                bitmapImagenOriginal = BitmapFactory.decodeStream(is);
-                imgMascota.setImageBitmap(bitmapImagenOriginal);
-                imgMascota.setPadding(0, 0, 0, 0);
-                imgMascota.setScaleType(ImageView.ScaleType.CENTER_CROP);
-            } catch (Exception e) {
-                e.printStackTrace();
-            }
+            MetricasFrames.medir(this, MetricasFrames.DECODIFICACION_IMAGEN, () -> {
+                try {
+                    InputStream is = getContentResolver().openInputStream(uriImagenSeleccionada);
+                    bitmapImagenOriginal = BitmapFactory.decodeStream(is);
+                    imgMascota.setImageBitmap(bitmapImagenOriginal);
+                    imgMascota.setPadding(0, 0, 0, 0);
+                    imgMascota.setScaleType(ImageView.ScaleType.CENTER_CROP);
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+            });
         }
     }
 
@@ -161,15 +171,19 @@ public class AltaMascotaActivity extends AppCompatActivity {
         final String fotoBase64 = (bitmapImagenOriginal != null) ? codificarImagenABase64(bitmapImagenOriginal) : "";
 
         // --- LÓGICA DE ID_MASCOTA SECUENCIAL ---
-        db.collection("mascotas").orderBy("id_mascota", Query.Direction.DESCENDING).limit(1).get()
-                .addOnSuccessListener(snap -> {
-                    int idCalc = 1;
-                    if (!snap.isEmpty()) {
-                        Number ultimoId = snap.getDocuments().get(0).getLong("id_mascota");
-                        if (ultimoId != null) idCalc = ultimoId.intValue() + 1;
-                    }
-                    guardarEnFirestore(idCalc, nombre, especie, raza, peso, chip, fotoBase64, genero.name());
-                });
+        // Reservado en el contador compartido (no choca con una importación en curso);
+        // sin conexión se calcula como antes, sobre lo que haya en la caché local
+        ContadorIds.reservar(db, "mascotas", "id_mascota", 1)
+                .addOnSuccessListener(id -> guardarEnFirestore(id.intValue(), nombre, especie, raza, peso, chip, fotoBase64, genero.name()))
+                .addOnFailureListener(e -> db.collection("mascotas").orderBy("id_mascota", Query.Direction.DESCENDING).limit(1).get()
+                        .addOnSuccessListener(snap -> {
+                            int idCalc = 1;
+                            if (!snap.isEmpty()) {
+                                Number ultimoId = snap.getDocuments().get(0).getLong("id_mascota");
+                                if (ultimoId != null) idCalc = ultimoId.intValue() + 1;
+                            }
+                            guardarEnFirestore(idCalc, nombre, especie, raza, peso, chip, fotoBase64, genero.name());
+                        }));
     }
 
     /**
@@ -194,7 +208,6 @@ public class AltaMascotaActivity extends AppCompatActivity {
         Map<String, Object> mascota = new HashMap<>();
         
         mascota.put("id_mascota", idNum);
-        mascota.put("id", idNum); // Compatibilidad
         mascota.put("nombre", n);
         mascota.put("especie", e);
         mascota.put("raza", r);
@@ -204,12 +217,14 @@ public class AltaMascotaActivity extends AppCompatActivity {
         mascota.put("chip", c);
         mascota.put("fotoBase64", img);
         mascota.put("uidDueno", uid);
-        mascota.put("estado", "PENDIENTE");
+        mascota.put(Clinica.CAMPO_CLINICA, clinica.getId());
+        mascota.put("estado", EstadoMascota.PENDIENTE.name());
+        mascota.put(EscrituraVersionada.CAMPO_VERSION, 0L);
         mascota.put("timestamp", Timestamp.now());
 
-        db.collection("mascotas").add(mascota).addOnSuccessListener(doc -> {
-            Toast.makeText(this, "Paciente #" + idNum + " registrado con éxito", Toast.LENGTH_SHORT).show();
-            finish();
-        });
+        // La cola persistente garantiza el alta aunque la red sea lenta o la app se cierre
+        ColaEscrituras.get().set(db.collection(Clinica.MASCOTAS).document(), mascota);
+        Toast.makeText(this, "Paciente #" + idNum + " registrado con éxito", Toast.LENGTH_SHORT).show();
+        finish();
     }
 }
\ No newline at end of file
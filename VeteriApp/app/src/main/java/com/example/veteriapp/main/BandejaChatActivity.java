@@ -4,8 +4,11 @@ import android.content.Intent;
 import android.graphics.Color;
 import android.graphics.Typeface;
 import android.os.Bundle;
+import android.text.Editable;
+import android.text.TextWatcher;
 import android.view.Gravity;
 import android.view.View;
+import android.widget.EditText;
 import android.widget.LinearLayout;
 import android.widget.TextView;
 
@@ -13,8 +16,20 @@ import androidx.appcompat.app.AppCompatActivity;
 import androidx.appcompat.widget.Toolbar;
 
 import com.example.veteriapp.R;
+import com.example.veteriapp.data.Clinica;
+import com.example.veteriapp.data.FlujoConsulta;
+import com.example.veteriapp.data.IndiceBusqueda;
+import com.example.veteriapp.data.Mapeadores;
+import com.example.veteriapp.data.MapeoSnapshots;
+import com.example.veteriapp.data.RegistroEscuchas;
+import com.example.veteriapp.model.UsuarioFila;
 import com.google.firebase.firestore.FirebaseFirestore;
-import com.google.firebase.firestore.QueryDocumentSnapshot;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * Clase BandejaChatActivity.
@@ -30,9 +45,20 @@ public class BandejaChatActivity extends AppCompatActivity {
 
 	// --- VARIABLES DE LA INTERFAZ ---
     private LinearLayout contenedorClientes;
+    private EditText etBuscarClientes;
 
     // --- INSTANCIAS DE FIREBASE ---
     private FirebaseFirestore db;
+    private Clinica clinica; // Fijada al abrir la pantalla
+
+    // --- BÚSQUEDA LOCAL ---
+    private IndiceBusqueda indice = new IndiceBusqueda();
+    private final Map<String, View> tarjetas = new HashMap<>();
+
+    // --- AVISOS PENDIENTES (un único listener para todas las tarjetas) ---
+    private final RegistroEscuchas escuchas = new RegistroEscuchas(this, "BandejaChat");
+    private final List<View> puntos = new ArrayList<>();
+    private boolean hayPendientes;
 
     /**
      * Inicializa la bandeja de entrada clínica.
@@ -51,37 +77,75 @@ public class BandejaChatActivity extends AppCompatActivity {
         setContentView(R.layout.activity_bandeja_chat);
 
         db = FirebaseFirestore.getInstance();
+        clinica = Clinica.actual();
         contenedorClientes = findViewById(R.id.contenedorClientes);
 
+        etBuscarClientes = findViewById(R.id.etBuscarClientes);
+        etBuscarClientes.addTextChangedListener(new TextWatcher() {
+            @Override public void beforeTextChanged(CharSequence s, int start, int count, int after) {}
+            @Override public void onTextChanged(CharSequence s, int start, int before, int count) {}
+            @Override public void afterTextChanged(Editable s) { aplicarFiltro(); }
+        });
+
         // Configuración de Toolbar
         Toolbar toolbar = findViewById(R.id.toolbarBandeja);
         setSupportActionBar(toolbar);
         if (getSupportActionBar() != null) getSupportActionBar().setDisplayShowTitleEnabled(false);
 
         cargarListaClientes();
+        escucharPendientes();
+    }
+
+    /**
+     * Escuchador de avisos no leídos de la clínica, compartido por todas las
+     * tarjetas: antes cada tarjeta abría el suyo sobre la misma consulta.
+     */
+    private void escucharPendientes() {
+        FlujoConsulta<Boolean> avisos = FlujoConsulta.hayResultados(clinica.avisosPendientes(db), "AvisosBandeja")
+                .sinRafagas(FlujoConsulta.VENTANA_RAFAGA_MS);
+        escuchas.escuchar(() -> avisos.observar(this, hay -> {
+            hayPendientes = hay;
+            for (View punto : puntos) punto.setVisibility(hayPendientes ? View.VISIBLE : View.GONE);
+        }));
     }
 
     /**
      * Recupera del servidor los perfiles de usuario que poseen el rol de Dueño.
      * Cualquier profesional autenticado tiene acceso a este listado de consulta.
+     * Los clientes se indexan por nombre y email en el hilo de mapeo.
      */
     private void cargarListaClientes() {
         if (contenedorClientes == null) return;
-        contenedorClientes.removeAllViews();
-
-        db.collection("users").whereEqualTo("rol", "DUEÑO").get().addOnCompleteListener(task -> {
-            if (task.isSuccessful() && task.getResult() != null) {
-                for (QueryDocumentSnapshot doc : task.getResult()) {
-                    String uid = doc.getString("uid");
-                    String nombre = doc.getString("nombre");
-                    String email = doc.getString("email");
-                    
-                    if (uid != null) {
-                        crearTarjetaCliente(uid, nombre, email);
-                    }
-                }
-            }
-        });
+
+        IndiceBusqueda nuevoIndice = new IndiceBusqueda();
+        MapeoSnapshots.cargar(this, db.collection("users").whereEqualTo("rol", "DUEÑO").get(),
+                "BandejaChat",
+                doc -> {
+                    UsuarioFila fila = Mapeadores.usuarioCliente(doc);
+                    if (fila != null) nuevoIndice.indexar(fila.getUid(), fila.getNombre(), fila.getEmail());
+                    return fila;
+                },
+                escuchas.peticion(filas -> {
+                    if (filas == null) return;
+                    contenedorClientes.removeAllViews();
+                    tarjetas.clear();
+                    puntos.clear();
+                    indice = nuevoIndice;
+                    for (UsuarioFila fila : filas) crearTarjetaCliente(fila.getUid(), fila.getNombre(), fila.getEmail());
+                    aplicarFiltro();
+                }));
+    }
+
+    /**
+     * Muestra solo los clientes cuyo nombre o email contienen todos los términos buscados.
+     */
+    private void aplicarFiltro() {
+        if (etBuscarClientes == null) return;
+        Set<String> visibles = indice.buscar(etBuscarClientes.getText().toString());
+        for (Map.Entry<String, View> e : tarjetas.entrySet()) {
+            boolean visible = visibles == null || visibles.contains(e.getKey());
+            e.getValue().setVisibility(visible ? View.VISIBLE : View.GONE);
+        }
     }
 
     /**
@@ -123,21 +187,9 @@ public class BandejaChatActivity extends AppCompatActivity {
         View punto = new View(this);
         punto.setLayoutParams(new LinearLayout.LayoutParams(30, 30));
         punto.setBackgroundResource(R.drawable.bg_punto_rojo);
-        punto.setVisibility(View.GONE);
+        punto.setVisibility(hayPendientes ? View.VISIBLE : View.GONE);
         tarjeta.addView(punto);
-
-        // Escuchador de mensajes no leídos dirigidos a la CLINICA
-        db.collection("notificaciones")
-                .whereEqualTo("uidDestinatario", "CLINICA")
-                .whereEqualTo("leida", false)
-                .addSnapshotListener((value, error) -> {
-                    if (error != null) return;
-                    if (value != null && !value.isEmpty()) {
-                        punto.setVisibility(View.VISIBLE);
-                    } else {
-                        punto.setVisibility(View.GONE);
-                    }
-                });
+        puntos.add(punto);
 
         // Evento de apertura de sala de chat (Cualquier médico puede entrar)
         tarjeta.setOnClickListener(v -> {
@@ -147,5 +199,6 @@ public class BandejaChatActivity extends AppCompatActivity {
         });
 
         contenedorClientes.addView(tarjeta);
+        tarjetas.put(uid, tarjeta);
     }
 }
\ No newline at end of file
@@ -9,17 +9,34 @@ import android.widget.EditText;
 import android.widget.LinearLayout;
 import android.widget.ScrollView;
 import android.widget.TextView;
+import android.widget.Toast;
 
 import androidx.appcompat.app.AppCompatActivity;
 
 import com.example.veteriapp.R;
+import com.example.veteriapp.data.Clinica;
+import com.example.veteriapp.data.ColaEscrituras;
+import com.example.veteriapp.data.Mapeadores;
+import com.example.veteriapp.data.MapeoSnapshots;
+import com.example.veteriapp.data.PresupuestoMemoria;
+import com.example.veteriapp.data.RegistroEscuchas;
+import com.example.veteriapp.data.SalasChat;
 import com.example.veteriapp.model.Mensaje;
+import com.example.veteriapp.model.MensajeFila;
+import com.example.veteriapp.model.MensajeMapeador;
+import com.example.veteriapp.utils.MetricasFrames;
+import com.google.firebase.Timestamp;
 import com.google.firebase.auth.FirebaseAuth;
+import com.google.firebase.firestore.DocumentChange;
+import com.google.firebase.firestore.DocumentReference;
 import com.google.firebase.firestore.FirebaseFirestore;
-import com.google.firebase.firestore.Query;
+import com.google.firebase.firestore.MetadataChanges;
 
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * Clase ChatActivity.
@@ -27,6 +44,8 @@ import java.util.Map;
  * Gestiona la comunicación en tiempo real entre el cliente y el personal médico.
  * Implementa el redimensionado dinámico de teclado, scroll automático al recibir 
  * mensajes y emisión de notificaciones de chat.
+ * Los mensajes enviados aparecen al instante como pendientes (eco local con ID
+ * generado en el cliente) y se confirman en su sitio cuando el servidor los acepta.
  * 
  * @author Juan Manuel Moreno Sánchez
  * @version 1.0.3 Parche Conexión Maestro
@@ -41,10 +60,26 @@ public class ChatActivity extends AppCompatActivity {
 
     // --- INSTANCIAS DE FIREBASE Y ESTADO ---
     private FirebaseFirestore db;
+    private Clinica clinica; // Fijada al abrir la pantalla
     private FirebaseAuth mAuth;
     private String idSalaChat;
     private String miUid;
 
+    // --- ESTADO LOCAL DE LA CONVERSACIÓN ---
+    private final Map<String, TextView> burbujas = new HashMap<>();
+    private long ultimaSecuencia;
+
+    // --- PRESUPUESTO DE MEMORIA ---
+    /** Estimación de lo que retiene una burbuja (vista, texto y layout). */
+    private static final long BYTES_BURBUJA = 2 * 1024;
+    private static final double FRACCION_CHAT = 1.0 / 32;
+    private int maxBurbujas;
+    // Mensajes más antiguos retirados de la vista: no se repintan al reanudar la escucha
+    private final Set<String> descartadas = new HashSet<>();
+
+    // --- LISTENERS LIGADOS AL CICLO DE VIDA ---
+    private final RegistroEscuchas escuchas = new RegistroEscuchas(this, "Chat");
+
     /**
      * Inicialización del entorno de chat bidireccional.
      */
@@ -62,6 +97,7 @@ public class ChatActivity extends AppCompatActivity {
 
         // --- INICIALIZACIÓN DE SERVICIOS ---
         db = FirebaseFirestore.getInstance();
+        clinica = Clinica.actual();
         mAuth = FirebaseAuth.getInstance();
         miUid = mAuth.getCurrentUser().getUid();
 
@@ -79,101 +115,167 @@ public class ChatActivity extends AppCompatActivity {
             idSalaChat = miUid; // El Dueño entra en su propia sala
         }
 
+        PresupuestoMemoria presupuesto = PresupuestoMemoria.get();
+        maxBurbujas = (int) Math.max(50, presupuesto.presupuesto(FRACCION_CHAT) / BYTES_BURBUJA);
+        presupuesto.registrar(this, "Chat", PresupuestoMemoria.Nivel.VISIBLE, new PresupuestoMemoria.Consumidor() {
+            @Override
+            public long bytesEnUso() {
+                return burbujas.size() * BYTES_BURBUJA;
+            }
+
+            @Override
+            public void recortar(float conservar) {
+                descartarAntiguas((int) (burbujas.size() * conservar));
+            }
+        });
+
         escucharMensajes();
         btnEnviar.setOnClickListener(v -> enviarMensaje());
     }
 
     /**
      * Activa el SnapshotListener para monitorizar la entrada de mensajes en tiempo real.
+     * Solo se entregan los cambios de cada snapshot, ya mapeados fuera del hilo principal,
+     * incluidos los de metadatos: así un mensaje propio pasa de pendiente a confirmado
+     * sin repintar la conversación. Al volver a la pantalla, los mensajes ya pintados
+     * llegan de nuevo como altas y se reconcilian con sus burbujas.
      */
     private void escucharMensajes() {
-        // Escuchamos CUALQUIER mensaje que tenga el idSala común.
-        db.collection("mensajes")
-                .whereEqualTo("idSala", idSalaChat)
-                .orderBy("timestamp", Query.Direction.ASCENDING)
-                .addSnapshotListener((value, error) -> {
-                    if (error != null) return;
-                    if (value != null) {
-                        contenedorMensajes.removeAllViews();
-                        for (com.google.firebase.firestore.QueryDocumentSnapshot doc : value) {
-                            // Extraemos datos manualmente para evitar fallos de mapeo
-                            String remitente = doc.getString("uidRemitente");
-                            String texto = doc.getString("texto");
-                            Mensaje m = new Mensaje();
-                            m.setUidRemitente(remitente);
-                            m.setTexto(texto);
-                            pintarBurbuja(m);
-                        }
-                        // Desplazamiento automático al último mensaje
-                        scrollViewChat.post(() -> scrollViewChat.fullScroll(View.FOCUS_DOWN));
-                    }
-                });
+        // Cada sala tiene su propia subcolección: la consulta no depende del tamaño del resto del chat
+        escuchas.escuchar(() -> MapeoSnapshots.escucharCambios(this, SalasChat.conversacion(db, clinica, idSalaChat),
+                MetadataChanges.INCLUDE, "Chat", doc -> Mapeadores.mensaje(doc, miUid), this::aplicarCambios));
+
+        // Mensajes antiguos aún en la colección global: aparecen en cuanto se trasladan
+        SalasChat.migrarSala(db, clinica, idSalaChat);
+    }
+
+    /**
+     * Aplica altas, confirmaciones y bajas sobre las burbujas existentes.
+     */
+    private void aplicarCambios(List<MapeoSnapshots.Cambio<MensajeFila>> cambios) {
+        MetricasFrames.medir(this, MetricasFrames.REPINTADO_CHAT, () -> repintar(cambios));
+    }
+
+    private void repintar(List<MapeoSnapshots.Cambio<MensajeFila>> cambios) {
+        boolean hayNuevos = false;
+        for (MapeoSnapshots.Cambio<MensajeFila> c : cambios) {
+            TextView existente = burbujas.get(c.getIdDoc());
+            if (c.getTipo() == DocumentChange.Type.REMOVED || c.getFila() == null) {
+                if (existente != null) contenedorMensajes.removeView(existente);
+                burbujas.remove(c.getIdDoc());
+                descartadas.remove(c.getIdDoc());
+                continue;
+            }
+            if (descartadas.contains(c.getIdDoc())) continue;
+
+            // Los descartados son los más antiguos: desplazan la posición de la consulta
+            int posicion = Math.max(0, c.getNuevoIndice() - descartadas.size());
+            if (existente == null) {
+                TextView tv = crearBurbuja(c.getFila());
+                contenedorMensajes.addView(tv, Math.min(posicion, contenedorMensajes.getChildCount()));
+                burbujas.put(c.getIdDoc(), tv);
+                hayNuevos = true;
+            } else {
+                // Confirmación en su sitio (o reordenación si cambió la marca de tiempo)
+                marcarEstado(existente, c.getFila());
+                int indice = Math.min(posicion, contenedorMensajes.getChildCount() - 1);
+                if (contenedorMensajes.indexOfChild(existente) != indice) {
+                    contenedorMensajes.removeView(existente);
+                    contenedorMensajes.addView(existente, indice);
+                }
+            }
+        }
+        descartarAntiguas(maxBurbujas);
+        // Desplazamiento automático al último mensaje
+        if (hayNuevos) scrollViewChat.post(() -> scrollViewChat.fullScroll(View.FOCUS_DOWN));
+    }
+
+    /**
+     * Retira de la vista los mensajes más antiguos hasta dejar como mucho el número indicado.
+     * Una conversación muy larga conserva así sus últimos mensajes en lugar de agotar la memoria.
+     */
+    private void descartarAntiguas(int conservar) {
+        int sobrantes = contenedorMensajes.getChildCount() - conservar;
+        if (sobrantes <= 0) return;
+        Map<View, String> idPorVista = new HashMap<>();
+        for (Map.Entry<String, TextView> e : burbujas.entrySet()) idPorVista.put(e.getValue(), e.getKey());
+        for (int i = 0; i < sobrantes; i++) {
+            View v = contenedorMensajes.getChildAt(0);
+            contenedorMensajes.removeViewAt(0);
+            String id = idPorVista.get(v);
+            if (id != null) {
+                burbujas.remove(id);
+                descartadas.add(id);
+            }
+        }
     }
 
     /**
      * Registra un nuevo mensaje en Firestore y lanza la alerta correspondiente.
+     * 
+     * El ID del documento se genera en el cliente y la escritura pasa por la cola persistente,
+     * que la entrega a la caché local al instante: el listener pinta el mensaje como pendiente
+     * sin esperar al servidor, y un reenvío tras un cierre inesperado no lo duplica.
+     * La marca de tiempo también es local para que la burbuja no cambie de sitio al
+     * confirmarse, y la secuencia de cliente desempata los envíos de un mismo dispositivo.
      */
     private void enviarMensaje() {
         String texto = etMensaje.getText().toString().trim();
         if (texto.isEmpty()) return;
 
-        // Generación de ID secuencial para el mensaje
-        db.collection("mensajes").orderBy("id_mensaje", Query.Direction.DESCENDING).limit(1).get()
-                .addOnSuccessListener(snap -> {
-                    int idCalc = 1;
-                    if (!snap.isEmpty()) {
-                        Number ult = snap.getDocuments().get(0).getLong("id_mensaje");
-                        if (ult != null) idCalc = ult.intValue() + 1;
-                    }
-                    
-                    final int idFinal = idCalc;
-                    Map<String, Object> data = new HashMap<>();
-                    data.put("id_mensaje", idFinal);
-                    data.put("uidRemitente", miUid); // Quien escribe en este momento
-                    data.put("texto", texto);
-                    data.put("idSala", idSalaChat); // CANAL MAESTRO: Siempre el UID del cliente
-                    data.put("timestamp", com.google.firebase.Timestamp.now());
-
-                    db.collection("mensajes").add(data).addOnSuccessListener(ref -> {
-                        // LÓGICA DE NOTIFICACIÓN: Si el dueño escribe, avisa a la CLINICA. Si el Vet escribe, avisa al dueño.
-                        String uidNotifDestino = idSalaChat.equals(miUid) ? "CLINICA" : idSalaChat;
-                        emitirNotificacion(uidNotifDestino, texto);
-                        
-                        etMensaje.setText("");
-                        scrollViewChat.post(() -> scrollViewChat.fullScroll(View.FOCUS_DOWN));
-                    });
+        DocumentReference ref = SalasChat.mensajes(db, clinica, idSalaChat).document();
+        // idSala se conserva en el documento para las consultas de grupo de administración
+        Mensaje mensaje = new Mensaje(miUid, texto, idSalaChat);
+        mensaje.setSecuenciaCliente(siguienteSecuencia());
+        Map<String, Object> data = MensajeMapeador.aMapa(mensaje);
+
+        etMensaje.setText("");
+
+        // LÓGICA DE NOTIFICACIÓN: Si el dueño escribe, avisa a su clínica (null). Si el Vet escribe, avisa al dueño.
+        // Se emite al confirmar el servidor aunque la pantalla ya se haya cerrado.
+        String uidNotifDestino = idSalaChat.equals(miUid) ? null : idSalaChat;
+        ColaEscrituras.get().set(ref, data)
+                .addOnSuccessListener(aVoid -> emitirNotificacion(uidNotifDestino, texto))
+                .addOnFailureListener(this, e -> {
+                    // El listener retira el eco local; se devuelve el texto para reintentar
+                    Toast.makeText(this, "No se pudo enviar el mensaje", Toast.LENGTH_SHORT).show();
+                    if (etMensaje.length() == 0) etMensaje.setText(texto);
                 });
     }
 
+    /**
+     * Secuencia monótona del cliente: nunca retrocede dentro de la sesión aunque dos
+     * mensajes se envíen en el mismo milisegundo.
+     */
+    private long siguienteSecuencia() {
+        ultimaSecuencia = Math.max(ultimaSecuencia + 1, System.currentTimeMillis());
+        return ultimaSecuencia;
+    }
+
     /**
      * Genera una notificación asíncrona para alertar al destinatario del nuevo mensaje.
+     * Pasa por la cola persistente: no se pierde aunque la app se cierre sin red.
+     *
+     * @param uidDestino Dueño destinatario, o null para la bandeja de avisos de la clínica.
      */
     private void emitirNotificacion(String uidDestino, String texto) {
-        db.collection("notificaciones").orderBy("id_notificacion", Query.Direction.DESCENDING).limit(1).get()
-                .addOnSuccessListener(snap -> {
-                    int idN = 1;
-                    if (!snap.isEmpty()) {
-                        Number ult = snap.getDocuments().get(0).getLong("id_notificacion");
-                        if (ult != null) idN = ult.intValue() + 1;
-                    }
-                    
-                    Map<String, Object> notif = new HashMap<>();
-                    notif.put("id_notificacion", idN);
-                    notif.put("uidDestinatario", uidDestino);
-                    notif.put("mensaje", "Chat: " + texto);
-                    notif.put("leida", false);
-                    notif.put("timestamp", com.google.firebase.Timestamp.now());
-
-                    db.collection("notificaciones").add(notif);
-                });
+        if (uidDestino == null) {
+            ColaEscrituras.get().set(clinica.avisos(db).document(), Clinica.aviso("Chat: " + texto));
+            return;
+        }
+        Map<String, Object> notif = new HashMap<>();
+        notif.put("uidDestinatario", uidDestino);
+        notif.put("mensaje", "Chat: " + texto);
+        notif.put("leida", false);
+        notif.put("timestamp", Timestamp.now());
+
+        ColaEscrituras.get().set(db.collection("notificaciones").document(), notif);
     }
 
     /**
-     * Renderiza dinámicamente un mensaje en la interfaz con alineación según el remitente.
+     * Construye la burbuja de un mensaje con alineación según el remitente.
      */
-    private void pintarBurbuja(Mensaje m) {
-        if (m.getTexto() == null || m.getUidRemitente() == null) return;
-
+    private TextView crearBurbuja(MensajeFila m) {
         TextView tv = new TextView(this);
         tv.setText(m.getTexto());
         tv.setPadding(35, 25, 35, 25);
@@ -183,9 +285,9 @@ public class ChatActivity extends AppCompatActivity {
                 LinearLayout.LayoutParams.WRAP_CONTENT, LinearLayout.LayoutParams.WRAP_CONTENT);
         params.setMargins(20, 10, 20, 10);
 
-        // LÓGICA DE ORIENTACIÓN:
+        // LÓGICA DE ORIENTACIÓN (resuelta en el mapeo):
         // Si el UID del remitente coincide con el mío, soy yo (Derecha)
-        if (m.getUidRemitente().equals(miUid)) {
+        if (m.isPropio()) {
             tv.setBackgroundResource(android.R.drawable.dialog_holo_light_frame);
             params.gravity = Gravity.END;
             tv.setTextColor(Color.BLACK);
@@ -197,6 +299,15 @@ public class ChatActivity extends AppCompatActivity {
         }
 
         tv.setLayoutParams(params);
-        contenedorMensajes.addView(tv);
+        marcarEstado(tv, m);
+        return tv;
+    }
+
+    /**
+     * Los mensajes pendientes de confirmación se muestran atenuados.
+     */
+    private void marcarEstado(TextView tv, MensajeFila m) {
+        tv.setText(m.getTexto());
+        tv.setAlpha(m.isPendiente() ? 0.5f : 1f);
     }
 }
\ No newline at end of file
@@ -10,6 +10,7 @@ import android.widget.TextView;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.appcompat.widget.Toolbar;
 import com.example.veteriapp.R;
+import com.example.veteriapp.utils.MetricasFrames;
 
 /**
  * Clase DetalleMascotaActivity.
@@ -69,11 +70,13 @@ public class DetalleMascotaActivity extends AppCompatActivity {
             // Reconstrucción del recurso multimedia
             String fotoBase64 = obtenerExtraSeguro(extras, "foto");
             if (!fotoBase64.isEmpty()) {
-                try {
-                    byte[] bytes = Base64.decode(fotoBase64, Base64.DEFAULT);
-                    Bitmap bitmap = BitmapFactory.decodeByteArray(bytes, 0, bytes.length);
-                    img.setImageBitmap(bitmap);
-                } catch (Exception e) { e.printStackTrace(); }
+                MetricasFrames.medir(this, MetricasFrames.DECODIFICACION_IMAGEN, () -> {
+                    try {
+                        byte[] bytes = Base64.decode(fotoBase64, Base64.DEFAULT);
+                        Bitmap bitmap = BitmapFactory.decodeByteArray(bytes, 0, bytes.length);
+                        img.setImageBitmap(bitmap);
+                    } catch (Exception e) { e.printStackTrace(); }
+                });
             }
         }
     }
@@ -2,9 +2,18 @@ package com.example.veteriapp.main;
 
 import android.graphics.Color;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.text.Editable;
+import android.text.TextWatcher;
 import android.view.Gravity;
 import android.view.View;
+import android.widget.AdapterView;
+import android.widget.ArrayAdapter;
+import android.widget.Button;
+import android.widget.EditText;
 import android.widget.LinearLayout;
+import android.widget.Spinner;
 import android.widget.TextView;
 import android.widget.Toast;
 
@@ -13,19 +22,32 @@ import androidx.appcompat.app.AppCompatActivity;
 import androidx.appcompat.widget.Toolbar;
 
 import com.example.veteriapp.R;
+import com.example.veteriapp.data.ColaEscrituras;
+import com.example.veteriapp.data.DirectorioUsuarios;
+import com.example.veteriapp.data.Mapeadores;
+import com.example.veteriapp.data.MapeoSnapshots;
+import com.example.veteriapp.data.MutacionesOptimistas;
+import com.example.veteriapp.model.UsuarioFila;
 import com.example.veteriapp.utils.Logger;
+import com.google.firebase.firestore.DocumentSnapshot;
 import com.google.firebase.firestore.FirebaseFirestore;
-import com.google.firebase.firestore.QueryDocumentSnapshot;
+import com.google.firebase.firestore.ListenerRegistration;
+import com.google.firebase.firestore.Query;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 
 /**
  * Clase GestionRolesActivity.
  * 
  * Interfaz de Administración de Privilegios de Acceso.
- * Permite al administrador del sistema listar todos los perfiles registrados 
+ * Permite al administrador del sistema recorrer el directorio de perfiles registrados
  * y reasignar roles dinámicamente entre Dueño, Veterinario y Administrador.
+ * El directorio se pagina, se busca por prefijo de nombre o email y se filtra por rol
+ * en el servidor: solo se descarga y escucha la página visible.
  * 
  * @author Juan Manuel Moreno Sánchez
  * @version 1.0 VeteriApp Release
@@ -34,10 +56,31 @@ public class GestionRolesActivity extends AppCompatActivity {
 
 	// --- VARIABLES DE LA INTERFAZ ---
     private LinearLayout contenedor;
+    private EditText etBuscar;
+    private Spinner spFiltroRol;
+    private Button btnAnterior, btnSiguiente;
+    private TextView tvPagina;
     
     // --- INSTANCIAS DE FIREBASE ---
     private FirebaseFirestore db;
 
+    // --- ESTADO LOCAL DEL LISTADO ---
+    private final Map<String, View> tarjetas = new HashMap<>();
+    private MutacionesOptimistas<UsuarioFila> mutaciones;
+
+    // --- PAGINACIÓN ---
+    private static final long ESPERA_BUSQUEDA_MS = 300;
+    private static final String[] FILTROS_ROL = {"Todos", "DUEÑO", "VETERINARIO", "ADMIN"};
+    private final List<DocumentSnapshot> cursores = new ArrayList<>(); // inicio de cada página visitada
+    private int pagina;
+    private DocumentSnapshot ultimoDePagina;
+    private boolean hayMas;
+    private String rolFiltro;
+    private int generacion;
+    private ListenerRegistration registroPagina;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Runnable busquedaDiferida = this::reiniciarDirectorio;
+
     /**
      * Inicializa la actividad de gestión de roles.
      */
@@ -56,40 +99,151 @@ public class GestionRolesActivity extends AppCompatActivity {
 
         db = FirebaseFirestore.getInstance();
         contenedor = findViewById(R.id.contenedorUsuariosRoles);
+        mutaciones = new MutacionesOptimistas<>(this, this::repintarTarjeta);
+        etBuscar = findViewById(R.id.etBuscarUsuarios);
+        spFiltroRol = findViewById(R.id.spFiltroRol);
+        btnAnterior = findViewById(R.id.btnPaginaAnterior);
+        btnSiguiente = findViewById(R.id.btnPaginaSiguiente);
+        tvPagina = findViewById(R.id.tvPaginaUsuarios);
 
         // Configuración de Toolbar
         Toolbar toolbar = findViewById(R.id.toolbarRoles);
         setSupportActionBar(toolbar);
         if (getSupportActionBar() != null) getSupportActionBar().setDisplayShowTitleEnabled(false);
 
-        cargarUsuarios();
+        configurarFiltros();
+        reiniciarDirectorio();
+
+        // Perfiles anteriores al directorio: se normalizan una vez y se recarga la página
+        DirectorioUsuarios.asegurarNormalizado(db).addOnSuccessListener(this, actualizados -> {
+            if (actualizados > 0) escucharPagina();
+        });
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        handler.removeCallbacks(busquedaDiferida);
+        if (registroPagina != null) registroPagina.remove();
     }
 
     /**
-     * Recupera del servidor el listado completo de perfiles de usuario.
+     * Conecta la caja de búsqueda (con espera para no abrir un listener por pulsación),
+     * el filtro de rol y los botones de paginación.
      */
-    private void cargarUsuarios() {
-        if (contenedor == null) return;
-        contenedor.removeAllViews();
+    private void configurarFiltros() {
+        etBuscar.addTextChangedListener(new TextWatcher() {
+            @Override public void beforeTextChanged(CharSequence s, int start, int count, int after) {}
+            @Override public void onTextChanged(CharSequence s, int start, int before, int count) {}
+            @Override public void afterTextChanged(Editable s) {
+                handler.removeCallbacks(busquedaDiferida);
+                handler.postDelayed(busquedaDiferida, ESPERA_BUSQUEDA_MS);
+            }
+        });
 
-        db.collection("users").get().addOnCompleteListener(task -> {
-            if (task.isSuccessful() && task.getResult() != null) {
-                for (QueryDocumentSnapshot doc : task.getResult()) {
-                    String uid = doc.getString("uid");
-                    String nombre = doc.getString("nombre");
-                    String email = doc.getString("email");
-                    String rol = doc.getString("rol");
-                    
-                    crearTarjetaUsuario(uid, nombre, email, rol);
-                }
+        ArrayAdapter<String> adapterRoles = new ArrayAdapter<>(this, android.R.layout.simple_spinner_item, FILTROS_ROL);
+        adapterRoles.setDropDownViewResource(android.R.layout.simple_spinner_dropdown_item);
+        spFiltroRol.setAdapter(adapterRoles);
+        spFiltroRol.setOnItemSelectedListener(new AdapterView.OnItemSelectedListener() {
+            @Override
+            public void onItemSelected(AdapterView<?> parent, View view, int position, long id) {
+                String nuevo = position == 0 ? null : FILTROS_ROL[position];
+                if (Objects.equals(nuevo, rolFiltro)) return;
+                rolFiltro = nuevo;
+                reiniciarDirectorio();
             }
+
+            @Override
+            public void onNothingSelected(AdapterView<?> parent) {}
+        });
+
+        btnAnterior.setOnClickListener(v -> {
+            if (pagina == 0) return;
+            pagina--;
+            escucharPagina();
+        });
+        btnSiguiente.setOnClickListener(v -> {
+            if (!hayMas || ultimoDePagina == null) return;
+            while (cursores.size() > pagina + 1) cursores.remove(cursores.size() - 1);
+            cursores.add(ultimoDePagina);
+            pagina++;
+            escucharPagina();
         });
     }
 
+    /**
+     * Vuelve a la primera página con la búsqueda y el filtro actuales.
+     */
+    private void reiniciarDirectorio() {
+        handler.removeCallbacks(busquedaDiferida);
+        cursores.clear();
+        cursores.add(null);
+        pagina = 0;
+        escucharPagina();
+    }
+
+    /**
+     * Sustituye el listener por el de la página actual. Las tarjetas se componen
+     * fuera del hilo principal y los cambios de rol de otros administradores llegan en vivo.
+     */
+    private void escucharPagina() {
+        if (contenedor == null) return;
+        if (registroPagina != null) registroPagina.remove();
+
+        Query consulta = DirectorioUsuarios.consulta(db, etBuscar.getText().toString(), rolFiltro);
+        DocumentSnapshot cursor = cursores.get(pagina);
+        if (cursor != null) consulta = consulta.startAfter(cursor);
+
+        // Descarta entregas ya encoladas del listener anterior
+        int miGeneracion = ++generacion;
+        mutaciones.limpiar();
+        actualizarControles();
+        registroPagina = MapeoSnapshots.escucharPagina(this, consulta, DirectorioUsuarios.TAM_PAGINA,
+                "GestionRoles", Mapeadores::usuarioRol,
+                p -> {
+                    if (miGeneracion == generacion) pintarPagina(p);
+                });
+    }
+
+    private void pintarPagina(MapeoSnapshots.Pagina<UsuarioFila> p) {
+        contenedor.removeAllViews();
+        tarjetas.clear();
+        for (UsuarioFila fila : p.getFilas()) {
+            View tarjeta = crearTarjetaUsuario(fila);
+            if (mutaciones.estaPendiente(fila.getUid())) tarjeta.setAlpha(0.5f);
+            contenedor.addView(tarjeta);
+            tarjetas.put(fila.getUid(), tarjeta);
+            mutaciones.registrarConfirmada(fila.getUid(), fila);
+        }
+        ultimoDePagina = p.getUltimo();
+        hayMas = p.hayMas();
+        actualizarControles();
+    }
+
+    private void actualizarControles() {
+        tvPagina.setText("Página " + (pagina + 1));
+        btnAnterior.setEnabled(pagina > 0);
+        btnSiguiente.setEnabled(hayMas);
+    }
+
+    /**
+     * Sustituye en su sitio la tarjeta de un perfil (versión optimista, confirmada o revertida).
+     */
+    private void repintarTarjeta(String uid, UsuarioFila fila) {
+        View vieja = tarjetas.get(uid);
+        if (vieja == null || fila == null) return;
+        View nueva = crearTarjetaUsuario(fila);
+        if (mutaciones.estaPendiente(uid)) nueva.setAlpha(0.5f);
+        int indice = contenedor.indexOfChild(vieja);
+        contenedor.removeViewAt(indice);
+        contenedor.addView(nueva, indice);
+        tarjetas.put(uid, nueva);
+    }
+
     /**
      * Construye el elemento visual representativo de un perfil de usuario.
      */
-    private void crearTarjetaUsuario(String uid, String nombre, String email, String rol) {
+    private View crearTarjetaUsuario(UsuarioFila fila) {
         LinearLayout tarjeta = new LinearLayout(this);
         tarjeta.setOrientation(LinearLayout.VERTICAL);
         tarjeta.setPadding(40, 40, 40, 40);
@@ -102,25 +256,28 @@ public class GestionRolesActivity extends AppCompatActivity {
         tarjeta.setLayoutParams(params);
 
         TextView tvD = new TextView(this);
-        tvD.setText("👤 " + nombre + "\n📧 " + email + "\n🔑 ROL: " + rol);
+        tvD.setText(fila.getTexto());
         tvD.setTextSize(16);
         tvD.setTextColor(Color.BLACK);
         tvD.setGravity(Gravity.CENTER);
         tarjeta.addView(tvD);
 
         // Evento de cambio de rol
-        tarjeta.setOnClickListener(v -> mostrarMenuRoles(uid, nombre));
+        tarjeta.setOnClickListener(v -> mostrarMenuRoles(fila));
 
-        contenedor.addView(tarjeta);
+        return tarjeta;
     }
 
     /**
      * Despliega el menú de selección de roles administrativos.
      * 
-     * @param uid    Identificador único del usuario a modificar.
-     * @param nombre Nombre del perfil seleccionado.
+     * El nuevo rol se muestra al instante y se revierte si la escritura falla.
+     * 
+     * @param fila Perfil seleccionado.
      */
-    private void mostrarMenuRoles(String uid, String nombre) {
+    private void mostrarMenuRoles(UsuarioFila fila) {
+        String uid = fila.getUid();
+        String nombre = fila.getNombre();
         String[] roles = {"DUEÑO", "VETERINARIO", "ADMIN"};
         new AlertDialog.Builder(this)
                 .setTitle("Cambiar Rol: " + nombre)
@@ -128,12 +285,11 @@ public class GestionRolesActivity extends AppCompatActivity {
                     String nuevoRol = roles[which];
                     Map<String, Object> update = new HashMap<>();
                     update.put("rol", nuevoRol);
-                    
-                    db.collection("users").document(uid).update(update).addOnSuccessListener(aVoid -> {
-                        Toast.makeText(this, "Rol actualizado con éxito", Toast.LENGTH_SHORT).show();
-                        Logger.log("ADMIN cambió rol de " + nombre + " a " + nuevoRol);
-                        cargarUsuarios();
-                    });
+
+                    mutaciones.modificar(uid, Mapeadores.usuarioConRol(fila, nuevoRol),
+                            () -> ColaEscrituras.get().update(db.collection("users").document(uid), update)
+                                    .addOnSuccessListener(aVoid -> Logger.log("ADMIN cambió rol de " + nombre + " a " + nuevoRol)),
+                            e -> Toast.makeText(this, "No se pudo actualizar el rol", Toast.LENGTH_SHORT).show());
                 })
                 .show();
     }
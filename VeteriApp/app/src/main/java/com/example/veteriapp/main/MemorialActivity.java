@@ -15,11 +15,22 @@ import androidx.appcompat.app.AppCompatActivity;
 import androidx.appcompat.widget.Toolbar;
 
 import com.example.veteriapp.R;
+import com.example.veteriapp.data.BundlesIniciales;
+import com.example.veteriapp.data.ColaEscrituras;
+import com.example.veteriapp.data.Mapeadores;
+import com.example.veteriapp.data.MapeoSnapshots;
+import com.example.veteriapp.data.MigracionesEsquema;
+import com.example.veteriapp.data.MuroMemorial;
+import com.example.veteriapp.model.MascotaFila;
+import com.example.veteriapp.utils.MetricasFrames;
 import com.google.firebase.auth.FirebaseAuth;
+import com.google.firebase.firestore.DocumentSnapshot;
 import com.google.firebase.firestore.FirebaseFirestore;
-import com.google.firebase.firestore.QueryDocumentSnapshot;
+import com.google.firebase.firestore.Query;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Clase MemorialActivity.
@@ -27,7 +38,8 @@ import java.util.List;
  * Memorial "El Puente del Arcoíris".
  * Espacio conmemorativo para el recuerdo de mascotas fallecidas.
  * Implementa filtros de privacidad para visualizar recuerdos propios o 
- * el muro público global de la clínica.
+ * el muro público global de la clínica. Ambas vistas son consultas del servidor
+ * sobre la proyección ligera del memorial, paginadas por cursor.
  * 
  * @author Juan Manuel Moreno Sánchez
  * @version 1.0 VeteriApp Release
@@ -36,12 +48,20 @@ public class MemorialActivity extends AppCompatActivity {
 
 	// --- VARIABLES DE LA INTERFAZ ---
     private LinearLayout contenedor;
-    private Button btnPrivado, btnPublico;
+    private Button btnPrivado, btnPublico, btnVerMas;
 
     // --- INSTANCIAS DE FIREBASE ---
     private FirebaseFirestore db;
     private String miUid;
 
+    // --- ESTADO DEL MURO ---
+    private final Map<String, View> tarjetas = new HashMap<>();
+    private boolean esPublico = true;
+    private DocumentSnapshot cursor;
+    private int generacion;
+    private boolean provisional;       // tarjetas pintadas desde el bundle de inicio
+    private boolean primeraRecibida;   // el servidor ya respondió la primera página
+
     /**
      * Inicializa la actividad del memorial con modo inmersivo.
      */
@@ -65,66 +85,108 @@ public class MemorialActivity extends AppCompatActivity {
         btnPrivado = findViewById(R.id.btnMemorialPrivado);
         btnPublico = findViewById(R.id.btnMemorialPublico);
 
+        btnVerMas = new Button(this);
+        btnVerMas.setText("Ver más recuerdos");
+        btnVerMas.setOnClickListener(v -> cargarSiguientePagina());
+
         // Configuración de Barra de Herramientas
         Toolbar toolbar = findViewById(R.id.toolbarMemorial);
         setSupportActionBar(toolbar);
         if (getSupportActionBar() != null) getSupportActionBar().setDisplayShowTitleEnabled(false);
 
-        // LÓGICA DE COMPATIBILIDAD DE ROL (Filtrado de opciones)
+        // Todos los roles empiezan por el muro público: no espera a la lectura del perfil
+        cargarMemorial(true);
+
+        // FILTRADO DE OPCIONES SEGÚN EL ROL
         db.collection("users").document(miUid).get().addOnSuccessListener(doc -> {
             if (doc.exists()) {
-                String rolStr = "";
-                Object rolObj = doc.get("rol");
-                if (rolObj instanceof String) rolStr = (String) rolObj;
-                else if (rolObj instanceof List) {
-                    List<?> l = (List<?>) rolObj;
-                    if (!l.isEmpty()) rolStr = l.get(0).toString();
-                }
+                String rolStr = MigracionesEsquema.rol(doc);
 
                 if ("VETERINARIO".equals(rolStr) || "ADMIN".equals(rolStr)) {
                     if (btnPrivado != null) btnPrivado.setVisibility(View.GONE);
-                    cargarMemorial(true);
                 } else {
-                    cargarMemorial(true);
                     btnPrivado.setOnClickListener(v -> cargarMemorial(false));
                     btnPublico.setOnClickListener(v -> cargarMemorial(true));
                 }
             }
-        }).addOnFailureListener(e -> cargarMemorial(true));
+        });
     }
 
     /**
-     * Recupera los registros de mascotas en estado MEMORIAL.
+     * Reinicia el muro en la vista indicada y carga su primera página.
      * 
      * @param esPublico true para visualizar el muro global, false para el personal.
      */
     private void cargarMemorial(boolean esPublico) {
         if (contenedor == null) return;
+        this.esPublico = esPublico;
+        generacion++;
+        cursor = null;
+        provisional = false;
+        primeraRecibida = false;
+        tarjetas.clear();
         contenedor.removeAllViews();
+        if (esPublico) pintarDesdeBundle();
+        cargarSiguientePagina();
+    }
 
-        db.collection("mascotas").whereEqualTo("estado", "MEMORIAL").get().addOnCompleteListener(task -> {
-            if (task.isSuccessful() && task.getResult() != null) {
-                for (QueryDocumentSnapshot document : task.getResult()) {
-                    String idDoc = document.getId();
-                    String nombre = document.getString("nombre");
-                    String foto = document.getString("fotoBase64");
-                    String dedicatoria = document.getString("dedicatoria");
-                    String uidDuenoDoc = document.getString("uidDueno");
+    /**
+     * Primer pintado del muro público desde el bundle de inicio, ya en la caché local.
+     * Se sustituye por la primera página del servidor en cuanto esta llega.
+     */
+    private void pintarDesdeBundle() {
+        int miGeneracion = generacion;
+        MapeoSnapshots.cargar(this, BundlesIniciales.desdeCache(db, BundlesIniciales.CONSULTA_MEMORIAL),
+                "MemorialBundle", Mapeadores::mascotaMemorial,
+                filas -> {
+                    if (miGeneracion != generacion || primeraRecibida || filas == null) return;
+                    provisional = true;
+                    MetricasFrames.medir(this, MetricasFrames.CONSTRUCCION_LISTA, () -> pintarTarjetas(filas));
+                });
+    }
 
-                    boolean esMia = miUid.equals(uidDuenoDoc);
+    /**
+     * Pide la siguiente página de la vista actual. El filtro de privacidad lo resuelve
+     * el servidor y solo viajan las miniaturas ya reducidas.
+     */
+    private void cargarSiguientePagina() {
+        Query consulta = esPublico ? MuroMemorial.muroPublico(db) : MuroMemorial.recuerdosDe(db, miUid);
+        if (cursor != null) consulta = consulta.startAfter(cursor);
 
-                    if (esPublico || esMia) {
-                        crearTarjetaHomenaje(idDoc, nombre, foto, dedicatoria, esMia);
+        // Una respuesta de una vista anterior (cambio de pestaña) se descarta
+        int miGeneracion = generacion;
+        btnVerMas.setEnabled(false);
+        MapeoSnapshots.cargarPagina(this, consulta, MuroMemorial.TAM_PAGINA, "Memorial", Mapeadores::mascotaMemorial,
+                pagina -> {
+                    if (miGeneracion != generacion) return;
+                    btnVerMas.setEnabled(true);
+                    if (pagina == null) return;
+                    primeraRecibida = true;
+                    if (provisional) {
+                        contenedor.removeAllViews();
+                        tarjetas.clear();
+                        provisional = false;
                     }
-                }
-            }
-        });
+                    contenedor.removeView(btnVerMas);
+                    MetricasFrames.medir(this, MetricasFrames.CONSTRUCCION_LISTA, () -> pintarTarjetas(pagina.getFilas()));
+                    if (pagina.getUltimo() != null) cursor = pagina.getUltimo();
+                    if (pagina.hayMas()) contenedor.addView(btnVerMas);
+                });
+    }
+
+    private void pintarTarjetas(List<MascotaFila> filas) {
+        for (MascotaFila fila : filas) {
+            View tarjeta = crearTarjetaHomenaje(fila);
+            contenedor.addView(tarjeta);
+            tarjetas.put(fila.getIdDoc(), tarjeta);
+        }
     }
 
     /**
      * Construye dinámicamente la tarjeta de recuerdo.
      */
-    private void crearTarjetaHomenaje(String id, String nombre, String fotoBase64, String dedicatoria, boolean puedeEditar) {
+    private View crearTarjetaHomenaje(MascotaFila fila) {
+        boolean puedeEditar = miUid.equals(fila.getUidDueno());
         LinearLayout tarjeta = new LinearLayout(this);
         tarjeta.setOrientation(LinearLayout.VERTICAL);
         tarjeta.setPadding(40, 40, 40, 40);
@@ -136,23 +198,19 @@ public class MemorialActivity extends AppCompatActivity {
         params.setMargins(0, 0, 0, 30);
         tarjeta.setLayoutParams(params);
 
-        // Renderizado de Fotografía
-        if (fotoBase64 != null && !fotoBase64.isEmpty()) {
-            try {
-                byte[] bytes = android.util.Base64.decode(fotoBase64, android.util.Base64.DEFAULT);
-                android.graphics.Bitmap bitmap = android.graphics.BitmapFactory.decodeByteArray(bytes, 0, bytes.length);
-                ImageView img = new ImageView(this);
-                img.setImageBitmap(bitmap);
-                LinearLayout.LayoutParams lp = new LinearLayout.LayoutParams(400, 400);
-                lp.gravity = Gravity.CENTER_HORIZONTAL;
-                img.setLayoutParams(lp);
-                img.setScaleType(ImageView.ScaleType.CENTER_CROP);
-                tarjeta.addView(img);
-            } catch (Exception e) { e.printStackTrace(); }
+        // Renderizado de Fotografía (decodificada en segundo plano)
+        if (fila.getMiniatura() != null) {
+            ImageView img = new ImageView(this);
+            img.setImageBitmap(fila.getMiniatura());
+            LinearLayout.LayoutParams lp = new LinearLayout.LayoutParams(400, 400);
+            lp.gravity = Gravity.CENTER_HORIZONTAL;
+            img.setLayoutParams(lp);
+            img.setScaleType(ImageView.ScaleType.CENTER_CROP);
+            tarjeta.addView(img);
         }
 
         TextView tvNombre = new TextView(this);
-        tvNombre.setText(nombre);
+        tvNombre.setText(fila.getNombre());
         tvNombre.setTextSize(24);
         tvNombre.setTypeface(null, android.graphics.Typeface.BOLD);
         tvNombre.setTextColor(Color.parseColor("#5D4037"));
@@ -160,7 +218,7 @@ public class MemorialActivity extends AppCompatActivity {
         tarjeta.addView(tvNombre);
 
         TextView tvDedicatoria = new TextView(this);
-        tvDedicatoria.setText(dedicatoria != null ? "\"" + dedicatoria + "\"" : "\"Siempre en nuestros corazones\"");
+        tvDedicatoria.setText(fila.getTexto());
         tvDedicatoria.setTextSize(16);
         tvDedicatoria.setTypeface(null, android.graphics.Typeface.ITALIC);
         tvDedicatoria.setGravity(Gravity.CENTER);
@@ -170,25 +228,38 @@ public class MemorialActivity extends AppCompatActivity {
         if (puedeEditar) {
             Button btnEditar = new Button(this);
             btnEditar.setText("Escribir Dedicatoria");
-            btnEditar.setOnClickListener(v -> mostrarDialogoDedicatoria(id, dedicatoria));
+            btnEditar.setOnClickListener(v -> mostrarDialogoDedicatoria(fila));
             tarjeta.addView(btnEditar);
         }
 
-        contenedor.addView(tarjeta);
+        return tarjeta;
     }
 
     /**
      * Muestra el diálogo para que el dueño actualice su mensaje de recuerdo.
+     * La tarjeta se actualiza en su sitio; la ficha del paciente y su recuerdo en el
+     * muro se guardan por la cola persistente, sin recargar el memorial.
      */
-    private void mostrarDialogoDedicatoria(String idMascota, String dedicatoriaActual) {
+    private void mostrarDialogoDedicatoria(MascotaFila fila) {
         AlertDialog.Builder builder = new AlertDialog.Builder(this);
         builder.setTitle("Palabras de Recuerdo");
         final EditText input = new EditText(this);
-        input.setText(dedicatoriaActual);
+        input.setText(fila.getDedicatoria());
         builder.setView(input);
         builder.setPositiveButton("Guardar", (dialog, which) -> {
-            db.collection("mascotas").document(idMascota).update("dedicatoria", input.getText().toString())
-                    .addOnSuccessListener(aVoid -> cargarMemorial(false));
+            String dedicatoria = input.getText().toString();
+            Map<String, Object> cambio = new HashMap<>();
+            cambio.put("dedicatoria", dedicatoria);
+            ColaEscrituras.get().update(db.collection("mascotas").document(fila.getIdDoc()), cambio);
+            ColaEscrituras.get().update(MuroMemorial.referencia(db, fila.getIdDoc()), cambio);
+
+            View vieja = tarjetas.get(fila.getIdDoc());
+            if (vieja == null) return;
+            View nueva = crearTarjetaHomenaje(Mapeadores.mascotaConDedicatoria(fila, dedicatoria));
+            int indice = contenedor.indexOfChild(vieja);
+            contenedor.removeViewAt(indice);
+            contenedor.addView(nueva, indice);
+            tarjetas.put(fila.getIdDoc(), nueva);
         });
         builder.setNegativeButton("Cancelar", null);
         builder.show();
@@ -4,11 +4,8 @@ import androidx.appcompat.app.AppCompatActivity;
 import androidx.appcompat.widget.Toolbar;
 
 import android.content.Intent;
-import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.graphics.Color;
 import android.os.Bundle;
-import android.util.Base64;
 import android.view.Gravity;
 import android.view.View;
 import android.widget.ImageView;
@@ -16,11 +13,12 @@ import android.widget.LinearLayout;
 import android.widget.TextView;
 
 import com.example.veteriapp.R;
+import com.example.veteriapp.data.Mapeadores;
+import com.example.veteriapp.data.MapeoSnapshots;
+import com.example.veteriapp.model.MascotaFila;
 import com.google.android.material.floatingactionbutton.FloatingActionButton;
-import com.google.firebase.Timestamp;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.firestore.FirebaseFirestore;
-import com.google.firebase.firestore.QueryDocumentSnapshot;
 
 /**
  * Clase MisMascotasActivity.
@@ -84,42 +82,18 @@ public class MisMascotasActivity extends AppCompatActivity {
 
     /**
      * Recupera todas las mascotas asociadas al UID del dueño actual.
+     * El mapeo (fechas, fotos y textos) se realiza fuera del hilo principal.
      */
     private void cargarMisMascotas() {
         if (contenedor == null) return;
-        contenedor.removeAllViews();
-
-        db.collection("mascotas")
-                .whereEqualTo("uidDueno", miUid)
-                .get()
-                .addOnCompleteListener(task -> {
-                    if (task.isSuccessful() && !task.getResult().isEmpty()) {
-                        for (QueryDocumentSnapshot document : task.getResult()) {
-                            
-                            // Lectura de identificador secuencial
-                            Object idObj = document.get("id_mascota") != null ? document.get("id_mascota") : document.get("id");
-                            String idNumStr = (idObj != null) ? idObj.toString() : "---";
-
-                            String nombre = document.getString("nombre");
-                            String especie = document.getString("especie");
-                            String raza = document.getString("raza");
-                            String genero = document.getString("genero") != null ? document.getString("genero") : "---";
-                            String estado = document.getString("estado");
-                            String fotoBase64 = document.getString("fotoBase64");
-                            String peso = (document.get("peso") != null) ? document.get("peso").toString() : "0";
-                            String chip = (document.get("chip") != null) ? document.get("chip").toString() : "0";
-                            
-                            // Formateo de fecha Timestamp
-                            String fechaStr = "---";
-                            Object fObj = document.get("fechaNacimiento");
-                            if (fObj instanceof Timestamp) {
-                                fechaStr = new java.text.SimpleDateFormat("dd/MM/yyyy").format(((Timestamp) fObj).toDate());
-                            } else if (fObj != null) {
-                                fechaStr = fObj.toString();
-                            }
-
-                            crearTarjetaMascota(idNumStr, nombre, especie, raza, genero, estado, fotoBase64, fechaStr, peso, chip);
-                        }
+
+        MapeoSnapshots.cargar(this,
+                db.collection("mascotas").whereEqualTo("uidDueno", miUid).get(),
+                "MisMascotas", Mapeadores::mascotaPropia,
+                filas -> {
+                    contenedor.removeAllViews();
+                    if (filas != null && !filas.isEmpty()) {
+                        for (MascotaFila fila : filas) crearTarjetaMascota(fila);
                     } else {
                         TextView tv = new TextView(this);
                         tv.setText("No tienes mascotas registradas.");
@@ -133,8 +107,7 @@ public class MisMascotasActivity extends AppCompatActivity {
     /**
      * Construye y renderiza la tarjeta visual para una mascota.
      */
-    private void crearTarjetaMascota(String idNum, String nombre, String especie, String raza, String genero, String estado, 
-                                     String fotoBase64, String fecha, String peso, String chip) {
+    private void crearTarjetaMascota(MascotaFila fila) {
         LinearLayout tarjeta = new LinearLayout(this);
         tarjeta.setOrientation(LinearLayout.VERTICAL);
         tarjeta.setPadding(30, 30, 30, 30);
@@ -142,30 +115,24 @@ public class MisMascotasActivity extends AppCompatActivity {
         tarjeta.setBackgroundResource(R.drawable.bg_notif_item);
         
         // Identificación visual por colores
-        if ("ACEPTADA".equals(estado)) tarjeta.setBackgroundColor(Color.parseColor("#C8E6C9"));
-        else if ("RECHAZADA".equals(estado)) tarjeta.setBackgroundColor(Color.parseColor("#FFCDD2"));
-        else tarjeta.setBackgroundColor(Color.WHITE);
+        tarjeta.setBackgroundColor(fila.getColorFondo());
 
         LinearLayout.LayoutParams params = new LinearLayout.LayoutParams(
                 LinearLayout.LayoutParams.MATCH_PARENT, LinearLayout.LayoutParams.WRAP_CONTENT);
         params.setMargins(0, 0, 0, 20);
         tarjeta.setLayoutParams(params);
 
-        // Decodificación multimedia Base64
-        if (fotoBase64 != null && !fotoBase64.isEmpty()) {
-            try {
-                byte[] bytes = Base64.decode(fotoBase64, Base64.DEFAULT);
-                Bitmap bitmap = BitmapFactory.decodeByteArray(bytes, 0, bytes.length);
-                ImageView img = new ImageView(this);
-                img.setImageBitmap(bitmap);
-                img.setLayoutParams(new LinearLayout.LayoutParams(300, 300));
-                img.setScaleType(ImageView.ScaleType.CENTER_CROP);
-                tarjeta.addView(img);
-            } catch (Exception e) { e.printStackTrace(); }
+        // Miniatura decodificada en segundo plano
+        if (fila.getMiniatura() != null) {
+            ImageView img = new ImageView(this);
+            img.setImageBitmap(fila.getMiniatura());
+            img.setLayoutParams(new LinearLayout.LayoutParams(300, 300));
+            img.setScaleType(ImageView.ScaleType.CENTER_CROP);
+            tarjeta.addView(img);
         }
 
         TextView datos = new TextView(this);
-        datos.setText("🐾 [" + idNum + "] " + nombre + " (" + genero + ")\n" + especie + " - " + raza + "\nEstado: " + estado);
+        datos.setText(fila.getTexto());
         datos.setTextSize(18);
         datos.setGravity(Gravity.CENTER);
         datos.setTextColor(Color.BLACK);
@@ -174,15 +141,15 @@ public class MisMascotasActivity extends AppCompatActivity {
         // Navegación al Detalle
         tarjeta.setOnClickListener(v -> {
             Intent i = new Intent(MisMascotasActivity.this, DetalleMascotaActivity.class);
-            i.putExtra("nombre", nombre);
-            i.putExtra("especie", especie);
-            i.putExtra("raza", raza);
-            i.putExtra("genero", genero);
-            i.putExtra("estado", estado);
-            i.putExtra("foto", fotoBase64);
-            i.putExtra("fecha", fecha);
-            i.putExtra("peso", peso);
-            i.putExtra("chip", chip);
+            i.putExtra("nombre", fila.getNombre());
+            i.putExtra("especie", fila.getEspecie());
+            i.putExtra("raza", fila.getRaza());
+            i.putExtra("genero", fila.getGenero());
+            i.putExtra("estado", fila.getEstado());
+            i.putExtra("foto", fila.getFotoBase64());
+            i.putExtra("fecha", fila.getFechaNacimiento());
+            i.putExtra("peso", fila.getPeso());
+            i.putExtra("chip", fila.getChip());
             startActivity(i);
         });
 
@@ -15,15 +15,20 @@ import androidx.appcompat.app.AppCompatActivity;
 import androidx.appcompat.widget.Toolbar;
 
 import com.example.veteriapp.R;
+import com.example.veteriapp.data.Clinica;
+import com.example.veteriapp.data.ColaEscrituras;
+import com.example.veteriapp.data.Mapeadores;
+import com.example.veteriapp.data.MapeoSnapshots;
+import com.example.veteriapp.data.MigracionesEsquema;
+import com.example.veteriapp.model.NoticiaFila;
 import com.example.veteriapp.utils.Logger;
 import com.google.firebase.auth.FirebaseAuth;
+import com.google.firebase.firestore.DocumentReference;
 import com.google.firebase.firestore.FirebaseFirestore;
 import com.google.firebase.firestore.Query;
 import com.google.firebase.firestore.QueryDocumentSnapshot;
 
-import java.util.ArrayList;
 import java.util.Collections;
-import java.util.List;
 
 /**
  * Clase NotificacionesActivity.
@@ -39,6 +44,7 @@ public class NotificacionesActivity extends AppCompatActivity {
 
     private LinearLayout contenedor;
     private FirebaseFirestore db;
+    private Clinica clinica; // Fijada al abrir la pantalla
     private String miUid, miRol;
 
     @Override
@@ -54,6 +60,7 @@ public class NotificacionesActivity extends AppCompatActivity {
         setContentView(R.layout.activity_notificaciones);
 
         db = FirebaseFirestore.getInstance();
+        clinica = Clinica.actual();
         miUid = FirebaseAuth.getInstance().getCurrentUser().getUid();
         contenedor = findViewById(R.id.contenedorNotificaciones);
 
@@ -61,17 +68,10 @@ public class NotificacionesActivity extends AppCompatActivity {
         setSupportActionBar(toolbar);
         if (getSupportActionBar() != null) getSupportActionBar().setDisplayShowTitleEnabled(false);
 
-        // Identificación del perfil con lógica de compatibilidad
+        // Identificación del perfil
         db.collection("users").document(miUid).get().addOnSuccessListener(doc -> {
             if (doc.exists()) {
-                Object rObj = doc.get("rol");
-                if (rObj instanceof String) {
-                    miRol = (String) rObj;
-                } else if (rObj instanceof List) {
-                    List<?> roles = (List<?>) rObj;
-                    if (!roles.isEmpty()) miRol = roles.get(0).toString();
-                }
-                
+                miRol = MigracionesEsquema.rol(doc);
                 Log.d("VeteriApp", "Notif - Rol detectado: " + miRol);
                 cargarNotificaciones();
             } else {
@@ -88,6 +88,27 @@ public class NotificacionesActivity extends AppCompatActivity {
         }
     }
 
+    // --- BANDEJA SEGÚN EL ROL ---
+
+    private boolean esPersonal() {
+        return "VETERINARIO".equals(miRol) || "ADMIN".equals(miRol);
+    }
+
+    /**
+     * El personal lee los avisos de su clínica; el dueño, las notificaciones dirigidas a él.
+     */
+    private Query bandeja() {
+        return esPersonal()
+                ? clinica.avisos(db)
+                : db.collection("notificaciones").whereEqualTo("uidDestinatario", miUid);
+    }
+
+    private DocumentReference aviso(String idDoc) {
+        return esPersonal()
+                ? clinica.avisos(db).document(idDoc)
+                : db.collection("notificaciones").document(idDoc);
+    }
+
     private void mostrarDialogoBorrarTodo() {
         new AlertDialog.Builder(this)
                 .setTitle("Vaciar Bandeja 🗑️")
@@ -98,8 +119,7 @@ public class NotificacionesActivity extends AppCompatActivity {
     }
 
     private void borrarTodasLasNotificaciones() {
-        String dest = ("VETERINARIO".equals(miRol) || "ADMIN".equals(miRol)) ? "CLINICA" : miUid;
-        db.collection("notificaciones").whereEqualTo("uidDestinatario", dest).get().addOnSuccessListener(query -> {
+        bandeja().get().addOnSuccessListener(query -> {
             com.google.firebase.firestore.WriteBatch batch = db.batch();
             for (QueryDocumentSnapshot doc : query) {
                 batch.delete(doc.getReference());
@@ -118,50 +138,39 @@ public class NotificacionesActivity extends AppCompatActivity {
      */
     private void cargarNotificaciones() {
         if (contenedor == null) return;
-        contenedor.removeAllViews();
-
-        String dest = ("VETERINARIO".equals(miRol) || "ADMIN".equals(miRol)) ? "CLINICA" : miUid;
-        Log.d("VeteriApp", "Buscando notificaciones para destinatario: " + dest);
-
-        db.collection("notificaciones")
-                .whereEqualTo("uidDestinatario", dest)
-                .get()
-                .addOnCompleteListener(task -> {
-                    if (task.isSuccessful() && task.getResult() != null) {
-                        List<QueryDocumentSnapshot> docs = new ArrayList<>();
-                        for (QueryDocumentSnapshot d : task.getResult()) {
-                            docs.add(d);
-                        }
 
-                        // Ordenación local por timestamp (más reciente primero)
-                        Collections.sort(docs, (d1, d2) -> {
-                            com.google.firebase.Timestamp t1 = d1.getTimestamp("timestamp");
-                            com.google.firebase.Timestamp t2 = d2.getTimestamp("timestamp");
-                            if (t1 == null || t2 == null) return 0;
-                            return t2.compareTo(t1);
-                        });
-
-                        if (docs.isEmpty()) {
-                            TextView empty = new TextView(this);
-                            empty.setText("No tienes notificaciones pendientes.");
-                            empty.setGravity(Gravity.CENTER);
-                            empty.setPadding(0, 50, 0, 0);
-                            contenedor.addView(empty);
-                        } else {
-                            for (QueryDocumentSnapshot doc : docs) {
-                                crearFilaNotificacion(doc.getId(), doc.getString("mensaje"), doc.getBoolean("leida"));
-                            }
-                        }
-                    } else {
-                        Log.e("VeteriApp", "Error Firestore Notif: ", task.getException());
+        Log.d("VeteriApp", "Buscando notificaciones para " + (esPersonal() ? "la clínica " + clinica.getId() : miUid));
+
+        // Mapeo y ordenación local por timestamp (más reciente primero) en segundo plano
+        MapeoSnapshots.cargar(this,
+                bandeja().get(),
+                "Notificaciones", Mapeadores::notificacion,
+                (n1, n2) -> {
+                    if (n1.getInstante() == 0L || n2.getInstante() == 0L) return 0;
+                    return Long.compare(n2.getInstante(), n1.getInstante());
+                },
+                filas -> {
+                    if (filas == null) {
+                        Log.e("VeteriApp", "Error Firestore Notif");
                         Toast.makeText(this, "Error al sincronizar avisos", Toast.LENGTH_SHORT).show();
+                        return;
+                    }
+                    contenedor.removeAllViews();
+                    if (filas.isEmpty()) {
+                        TextView empty = new TextView(this);
+                        empty.setText("No tienes notificaciones pendientes.");
+                        empty.setGravity(Gravity.CENTER);
+                        empty.setPadding(0, 50, 0, 0);
+                        contenedor.addView(empty);
+                    } else {
+                        for (NoticiaFila fila : filas) {
+                            crearFilaNotificacion(fila.getIdDoc(), fila.getContenido(), fila.isLeida());
+                        }
                     }
                 });
     }
 
-    private void crearFilaNotificacion(String idDoc, String mensaje, Boolean leida) {
-        boolean isLeida = (leida != null && leida);
-        
+    private void crearFilaNotificacion(String idDoc, String mensaje, boolean isLeida) {
         LinearLayout tarjeta = new LinearLayout(this);
         tarjeta.setOrientation(LinearLayout.VERTICAL);
         tarjeta.setPadding(35, 35, 35, 35);
@@ -179,16 +188,20 @@ public class NotificacionesActivity extends AppCompatActivity {
         tarjeta.setLayoutParams(params);
 
         TextView tv = new TextView(this);
-        tv.setText(mensaje != null ? mensaje : "Aviso sin contenido");
+        tv.setText(mensaje);
         tv.setTextSize(15);
         tv.setTextColor(Color.BLACK);
         tarjeta.addView(tv);
 
         tarjeta.setOnClickListener(v -> {
-            db.collection("notificaciones").document(idDoc).update("leida", true).addOnSuccessListener(aVoid -> {
-                tarjeta.setBackgroundColor(Color.WHITE);
-                // Si estamos en dashboard, el punto rojo se actualizará solo por el listener de allí
-            });
+            // Se pinta leída al instante: sin red la cola no confirma hasta reconectar.
+            // Si estamos en dashboard, el punto rojo se actualizará solo por el listener de allí
+            tarjeta.setBackgroundColor(Color.WHITE);
+            ColaEscrituras.get().update(aviso(idDoc), Collections.singletonMap("leida", true))
+                    .addOnFailureListener(this, e -> {
+                        if (!isLeida) tarjeta.setBackgroundColor(Color.parseColor("#E8F5E9"));
+                        Toast.makeText(this, "No se pudo marcar el aviso como leído", Toast.LENGTH_SHORT).show();
+                    });
         });
 
         contenedor.addView(tarjeta);
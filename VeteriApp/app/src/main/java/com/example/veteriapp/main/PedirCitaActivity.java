@@ -1,12 +1,14 @@
 package com.example.veteriapp.main;
 
+import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.appcompat.widget.Toolbar;
 
 import android.app.DatePickerDialog;
-import android.app.TimePickerDialog;
 import android.graphics.Color;
 import android.os.Bundle;
+import android.view.View;
+import android.widget.AdapterView;
 import android.widget.ArrayAdapter;
 import android.widget.Button;
 import android.widget.EditText;
@@ -16,16 +18,26 @@ import android.widget.TextView;
 import android.widget.Toast;
 
 import com.example.veteriapp.R;
+import com.example.veteriapp.data.AgendaDisponibilidad;
+import com.example.veteriapp.data.Clinica;
+import com.example.veteriapp.data.ColaEscrituras;
+import com.example.veteriapp.data.Formatos;
+import com.example.veteriapp.data.Mapeadores;
+import com.example.veteriapp.data.MapeoSnapshots;
+import com.example.veteriapp.data.MutacionesOptimistas;
+import com.example.veteriapp.model.Cita;
+import com.example.veteriapp.model.CitaFila;
+import com.example.veteriapp.model.CitaMapeador;
 import com.example.veteriapp.model.EstadoCita;
-import com.google.firebase.Timestamp;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.firestore.FirebaseFirestore;
 import com.google.firebase.firestore.Query;
 import com.google.firebase.firestore.QueryDocumentSnapshot;
 
+import java.time.LocalDate;
+import java.time.LocalTime;
 import java.util.ArrayList;
 import java.util.Calendar;
-import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -35,7 +47,8 @@ import java.util.Map;
  * 
  * Gestiona la solicitud de consultas médicas por parte del dueño.
  * Implementa el filtrado dinámico de mascotas (solo en estado ACEPTADA),
- * la selección de tipo de servicio clínico y la persistencia secuencial.
+ * la selección de tipo de servicio clínico, la elección de hueco entre las
+ * franjas libres de la agenda y la reserva transaccional de la cita.
  * 
  * @author Juan Manuel Moreno Sánchez
  * @version 1.0 VeteriApp Release
@@ -52,8 +65,12 @@ public class PedirCitaActivity extends AppCompatActivity {
 
     // --- INSTANCIAS DE FIREBASE Y ESTADO ---
     private FirebaseFirestore db;
+    private Clinica clinica; // Fijada al abrir la pantalla
     private FirebaseAuth mAuth;
-    private Date fechaHoraElegida;
+    private LocalDate diaElegido;
+    private LocalTime horaElegida;
+    private MutacionesOptimistas<CitaFila> mutaciones;
+    private final Map<String, View> tarjetas = new HashMap<>();
 
     /**
      * Inicializa los componentes de solicitud de cita.
@@ -72,6 +89,7 @@ public class PedirCitaActivity extends AppCompatActivity {
         setContentView(R.layout.activity_pedir_cita);
 
         db = FirebaseFirestore.getInstance();
+        clinica = Clinica.actual();
         mAuth = FirebaseAuth.getInstance();
 
         // Configuración de Barra de Herramientas
@@ -86,6 +104,10 @@ public class PedirCitaActivity extends AppCompatActivity {
         etMotivo = findViewById(R.id.etMotivoCita);
         btnEnviar = findViewById(R.id.btnSolicitarCita);
         contenedorMisCitas = findViewById(R.id.contenedorMisCitas);
+        mutaciones = new MutacionesOptimistas<>(this, (idDoc, fila) -> {
+            View tarjeta = tarjetas.get(idDoc);
+            if (tarjeta != null) tarjeta.setVisibility(fila == null ? View.GONE : View.VISIBLE);
+        });
 
         // Configuración de Spinner de Mascotas
         listaNombresMascotas = new ArrayList<>();
@@ -99,6 +121,19 @@ public class PedirCitaActivity extends AppCompatActivity {
         adapterTipos.setDropDownViewResource(android.R.layout.simple_spinner_dropdown_item);
         spTipo.setAdapter(adapterTipos);
 
+        // La disponibilidad depende del servicio: cambiarlo invalida el hueco elegido
+        spTipo.setOnItemSelectedListener(new AdapterView.OnItemSelectedListener() {
+            @Override
+            public void onItemSelected(AdapterView<?> parent, View view, int position, long id) {
+                diaElegido = null;
+                horaElegida = null;
+                etFecha.setText("");
+            }
+
+            @Override
+            public void onNothingSelected(AdapterView<?> parent) {}
+        });
+
         // Carga de Datos Inicial
         cargarMisMascotasEnSpinner();
         etFecha.setOnClickListener(v -> mostrarSelectorFechaHora());
@@ -133,19 +168,40 @@ public class PedirCitaActivity extends AppCompatActivity {
     }
 
     /**
-     * Despliega selectores nativos de fecha y hora encadenados.
+     * Despliega el selector de fecha y, a continuación, los huecos libres de ese día
+     * para el servicio elegido (una única lectura del documento de disponibilidad).
      */
     private void mostrarSelectorFechaHora() {
         Calendar cal = Calendar.getInstance();
-        new DatePickerDialog(this, (view, year, month, day) -> {
-            cal.set(year, month, day);
-            new TimePickerDialog(this, (view1, hour, minute) -> {
-                cal.set(Calendar.HOUR_OF_DAY, hour);
-                cal.set(Calendar.MINUTE, minute);
-                fechaHoraElegida = cal.getTime();
-                etFecha.setText(day + "/" + (month + 1) + "/" + year + " " + String.format("%02d:%02d", hour, minute));
-            }, cal.get(Calendar.HOUR_OF_DAY), cal.get(Calendar.MINUTE), true).show();
-        }, cal.get(Calendar.YEAR), cal.get(Calendar.MONTH), cal.get(Calendar.DAY_OF_MONTH)).show();
+        DatePickerDialog dialogo = new DatePickerDialog(this, (view, year, month, day) ->
+                mostrarHuecosLibres(LocalDate.of(year, month + 1, day)),
+                cal.get(Calendar.YEAR), cal.get(Calendar.MONTH), cal.get(Calendar.DAY_OF_MONTH));
+        dialogo.getDatePicker().setMinDate(cal.getTimeInMillis());
+        dialogo.show();
+    }
+
+    /**
+     * Muestra las franjas disponibles del día como lista de selección.
+     */
+    private void mostrarHuecosLibres(LocalDate dia) {
+        String tipo = spTipo.getSelectedItem().toString();
+        AgendaDisponibilidad.consultarLibres(db, clinica, dia, tipo).addOnSuccessListener(this, libres -> {
+            if (libres.isEmpty()) {
+                Toast.makeText(this, "No quedan huecos libres ese día", Toast.LENGTH_SHORT).show();
+                return;
+            }
+            String[] opciones = new String[libres.size()];
+            for (int i = 0; i < libres.size(); i++) opciones[i] = libres.get(i).toString();
+
+            new AlertDialog.Builder(this)
+                    .setTitle("Huecos libres")
+                    .setItems(opciones, (d, which) -> {
+                        diaElegido = dia;
+                        horaElegida = libres.get(which);
+                        etFecha.setText(dia.format(Formatos.FECHA) + " " + horaElegida);
+                    }).show();
+        }).addOnFailureListener(this, e ->
+                Toast.makeText(this, "No se pudo consultar la agenda (¿sin conexión?)", Toast.LENGTH_SHORT).show());
     }
 
     /**
@@ -156,7 +212,7 @@ public class PedirCitaActivity extends AppCompatActivity {
         String tipo = spTipo.getSelectedItem().toString();
         String motivo = etMotivo.getText().toString().trim();
 
-        if (mascota.contains("No tienes") || fechaHoraElegida == null) {
+        if (mascota.contains("No tienes") || diaElegido == null || horaElegida == null) {
             Toast.makeText(this, "Selecciona una mascota válida", Toast.LENGTH_SHORT).show();
             return;
         }
@@ -165,7 +221,7 @@ public class PedirCitaActivity extends AppCompatActivity {
         db.collection("users").document(uid).get().addOnSuccessListener(doc -> {
             if (doc.exists()) {
                 final String nombreReal = doc.getString("nombre");
-                db.collection("citas").orderBy("id_cita", Query.Direction.DESCENDING).limit(1).get()
+                clinica.citas(db).orderBy("id_cita", Query.Direction.DESCENDING).limit(1).get()
                         .addOnSuccessListener(snap -> {
                             int idC = 1;
                             if (!snap.isEmpty()) {
@@ -173,20 +229,25 @@ public class PedirCitaActivity extends AppCompatActivity {
                                 if (ult != null) idC = ult.intValue() + 1;
                             }
                             
-                            Map<String, Object> data = new HashMap<>();
-                            data.put("id_cita", idC);
-                            data.put("uidUsuario", uid);
-                            data.put("nombreUsuario", nombreReal);
-                            data.put("nombreMascota", mascota);
-                            data.put("tipo", tipo);
-                            data.put("motivo", motivo);
-                            data.put("fechaHora", new Timestamp(fechaHoraElegida));
-                            data.put("estado", EstadoCita.PENDIENTE.name());
+                            Cita cita = new Cita(uid, nombreReal, mascota, tipo, motivo);
+                            cita.setIdCita((long) idC);
+                            Map<String, Object> data = CitaMapeador.aMapa(cita);
 
-                            db.collection("citas").add(data).addOnSuccessListener(ref -> {
-                                emitirNotificacionClinica(nombreReal, mascota);
-                                finish();
-                            });
+                            // Reclama la franja y crea la cita de forma atómica
+                            AgendaDisponibilidad.reservar(db, clinica, diaElegido, horaElegida, tipo, data)
+                                    .addOnSuccessListener(this, ref -> {
+                                        emitirNotificacionClinica(nombreReal, mascota);
+                                        finish();
+                                    })
+                                    .addOnFailureListener(this, e -> {
+                                        if (e instanceof AgendaDisponibilidad.FranjaOcupadaException) {
+                                            Toast.makeText(this, "Ese hueco acaba de ocuparse, elige otro", Toast.LENGTH_LONG).show();
+                                            horaElegida = null;
+                                            etFecha.setText("");
+                                        } else {
+                                            Toast.makeText(this, "No se pudo reservar la cita", Toast.LENGTH_SHORT).show();
+                                        }
+                                    });
                         });
             }
         });
@@ -196,69 +257,54 @@ public class PedirCitaActivity extends AppCompatActivity {
      * Registra un aviso de nueva cita para el personal clínico.
      */
     private void emitirNotificacionClinica(String dueno, String mascota) {
-        db.collection("notificaciones").orderBy("id_notificacion", Query.Direction.DESCENDING).limit(1).get()
-                .addOnSuccessListener(snap -> {
-                    int idN = 1;
-                    if (!snap.isEmpty()) {
-                        Number ult = snap.getDocuments().get(0).getLong("id_notificacion");
-                        if (ult != null) idN = ult.intValue() + 1;
-                    }
-                    Map<String, Object> n = new HashMap<>();
-                    n.put("id_notificacion", idN);
-                    n.put("uidDestinatario", "CLINICA");
-                    n.put("mensaje", "Nueva cita: " + dueno + " para " + mascota);
-                    n.put("leida", false);
-                    n.put("timestamp", Timestamp.now());
-                    db.collection("notificaciones").add(n);
-                });
+        ColaEscrituras.get().set(clinica.avisos(db).document(),
+                Clinica.aviso("Nueva cita: " + dueno + " para " + mascota));
     }
 
     /**
      * Recupera el historial de solicitudes propias del usuario.
+     * El mapeo de documentos a filas se realiza fuera del hilo principal.
      */
     private void cargarMisCitas() {
         if (contenedorMisCitas == null) return;
-        contenedorMisCitas.removeAllViews();
-        db.collection("citas").whereEqualTo("uidUsuario", mAuth.getCurrentUser().getUid()).get().addOnCompleteListener(task -> {
-            if (task.isSuccessful()) {
-                for (QueryDocumentSnapshot doc : task.getResult()) {
-                    String t = doc.getString("nombreMascota");
-                    String s = doc.getString("tipo") != null ? doc.getString("tipo") : "General";
-                    String st = doc.getString("estado");
-                    
-                    Timestamp ts = doc.getTimestamp("fechaHora");
-                    String f = (ts != null) ? new java.text.SimpleDateFormat("dd/MM/yyyy HH:mm").format(ts.toDate()) : "---";
-
-                    crearTarjetaVisual(doc.getId(), t, s, f, st);
-                }
-            }
-        });
+        MapeoSnapshots.cargar(this,
+                clinica.citas(db).whereEqualTo("uidUsuario", mAuth.getCurrentUser().getUid()).get(),
+                "MisCitas", Mapeadores::citaPropia,
+                filas -> {
+                    if (filas == null) return;
+                    contenedorMisCitas.removeAllViews();
+                    tarjetas.clear();
+                    mutaciones.limpiar();
+                    for (CitaFila fila : filas) {
+                        mutaciones.registrarConfirmada(fila.getIdDoc(), fila);
+                        crearTarjetaVisual(fila);
+                    }
+                });
     }
 
     /**
      * Construye el elemento visual para cada cita en el historial.
      */
-    private void crearTarjetaVisual(String idDoc, String mascota, String tipo, String fecha, String estado) {
+    private void crearTarjetaVisual(CitaFila fila) {
         LinearLayout layout = new LinearLayout(this);
         layout.setOrientation(LinearLayout.VERTICAL);
         layout.setPadding(20, 20, 20, 20);
         layout.setBackgroundResource(R.drawable.bg_notif_item);
-
-        if (EstadoCita.PENDIENTE.name().equals(estado)) layout.setBackgroundColor(Color.parseColor("#FFF59D"));
-        else if (EstadoCita.CONFIRMADA.name().equals(estado)) layout.setBackgroundColor(Color.parseColor("#A5D6A7"));
-        else if (EstadoCita.ARCHIVADA.name().equals(estado)) layout.setBackgroundColor(Color.parseColor("#E0E0E0"));
-        else layout.setBackgroundColor(Color.parseColor("#EF9A9A"));
+        layout.setBackgroundColor(fila.getColorFondo());
 
         TextView tv = new TextView(this);
-        tv.setText("🐾 " + mascota + " (" + tipo + ")\n📅 " + fecha + "\nEstado: " + estado);
+        tv.setText(fila.getTexto());
         tv.setTextSize(16);
         tv.setTextColor(Color.BLACK);
         layout.addView(tv);
 
-        if (!EstadoCita.PENDIENTE.name().equals(estado)) {
+        if (!EstadoCita.PENDIENTE.name().equals(fila.getEstado())) {
             Button btn = new Button(this);
             btn.setText("Borrar");
-            btn.setOnClickListener(v -> db.collection("citas").document(idDoc).delete().addOnSuccessListener(aVoid -> cargarMisCitas()));
+            // Borrado optimista: la tarjeta desaparece al instante y vuelve si la operación falla
+            btn.setOnClickListener(v -> mutaciones.eliminar(fila.getIdDoc(),
+                    () -> AgendaDisponibilidad.eliminarCita(db, clinica, fila.getIdDoc()),
+                    e -> Toast.makeText(this, "No se pudo borrar la cita", Toast.LENGTH_SHORT).show()));
             layout.addView(btn);
         }
 
@@ -267,5 +313,6 @@ public class PedirCitaActivity extends AppCompatActivity {
         params.setMargins(0, 0, 0, 20);
         layout.setLayoutParams(params);
         contenedorMisCitas.addView(layout);
+        tarjetas.put(fila.getIdDoc(), layout);
     }
-}
\ No newline at end of file
+}
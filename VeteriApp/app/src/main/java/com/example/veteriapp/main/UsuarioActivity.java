@@ -21,14 +21,18 @@ import androidx.drawerlayout.widget.DrawerLayout;
 
 import com.example.veteriapp.R;
 import com.example.veteriapp.auth.LoginActivity;
+import com.example.veteriapp.data.FlujoConsulta;
+import com.example.veteriapp.data.MuroNoticias;
+import com.example.veteriapp.data.RegistroEscuchas;
 import com.example.veteriapp.model.AnimalFact;
+import com.example.veteriapp.model.NoticiaFila;
 import com.example.veteriapp.api.AnimalApiService;
 import com.example.veteriapp.utils.SoundManager;
+import com.example.veteriapp.utils.TrazaRendimiento;
 import com.google.android.material.navigation.NavigationView;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseUser;
 import com.google.firebase.firestore.FirebaseFirestore;
-import com.google.firebase.firestore.Query;
 import com.google.firebase.firestore.QueryDocumentSnapshot;
 import com.google.mlkit.nl.translate.TranslateLanguage;
 import com.google.mlkit.nl.translate.Translation;
@@ -37,6 +41,9 @@ import com.google.mlkit.nl.translate.TranslatorOptions;
 
 import org.checkerframework.checker.nullness.qual.NonNull;
 
+import java.util.Arrays;
+import java.util.List;
+
 import retrofit2.Call;
 import retrofit2.Callback;
 import retrofit2.Response;
@@ -60,6 +67,9 @@ public class UsuarioActivity extends AppCompatActivity implements NavigationView
     private FirebaseAuth mAuth;
     private FirebaseFirestore db;
 
+    // --- LISTENERS LIGADOS AL CICLO DE VIDA ---
+    private final RegistroEscuchas escuchas = new RegistroEscuchas(this, "PanelDueno");
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
@@ -70,6 +80,7 @@ public class UsuarioActivity extends AppCompatActivity implements NavigationView
         getWindow().getDecorView().setSystemUiVisibility(View.SYSTEM_UI_FLAG_LAYOUT_STABLE);
 
         setContentView(R.layout.activity_usuario);
+        TrazaRendimiento.marcarPrimerFrame(this, "PanelUsuario");
 
         mAuth = FirebaseAuth.getInstance();
         db = FirebaseFirestore.getInstance();
@@ -90,6 +101,8 @@ public class UsuarioActivity extends AppCompatActivity implements NavigationView
         if (menu.findItem(R.id.nav_publicar_noticia) != null) menu.findItem(R.id.nav_publicar_noticia).setVisible(false);
         if (menu.findItem(R.id.nav_gestion_roles) != null) menu.findItem(R.id.nav_gestion_roles).setVisible(false);
         if (menu.findItem(R.id.nav_limpieza_datos) != null) menu.findItem(R.id.nav_limpieza_datos).setVisible(false);
+        if (menu.findItem(R.id.nav_exportar_datos) != null) menu.findItem(R.id.nav_exportar_datos).setVisible(false);
+        if (menu.findItem(R.id.nav_importar_datos) != null) menu.findItem(R.id.nav_importar_datos).setVisible(false);
 
         ActionBarDrawerToggle toggle = new ActionBarDrawerToggle(this, drawerLayout, toolbar, R.string.open_nav, R.string.close_nav);
         drawerLayout.addDrawerListener(toggle);
@@ -115,30 +128,27 @@ public class UsuarioActivity extends AppCompatActivity implements NavigationView
         View puntoRojoBell = findViewById(R.id.puntoRojoNotif);
         View puntoRojoChat = findViewById(R.id.puntoRojoChatFab);
 
-        db.collection("notificaciones")
+        // Estado de los dos puntos [campana, chat]: solo se repinta cuando alguno cambia
+        FlujoConsulta<List<Boolean>> avisos = FlujoConsulta.de(db.collection("notificaciones")
                 .whereEqualTo("uidDestinatario", uid)
-                .whereEqualTo("leida", false)
-                .addSnapshotListener((value, error) -> {
-                    if (error != null) {
-                        Log.e("VeteriApp", "Error Listener Notif Usuario", error);
-                        return;
-                    }
-                    
-                    if (value != null) {
-                        boolean hayNotificaciones = !value.isEmpty();
-                        boolean hayChat = false;
-                        
-                        for (QueryDocumentSnapshot doc : value) {
-                            String msg = doc.getString("mensaje");
-                            if (msg != null && msg.contains("Chat")) hayChat = true;
-                        }
-
-                        if (puntoRojoBell != null) puntoRojoBell.setVisibility(hayNotificaciones ? View.VISIBLE : View.GONE);
-                        if (puntoRojoChat != null) puntoRojoChat.setVisibility(hayChat ? View.VISIBLE : View.GONE);
-                        
-                        Log.d("VeteriApp", "Notif Usuario - Bell: " + hayNotificaciones + " | Chat: " + hayChat);
+                .whereEqualTo("leida", false), "AvisosUsuario", value -> {
+                    boolean hayChat = false;
+                    for (QueryDocumentSnapshot doc : value) {
+                        String msg = doc.getString("mensaje");
+                        if (msg != null && msg.contains("Chat")) hayChat = true;
                     }
-                });
+                    return Arrays.asList(!value.isEmpty(), hayChat);
+                }).sinRafagas(FlujoConsulta.VENTANA_RAFAGA_MS);
+
+        escuchas.escuchar(() -> avisos.observar(this, estado -> {
+            boolean hayNotificaciones = estado.get(0);
+            boolean hayChat = estado.get(1);
+
+            if (puntoRojoBell != null) puntoRojoBell.setVisibility(hayNotificaciones ? View.VISIBLE : View.GONE);
+            if (puntoRojoChat != null) puntoRojoChat.setVisibility(hayChat ? View.VISIBLE : View.GONE);
+
+            Log.d("VeteriApp", "Notif Usuario - Bell: " + hayNotificaciones + " | Chat: " + hayChat);
+        }));
     }
 
     private void actualizarHeaderYBienvenida(NavigationView nav, FirebaseUser user) {
@@ -151,13 +161,13 @@ public class UsuarioActivity extends AppCompatActivity implements NavigationView
         if (ivHeaderFoto != null) ivHeaderFoto.setImageResource(R.drawable.usuario_foto);
         if (tvHeaderEmail != null) tvHeaderEmail.setText(user.getEmail());
 
-        db.collection("users").document(user.getUid()).get().addOnSuccessListener(document -> {
+        db.collection("users").document(user.getUid()).get().addOnSuccessListener(escuchas.alExito(document -> {
             if (document.exists()) {
                 String nombre = document.getString("nombre");
                 if (tvHeaderNombre != null) tvHeaderNombre.setText(nombre);
                 if (tvBienvenida != null) tvBienvenida.setText("¡Hola, " + nombre + "! 🐾");
             }
-        });
+        }));
     }
 
     private void cargarDatoCurioso() {
@@ -195,29 +205,31 @@ public class UsuarioActivity extends AppCompatActivity implements NavigationView
         });
     }
 
+    /**
+     * El muro solo se vuelve a leer cuando cambia su versión; entre tanto se pinta
+     * desde la caché y únicamente se tocan las noticias que han cambiado.
+     */
     private void cargarMuroNoticias() {
-        db.collection("noticias").orderBy("timestamp", Query.Direction.DESCENDING).limit(5)
-                .addSnapshotListener((value, error) -> {
-                    if (error != null || value == null) return;
-                    contenedorNoticias.removeAllViews();
-                    for (QueryDocumentSnapshot doc : value) {
-                        crearFilaNoticia(doc.getString("titulo"), doc.getString("contenido"));
-                    }
-                });
+        escuchas.escuchar(() -> MuroNoticias.escuchar(this, db,
+                filas -> MuroNoticias.pintar(contenedorNoticias, filas, this::crearFilaNoticia)));
     }
 
-    private void crearFilaNoticia(String titulo, String contenido) {
+    private View crearFilaNoticia(NoticiaFila fila) {
+        LinearLayout noticia = new LinearLayout(this);
+        noticia.setOrientation(LinearLayout.VERTICAL);
+
         TextView tvT = new TextView(this);
-        tvT.setText(titulo);
+        tvT.setText(fila.getTitulo());
         tvT.setTextColor(Color.parseColor("#388E3C"));
         tvT.setTextSize(16);
         tvT.setTypeface(null, android.graphics.Typeface.BOLD);
-        contenedorNoticias.addView(tvT);
+        noticia.addView(tvT);
 
         TextView tvC = new TextView(this);
-        tvC.setText(contenido);
+        tvC.setText(fila.getContenido());
         tvC.setPadding(0, 0, 0, 30);
-        contenedorNoticias.addView(tvC);
+        noticia.addView(tvC);
+        return noticia;
     }
 
     @Override
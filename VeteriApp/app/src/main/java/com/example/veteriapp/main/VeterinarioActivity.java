@@ -22,17 +22,22 @@ import androidx.drawerlayout.widget.DrawerLayout;
 
 import com.example.veteriapp.R;
 import com.example.veteriapp.auth.LoginActivity;
+import com.example.veteriapp.data.Clinica;
+import com.example.veteriapp.data.FlujoConsulta;
+import com.example.veteriapp.data.MuroNoticias;
+import com.example.veteriapp.data.RegistroEscuchas;
 import com.example.veteriapp.model.AnimalFact;
+import com.example.veteriapp.model.NoticiaFila;
 import com.example.veteriapp.api.AnimalApiService;
 import com.example.veteriapp.utils.Logger;
 import com.example.veteriapp.utils.NotificationHelper;
 import com.example.veteriapp.utils.SoundManager;
+import com.example.veteriapp.utils.TrazaRendimiento;
 import com.google.android.material.navigation.NavigationView;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseUser;
 import com.google.firebase.firestore.FirebaseFirestore;
-import com.google.firebase.firestore.Query;
-import com.google.firebase.firestore.QueryDocumentSnapshot;
+import com.google.firebase.firestore.QuerySnapshot;
 import com.google.mlkit.nl.translate.TranslateLanguage;
 import com.google.mlkit.nl.translate.Translation;
 import com.google.mlkit.nl.translate.Translator;
@@ -40,9 +45,6 @@ import com.google.mlkit.nl.translate.TranslatorOptions;
 
 import org.checkerframework.checker.nullness.qual.NonNull;
 
-import java.util.HashMap;
-import java.util.Map;
-
 import retrofit2.Call;
 import retrofit2.Callback;
 import retrofit2.Response;
@@ -65,7 +67,11 @@ public class VeterinarioActivity extends AppCompatActivity implements Navigation
     private LinearLayout contenedorNoticias;
     private FirebaseAuth mAuth;
     private FirebaseFirestore db;
-    private boolean isFirstLaunchCitas = true;
+    private Clinica clinica; // Fijada al abrir la pantalla
+
+    // --- LISTENERS LIGADOS AL CICLO DE VIDA ---
+    private final RegistroEscuchas escuchas = new RegistroEscuchas(this, "PanelVeterinario");
+    private int avisosVistos = -1;
     private boolean isFirstLaunchMascotas = true;
 
     @Override
@@ -78,9 +84,11 @@ public class VeterinarioActivity extends AppCompatActivity implements Navigation
         getWindow().getDecorView().setSystemUiVisibility(View.SYSTEM_UI_FLAG_LAYOUT_STABLE);
 
         setContentView(R.layout.activity_veterinario);
+        TrazaRendimiento.marcarPrimerFrame(this, "PanelVeterinario");
 
         mAuth = FirebaseAuth.getInstance();
         db = FirebaseFirestore.getInstance();
+        clinica = Clinica.actual();
         SoundManager.init(this);
 
         Toolbar toolbar = findViewById(R.id.toolbar);
@@ -97,6 +105,8 @@ public class VeterinarioActivity extends AppCompatActivity implements Navigation
         if (menu.findItem(R.id.nav_pedir_cita) != null) menu.findItem(R.id.nav_pedir_cita).setVisible(false);
         if (menu.findItem(R.id.nav_gestion_roles) != null) menu.findItem(R.id.nav_gestion_roles).setVisible(false);
         if (menu.findItem(R.id.nav_limpieza_datos) != null) menu.findItem(R.id.nav_limpieza_datos).setVisible(false);
+        if (menu.findItem(R.id.nav_exportar_datos) != null) menu.findItem(R.id.nav_exportar_datos).setVisible(false);
+        if (menu.findItem(R.id.nav_importar_datos) != null) menu.findItem(R.id.nav_importar_datos).setVisible(false);
 
         ActionBarDrawerToggle toggle = new ActionBarDrawerToggle(this, drawerLayout, toolbar, R.string.open_nav, R.string.close_nav);
         drawerLayout.addDrawerListener(toggle);
@@ -123,41 +133,35 @@ public class VeterinarioActivity extends AppCompatActivity implements Navigation
         if (ivHeaderFoto != null) ivHeaderFoto.setImageResource(R.drawable.vete_foto);
         if (user != null) {
             tvEmail.setText(user.getEmail());
-            db.collection("users").document(user.getUid()).get().addOnSuccessListener(doc -> {
+            db.collection("users").document(user.getUid()).get().addOnSuccessListener(escuchas.alExito(doc -> {
                 if (doc.exists()) tvNombre.setText(doc.getString("nombre"));
-            });
+            }));
         }
     }
 
     /**
-     * Sincroniza las alertas destinadas a la CLINICA.
+     * Sincroniza los avisos pendientes de la clínica.
      */
     private void setupFirestoreListeners() {
         View puntoRojo = findViewById(R.id.puntoRojoNotif);
 
-        db.collection("notificaciones")
-                .whereEqualTo("uidDestinatario", "CLINICA")
-                .whereEqualTo("leida", false)
-                .addSnapshotListener((value, error) -> {
-                    if (error != null) {
-                        Log.e("VeteriApp", "Error Listener Clínica", error);
-                        return;
-                    }
-                    
-                    if (value != null) {
-                        boolean hayNoticias = !value.isEmpty();
-                        if (puntoRojo != null) puntoRojo.setVisibility(hayNoticias ? View.VISIBLE : View.GONE);
-                        
-                        Log.d("VeteriApp", "Notif Clínica - Bell: " + hayNoticias);
-
-                        // Alerta local (Banner) si llegan nuevas mientras la App está abierta
-                        if (hayNoticias && !isFirstLaunchCitas) {
-                             NotificationHelper.showNotification(this, "VeteriApp Clínica", "Tienes nuevas solicitudes pendientes");
-                             SoundManager.playPop();
-                        }
-                        isFirstLaunchCitas = false;
-                    }
-                });
+        // Cuenta de avisos pendientes: una ráfaga de avisos llega como un único cambio
+        FlujoConsulta<Integer> avisos = FlujoConsulta.de(clinica.avisosPendientes(db), "AvisosClinica", QuerySnapshot::size)
+                .sinRafagas(FlujoConsulta.VENTANA_RAFAGA_MS);
+        escuchas.escuchar(() -> avisos.observar(this, pendientes -> {
+            boolean hayNoticias = pendientes > 0;
+            if (puntoRojo != null) puntoRojo.setVisibility(hayNoticias ? View.VISIBLE : View.GONE);
+
+            Log.d("VeteriApp", "Notif Clínica - Bell: " + hayNoticias);
+
+            // Alerta local (Banner) solo si han llegado avisos nuevos desde la última entrega;
+            // lo que ya estaba pendiente al abrir el panel no suena como nuevo
+            if (avisosVistos >= 0 && pendientes > avisosVistos) {
+                NotificationHelper.showNotification(this, "VeteriApp Clínica", "Tienes nuevas solicitudes pendientes");
+                SoundManager.playPop();
+            }
+            avisosVistos = pendientes;
+        }));
     }
 
     private void cargarDatoCurioso() {
@@ -195,29 +199,31 @@ public class VeterinarioActivity extends AppCompatActivity implements Navigation
         });
     }
 
+    /**
+     * El muro solo se vuelve a leer cuando cambia su versión; entre tanto se pinta
+     * desde la caché y únicamente se tocan las noticias que han cambiado.
+     */
     private void cargarMuroNoticias() {
-        db.collection("noticias").orderBy("timestamp", Query.Direction.DESCENDING).limit(5)
-                .addSnapshotListener((value, error) -> {
-                    if (error != null || value == null) return;
-                    contenedorNoticias.removeAllViews();
-                    for (QueryDocumentSnapshot doc : value) {
-                        crearFilaNoticia(doc.getString("titulo"), doc.getString("contenido"));
-                    }
-                });
+        escuchas.escuchar(() -> MuroNoticias.escuchar(this, db,
+                filas -> MuroNoticias.pintar(contenedorNoticias, filas, this::crearFilaNoticia)));
     }
 
-    private void crearFilaNoticia(String titulo, String contenido) {
+    private View crearFilaNoticia(NoticiaFila fila) {
+        LinearLayout noticia = new LinearLayout(this);
+        noticia.setOrientation(LinearLayout.VERTICAL);
+
         TextView tvT = new TextView(this);
-        tvT.setText(titulo);
+        tvT.setText(fila.getTitulo());
         tvT.setTextColor(Color.parseColor("#388E3C"));
         tvT.setTextSize(16);
         tvT.setTypeface(null, android.graphics.Typeface.BOLD);
-        contenedorNoticias.addView(tvT);
+        noticia.addView(tvT);
 
         TextView tvC = new TextView(this);
-        tvC.setText(contenido);
+        tvC.setText(fila.getContenido());
         tvC.setPadding(0, 0, 0, 30);
-        contenedorNoticias.addView(tvC);
+        noticia.addView(tvC);
+        return noticia;
     }
 
     @Override
@@ -247,11 +253,8 @@ public class VeterinarioActivity extends AppCompatActivity implements Navigation
         final EditText etC = new EditText(this); etC.setHint("Contenido"); layout.addView(etC);
         builder.setView(layout);
         builder.setPositiveButton("Publicar", (dialog, which) -> {
-            Map<String, Object> n = new HashMap<>();
-            n.put("titulo", etT.getText().toString());
-            n.put("contenido", etC.getText().toString());
-            n.put("timestamp", com.google.firebase.Timestamp.now());
-            db.collection("noticias").add(n).addOnSuccessListener(doc -> {
+            // Noticia y versión del muro en el mismo commit
+            MuroNoticias.publicar(db, etT.getText().toString(), etC.getText().toString()).addOnSuccessListener(this, aVoid -> {
                 Toast.makeText(this, "Noticia publicada", Toast.LENGTH_SHORT).show();
                 Logger.log("Veterinario publicó noticia: " + etT.getText().toString());
             });
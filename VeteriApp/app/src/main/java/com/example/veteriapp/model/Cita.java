@@ -1,43 +1,56 @@
 package com.example.veteriapp.model;
 
+import com.example.veteriapp.procesador.Campo;
+import com.example.veteriapp.procesador.IdDocumento;
+import com.example.veteriapp.procesador.Mapeable;
+import com.google.firebase.Timestamp;
+
 /**
  * Modelo de datos para las Citas Médicas.
+ * El ciclo de estados se rige por la enumeración {@link EstadoCita}.
+ * Los nombres de campo coinciden con los documentos de "citas" (ver MigracionesEsquema);
+ * CitaMapeador se genera al compilar a partir de esta clase.
  */
+@Mapeable
 public class Cita {
 
-    public enum EstadoCita {
-        PENDIENTE, ACEPTADA, RECHAZADA, MODIFICADA, CONFIRMADA, CANCELADA, ARCHIVADA
-    }
-
     public enum TipoCita {
         POR_DEFINIR, CONSULTA, VACUNACION, CIRUGIA, REVISION, URGENCIA, PELUQUERIA, FINALIZADA
     }
 
+    @IdDocumento
     private String id;
+    @Campo("id_cita")
+    private Long idCita;
     private String uidUsuario;
     private String nombreUsuario;
     private String nombreMascota;
-    private String motivoDueño;
-    private String tipoAsignado;
-    private String fechaHora;
+    private String motivo;
+    private String tipo;
+    private Timestamp fechaHora;
     private String estado;
     private String notaVeterinario;
 
     public Cita() {}
 
-    public Cita(String uidUsuario, String nombreUsuario, String nombreMascota, String motivoDueño, String fechaHora) {
+    /**
+     * Solicitud nueva del dueño. La fecha la fija la agenda al reservar la franja.
+     */
+    public Cita(String uidUsuario, String nombreUsuario, String nombreMascota, String tipo, String motivo) {
         this.uidUsuario = uidUsuario;
         this.nombreUsuario = nombreUsuario;
         this.nombreMascota = nombreMascota;
-        this.motivoDueño = motivoDueño;
-        this.fechaHora = fechaHora;
+        this.tipo = tipo;
+        this.motivo = motivo;
         this.estado = EstadoCita.PENDIENTE.name();
-        this.tipoAsignado = TipoCita.POR_DEFINIR.name();
     }
 
     public String getId() { return id; }
     public void setId(String id) { this.id = id; }
 
+    public Long getIdCita() { return idCita; }
+    public void setIdCita(Long idCita) { this.idCita = idCita; }
+
     public String getUidUsuario() { return uidUsuario; }
     public void setUidUsuario(String uidUsuario) { this.uidUsuario = uidUsuario; }
 
@@ -47,14 +60,14 @@ public class Cita {
     public String getNombreMascota() { return nombreMascota; }
     public void setNombreMascota(String nombreMascota) { this.nombreMascota = nombreMascota; }
 
-    public String getMotivoDueño() { return motivoDueño; }
-    public void setMotivoDueño(String motivoDueño) { this.motivoDueño = motivoDueño; }
+    public String getMotivo() { return motivo; }
+    public void setMotivo(String motivo) { this.motivo = motivo; }
 
-    public String getTipoAsignado() { return tipoAsignado; }
-    public void setTipoAsignado(String tipoAsignado) { this.tipoAsignado = tipoAsignado; }
+    public String getTipo() { return tipo; }
+    public void setTipo(String tipo) { this.tipo = tipo; }
 
-    public String getFechaHora() { return fechaHora; }
-    public void setFechaHora(String fechaHora) { this.fechaHora = fechaHora; }
+    public Timestamp getFechaHora() { return fechaHora; }
+    public void setFechaHora(Timestamp fechaHora) { this.fechaHora = fechaHora; }
 
     public String getEstado() { return estado; }
     public void setEstado(String estado) { this.estado = estado; }
@@ -0,0 +1,44 @@
+package com.example.veteriapp.model;
+
+/**
+ * Clase de Modelo de Vista para Citas.
+ * 
+ * Fila inmutable y lista para pintar, construida fuera del hilo principal
+ * a partir de un documento de la colección "citas".
+ * 
+ * @author Juan Manuel Moreno Sánchez
+ * @version 1.0 VeteriApp Release
+ */
+public final class CitaFila {
+
+    private final String idDoc;
+    private final String uidDueno;
+    private final String nombreMascota;
+    private final String estado;
+    private final String notaVeterinario;
+    private final long version;
+    private final String texto;
+    private final int colorFondo;
+
+    public CitaFila(String idDoc, String uidDueno, String nombreMascota, String estado, String notaVeterinario,
+                    long version, String texto, int colorFondo) {
+        this.idDoc = idDoc;
+        this.uidDueno = uidDueno;
+        this.nombreMascota = nombreMascota;
+        this.estado = estado;
+        this.notaVeterinario = notaVeterinario;
+        this.version = version;
+        this.texto = texto;
+        this.colorFondo = colorFondo;
+    }
+
+    public String getIdDoc() { return idDoc; }
+    public String getUidDueno() { return uidDueno; }
+    public String getNombreMascota() { return nombreMascota; }
+    public String getEstado() { return estado; }
+    public String getNotaVeterinario() { return notaVeterinario; }
+    /** Versión del documento sobre la que se construyó la fila (concurrencia optimista). */
+    public long getVersion() { return version; }
+    public String getTexto() { return texto; }
+    public int getColorFondo() { return colorFondo; }
+}
@@ -1,18 +1,64 @@
 package com.example.veteriapp.model;
 
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
 /**
  * Enumeración de Estados de Cita Médica.
  * 
  * Gestiona el ciclo de vida de una consulta, desde su solicitud inicial
  * hasta su finalización y archivo histórico en la clínica.
+ * Actúa como única máquina de estados: define qué transiciones son válidas
+ * y el texto de la acción que lleva a cada estado en los menús de gestión.
  * 
  * @author Juan Manuel Moreno Sánchez
  * @version 1.0 VeteriApp Release
  */
 public enum EstadoCita {
-    PENDIENTE,
-    CONFIRMADA,
-    RECHAZADA,
-    CANCELADA,
-    ARCHIVADA
-}
\ No newline at end of file
+    PENDIENTE("♻️ Volver a Pendiente"),
+    CONFIRMADA("✅ Confirmar Cita"),
+    RECHAZADA("❌ Rechazar Cita"),
+    CANCELADA("❌ Cancelar Cita"),
+    ARCHIVADA("📂 Archivar Cita");
+
+    private final String accion;
+
+    EstadoCita(String accion) {
+        this.accion = accion;
+    }
+
+    /**
+     * Texto del menú para la acción que conduce a este estado.
+     */
+    public String getAccion() {
+        return accion;
+    }
+
+    /**
+     * Estados alcanzables desde el actual.
+     */
+    public Set<EstadoCita> siguientes() {
+        switch (this) {
+            case PENDIENTE:  return Collections.unmodifiableSet(EnumSet.of(CONFIRMADA, RECHAZADA));
+            case CONFIRMADA: return Collections.unmodifiableSet(EnumSet.of(ARCHIVADA, CANCELADA));
+            default:         return Collections.unmodifiableSet(EnumSet.of(PENDIENTE));
+        }
+    }
+
+    public boolean puedePasarA(EstadoCita destino) {
+        return siguientes().contains(destino);
+    }
+
+    /**
+     * Conversión tolerante desde el valor almacenado en Firestore (null si no es reconocible).
+     */
+    public static EstadoCita desde(String valor) {
+        if (valor == null) return null;
+        try {
+            return valueOf(valor);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
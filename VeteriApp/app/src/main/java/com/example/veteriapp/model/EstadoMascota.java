@@ -0,0 +1,63 @@
+package com.example.veteriapp.model;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Enumeración de Estados de Paciente.
+ * 
+ * Ciclo de vida administrativo de una mascota: solicitud de alta, revisión
+ * clínica (aprobación o rechazo) y traslado final al Memorial.
+ * Define las transiciones válidas y el texto de la acción de cada una.
+ * 
+ * @author Juan Manuel Moreno Sánchez
+ * @version 1.0 VeteriApp Release
+ */
+public enum EstadoMascota {
+    PENDIENTE("♻️ Restaurar Solicitud"),
+    ACEPTADA("✅ Aprobar Ingreso"),
+    RECHAZADA("❌ Rechazar Solicitud"),
+    MEMORIAL("🕊️ Trasladar a Memorial");
+
+    private final String accion;
+
+    EstadoMascota(String accion) {
+        this.accion = accion;
+    }
+
+    /**
+     * Texto del menú para la acción que conduce a este estado.
+     */
+    public String getAccion() {
+        return accion;
+    }
+
+    /**
+     * Estados alcanzables desde el actual (el Memorial es definitivo).
+     */
+    public Set<EstadoMascota> siguientes() {
+        switch (this) {
+            case PENDIENTE: return Collections.unmodifiableSet(EnumSet.of(ACEPTADA, RECHAZADA));
+            case RECHAZADA: return Collections.unmodifiableSet(EnumSet.of(PENDIENTE));
+            case ACEPTADA:  return Collections.unmodifiableSet(EnumSet.of(MEMORIAL));
+            default:        return Collections.unmodifiableSet(EnumSet.noneOf(EstadoMascota.class));
+        }
+    }
+
+    public boolean puedePasarA(EstadoMascota destino) {
+        return siguientes().contains(destino);
+    }
+
+    /**
+     * Conversión tolerante desde el valor almacenado en Firestore (null si no es reconocible).
+     */
+    public static EstadoMascota desde(String valor) {
+        if (valor == null) return null;
+        try {
+            return valueOf(valor);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
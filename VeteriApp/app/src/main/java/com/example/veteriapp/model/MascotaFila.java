@@ -0,0 +1,72 @@
+package com.example.veteriapp.model;
+
+import android.graphics.Bitmap;
+
+/**
+ * Clase de Modelo de Vista para Mascotas.
+ * 
+ * Fila inmutable y lista para pintar de la colección "mascotas".
+ * La miniatura llega ya decodificada desde el hilo de mapeo; la cadena
+ * Base64 original solo se conserva cuando la pantalla necesita reenviarla.
+ * 
+ * @author Juan Manuel Moreno Sánchez
+ * @version 1.0 VeteriApp Release
+ */
+public final class MascotaFila {
+
+    private final String idDoc;
+    private final String nombre;
+    private final String especie;
+    private final String raza;
+    private final String genero;
+    private final String estado;
+    private final String uidDueno;
+    private final String fechaNacimiento;
+    private final String peso;
+    private final String chip;
+    private final String dedicatoria;
+    private final String fotoBase64;
+    private final Bitmap miniatura;
+    private final String texto;
+    private final int colorFondo;
+    private final long version;
+
+    public MascotaFila(String idDoc, String nombre, String especie, String raza, String genero, String estado,
+                       String uidDueno, String fechaNacimiento, String peso, String chip, String dedicatoria,
+                       String fotoBase64, Bitmap miniatura, String texto, int colorFondo, long version) {
+        this.idDoc = idDoc;
+        this.nombre = nombre;
+        this.especie = especie;
+        this.raza = raza;
+        this.genero = genero;
+        this.estado = estado;
+        this.uidDueno = uidDueno;
+        this.fechaNacimiento = fechaNacimiento;
+        this.peso = peso;
+        this.chip = chip;
+        this.dedicatoria = dedicatoria;
+        this.fotoBase64 = fotoBase64;
+        this.miniatura = miniatura;
+        this.texto = texto;
+        this.colorFondo = colorFondo;
+        this.version = version;
+    }
+
+    public String getIdDoc() { return idDoc; }
+    public String getNombre() { return nombre; }
+    public String getEspecie() { return especie; }
+    public String getRaza() { return raza; }
+    public String getGenero() { return genero; }
+    public String getEstado() { return estado; }
+    public String getUidDueno() { return uidDueno; }
+    public String getFechaNacimiento() { return fechaNacimiento; }
+    public String getPeso() { return peso; }
+    public String getChip() { return chip; }
+    public String getDedicatoria() { return dedicatoria; }
+    public String getFotoBase64() { return fotoBase64; }
+    public Bitmap getMiniatura() { return miniatura; }
+    public String getTexto() { return texto; }
+    public int getColorFondo() { return colorFondo; }
+    /** Versión del documento sobre la que se construyó la fila (concurrencia optimista). */
+    public long getVersion() { return version; }
+}
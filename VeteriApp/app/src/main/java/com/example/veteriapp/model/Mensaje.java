@@ -1,25 +1,31 @@
 package com.example.veteriapp.model;
 
+import com.example.veteriapp.procesador.IdDocumento;
+import com.example.veteriapp.procesador.Mapeable;
 import com.google.firebase.Timestamp;
 
 /**
  * Clase de Modelo para Mensajes de Chat.
  * 
  * Estructura de datos que representa un intercambio de texto en tiempo real.
- * Compatible con la serialización automática de Firebase Firestore.
+ * Se lee y se escribe con MensajeMapeador, generado al compilar a partir de esta clase.
  * 
  * @author Juan Manuel Moreno Sánchez
  * @version 1.0 VeteriApp Release
  */
+@Mapeable
 public class Mensaje {
 
+    @IdDocumento
+    private String id;
     private String uidRemitente;
     private String texto;
     private String idSala;
     private Timestamp timestamp;
+    private Long secuenciaCliente;
 
     /**
-     * Constructor vacío requerido por Firestore para deserialización POJO.
+     * Constructor vacío requerido por el mapeador.
      */
     public Mensaje() {}
 
@@ -35,6 +41,9 @@ public class Mensaje {
 
     // --- MÉTODOS ACCESORES (GETTERS Y SETTERS) ---
 
+    public String getId() { return id; }
+    public void setId(String id) { this.id = id; }
+
     public String getUidRemitente() { return uidRemitente; }
     public void setUidRemitente(String uidRemitente) { this.uidRemitente = uidRemitente; }
 
@@ -46,4 +55,7 @@ public class Mensaje {
 
     public Timestamp getTimestamp() { return timestamp; }
     public void setTimestamp(Timestamp timestamp) { this.timestamp = timestamp; }
+
+    public Long getSecuenciaCliente() { return secuenciaCliente; }
+    public void setSecuenciaCliente(Long secuenciaCliente) { this.secuenciaCliente = secuenciaCliente; }
 }
\ No newline at end of file
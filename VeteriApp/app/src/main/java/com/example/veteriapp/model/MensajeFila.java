@@ -0,0 +1,30 @@
+package com.example.veteriapp.model;
+
+/**
+ * Clase de Modelo de Vista para Mensajes de Chat.
+ * 
+ * Burbuja inmutable ya resuelta: texto, orientación (propia o ajena) y si el
+ * mensaje sigue pendiente de confirmación por el servidor (eco local).
+ * 
+ * @author Juan Manuel Moreno Sánchez
+ * @version 1.0 VeteriApp Release
+ */
+public final class MensajeFila {
+
+    private final String idDoc;
+    private final String texto;
+    private final boolean propio;
+    private final boolean pendiente;
+
+    public MensajeFila(String idDoc, String texto, boolean propio, boolean pendiente) {
+        this.idDoc = idDoc;
+        this.texto = texto;
+        this.propio = propio;
+        this.pendiente = pendiente;
+    }
+
+    public String getIdDoc() { return idDoc; }
+    public String getTexto() { return texto; }
+    public boolean isPropio() { return propio; }
+    public boolean isPendiente() { return pendiente; }
+}
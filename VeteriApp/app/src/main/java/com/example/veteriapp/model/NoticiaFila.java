@@ -0,0 +1,50 @@
+package com.example.veteriapp.model;
+
+import java.util.Objects;
+
+/**
+ * Clase de Modelo de Vista para Noticias y Avisos.
+ * 
+ * Representa tanto las noticias del muro (título y contenido) como las
+ * entradas de la bandeja de notificaciones (contenido y estado de lectura).
+ * 
+ * @author Juan Manuel Moreno Sánchez
+ * @version 1.0 VeteriApp Release
+ */
+public final class NoticiaFila {
+
+    private final String idDoc;
+    private final String titulo;
+    private final String contenido;
+    private final boolean leida;
+    private final long instante;
+
+    public NoticiaFila(String idDoc, String titulo, String contenido, boolean leida, long instante) {
+        this.idDoc = idDoc;
+        this.titulo = titulo;
+        this.contenido = contenido;
+        this.leida = leida;
+        this.instante = instante;
+    }
+
+    public String getIdDoc() { return idDoc; }
+    public String getTitulo() { return titulo; }
+    public String getContenido() { return contenido; }
+    public boolean isLeida() { return leida; }
+    public long getInstante() { return instante; }
+
+    // Igualdad por contenido: permite a FlujoConsulta descartar listas sin cambios
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof NoticiaFila)) return false;
+        NoticiaFila otra = (NoticiaFila) o;
+        return leida == otra.leida && instante == otra.instante && Objects.equals(idDoc, otra.idDoc)
+                && Objects.equals(titulo, otra.titulo) && Objects.equals(contenido, otra.contenido);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(idDoc, titulo, contenido, leida, instante);
+    }
+}
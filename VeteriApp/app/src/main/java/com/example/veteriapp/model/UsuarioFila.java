@@ -0,0 +1,32 @@
+package com.example.veteriapp.model;
+
+/**
+ * Clase de Modelo de Vista para Usuarios.
+ * 
+ * Fila inmutable y lista para pintar de la colección "users".
+ * 
+ * @author Juan Manuel Moreno Sánchez
+ * @version 1.0 VeteriApp Release
+ */
+public final class UsuarioFila {
+
+    private final String uid;
+    private final String nombre;
+    private final String email;
+    private final String rol;
+    private final String texto;
+
+    public UsuarioFila(String uid, String nombre, String email, String rol, String texto) {
+        this.uid = uid;
+        this.nombre = nombre;
+        this.email = email;
+        this.rol = rol;
+        this.texto = texto;
+    }
+
+    public String getUid() { return uid; }
+    public String getNombre() { return nombre; }
+    public String getEmail() { return email; }
+    public String getRol() { return rol; }
+    public String getTexto() { return texto; }
+}
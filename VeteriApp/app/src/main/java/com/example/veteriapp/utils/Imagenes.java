@@ -0,0 +1,157 @@
+package com.example.veteriapp.utils;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.util.Base64;
+import android.util.LruCache;
+
+import com.example.veteriapp.data.PresupuestoMemoria;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+/**
+ * Clase Imagenes.
+ * 
+ * Decodificación de las fotografías Base64 almacenadas en Firestore.
+ * Calcula un factor de submuestreo a partir de las dimensiones reales para
+ * no materializar en memoria bitmaps mucho mayores que la vista que los muestra.
+ * Pensada para ejecutarse fuera del hilo principal.
+ * 
+ * Las miniaturas de los listados se guardan en una caché LRU acotada por el
+ * presupuesto de memoria, de modo que recargar un listado no vuelve a decodificar
+ * las mismas fotos y la caché cede memoria ante los avisos del sistema. Cada entrada
+ * es la de un documento (su ruta) a un tamaño, y guarda el resumen SHA-256 de la foto
+ * con la que se decodificó: si la foto del documento cambia, se decodifica de nuevo.
+ * 
+ * @author Juan Manuel Moreno Sánchez
+ * @version 1.0 VeteriApp Release
+ */
+public class Imagenes {
+
+    // --- CACHÉ DE MINIATURAS ---
+    private static final double FRACCION_CACHE = 1.0 / 8;
+    private static LruCache<String, Entrada> cache;
+
+    /**
+     * Crea la caché de miniaturas a partir del presupuesto y la da de alta en él.
+     * Se invoca una vez desde VeteriApplication.
+     */
+    public static synchronized void iniciarCache(PresupuestoMemoria presupuesto) {
+        if (cache != null) return;
+        LruCache<String, Entrada> c = new LruCache<String, Entrada>((int) presupuesto.presupuesto(FRACCION_CACHE)) {
+            @Override
+            protected int sizeOf(String clave, Entrada entrada) {
+                return entrada.bitmap.getAllocationByteCount() + entrada.huella.length;
+            }
+        };
+        presupuesto.registrar("Miniaturas", PresupuestoMemoria.Nivel.RECONSTRUIBLE, new PresupuestoMemoria.Consumidor() {
+            @Override
+            public long bytesEnUso() {
+                return c.size();
+            }
+
+            @Override
+            public void recortar(float conservar) {
+                if (conservar <= 0f) c.evictAll();
+                else c.trimToSize((int) (c.size() * conservar));
+            }
+        });
+        cache = c;
+    }
+
+    /**
+     * Miniatura de un listado: como {@link #decodificarMiniatura} pero reutilizando
+     * la decodificación previa de la misma foto del mismo documento al mismo tamaño.
+     *
+     * @param ruta Ruta del documento que lleva la foto.
+     */
+    public static Bitmap miniatura(String ruta, String fotoBase64, int ladoPx) {
+        if (fotoBase64 == null || fotoBase64.isEmpty()) return null;
+        LruCache<String, Entrada> c = cache;
+        if (c == null) return decodificarMiniatura(fotoBase64, ladoPx);
+
+        String clave = ruta + "@" + ladoPx;
+        byte[] huella = huella(fotoBase64);
+        Entrada entrada = c.get(clave);
+        if (entrada != null && Arrays.equals(entrada.huella, huella)) return entrada.bitmap;
+
+        Bitmap bmp = decodificarMiniatura(fotoBase64, ladoPx);
+        if (bmp != null) c.put(clave, new Entrada(huella, bmp));
+        else c.remove(clave);
+        return bmp;
+    }
+
+    private static byte[] huella(String fotoBase64) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(fotoBase64.getBytes(StandardCharsets.US_ASCII));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e); // SHA-256 está garantizado en Android
+        }
+    }
+
+    /**
+     * Decodifica una foto Base64 reduciéndola al lado indicado (aproximado, potencia de 2).
+     * 
+     * @param fotoBase64 Cadena serializada.
+     * @param ladoPx     Lado máximo deseado en píxeles.
+     * @return Bitmap reducido o null si no hay foto o no es válida.
+     */
+    public static Bitmap decodificarMiniatura(String fotoBase64, int ladoPx) {
+        if (fotoBase64 == null || fotoBase64.isEmpty()) return null;
+        try {
+            byte[] bytes = Base64.decode(fotoBase64, Base64.DEFAULT);
+
+            BitmapFactory.Options opts = new BitmapFactory.Options();
+            opts.inJustDecodeBounds = true;
+            BitmapFactory.decodeByteArray(bytes, 0, bytes.length, opts);
+
+            int muestreo = 1;
+            int mayor = Math.max(opts.outWidth, opts.outHeight);
+            while (mayor / (muestreo * 2) >= ladoPx) muestreo *= 2;
+
+            opts.inJustDecodeBounds = false;
+            opts.inSampleSize = muestreo;
+            return BitmapFactory.decodeByteArray(bytes, 0, bytes.length, opts);
+        } catch (IllegalArgumentException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Genera una miniatura JPEG en Base64 a partir de la foto original, para guardarla en
+     * documentos ligeros (proyecciones) que se listan sin descargar la foto completa.
+     * 
+     * @param fotoBase64 Cadena serializada original.
+     * @param ladoPx     Lado máximo de la miniatura en píxeles.
+     * @return Miniatura serializada o null si no hay foto válida.
+     */
+    public static String reducirBase64(String fotoBase64, int ladoPx) {
+        Bitmap bmp = decodificarMiniatura(fotoBase64, ladoPx);
+        if (bmp == null) return null;
+
+        int mayor = Math.max(bmp.getWidth(), bmp.getHeight());
+        if (mayor > ladoPx) {
+            float escala = (float) ladoPx / mayor;
+            bmp = Bitmap.createScaledBitmap(bmp, Math.round(bmp.getWidth() * escala),
+                    Math.round(bmp.getHeight() * escala), true);
+        }
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        bmp.compress(Bitmap.CompressFormat.JPEG, 70, baos);
+        return Base64.encodeToString(baos.toByteArray(), Base64.NO_WRAP);
+    }
+
+    private static final class Entrada {
+        final byte[] huella;
+        final Bitmap bitmap;
+
+        Entrada(byte[] huella, Bitmap bitmap) {
+            this.huella = huella;
+            this.bitmap = bitmap;
+        }
+    }
+}
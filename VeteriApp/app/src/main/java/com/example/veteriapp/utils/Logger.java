@@ -1,8 +1,8 @@
 package com.example.veteriapp.utils;
 
+import com.example.veteriapp.data.ColaEscrituras;
 import com.google.firebase.Timestamp;
 import com.google.firebase.firestore.FirebaseFirestore;
-import com.google.firebase.firestore.Query;
 
 import java.util.HashMap;
 import java.util.Map;
@@ -11,8 +11,9 @@ import java.util.Map;
  * Clase Logger.
  * 
  * Centraliza el registro de eventos de auditoría técnica y administrativa.
- * Implementa la persistencia de logs en Firestore con identificadores secuenciales id_log
- * y marcas de tiempo precisas para el control de actividad del sistema.
+ * Implementa la persistencia de logs en Firestore con marcas de tiempo precisas para
+ * el control de actividad del sistema. Las entradas sueltas viajan por la cola persistente
+ * de escrituras, así que no se pierden con mala cobertura.
  * 
  * @author Juan Manuel Moreno Sánchez
  * @version 1.0 VeteriApp Release
@@ -21,28 +22,26 @@ public class Logger {
 
     /**
      * Registra un mensaje de evento en la colección global de logs.
-     * Calcula automáticamente el siguiente ID secuencial disponible.
+     * Sin consulta previa de id_log: el panel de administración ordena por timestamp.
      * 
      * @param mensaje Descripción de la acción o evento ocurrido.
      */
     public static void log(String mensaje) {
         FirebaseFirestore db = FirebaseFirestore.getInstance();
+        ColaEscrituras.get().set(db.collection("logs").document(), entrada(mensaje));
+    }
 
-        // Consulta de agregación para ID de log secuencial
-        db.collection("logs").orderBy("id_log", Query.Direction.DESCENDING).limit(1).get()
-                .addOnSuccessListener(snap -> {
-                    int idCalc = 1;
-                    if (!snap.isEmpty()) {
-                        Number ult = snap.getDocuments().get(0).getLong("id_log");
-                        if (ult != null) idCalc = ult.intValue() + 1;
-                    }
-
-                    Map<String, Object> l = new HashMap<>();
-                    l.put("id_log", idCalc);
-                    l.put("mensaje", mensaje);
-                    l.put("timestamp", Timestamp.now());
-
-                    db.collection("logs").add(l);
-                });
+    /**
+     * Construye una entrada de auditoría para escribirla dentro del mismo commit
+     * que la operación auditada (lote o transacción).
+     * 
+     * @param mensaje Descripción de la acción o evento ocurrido.
+     * @return Campos del documento de log.
+     */
+    public static Map<String, Object> entrada(String mensaje) {
+        Map<String, Object> l = new HashMap<>();
+        l.put("mensaje", mensaje);
+        l.put("timestamp", Timestamp.now());
+        return l;
     }
 }
\ No newline at end of file
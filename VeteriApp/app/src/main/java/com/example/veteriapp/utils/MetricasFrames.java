@@ -0,0 +1,235 @@
+package com.example.veteriapp.utils;
+
+import android.app.Activity;
+import android.app.Application;
+import android.os.Build;
+import android.os.Bundle;
+import android.view.View;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.metrics.performance.FrameData;
+import androidx.metrics.performance.JankStats;
+import androidx.metrics.performance.PerformanceMetricsState;
+import androidx.metrics.performance.StateInfo;
+import androidx.tracing.Trace;
+
+import com.example.veteriapp.BuildConfig;
+import com.example.veteriapp.data.ColaEscrituras;
+import com.google.firebase.Timestamp;
+import com.google.firebase.firestore.FirebaseFirestore;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Clase MetricasFrames.
+ *
+ * Instrumentación de frames en campo con JankStats. Se engancha a todas las actividades
+ * desde VeteriApplication, etiqueta cada frame con la pantalla y, si la hay, la operación
+ * en curso (construcción de listas, decodificación de imágenes, repintado del chat) y
+ * acumula la duración en histogramas por pantalla y por pantalla y operación.
+ *
+ * Cuando la aplicación pasa a segundo plano, cada histograma se resume en percentiles
+ * (p50, p90, p95, p99) y frames con tirón, y se escribe en la colección "metricas" a través
+ * de la cola persistente de escrituras. Así una regresión aparece en la telemetría.
+ *
+ * @author Juan Manuel Moreno Sánchez
+ * @version 1.0 VeteriApp Release
+ */
+public final class MetricasFrames implements Application.ActivityLifecycleCallbacks {
+
+    public static final String COLECCION = "metricas";
+
+    // --- ETIQUETAS DE ESTADO (PerformanceMetricsState) ---
+    public static final String ESTADO_PANTALLA = "Pantalla";
+    public static final String ESTADO_OPERACION = "Operacion";
+
+    // --- OPERACIONES INSTRUMENTADAS ---
+    public static final String CONSTRUCCION_LISTA = "ConstruccionLista";
+    public static final String DECODIFICACION_IMAGEN = "DecodificacionImagen";
+    public static final String REPINTADO_CHAT = "RepintadoChat";
+
+    /** Resolución del histograma: 1 ms por cubo; lo que supera el máximo va al último. */
+    private static final int MAX_MS = 250;
+
+    private static MetricasFrames instancia;
+
+    private final Map<Activity, JankStats> seguimientos = new WeakHashMap<>();
+    private final Map<String, Histograma> histogramas = new HashMap<>();
+    private int iniciadas;
+
+    private MetricasFrames() {}
+
+    /**
+     * Engancha la instrumentación a todas las actividades. Se invoca una vez desde VeteriApplication.
+     */
+    public static synchronized void iniciar(Application app) {
+        if (instancia != null) return;
+        instancia = new MetricasFrames();
+        app.registerActivityLifecycleCallbacks(instancia);
+    }
+
+    // --- OPERACIONES ---
+
+    /**
+     * Ejecuta un trabajo del hilo principal etiquetando con la operación los frames que
+     * solapan con él (y una sección de traza "Operacion:<nombre>" para los benchmarks).
+     */
+    public static void medir(Activity activity, String operacion, Runnable trabajo) {
+        PerformanceMetricsState estado = estado(activity.getWindow().getDecorView());
+        if (estado != null) estado.putState(ESTADO_OPERACION, operacion);
+        Trace.beginSection("Operacion:" + operacion);
+        try {
+            trabajo.run();
+        } finally {
+            Trace.endSection();
+            if (estado != null) estado.removeState(ESTADO_OPERACION);
+        }
+    }
+
+    @Nullable
+    private static PerformanceMetricsState estado(View vista) {
+        return PerformanceMetricsState.getHolderForHierarchy(vista).getState();
+    }
+
+    // --- CICLO DE VIDA DE LAS ACTIVIDADES ---
+
+    @Override
+    public void onActivityCreated(@NonNull Activity activity, @Nullable Bundle estadoGuardado) {
+        // JankStats crea el estado de la jerarquía: la etiqueta de pantalla va después
+        seguimientos.put(activity, JankStats.createAndTrack(activity.getWindow(), this::registrar));
+        PerformanceMetricsState estado = estado(activity.getWindow().getDecorView());
+        if (estado != null) estado.putState(ESTADO_PANTALLA, pantalla(activity));
+    }
+
+    @Override
+    public void onActivityStarted(@NonNull Activity activity) {
+        iniciadas++;
+    }
+
+    @Override
+    public void onActivityResumed(@NonNull Activity activity) {
+        JankStats js = seguimientos.get(activity);
+        if (js != null) js.setTrackingEnabled(true);
+    }
+
+    @Override
+    public void onActivityPaused(@NonNull Activity activity) {
+        JankStats js = seguimientos.get(activity);
+        if (js != null) js.setTrackingEnabled(false);
+    }
+
+    @Override
+    public void onActivityStopped(@NonNull Activity activity) {
+        if (--iniciadas == 0) publicar();
+    }
+
+    @Override
+    public void onActivitySaveInstanceState(@NonNull Activity activity, @NonNull Bundle estado) {}
+
+    @Override
+    public void onActivityDestroyed(@NonNull Activity activity) {
+        seguimientos.remove(activity);
+    }
+
+    private static String pantalla(Activity activity) {
+        String nombre = activity.getClass().getSimpleName();
+        return nombre.endsWith("Activity") ? nombre.substring(0, nombre.length() - "Activity".length()) : nombre;
+    }
+
+    // --- AGREGACIÓN ---
+
+    /**
+     * JankStats reutiliza el FrameData: se copia lo necesario antes de volver.
+     */
+    private void registrar(FrameData frame) {
+        String pantalla = null, operacion = null;
+        for (StateInfo s : frame.getStates()) {
+            if (ESTADO_PANTALLA.equals(s.getKey())) pantalla = s.getValue();
+            else if (ESTADO_OPERACION.equals(s.getKey())) operacion = s.getValue();
+        }
+        if (pantalla == null) return;
+        int ms = (int) Math.min(MAX_MS, frame.getFrameDurationUiNanos() / 1_000_000L);
+        boolean tiron = frame.isJank();
+
+        synchronized (histogramas) {
+            histograma(pantalla, null).anotar(ms, tiron);
+            if (operacion != null) histograma(pantalla, operacion).anotar(ms, tiron);
+        }
+    }
+
+    private Histograma histograma(String pantalla, String operacion) {
+        String clave = operacion == null ? pantalla : pantalla + "/" + operacion;
+        Histograma h = histogramas.get(clave);
+        if (h == null) {
+            h = new Histograma(pantalla, operacion);
+            histogramas.put(clave, h);
+        }
+        return h;
+    }
+
+    /**
+     * Resume y envía los histogramas acumulados, y empieza una nueva ventana.
+     */
+    private void publicar() {
+        Map<String, Histograma> ventana;
+        synchronized (histogramas) {
+            if (histogramas.isEmpty()) return;
+            ventana = new HashMap<>(histogramas);
+            histogramas.clear();
+        }
+        FirebaseFirestore db = FirebaseFirestore.getInstance();
+        for (Histograma h : ventana.values()) {
+            ColaEscrituras.get().set(db.collection(COLECCION).document(), h.resumen());
+        }
+    }
+
+    private static final class Histograma {
+        private final String pantalla;
+        private final String operacion;
+        private final int[] cubos = new int[MAX_MS + 1];
+        private int frames;
+        private int tirones;
+
+        Histograma(String pantalla, String operacion) {
+            this.pantalla = pantalla;
+            this.operacion = operacion;
+        }
+
+        void anotar(int ms, boolean tiron) {
+            cubos[ms]++;
+            frames++;
+            if (tiron) tirones++;
+        }
+
+        /** Menor duración (ms) que alcanza la fracción indicada de los frames. */
+        int percentil(double fraccion) {
+            int objetivo = (int) Math.ceil(frames * fraccion);
+            int acumulado = 0;
+            for (int ms = 0; ms < cubos.length; ms++) {
+                acumulado += cubos[ms];
+                if (acumulado >= objetivo) return ms;
+            }
+            return MAX_MS;
+        }
+
+        Map<String, Object> resumen() {
+            Map<String, Object> m = new HashMap<>();
+            m.put("pantalla", pantalla);
+            if (operacion != null) m.put("operacion", operacion);
+            m.put("frames", frames);
+            m.put("tirones", tirones);
+            m.put("p50Ms", percentil(0.50));
+            m.put("p90Ms", percentil(0.90));
+            m.put("p95Ms", percentil(0.95));
+            m.put("p99Ms", percentil(0.99));
+            m.put("versionApp", BuildConfig.VERSION_NAME);
+            m.put("dispositivo", Build.MODEL);
+            m.put("sdk", Build.VERSION.SDK_INT);
+            m.put("timestamp", Timestamp.now());
+            return m;
+        }
+    }
+}
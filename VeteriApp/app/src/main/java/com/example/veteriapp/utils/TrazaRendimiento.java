@@ -0,0 +1,50 @@
+package com.example.veteriapp.utils;
+
+import android.app.Activity;
+import android.view.View;
+import android.view.ViewTreeObserver;
+
+import androidx.tracing.Trace;
+
+/**
+ * Clase TrazaRendimiento.
+ * 
+ * Emite secciones de traza del sistema que el módulo :macrobenchmark
+ * utiliza como métricas (TraceSectionMetric). Permite medir el tiempo
+ * desde la creación de un panel hasta que pinta su primer frame.
+ * 
+ * @author Juan Manuel Moreno Sánchez
+ * @version 1.0 VeteriApp Release
+ */
+public class TrazaRendimiento {
+
+    /** Prefijo común de las secciones de primer frame. */
+    public static final String PREFIJO_PRIMER_FRAME = "PrimerFrame:";
+
+    /**
+     * Abre una sección asíncrona que se cierra al dibujarse el primer frame de la actividad.
+     * Debe invocarse en onCreate, tras setContentView.
+     * 
+     * @param activity Actividad a medir.
+     * @param pantalla Nombre corto de la pantalla (p.ej. "PanelVeterinario").
+     */
+    public static void marcarPrimerFrame(Activity activity, String pantalla) {
+        final String seccion = PREFIJO_PRIMER_FRAME + pantalla;
+        final int cookie = System.identityHashCode(activity);
+        Trace.beginAsyncSection(seccion, cookie);
+
+        final View decor = activity.getWindow().getDecorView();
+        decor.getViewTreeObserver().addOnDrawListener(new ViewTreeObserver.OnDrawListener() {
+            private boolean cerrada = false;
+
+            @Override
+            public void onDraw() {
+                if (cerrada) return;
+                cerrada = true;
+                Trace.endAsyncSection(seccion, cookie);
+                // No se puede retirar el listener durante onDraw
+                decor.post(() -> decor.getViewTreeObserver().removeOnDrawListener(this));
+            }
+        });
+    }
+}
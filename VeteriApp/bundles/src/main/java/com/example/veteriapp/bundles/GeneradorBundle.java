@@ -0,0 +1,218 @@
+package com.example.veteriapp.bundles;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Clase GeneradorBundle.
+ *
+ * Empaqueta consultas de Firestore en un bundle de datos (formato de "data bundles":
+ * elementos JSON precedidos de su longitud en bytes) a partir de la API REST, sin
+ * depender del Admin SDK. Sirve igual contra el backend real (con un token OAuth de
+ * una cuenta con lectura, ver GenerarBundleInicio) que contra el emulador (token
+ * "owner"), donde lo usan las mediciones y las pruebas tras sembrar sus datos.
+ *
+ * Las consultas con nombre deben coincidir con las que leen las pantallas
+ * (BundlesIniciales y MuroNoticias en :app).
+ *
+ * @author Juan Manuel Moreno Sánchez
+ * @version 1.0 VeteriApp Release
+ */
+public final class GeneradorBundle {
+
+    // --- CONTENIDO DEL BUNDLE "inicio" ---
+    public static final String ID_INICIO = "inicio";
+    private static final int TAM_MURO_NOTICIAS = 5;   // MuroNoticias.TAM_MURO
+    private static final int TAM_PAGINA_MEMORIAL = 10; // MuroMemorial.TAM_PAGINA
+
+    /** Token de administrador que acepta el emulador de Firestore. */
+    public static final String TOKEN_EMULADOR = "owner";
+    private static final int TIMEOUT_MS = 30_000;
+
+    private final String raizDocumentos;
+    private final String urlDocumentos;
+    private final Map<String, JSONObject> documentos = new LinkedHashMap<>();
+    private final Map<String, List<String>> consultasPorDocumento = new LinkedHashMap<>();
+    private final List<JSONObject> consultas = new ArrayList<>();
+    private final JSONObject lectura;
+    private final String token;
+
+    /**
+     * @param firestore URL base de la API (https://firestore.googleapis.com o http://host:puerto del emulador).
+     * @param proyecto  ID del proyecto de Firebase.
+     * @param token     Token Bearer de las peticiones ({@link #TOKEN_EMULADOR} en el emulador).
+     */
+    public GeneradorBundle(String firestore, String proyecto, String token) throws JSONException {
+        this.raizDocumentos = "projects/" + proyecto + "/databases/(default)/documents";
+        this.urlDocumentos = firestore + "/v1/" + raizDocumentos;
+        this.lectura = marcaTiempo(Instant.now());
+        this.token = token;
+    }
+
+    /**
+     * Bundle "inicio": muro de noticias con su documento de versión y primera página
+     * del memorial público.
+     */
+    public static byte[] inicio(String firestore, String proyecto, String token) throws IOException, JSONException {
+        GeneradorBundle g = new GeneradorBundle(firestore, proyecto, token);
+        g.consulta("muro-noticias", ordenada("noticias", "timestamp", TAM_MURO_NOTICIAS));
+        g.consulta("muro-memorial", ordenada("memorial", "fechaMemorial", TAM_PAGINA_MEMORIAL));
+        g.documento("config/noticias");
+        return g.construir(ID_INICIO);
+    }
+
+    // --- CONTENIDO ---
+
+    /**
+     * Añade una consulta con nombre y todos los documentos que devuelve.
+     */
+    public void consulta(String nombre, JSONObject structuredQuery) throws IOException, JSONException {
+        JSONObject cuerpo = new JSONObject().put("structuredQuery", structuredQuery);
+        JSONArray resultados = new JSONArray(peticion("POST", urlDocumentos + ":runQuery", cuerpo.toString()));
+        for (int i = 0; i < resultados.length(); i++) {
+            JSONObject doc = resultados.getJSONObject(i).optJSONObject("document");
+            if (doc != null) anotar(doc, nombre);
+        }
+        consultas.add(new JSONObject().put("namedQuery", new JSONObject()
+                .put("name", nombre)
+                .put("bundledQuery", new JSONObject()
+                        .put("parent", raizDocumentos)
+                        .put("structuredQuery", structuredQuery)
+                        .put("limitType", "FIRST"))
+                .put("readTime", lectura)));
+    }
+
+    /**
+     * Añade un documento suelto (p.ej. el de versión del muro). Si no existe se omite.
+     */
+    public void documento(String ruta) throws IOException, JSONException {
+        try {
+            anotar(new JSONObject(peticion("GET", urlDocumentos + "/" + ruta, null)), null);
+        } catch (NoEncontradoException e) {
+            // El bundle simplemente no lo incluye
+        }
+    }
+
+    private void anotar(JSONObject doc, String consulta) throws JSONException {
+        String nombre = doc.getString("name");
+        documentos.put(nombre, doc);
+        List<String> lista = consultasPorDocumento.get(nombre);
+        if (lista == null) {
+            lista = new ArrayList<>();
+            consultasPorDocumento.put(nombre, lista);
+        }
+        if (consulta != null && !lista.contains(consulta)) lista.add(consulta);
+    }
+
+    // --- SERIALIZACIÓN ---
+
+    /**
+     * Serializa el bundle: metadatos, consultas con nombre y, por cada documento,
+     * sus metadatos seguidos del propio documento.
+     */
+    public byte[] construir(String id) throws JSONException {
+        ByteArrayOutputStream cuerpo = new ByteArrayOutputStream();
+        for (JSONObject q : consultas) escribir(cuerpo, q);
+        for (Map.Entry<String, JSONObject> e : documentos.entrySet()) {
+            List<String> deConsultas = consultasPorDocumento.get(e.getKey());
+            escribir(cuerpo, new JSONObject().put("documentMetadata", new JSONObject()
+                    .put("name", e.getKey())
+                    .put("readTime", lectura)
+                    .put("exists", true)
+                    .put("queries", new JSONArray(deConsultas != null ? deConsultas : Collections.emptyList()))));
+            escribir(cuerpo, new JSONObject().put("document", e.getValue()));
+        }
+
+        ByteArrayOutputStream bundle = new ByteArrayOutputStream();
+        escribir(bundle, new JSONObject().put("metadata", new JSONObject()
+                .put("id", id)
+                .put("createTime", lectura)
+                .put("version", 1)
+                .put("totalDocuments", documentos.size())
+                .put("totalBytes", cuerpo.size())));
+        byte[] resto = cuerpo.toByteArray();
+        bundle.write(resto, 0, resto.length);
+        return bundle.toByteArray();
+    }
+
+    private static void escribir(ByteArrayOutputStream out, JSONObject elemento) {
+        byte[] json = elemento.toString().getBytes(StandardCharsets.UTF_8);
+        byte[] longitud = String.valueOf(json.length).getBytes(StandardCharsets.UTF_8);
+        out.write(longitud, 0, longitud.length);
+        out.write(json, 0, json.length);
+    }
+
+    // --- PETICIONES REST ---
+
+    private String peticion(String metodo, String url, String cuerpo) throws IOException {
+        HttpURLConnection con = (HttpURLConnection) new URL(url).openConnection();
+        try {
+            con.setRequestMethod(metodo);
+            con.setConnectTimeout(TIMEOUT_MS);
+            con.setReadTimeout(TIMEOUT_MS);
+            con.setRequestProperty("Authorization", "Bearer " + token);
+            if (cuerpo != null) {
+                con.setDoOutput(true);
+                con.setRequestProperty("Content-Type", "application/json");
+                try (OutputStream os = con.getOutputStream()) {
+                    os.write(cuerpo.getBytes(StandardCharsets.UTF_8));
+                }
+            }
+            int code = con.getResponseCode();
+            String resp = leer(code < 400 ? con.getInputStream() : con.getErrorStream());
+            if (code == HttpURLConnection.HTTP_NOT_FOUND) throw new NoEncontradoException(url);
+            if (code >= 400) throw new IOException(metodo + " " + url + " -> " + code + ": " + resp);
+            return resp;
+        } finally {
+            con.disconnect();
+        }
+    }
+
+    private static String leer(InputStream is) throws IOException {
+        if (is == null) return "";
+        try (InputStream in = is) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buf = new byte[8192];
+            int n;
+            while ((n = in.read(buf)) > 0) out.write(buf, 0, n);
+            return out.toString("UTF-8");
+        }
+    }
+
+    /** Documento inexistente (HTTP 404). */
+    private static final class NoEncontradoException extends IOException {
+        NoEncontradoException(String url) {
+            super("No existe: " + url);
+        }
+    }
+
+    // --- AUXILIARES ---
+
+    private static JSONObject ordenada(String coleccion, String campo, int limite) throws JSONException {
+        return new JSONObject()
+                .put("from", new JSONArray().put(new JSONObject().put("collectionId", coleccion)))
+                .put("orderBy", new JSONArray().put(new JSONObject()
+                        .put("field", new JSONObject().put("fieldPath", campo))
+                        .put("direction", "DESCENDING")))
+                .put("limit", limite);
+    }
+
+    private static JSONObject marcaTiempo(Instant instante) throws JSONException {
+        return new JSONObject().put("seconds", instante.getEpochSecond()).put("nanos", instante.getNano());
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.veteriapp.bundles;
+
+import org.json.JSONException;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Clase GenerarBundleInicio.
+ *
+ * Job que genera el bundle "inicio" con los datos publicados en Firestore y lo deja en
+ * un fichero. Lo ejecuta la build de release cuando tiene token (tarea :app:generarBundleInicio),
+ * que lo empaqueta como assets/bundles/inicio.bundle, y la tarea programada que lo publica en
+ * Firebase Hosting (:app:publicarBundleInicio), de donde lo descarga la app al arrancar.
+ *
+ * Uso: GenerarBundleInicio salida proyecto [urlFirestore]
+ * El token Bearer se lee de la variable de entorno {@value #VARIABLE_TOKEN} (por ejemplo,
+ * la salida de "gcloud auth print-access-token") para no dejarlo en la línea de órdenes.
+ *
+ * @author Juan Manuel Moreno Sánchez
+ * @version 1.0 VeteriApp Release
+ */
+public final class GenerarBundleInicio {
+
+    public static final String VARIABLE_TOKEN = "VETERIAPP_BUNDLE_TOKEN";
+    private static final String FIRESTORE = "https://firestore.googleapis.com";
+
+    private GenerarBundleInicio() {}
+
+    public static void main(String[] args) throws IOException, JSONException {
+        if (args.length < 2) {
+            throw new IllegalArgumentException("Uso: GenerarBundleInicio salida proyecto [urlFirestore]");
+        }
+        String token = System.getenv(VARIABLE_TOKEN);
+        if (token == null || token.isEmpty()) {
+            throw new IllegalStateException("Falta el token de Firestore en " + VARIABLE_TOKEN);
+        }
+        File salida = new File(args[0]);
+        String firestore = args.length > 2 ? args[2] : FIRESTORE;
+
+        byte[] bundle = GeneradorBundle.inicio(firestore, args[1], token);
+
+        // Se escribe aparte y se renombra: nunca queda un bundle a medias donde se publica
+        File dir = salida.getAbsoluteFile().getParentFile();
+        if (!dir.isDirectory() && !dir.mkdirs()) throw new IOException("No se pudo crear " + dir);
+        File temporal = new File(dir, salida.getName() + ".tmp");
+        Files.write(temporal.toPath(), bundle);
+        Files.move(temporal.toPath(), salida.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        System.out.println("Bundle \"" + GeneradorBundle.ID_INICIO + "\" de " + bundle.length + " bytes en " + salida);
+    }
+}
@@ -0,0 +1,117 @@
+package com.example.veteriapp.bundles;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Clase HostingBundles.
+ *
+ * Sustituto local del hosting de bundles (Firebase Hosting) para las mediciones y las
+ * pruebas. Servidor HTTP mínimo dentro del proceso de instrumentación que publica los
+ * bundles generados en "/bundles/{id}", con ETag y respuesta 304 para un bundle sin
+ * cambios. La variante benchmark de la app lo consulta en localhost:{@value #PUERTO}.
+ *
+ * @author Juan Manuel Moreno Sánchez
+ * @version 1.0 VeteriApp Release
+ */
+public final class HostingBundles {
+
+    public static final int PUERTO = 8091;
+    private static final String RUTA = "/bundles/";
+
+    private static final Map<String, byte[]> BUNDLES = new ConcurrentHashMap<>();
+    private static final Map<String, String> ETAGS = new ConcurrentHashMap<>();
+    private static ServerSocket servidor;
+
+    private HostingBundles() {}
+
+    /**
+     * URL local de un bundle publicado.
+     */
+    public static String url(String id) {
+        return "http://localhost:" + PUERTO + RUTA + id;
+    }
+
+    /**
+     * Publica (o sustituye) un bundle y arranca el servidor si aún no lo estaba.
+     */
+    public static synchronized void publicar(String id, byte[] bundle) throws IOException {
+        BUNDLES.put(id, bundle);
+        ETAGS.put(id, etag(bundle));
+        if (servidor != null) return;
+
+        servidor = new ServerSocket(PUERTO, 16, InetAddress.getLoopbackAddress());
+        Thread hilo = new Thread(HostingBundles::atender, "HostingBundles");
+        hilo.setDaemon(true);
+        hilo.start();
+    }
+
+    private static void atender() {
+        while (!servidor.isClosed()) {
+            try (Socket s = servidor.accept()) {
+                responder(s);
+            } catch (IOException e) {
+                // Conexión cortada por el cliente: se atiende la siguiente
+            }
+        }
+    }
+
+    private static void responder(Socket s) throws IOException {
+        BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream(), StandardCharsets.US_ASCII));
+        String peticion = in.readLine();
+        if (peticion == null) return;
+        String siNoCoincide = null;
+        for (String linea = in.readLine(); linea != null && !linea.isEmpty(); linea = in.readLine()) {
+            int dosPuntos = linea.indexOf(':');
+            if (dosPuntos > 0 && linea.substring(0, dosPuntos).trim().equalsIgnoreCase("If-None-Match")) {
+                siNoCoincide = linea.substring(dosPuntos + 1).trim();
+            }
+        }
+
+        String[] partes = peticion.split(" ");
+        String ruta = partes.length > 1 ? partes[1] : "";
+        String id = ruta.startsWith(RUTA) ? ruta.substring(RUTA.length()) : null;
+        byte[] bundle = id != null ? BUNDLES.get(id) : null;
+
+        OutputStream out = s.getOutputStream();
+        if (!"GET".equals(partes[0]) || bundle == null) {
+            cabecera(out, "404 Not Found", 0, null);
+        } else if (ETAGS.get(id).equals(siNoCoincide)) {
+            cabecera(out, "304 Not Modified", 0, ETAGS.get(id));
+        } else {
+            cabecera(out, "200 OK", bundle.length, ETAGS.get(id));
+            out.write(bundle);
+        }
+        out.flush();
+    }
+
+    private static void cabecera(OutputStream out, String estado, int longitud, String etag) throws IOException {
+        StringBuilder sb = new StringBuilder("HTTP/1.1 ").append(estado).append("\r\n")
+                .append("Content-Type: application/octet-stream\r\n")
+                .append("Content-Length: ").append(longitud).append("\r\n")
+                .append("Connection: close\r\n");
+        if (etag != null) sb.append("ETag: ").append(etag).append("\r\n");
+        out.write(sb.append("\r\n").toString().getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static String etag(byte[] bundle) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(bundle);
+            StringBuilder sb = new StringBuilder("\"");
+            for (int i = 0; i < 8; i++) sb.append(String.format("%02x", hash[i]));
+            return sb.append('"').toString();
+        } catch (NoSuchAlgorithmException e) {
+            return "\"" + bundle.length + "\"";
+        }
+    }
+}
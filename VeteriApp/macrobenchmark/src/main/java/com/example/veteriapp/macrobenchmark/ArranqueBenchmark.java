@@ -0,0 +1,106 @@
+package com.example.veteriapp.macrobenchmark;
+
+import androidx.benchmark.macro.BaselineProfileMode;
+import androidx.benchmark.macro.CompilationMode;
+import androidx.benchmark.macro.StartupMode;
+import androidx.benchmark.macro.StartupTimingMetric;
+import androidx.benchmark.macro.TraceSectionMetric;
+import androidx.benchmark.macro.junit4.MacrobenchmarkRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import kotlin.Unit;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+
+/**
+ * Clase ArranqueBenchmark.
+ *
+ * Mide el arranque en frío de la app y el primer frame del panel del
+ * veterinario (sección "PrimerFrame:PanelVeterinario" emitida por TrazaRendimiento),
+ * comparando la ejecución sin compilar frente a la guiada por el Baseline Profile.
+ *
+ * @author Juan Manuel Moreno Sánchez
+ * @version 1.0 VeteriApp Release
+ */
+@RunWith(AndroidJUnit4.class)
+public class ArranqueBenchmark {
+
+    private static final int ITERACIONES = 10;
+
+    @Rule
+    public MacrobenchmarkRule regla = new MacrobenchmarkRule();
+
+    @Before
+    public void sembrar() {
+        DatasetEmulador.asegurarSembrado();
+    }
+
+    @Test
+    public void arranqueSinCompilar() {
+        medirArranque(new CompilationMode.None());
+    }
+
+    @Test
+    public void arranqueConBaselineProfile() {
+        medirArranque(new CompilationMode.Partial(BaselineProfileMode.Require));
+    }
+
+    @Test
+    public void panelSinCompilar() {
+        medirPanel(new CompilationMode.None());
+    }
+
+    @Test
+    public void panelConBaselineProfile() {
+        medirPanel(new CompilationMode.Partial(BaselineProfileMode.Require));
+    }
+
+    /**
+     * Arranque en frío hasta el primer frame de SplashActivity.
+     */
+    private void medirArranque(CompilationMode modo) {
+        regla.measureRepeated(
+                Recorridos.PAQUETE,
+                Arrays.asList(new StartupTimingMetric()),
+                modo,
+                StartupMode.COLD,
+                ITERACIONES,
+                scope -> {
+                    scope.pressHome();
+                    return Unit.INSTANCE;
+                },
+                scope -> {
+                    scope.startActivityAndWait();
+                    return Unit.INSTANCE;
+                });
+    }
+
+    /**
+     * Arranque en frío con sesión iniciada hasta el primer frame del panel del veterinario.
+     */
+    private void medirPanel(CompilationMode modo) {
+        regla.measureRepeated(
+                Recorridos.PAQUETE,
+                Arrays.asList(new StartupTimingMetric(),
+                        new TraceSectionMetric("PrimerFrame:PanelVeterinario", TraceSectionMetric.Mode.First.INSTANCE)),
+                modo,
+                StartupMode.COLD,
+                ITERACIONES,
+                scope -> {
+                    // La sesión persiste entre iteraciones; solo se inicia la primera vez
+                    Recorridos.iniciarSesion(scope, DatasetEmulador.EMAIL_VETERINARIO);
+                    scope.pressHome();
+                    return Unit.INSTANCE;
+                },
+                scope -> {
+                    scope.startActivityAndWait();
+                    Recorridos.esperarPanel(scope.getDevice());
+                    return Unit.INSTANCE;
+                });
+    }
+}
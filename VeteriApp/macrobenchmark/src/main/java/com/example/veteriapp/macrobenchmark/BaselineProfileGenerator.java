@@ -0,0 +1,49 @@
+package com.example.veteriapp.macrobenchmark;
+
+import androidx.benchmark.macro.junit4.BaselineProfileRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import kotlin.Unit;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Clase BaselineProfileGenerator.
+ *
+ * Genera el Baseline Profile que se empaqueta con la app recorriendo los
+ * caminos críticos medidos: arranque, login, panel del veterinario, censo de
+ * pacientes y chat del dueño. Se ejecuta con ./gradlew :app:generateBaselineProfile.
+ *
+ * @author Juan Manuel Moreno Sánchez
+ * @version 1.0 VeteriApp Release
+ */
+@RunWith(AndroidJUnit4.class)
+public class BaselineProfileGenerator {
+
+    @Rule
+    public BaselineProfileRule regla = new BaselineProfileRule();
+
+    @Before
+    public void sembrar() {
+        DatasetEmulador.asegurarSembrado();
+    }
+
+    @Test
+    public void generar() {
+        regla.collect(Recorridos.PAQUETE, 15, 3, null, false, false, clase -> true, scope -> {
+            Recorridos.reiniciarSesion(scope);
+            Recorridos.iniciarSesion(scope, DatasetEmulador.EMAIL_VETERINARIO);
+            Recorridos.abrirPacientes(scope.getDevice());
+            Recorridos.desplazar(scope.getDevice(), Recorridos.scrollPrincipal(scope.getDevice()));
+
+            Recorridos.reiniciarSesion(scope);
+            Recorridos.iniciarSesion(scope, DatasetEmulador.EMAIL_DUENO);
+            Recorridos.abrirChat(scope.getDevice());
+            Recorridos.desplazar(scope.getDevice(), Recorridos.scrollPrincipal(scope.getDevice()));
+            return Unit.INSTANCE;
+        });
+    }
+}
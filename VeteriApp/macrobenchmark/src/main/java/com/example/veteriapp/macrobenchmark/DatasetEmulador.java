@@ -0,0 +1,264 @@
+package com.example.veteriapp.macrobenchmark;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.util.Base64;
+
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.example.veteriapp.bundles.GeneradorBundle;
+import com.example.veteriapp.bundles.HostingBundles;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * Clase DatasetEmulador.
+ *
+ * Siembra un dataset determinista en los emuladores de Firebase (Auth + Firestore)
+ * mediante sus APIs REST, de forma que cada medición parte exactamente del mismo estado.
+ * El host llega en el argumento de instrumentación "emuladorHost" (propiedad de Gradle
+ * veteriapp.emuladorHost): por defecto localhost, un dispositivo físico con los puertos
+ * reenviados con "adb reverse"; 10.0.2.2 en un AVD. Tras sembrar, publica el bundle
+ * de datos iniciales en el hosting simulado (HostingBundles).
+ *
+ * @author Juan Manuel Moreno Sánchez
+ * @version 1.0 VeteriApp Release
+ */
+public final class DatasetEmulador {
+
+    // --- CONFIGURACIÓN DEL EMULADOR ---
+    static final String PROYECTO = "veteriapp-65b1d";
+    private static final int PUERTO_FIRESTORE = 8080;
+    private static final int PUERTO_AUTH = 9099;
+    private static final int ESCRITURAS_POR_COMMIT = 500;
+
+    // --- VOLUMEN DEL DATASET ---
+    public static final int NUM_MASCOTAS = 300;
+    public static final int NUM_MENSAJES = 400;
+    public static final int NUM_CITAS = 200;
+    public static final int NUM_NOTICIAS = 5;
+    // Base fija de las marcas de tiempo para que el orden del dataset sea idéntico en cada ejecución
+    private static final long BASE_TS = 1767225600000L; // 2026-01-01T00:00:00Z
+    private static final int VERSION_ESQUEMA = 5; // última migración de MigracionesEsquema
+    private static final String CLINICA = "clinicas/principal/"; // partición de Clinica.POR_DEFECTO
+
+    // --- CUENTAS SEMBRADAS ---
+    public static final String EMAIL_VETERINARIO = "vet@bench.veteriapp";
+    public static final String EMAIL_DUENO = "dueno@bench.veteriapp";
+    public static final String PASSWORD = "bench123456";
+
+    private static boolean sembrado = false;
+
+    private DatasetEmulador() {}
+
+    /**
+     * Reinicia los emuladores y carga el dataset una única vez por proceso de instrumentación.
+     */
+    public static synchronized void asegurarSembrado() {
+        if (sembrado) return;
+        try {
+            String firestore = firestore();
+            String auth = "http://" + host() + ":" + PUERTO_AUTH;
+
+            peticion("DELETE", firestore + "/emulator/v1/projects/" + PROYECTO + "/databases/(default)/documents", null);
+            peticion("DELETE", auth + "/emulator/v1/projects/" + PROYECTO + "/accounts", null);
+
+            String uidVet = crearCuenta(auth, EMAIL_VETERINARIO);
+            String uidDueno = crearCuenta(auth, EMAIL_DUENO);
+
+            Lote lote = new Lote(firestore);
+            lote.set("users/" + uidVet, new JSONObject()
+                    .put("uid", str(uidVet)).put("id", num(1)).put("nombre", str("Vet Benchmark"))
+                    .put("email", str(EMAIL_VETERINARIO)).put("rol", str("VETERINARIO")));
+            lote.set("users/" + uidDueno, new JSONObject()
+                    .put("uid", str(uidDueno)).put("id", num(2)).put("nombre", str("Dueño Benchmark"))
+                    .put("email", str(EMAIL_DUENO)).put("rol", str("DUEÑO")));
+
+            String foto = fotoSintetica();
+            String[] estados = {"PENDIENTE", "ACEPTADA", "RECHAZADA", "MEMORIAL"};
+            for (int i = 1; i <= NUM_MASCOTAS; i++) {
+                lote.set("mascotas/m" + i, new JSONObject()
+                        .put("id_mascota", num(i))
+                        .put("nombre", str("Paciente " + i)).put("especie", str(i % 2 == 0 ? "Perro" : "Gato"))
+                        .put("raza", str("Mestizo")).put("genero", str(i % 2 == 0 ? "MACHO" : "HEMBRA"))
+                        .put("peso", str("12")).put("chip", str("9410000" + i))
+                        .put("fotoBase64", str(foto)).put("uidDueno", str(uidDueno))
+                        .put("idClinica", str("principal"))
+                        .put("estado", str(estados[i % estados.length]))
+                        .put("timestamp", ts(i)));
+                // Proyección del muro del memorial, como la escribe la transición a MEMORIAL
+                if ("MEMORIAL".equals(estados[i % estados.length])) {
+                    lote.set("memorial/m" + i, new JSONObject()
+                            .put("nombre", str("Paciente " + i)).put("uidDueno", str(uidDueno))
+                            .put("miniaturaBase64", str(foto)).put("fechaMemorial", ts(i)));
+                }
+            }
+            for (int i = 1; i <= NUM_MENSAJES; i++) {
+                String remitente = (i % 3 == 0) ? uidVet : uidDueno;
+                lote.set(CLINICA + "salas/" + uidDueno + "/mensajes/msg" + i, new JSONObject()
+                        .put("id_mensaje", num(i)).put("uidRemitente", str(remitente))
+                        .put("texto", str("Mensaje de prueba número " + i + " sobre la revisión de Paciente " + (i % 50)))
+                        .put("idSala", str(uidDueno)).put("timestamp", ts(i))
+                        .put("secuenciaCliente", num(BASE_TS + i * 60_000L)));
+            }
+            for (int i = 1; i <= NUM_CITAS; i++) {
+                lote.set(CLINICA + "citas/c" + i, new JSONObject()
+                        .put("id_cita", num(i)).put("uidUsuario", str(uidDueno))
+                        .put("nombreUsuario", str("Dueño Benchmark")).put("nombreMascota", str("Paciente " + (i % 50)))
+                        .put("tipo", str("Cita General 🩺")).put("motivo", str("Revisión anual"))
+                        .put("fechaHora", ts(i * 60)).put("estado", str(i % 2 == 0 ? "PENDIENTE" : "CONFIRMADA")));
+            }
+            for (int i = 1; i <= NUM_NOTICIAS; i++) {
+                lote.set("noticias/n" + i, new JSONObject()
+                        .put("titulo", str("Aviso " + i)).put("contenido", str("Campaña de vacunación " + i))
+                        .put("timestamp", ts(i)));
+            }
+            lote.set("config/noticias", new JSONObject().put("version", num(NUM_NOTICIAS)));
+            // El dataset ya tiene la forma canónica de MigracionesEsquema
+            lote.set("config/esquema", new JSONObject().put("version", num(VERSION_ESQUEMA)));
+            // ...y ya está repartido por clínica: no queda chat anterior a la partición que trasladar
+            lote.set("config/migracionSalas", new JSONObject()
+                    .put("completada", bool(true)).put("salasCompletada", bool(true)));
+            lote.flush();
+
+            // Bundle de datos iniciales generado sobre el dataset y servido por el hosting simulado
+            HostingBundles.publicar(GeneradorBundle.ID_INICIO, GeneradorBundle.inicio(firestore, PROYECTO, GeneradorBundle.TOKEN_EMULADOR));
+            sembrado = true;
+        } catch (IOException | JSONException e) {
+            throw new IllegalStateException("No se pudo sembrar el emulador de Firebase", e);
+        }
+    }
+
+    /**
+     * URL base del emulador de Firestore (http://host:puerto).
+     */
+    static String firestore() {
+        return "http://" + host() + ":" + PUERTO_FIRESTORE;
+    }
+
+    private static String host() {
+        return InstrumentationRegistry.getArguments().getString("emuladorHost", "localhost");
+    }
+
+    /**
+     * Registra una cuenta en el emulador de Auth y devuelve su UID.
+     */
+    private static String crearCuenta(String auth, String email) throws IOException, JSONException {
+        JSONObject body = new JSONObject()
+                .put("email", email)
+                .put("password", PASSWORD)
+                .put("returnSecureToken", true);
+        String resp = peticion("POST", auth + "/identitytoolkit.googleapis.com/v1/accounts:signUp?key=bench", body.toString());
+        return new JSONObject(resp).getString("localId");
+    }
+
+    /**
+     * Genera una foto JPEG comparable en peso a las que sube AltaMascotaActivity.
+     */
+    private static String fotoSintetica() {
+        Bitmap bmp = Bitmap.createBitmap(640, 640, Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(bmp);
+        Paint paint = new Paint();
+        for (int y = 0; y < 640; y += 16) {
+            paint.setColor(Color.rgb(y % 255, (y * 3) % 255, (y * 7) % 255));
+            canvas.drawRect(0, y, 640, y + 16, paint);
+        }
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        bmp.compress(Bitmap.CompressFormat.JPEG, 60, baos);
+        bmp.recycle();
+        return Base64.encodeToString(baos.toByteArray(), Base64.DEFAULT);
+    }
+
+    // --- CODIFICACIÓN DE VALORES REST DE FIRESTORE ---
+
+    private static JSONObject str(String v) throws JSONException {
+        return new JSONObject().put("stringValue", v);
+    }
+
+    private static JSONObject num(long v) throws JSONException {
+        return new JSONObject().put("integerValue", String.valueOf(v));
+    }
+
+    private static JSONObject bool(boolean v) throws JSONException {
+        return new JSONObject().put("booleanValue", v);
+    }
+
+    private static JSONObject ts(long minutosOffset) throws JSONException {
+        SimpleDateFormat iso = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'", Locale.US);
+        iso.setTimeZone(TimeZone.getTimeZone("UTC"));
+        return new JSONObject().put("timestampValue", iso.format(new Date(BASE_TS + minutosOffset * 60_000L)));
+    }
+
+    /**
+     * Ejecuta una petición HTTP contra el emulador con privilegios de administrador.
+     */
+    private static String peticion(String metodo, String url, String cuerpo) throws IOException {
+        HttpURLConnection con = (HttpURLConnection) new URL(url).openConnection();
+        con.setRequestMethod(metodo);
+        con.setRequestProperty("Authorization", "Bearer owner");
+        if (cuerpo != null) {
+            con.setDoOutput(true);
+            con.setRequestProperty("Content-Type", "application/json");
+            try (OutputStream os = con.getOutputStream()) {
+                os.write(cuerpo.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        int code = con.getResponseCode();
+        InputStream is = code < 400 ? con.getInputStream() : con.getErrorStream();
+        String resp = "";
+        if (is != null) {
+            try (InputStream in = is) {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                byte[] buf = new byte[8192];
+                int n;
+                while ((n = in.read(buf)) > 0) out.write(buf, 0, n);
+                resp = out.toString("UTF-8");
+            }
+        }
+        con.disconnect();
+        if (code >= 400) throw new IOException(metodo + " " + url + " -> " + code + ": " + resp);
+        return resp;
+    }
+
+    /**
+     * Acumula escrituras y las envía en commits REST de hasta 500 documentos.
+     */
+    private static final class Lote {
+        private final String firestore;
+        private JSONArray escrituras = new JSONArray();
+
+        Lote(String firestore) {
+            this.firestore = firestore;
+        }
+
+        void set(String ruta, JSONObject campos) throws IOException, JSONException {
+            escrituras.put(new JSONObject().put("update", new JSONObject()
+                    .put("name", "projects/" + PROYECTO + "/databases/(default)/documents/" + ruta)
+                    .put("fields", campos)));
+            if (escrituras.length() >= ESCRITURAS_POR_COMMIT) flush();
+        }
+
+        void flush() throws IOException, JSONException {
+            if (escrituras.length() == 0) return;
+            String body = new JSONObject().put("writes", escrituras).toString();
+            peticion("POST", firestore + "/v1/projects/" + PROYECTO + "/databases/(default)/documents:commit", body);
+            escrituras = new JSONArray();
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.example.veteriapp.macrobenchmark;
+
+import androidx.benchmark.macro.BaselineProfileMode;
+import androidx.benchmark.macro.CompilationMode;
+import androidx.benchmark.macro.FrameTimingMetric;
+import androidx.benchmark.macro.StartupMode;
+import androidx.benchmark.macro.junit4.MacrobenchmarkRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import kotlin.Unit;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Collections;
+
+/**
+ * Clase DesplazamientoBenchmark.
+ *
+ * Mide el jank (FrameTimingMetric) al desplazar las listas más pesadas de la app:
+ * el censo de pacientes de AdminMascotasActivity (fotos Base64) y el historial
+ * de ChatActivity, ambos sobre el dataset sembrado en el emulador.
+ *
+ * @author Juan Manuel Moreno Sánchez
+ * @version 1.0 VeteriApp Release
+ */
+@RunWith(AndroidJUnit4.class)
+public class DesplazamientoBenchmark {
+
+    private static final int ITERACIONES = 5;
+
+    @Rule
+    public MacrobenchmarkRule regla = new MacrobenchmarkRule();
+
+    @Before
+    public void sembrar() {
+        DatasetEmulador.asegurarSembrado();
+    }
+
+    @Test
+    public void pacientesSinCompilar() {
+        medirPacientes(new CompilationMode.None());
+    }
+
+    @Test
+    public void pacientesConBaselineProfile() {
+        medirPacientes(new CompilationMode.Partial(BaselineProfileMode.Require));
+    }
+
+    @Test
+    public void chatSinCompilar() {
+        medirChat(new CompilationMode.None());
+    }
+
+    @Test
+    public void chatConBaselineProfile() {
+        medirChat(new CompilationMode.Partial(BaselineProfileMode.Require));
+    }
+
+    private void medirPacientes(CompilationMode modo) {
+        regla.measureRepeated(
+                Recorridos.PAQUETE,
+                Collections.singletonList(new FrameTimingMetric()),
+                modo,
+                StartupMode.WARM,
+                ITERACIONES,
+                scope -> {
+                    Recorridos.reiniciarSesion(scope);
+                    Recorridos.iniciarSesion(scope, DatasetEmulador.EMAIL_VETERINARIO);
+                    Recorridos.abrirPacientes(scope.getDevice());
+                    return Unit.INSTANCE;
+                },
+                scope -> {
+                    Recorridos.desplazar(scope.getDevice(), Recorridos.scrollPrincipal(scope.getDevice()));
+                    return Unit.INSTANCE;
+                });
+    }
+
+    private void medirChat(CompilationMode modo) {
+        regla.measureRepeated(
+                Recorridos.PAQUETE,
+                Collections.singletonList(new FrameTimingMetric()),
+                modo,
+                StartupMode.WARM,
+                ITERACIONES,
+                scope -> {
+                    Recorridos.reiniciarSesion(scope);
+                    Recorridos.iniciarSesion(scope, DatasetEmulador.EMAIL_DUENO);
+                    Recorridos.abrirChat(scope.getDevice());
+                    return Unit.INSTANCE;
+                },
+                scope -> {
+                    Recorridos.desplazar(scope.getDevice(), Recorridos.scrollPrincipal(scope.getDevice()));
+                    return Unit.INSTANCE;
+                });
+    }
+}
@@ -0,0 +1,205 @@
+package com.example.veteriapp.macrobenchmark;
+
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Clase IndicesBenchmark.
+ *
+ * Amplificación de escritura por indexado. Toma una muestra de cada grupo de colecciones
+ * del dataset sembrado y, por grupo:
+ * - mide la latencia de reescribir cada documento en el emulador (mediana);
+ * - calcula las entradas y bytes de índice que genera esa escritura con el indexado
+ *   por defecto y con la configuración del proyecto (firestore/firestore.indexes.json).
+ *
+ * Además falla si algún campo indexado supera {@value #UMBRAL_CAMPO_GRANDE} bytes: un
+ * campo grande nuevo (imagen, texto libre) debe declararse como exención o justificarse.
+ *
+ * Los resultados se registran en el log y, si el runner lo permite, en
+ * "indices-escritura.json" dentro de la salida adicional de la prueba.
+ *
+ * @author Juan Manuel Moreno Sánchez
+ * @version 1.0 VeteriApp Release
+ */
+@RunWith(AndroidJUnit4.class)
+public class IndicesBenchmark {
+
+    private static final String TAG = "IndicesBenchmark";
+    private static final String CONFIGURACION = "firestore.indexes.json";
+    private static final String INFORME = "indices-escritura.json";
+
+    private static final int MUESTRA_POR_GRUPO = 20;
+    private static final int REPETICIONES = 5;
+    private static final int UMBRAL_CAMPO_GRANDE = 1024;
+
+    private String firestore;
+    private String raiz;
+    private ModeloIndices conConfiguracion;
+    private ModeloIndices porDefecto;
+
+    @Before
+    public void preparar() throws IOException, JSONException {
+        DatasetEmulador.asegurarSembrado();
+        firestore = DatasetEmulador.firestore();
+        raiz = "projects/" + DatasetEmulador.PROYECTO + "/databases/(default)/documents";
+
+        try (InputStream in = InstrumentationRegistry.getInstrumentation().getContext().getAssets().open(CONFIGURACION)) {
+            conConfiguracion = ModeloIndices.desdeConfiguracion(leer(in));
+        }
+        porDefecto = conConfiguracion.sinExenciones();
+    }
+
+    @Test
+    public void amplificacionDeEscritura() throws IOException, JSONException {
+        JSONObject informe = new JSONObject();
+        ModeloIndices.Coste totalAntes = new ModeloIndices.Coste();
+        ModeloIndices.Coste totalDespues = new ModeloIndices.Coste();
+
+        for (String grupo : grupos()) {
+            List<JSONObject> muestra = muestra(grupo);
+            if (muestra.isEmpty()) continue;
+
+            ModeloIndices.Coste antes = new ModeloIndices.Coste();
+            ModeloIndices.Coste despues = new ModeloIndices.Coste();
+            List<Long> latencias = new ArrayList<>();
+            for (JSONObject doc : muestra) {
+                String nombre = doc.getString("name");
+                JSONObject campos = doc.optJSONObject("fields");
+                if (campos == null) campos = new JSONObject();
+                antes.sumar(porDefecto.coste(grupo, nombre, campos));
+                despues.sumar(conConfiguracion.coste(grupo, nombre, campos));
+                for (int i = 0; i < REPETICIONES; i++) latencias.add(reescribir(nombre, campos));
+            }
+            totalAntes.sumar(antes);
+            totalDespues.sumar(despues);
+
+            int n = muestra.size();
+            long mediana = mediana(latencias);
+            informe.put(grupo, new JSONObject()
+                    .put("documentos", n)
+                    .put("latenciaMedianaUs", mediana)
+                    .put("entradasPorEscrituraAntes", antes.entradas / n)
+                    .put("entradasPorEscrituraDespues", despues.entradas / n)
+                    .put("bytesIndicePorEscrituraAntes", antes.bytes / n)
+                    .put("bytesIndicePorEscrituraDespues", despues.bytes / n));
+            Log.i(TAG, String.format("%-16s n=%-3d latencia=%6d us  entradas %4d -> %4d  bytes índice %7d -> %7d",
+                    grupo, n, mediana, antes.entradas / n, despues.entradas / n, antes.bytes / n, despues.bytes / n));
+        }
+
+        Log.i(TAG, "Total muestra: entradas " + totalAntes.entradas + " -> " + totalDespues.entradas
+                + ", bytes de índice " + totalAntes.bytes + " -> " + totalDespues.bytes);
+        guardarInforme(informe);
+        assertTrue("La configuración no puede generar más entradas que el indexado por defecto",
+                totalDespues.entradas <= totalAntes.entradas);
+    }
+
+    @Test
+    public void camposGrandesExentos() throws IOException, JSONException {
+        Map<String, Integer> grandes = new TreeMap<>();
+        for (String grupo : grupos()) {
+            for (JSONObject doc : muestra(grupo)) {
+                JSONObject campos = doc.optJSONObject("fields");
+                if (campos == null) continue;
+                for (Map.Entry<String, Integer> e
+                        : conConfiguracion.camposGrandesIndexados(grupo, campos, UMBRAL_CAMPO_GRANDE).entrySet()) {
+                    String clave = grupo + "." + e.getKey();
+                    Integer previo = grandes.get(clave);
+                    grandes.put(clave, previo == null ? e.getValue() : Math.max(previo, e.getValue()));
+                }
+            }
+        }
+        assertTrue("Campos grandes indexados (añadir exención en firestore/firestore.indexes.json): " + grandes,
+                grandes.isEmpty());
+    }
+
+    // --- DATASET ---
+
+    /**
+     * Colecciones raíz del emulador más los grupos (subcolecciones incluidas) de la configuración.
+     */
+    private Set<String> grupos() throws IOException, JSONException {
+        Set<String> grupos = new TreeSet<>(conConfiguracion.grupos());
+        JSONObject resp = new JSONObject(DatasetEmulador.peticion("POST",
+                firestore + "/v1/" + raiz + ":listCollectionIds", new JSONObject().put("pageSize", 100).toString()));
+        JSONArray ids = resp.optJSONArray("collectionIds");
+        for (int i = 0; ids != null && i < ids.length(); i++) grupos.add(ids.getString(i));
+        return grupos;
+    }
+
+    private List<JSONObject> muestra(String grupo) throws IOException, JSONException {
+        JSONObject consulta = new JSONObject().put("structuredQuery", new JSONObject()
+                .put("from", new JSONArray().put(new JSONObject()
+                        .put("collectionId", grupo).put("allDescendants", true)))
+                .put("limit", MUESTRA_POR_GRUPO));
+        JSONArray resultados = new JSONArray(DatasetEmulador.peticion("POST",
+                firestore + "/v1/" + raiz + ":runQuery", consulta.toString()));
+        List<JSONObject> docs = new ArrayList<>();
+        for (int i = 0; i < resultados.length(); i++) {
+            JSONObject doc = resultados.getJSONObject(i).optJSONObject("document");
+            if (doc != null) docs.add(doc);
+        }
+        return docs;
+    }
+
+    /**
+     * Reescribe el documento con su propio contenido (el dataset no cambia) y devuelve
+     * la latencia del commit en microsegundos.
+     */
+    private long reescribir(String nombre, JSONObject campos) throws IOException, JSONException {
+        String cuerpo = new JSONObject().put("writes", new JSONArray().put(new JSONObject()
+                .put("update", new JSONObject().put("name", nombre).put("fields", campos)))).toString();
+        long inicio = System.nanoTime();
+        DatasetEmulador.peticion("POST", firestore + "/v1/" + raiz + ":commit", cuerpo);
+        return (System.nanoTime() - inicio) / 1_000;
+    }
+
+    // --- AUXILIARES ---
+
+    private static long mediana(List<Long> valores) {
+        Collections.sort(valores);
+        return valores.get(valores.size() / 2);
+    }
+
+    private static void guardarInforme(JSONObject informe) {
+        String dir = InstrumentationRegistry.getArguments().getString("additionalTestOutputDir");
+        if (dir == null) return;
+        try (FileOutputStream out = new FileOutputStream(new File(dir, INFORME))) {
+            out.write(informe.toString(2).getBytes(StandardCharsets.UTF_8));
+        } catch (IOException | JSONException e) {
+            Log.w(TAG, "No se pudo guardar el informe de índices", e);
+        }
+    }
+
+    private static String leer(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buf = new byte[8192];
+        int n;
+        while ((n = in.read(buf)) > 0) out.write(buf, 0, n);
+        return out.toString("UTF-8");
+    }
+}
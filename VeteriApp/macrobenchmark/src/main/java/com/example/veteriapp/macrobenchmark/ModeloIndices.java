@@ -0,0 +1,316 @@
+package com.example.veteriapp.macrobenchmark;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Clase ModeloIndices.
+ *
+ * Modelo de las entradas de índice que genera la escritura de un documento según la
+ * configuración de índices de Firestore (el formato de firestore.indexes.json).
+ * Sigue las reglas del índice automático: ascendente y descendente por cada campo
+ * escalar (y por cada subcampo de un mapa), array-contains por cada elemento distinto
+ * de un array, más las dos entradas del nombre del documento y una por combinación en
+ * cada índice compuesto. Una exención de campo sustituye esas reglas para el campo y
+ * sus subcampos.
+ *
+ * El tamaño de cada entrada se estima con el modelo de tamaño de almacenamiento de
+ * Firestore (nombre del documento + ruta del campo + valor + 32 bytes), con los valores
+ * truncados a los 1500 bytes que se llegan a indexar.
+ *
+ * El emulador indexa siempre todos los campos y no aplica esta configuración, así que
+ * el efecto de las exenciones se obtiene de aquí y no de la latencia medida.
+ *
+ * @author Juan Manuel Moreno Sánchez
+ * @version 1.0 VeteriApp Release
+ */
+final class ModeloIndices {
+
+    /** Bytes de un valor que llegan a indexarse; el resto se trunca. */
+    static final int MAX_VALOR_INDEXADO = 1500;
+    private static final int SOBRECOSTE_ENTRADA = 32;
+
+    // --- CONFIGURACIÓN POR GRUPO DE COLECCIONES ---
+    private final Map<String, Map<String, Exencion>> exenciones = new HashMap<>();
+    private final Map<String, List<List<CampoCompuesto>>> compuestos = new HashMap<>();
+
+    private ModeloIndices() {}
+
+    /**
+     * Interpreta una configuración de índices (firestore.indexes.json).
+     */
+    static ModeloIndices desdeConfiguracion(String json) throws JSONException {
+        ModeloIndices m = new ModeloIndices();
+        JSONObject raiz = new JSONObject(json);
+
+        JSONArray indices = raiz.optJSONArray("indexes");
+        for (int i = 0; indices != null && i < indices.length(); i++) {
+            JSONObject indice = indices.getJSONObject(i);
+            JSONArray campos = indice.getJSONArray("fields");
+            List<CampoCompuesto> lista = new ArrayList<>();
+            for (int j = 0; j < campos.length(); j++) {
+                JSONObject c = campos.getJSONObject(j);
+                lista.add(new CampoCompuesto(c.getString("fieldPath"), c.has("arrayConfig")));
+            }
+            String grupo = indice.getString("collectionGroup");
+            if (!m.compuestos.containsKey(grupo)) m.compuestos.put(grupo, new ArrayList<>());
+            m.compuestos.get(grupo).add(lista);
+        }
+
+        JSONArray overrides = raiz.optJSONArray("fieldOverrides");
+        for (int i = 0; overrides != null && i < overrides.length(); i++) {
+            JSONObject o = overrides.getJSONObject(i);
+            JSONArray idx = o.optJSONArray("indexes");
+            int ordenes = 0;
+            boolean arrayContains = false;
+            for (int j = 0; idx != null && j < idx.length(); j++) {
+                if (idx.getJSONObject(j).has("arrayConfig")) arrayContains = true;
+                else ordenes++;
+            }
+            String grupo = o.getString("collectionGroup");
+            if (!m.exenciones.containsKey(grupo)) m.exenciones.put(grupo, new HashMap<>());
+            m.exenciones.get(grupo).put(o.getString("fieldPath"), new Exencion(ordenes, arrayContains));
+        }
+        return m;
+    }
+
+    /**
+     * Misma configuración sin exenciones de campo: el indexado por defecto de antes.
+     */
+    ModeloIndices sinExenciones() {
+        ModeloIndices m = new ModeloIndices();
+        m.compuestos.putAll(compuestos);
+        return m;
+    }
+
+    /**
+     * Grupos de colecciones mencionados en la configuración.
+     */
+    Set<String> grupos() {
+        Set<String> g = new HashSet<>(compuestos.keySet());
+        g.addAll(exenciones.keySet());
+        return g;
+    }
+
+    // --- COSTE DE UNA ESCRITURA ---
+
+    /**
+     * Entradas de índice y bytes que genera escribir el documento.
+     *
+     * @param grupo  Grupo de colecciones (ID de la última colección de la ruta).
+     * @param nombre Nombre completo del documento.
+     * @param campos Campos en el formato REST de Firestore.
+     */
+    Coste coste(String grupo, String nombre, JSONObject campos) throws JSONException {
+        Coste c = new Coste();
+        int bytesNombre = utf8(nombre);
+        c.sumar(2, 2L * (bytesNombre + SOBRECOSTE_ENTRADA)); // __name__ ascendente y descendente
+
+        for (Hoja h : hojas(campos)) {
+            int entradas = entradas(grupo, h);
+            c.sumar(entradas, (long) entradas * (bytesNombre + utf8(h.ruta) + h.indexado() + SOBRECOSTE_ENTRADA));
+        }
+
+        List<List<CampoCompuesto>> indices = compuestos.get(grupo);
+        if (indices == null) return c;
+        for (List<CampoCompuesto> indice : indices) {
+            int combinaciones = 1;
+            long bytes = bytesNombre + SOBRECOSTE_ENTRADA;
+            for (CampoCompuesto campo : indice) {
+                JSONObject valor = buscar(campos, campo.ruta);
+                if (valor == null) {
+                    combinaciones = 0;
+                    break;
+                }
+                if (campo.arrayContains) combinaciones *= distintos(valor);
+                bytes += utf8(campo.ruta) + Math.min(tamano(valor), MAX_VALOR_INDEXADO);
+            }
+            c.sumar(combinaciones, combinaciones * bytes);
+        }
+        return c;
+    }
+
+    /**
+     * Campos indexados de al menos {@code umbral} bytes (p.ej. imágenes o textos libres
+     * que nadie consulta), con su tamaño.
+     */
+    Map<String, Integer> camposGrandesIndexados(String grupo, JSONObject campos, int umbral) throws JSONException {
+        Map<String, Integer> grandes = new HashMap<>();
+        for (Hoja h : hojas(campos)) {
+            if (h.tamano >= umbral && entradas(grupo, h) > 0) grandes.put(h.ruta, h.tamano);
+        }
+        return grandes;
+    }
+
+    private int entradas(String grupo, Hoja h) throws JSONException {
+        Exencion e = exencion(grupo, h.ruta);
+        if (h.array) {
+            boolean contiene = e == null || e.arrayContains;
+            return contiene ? distintos(h.valor) : 0;
+        }
+        return e == null ? 2 : e.ordenes;
+    }
+
+    /**
+     * Exención aplicable: la del propio campo o la del mapa más cercano que lo contiene.
+     */
+    private Exencion exencion(String grupo, String ruta) {
+        Map<String, Exencion> delGrupo = exenciones.get(grupo);
+        if (delGrupo == null) return null;
+        for (String r = ruta; ; ) {
+            Exencion e = delGrupo.get(r);
+            if (e != null) return e;
+            int punto = r.lastIndexOf('.');
+            if (punto < 0) return null;
+            r = r.substring(0, punto);
+        }
+    }
+
+    // --- RECORRIDO DE VALORES REST ---
+
+    /**
+     * Campos indexables del documento: los mapas se recorren, sus subcampos son hojas.
+     */
+    private static List<Hoja> hojas(JSONObject campos) throws JSONException {
+        List<Hoja> hojas = new ArrayList<>();
+        recorrer(campos, "", hojas);
+        return hojas;
+    }
+
+    private static void recorrer(JSONObject campos, String prefijo, List<Hoja> hojas) throws JSONException {
+        if (campos == null) return;
+        Iterator<String> claves = campos.keys();
+        while (claves.hasNext()) {
+            String clave = claves.next();
+            JSONObject valor = campos.getJSONObject(clave);
+            String ruta = prefijo + clave;
+            if (valor.has("mapValue")) {
+                recorrer(valor.getJSONObject("mapValue").optJSONObject("fields"), ruta + ".", hojas);
+            } else {
+                hojas.add(new Hoja(ruta, valor, valor.has("arrayValue"), tamano(valor)));
+            }
+        }
+    }
+
+    private static JSONObject buscar(JSONObject campos, String ruta) throws JSONException {
+        JSONObject actual = campos;
+        String[] partes = ruta.split("\\.");
+        for (int i = 0; i < partes.length; i++) {
+            if (actual == null || !actual.has(partes[i])) return null;
+            JSONObject valor = actual.getJSONObject(partes[i]);
+            if (i == partes.length - 1) return valor;
+            JSONObject mapa = valor.optJSONObject("mapValue");
+            actual = mapa != null ? mapa.optJSONObject("fields") : null;
+        }
+        return null;
+    }
+
+    private static int distintos(JSONObject valor) throws JSONException {
+        JSONObject array = valor.optJSONObject("arrayValue");
+        JSONArray elementos = array != null ? array.optJSONArray("values") : null;
+        if (elementos == null) return 0;
+        Set<String> vistos = new HashSet<>();
+        for (int i = 0; i < elementos.length(); i++) vistos.add(elementos.get(i).toString());
+        return vistos.size();
+    }
+
+    /**
+     * Tamaño de un valor según el modelo de almacenamiento de Firestore.
+     */
+    static int tamano(JSONObject valor) throws JSONException {
+        if (valor.has("stringValue")) return utf8(valor.getString("stringValue")) + 1;
+        if (valor.has("bytesValue")) return valor.getString("bytesValue").length() * 3 / 4;
+        if (valor.has("referenceValue")) return utf8(valor.getString("referenceValue")) + 16;
+        if (valor.has("geoPointValue")) return 16;
+        if (valor.has("booleanValue") || valor.has("nullValue")) return 1;
+        if (valor.has("arrayValue")) {
+            JSONArray elementos = valor.getJSONObject("arrayValue").optJSONArray("values");
+            int total = 0;
+            for (int i = 0; elementos != null && i < elementos.length(); i++) total += tamano(elementos.getJSONObject(i));
+            return total;
+        }
+        if (valor.has("mapValue")) {
+            JSONObject campos = valor.getJSONObject("mapValue").optJSONObject("fields");
+            int total = 0;
+            Iterator<String> claves = campos != null ? campos.keys() : Collections.emptyIterator();
+            while (claves.hasNext()) {
+                String clave = claves.next();
+                total += utf8(clave) + 1 + tamano(campos.getJSONObject(clave));
+            }
+            return total;
+        }
+        return 8; // enteros, decimales y marcas de tiempo
+    }
+
+    private static int utf8(String s) {
+        return s.getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    // --- ELEMENTOS DEL MODELO ---
+
+    /**
+     * Entradas de índice y bytes acumulados.
+     */
+    static final class Coste {
+        long entradas;
+        long bytes;
+
+        void sumar(long entradas, long bytes) {
+            this.entradas += entradas;
+            this.bytes += bytes;
+        }
+
+        void sumar(Coste otro) {
+            sumar(otro.entradas, otro.bytes);
+        }
+    }
+
+    private static final class Exencion {
+        final int ordenes;
+        final boolean arrayContains;
+
+        Exencion(int ordenes, boolean arrayContains) {
+            this.ordenes = ordenes;
+            this.arrayContains = arrayContains;
+        }
+    }
+
+    private static final class CampoCompuesto {
+        final String ruta;
+        final boolean arrayContains;
+
+        CampoCompuesto(String ruta, boolean arrayContains) {
+            this.ruta = ruta;
+            this.arrayContains = arrayContains;
+        }
+    }
+
+    private static final class Hoja {
+        final String ruta;
+        final JSONObject valor;
+        final boolean array;
+        final int tamano;
+
+        Hoja(String ruta, JSONObject valor, boolean array, int tamano) {
+            this.ruta = ruta;
+            this.valor = valor;
+            this.array = array;
+            this.tamano = tamano;
+        }
+
+        int indexado() {
+            return Math.min(tamano, MAX_VALOR_INDEXADO);
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.example.veteriapp.macrobenchmark;
+
+import androidx.benchmark.macro.MacrobenchmarkScope;
+import androidx.test.uiautomator.By;
+import androidx.test.uiautomator.Direction;
+import androidx.test.uiautomator.UiDevice;
+import androidx.test.uiautomator.UiObject2;
+import androidx.test.uiautomator.Until;
+
+/**
+ * Clase Recorridos.
+ *
+ * Recorridos de usuario compartidos por los benchmarks y el generador de
+ * Baseline Profile. Navegan por la interfaz real (Splash, Login, panel y
+ * Drawer) mediante UiAutomator, sin atajos que alteren el flujo de producción.
+ *
+ * @author Juan Manuel Moreno Sánchez
+ * @version 1.0 VeteriApp Release
+ */
+public final class Recorridos {
+
+    public static final String PAQUETE = "com.example.veteriapp";
+
+    // Splash retiene 3,5 s antes de despachar: margen holgado para CI
+    private static final long ESPERA_PANTALLA = 15_000;
+    private static final long ESPERA_CONTENIDO = 10_000;
+
+    private Recorridos() {}
+
+    /**
+     * Limpia los datos de la app para que la sesión de Firebase empiece vacía.
+     */
+    public static void reiniciarSesion(MacrobenchmarkScope scope) {
+        scope.killProcess();
+        scope.getDevice().executeShellCommand("pm clear " + PAQUETE);
+    }
+
+    /**
+     * Lanza la app desde el icono y, si llega al Login, inicia sesión con la cuenta indicada.
+     * Termina cuando el panel del rol correspondiente está visible.
+     */
+    public static void iniciarSesion(MacrobenchmarkScope scope, String email) {
+        UiDevice device = scope.getDevice();
+        scope.startActivityAndWait();
+
+        UiObject2 etEmail = device.wait(Until.findObject(By.res(PAQUETE, "etEmailLogin")), ESPERA_PANTALLA);
+        if (etEmail != null) {
+            etEmail.setText(email);
+            device.findObject(By.res(PAQUETE, "etPassLogin")).setText(DatasetEmulador.PASSWORD);
+            device.findObject(By.res(PAQUETE, "btnLogin")).click();
+        }
+        esperarPanel(device);
+    }
+
+    /**
+     * Espera a que cualquiera de los paneles principales haya cargado su contenido.
+     */
+    public static void esperarPanel(UiDevice device) {
+        device.wait(Until.hasObject(By.res(PAQUETE, "fabChat")), ESPERA_PANTALLA);
+        device.wait(Until.hasObject(By.res(PAQUETE, "contenedorNoticias").hasChild(By.clazz("android.widget.TextView"))), ESPERA_CONTENIDO);
+    }
+
+    /**
+     * Desde el panel del veterinario abre "Revisar Pacientes" a través del Drawer.
+     */
+    public static void abrirPacientes(UiDevice device) {
+        abrirOpcionDrawer(device, "Revisar Pacientes");
+        device.wait(Until.hasObject(By.res(PAQUETE, "contenedorPacientes").hasChild(By.clazz("android.widget.LinearLayout"))), ESPERA_CONTENIDO);
+    }
+
+    /**
+     * Desde el panel del dueño abre su sala de chat con el botón flotante.
+     */
+    public static void abrirChat(UiDevice device) {
+        device.findObject(By.res(PAQUETE, "fabChat")).click();
+        device.wait(Until.hasObject(By.res(PAQUETE, "contenedorMensajes").hasChild(By.clazz("android.widget.TextView"))), ESPERA_CONTENIDO);
+    }
+
+    /**
+     * Desplaza un contenedor desplazable hacia abajo y de vuelta arriba.
+     */
+    public static void desplazar(UiDevice device, UiObject2 scroll) {
+        scroll.setGestureMargin(device.getDisplayWidth() / 5);
+        scroll.fling(Direction.DOWN);
+        scroll.fling(Direction.DOWN);
+        device.waitForIdle();
+        scroll.fling(Direction.UP);
+        device.waitForIdle();
+    }
+
+    /**
+     * Localiza la ScrollView principal de la pantalla actual.
+     */
+    public static UiObject2 scrollPrincipal(UiDevice device) {
+        return device.wait(Until.findObject(By.clazz("android.widget.ScrollView")), ESPERA_CONTENIDO);
+    }
+
+    private static void abrirOpcionDrawer(UiDevice device, String titulo) {
+        device.findObject(By.desc("Abrir menú")).click();
+        UiObject2 opcion = device.wait(Until.findObject(By.text(titulo)), ESPERA_CONTENIDO);
+        opcion.click();
+    }
+}
@@ -0,0 +1,25 @@
+package com.example.veteriapp.procesador;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Anotación Campo.
+ *
+ * Nombre del campo en el documento cuando no coincide con el del modelo
+ * (p.ej. "id_cita" frente a idCita).
+ *
+ * @author Juan Manuel Moreno Sánchez
+ * @version 1.0 VeteriApp Release
+ */
+@Documented
+@Target(ElementType.FIELD)
+@Retention(RetentionPolicy.SOURCE)
+public @interface Campo {
+
+    /** Nombre del campo en Firestore. */
+    String value();
+}
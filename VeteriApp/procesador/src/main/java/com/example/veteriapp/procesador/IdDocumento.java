@@ -0,0 +1,22 @@
+package com.example.veteriapp.procesador;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Anotación IdDocumento.
+ *
+ * Campo (de tipo String) que recibe el ID del documento al leerlo. No se escribe
+ * en el mapa: el ID forma parte de la ruta, no del contenido.
+ *
+ * @author Juan Manuel Moreno Sánchez
+ * @version 1.0 VeteriApp Release
+ */
+@Documented
+@Target(ElementType.FIELD)
+@Retention(RetentionPolicy.SOURCE)
+public @interface IdDocumento {
+}
@@ -0,0 +1,24 @@
+package com.example.veteriapp.procesador;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Anotación Mapeable.
+ *
+ * Marca un modelo de Firestore para que {@link ProcesadorMapeadores} genere en su mismo
+ * paquete la clase "{Modelo}Mapeador", con la lectura desde un DocumentSnapshot y la
+ * conversión a mapa para escribirlo. Se mapean todos los campos de instancia no
+ * transitorios a través de sus getters y setters, que deben existir.
+ *
+ * @author Juan Manuel Moreno Sánchez
+ * @version 1.0 VeteriApp Release
+ */
+@Documented
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.SOURCE)
+public @interface Mapeable {
+}
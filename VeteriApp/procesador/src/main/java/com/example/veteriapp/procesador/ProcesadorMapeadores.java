@@ -0,0 +1,301 @@
+package com.example.veteriapp.procesador;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+
+/**
+ * Clase ProcesadorMapeadores.
+ *
+ * Procesador de anotaciones que genera, para cada modelo {@link Mapeable}, la clase
+ * "{Modelo}Mapeador" con dos métodos estáticos:
+ * - desde(DocumentSnapshot): crea el modelo leyendo cada campo con el getter tipado
+ *   del snapshot que corresponde al tipo del campo;
+ * - aMapa(modelo): mapa listo para set/update, dimensionado a su número de campos
+ *   y sin los campos nulos.
+ *
+ * A diferencia de toObject no hay reflexión en ejecución: todo se resuelve al compilar,
+ * y un campo sin getter/setter o de un tipo que Firestore no lee directamente es un
+ * error de compilación en lugar de un valor perdido en silencio.
+ *
+ * @author Juan Manuel Moreno Sánchez
+ * @version 1.0 VeteriApp Release
+ */
+@SupportedAnnotationTypes({
+        "com.example.veteriapp.procesador.Mapeable",
+        "com.example.veteriapp.procesador.IdDocumento",
+        "com.example.veteriapp.procesador.Campo"})
+public final class ProcesadorMapeadores extends AbstractProcessor {
+
+    private static final String SUFIJO = "Mapeador";
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> anotaciones, RoundEnvironment entorno) {
+        for (Element e : entorno.getElementsAnnotatedWith(Mapeable.class)) {
+            if (e.getKind() != ElementKind.CLASS) {
+                error(e, "@Mapeable solo se aplica a clases");
+                continue;
+            }
+            TypeElement modelo = (TypeElement) e;
+            List<Propiedad> propiedades = propiedades(modelo);
+            if (propiedades == null) continue;
+            try {
+                generar(modelo, propiedades);
+            } catch (IOException ex) {
+                error(modelo, "No se pudo generar el mapeador: " + ex.getMessage());
+            }
+        }
+        // Fuera de un modelo @Mapeable nadie lee estas anotaciones: mejor un error que ignorarlas
+        for (Element e : entorno.getElementsAnnotatedWith(IdDocumento.class)) fueraDeModelo(e, "@IdDocumento");
+        for (Element e : entorno.getElementsAnnotatedWith(Campo.class)) fueraDeModelo(e, "@Campo");
+        return true;
+    }
+
+    private void fueraDeModelo(Element campo, String anotacion) {
+        if (campo.getEnclosingElement().getAnnotation(Mapeable.class) == null) {
+            error(campo, anotacion + " solo se aplica a campos de un modelo @Mapeable");
+        }
+    }
+
+    // --- ANÁLISIS DEL MODELO ---
+
+    /**
+     * Propiedades mapeables del modelo, o null si alguna no es válida (ya notificado).
+     */
+    private List<Propiedad> propiedades(TypeElement modelo) {
+        boolean valido = tieneConstructorVacio(modelo);
+        if (!valido) error(modelo, "El modelo necesita un constructor público sin parámetros");
+
+        List<Propiedad> lista = new ArrayList<>();
+        for (Element miembro : modelo.getEnclosedElements()) {
+            if (miembro.getKind() != ElementKind.FIELD) continue;
+            Set<Modifier> mods = miembro.getModifiers();
+            if (mods.contains(Modifier.STATIC) || mods.contains(Modifier.TRANSIENT)) continue;
+
+            VariableElement campo = (VariableElement) miembro;
+            String nombre = campo.getSimpleName().toString();
+            TypeMirror tipo = campo.asType();
+            boolean esId = campo.getAnnotation(IdDocumento.class) != null;
+            Campo anotado = campo.getAnnotation(Campo.class);
+            String clave = anotado != null ? anotado.value() : nombre;
+
+            Tipo t = esId ? Tipo.STRING : Tipo.de(tipo);
+            if (t == null || (esId && !tipo.toString().equals("java.lang.String"))) {
+                error(campo, esId ? "@IdDocumento requiere un campo String"
+                        : "Tipo no soportado por el mapeador: " + tipo);
+                valido = false;
+                continue;
+            }
+            String sufijo = Character.toUpperCase(nombre.charAt(0)) + nombre.substring(1);
+            String setter = "set" + sufijo;
+            String getter = (tipo.getKind() == TypeKind.BOOLEAN ? "is" : "get") + sufijo;
+            if (!tieneMetodo(modelo, setter, tipo, true)) {
+                error(campo, "Falta el setter público " + setter + "(" + tipo + ")");
+                valido = false;
+                continue;
+            }
+            if (!esId && !tieneMetodo(modelo, getter, tipo, false)) {
+                error(campo, "Falta el getter público " + getter + "()");
+                valido = false;
+                continue;
+            }
+            lista.add(new Propiedad(clave, t, tipo.getKind().isPrimitive(), esId, setter, getter));
+        }
+        return valido ? lista : null;
+    }
+
+    private static boolean tieneConstructorVacio(TypeElement modelo) {
+        for (Element e : modelo.getEnclosedElements()) {
+            if (e.getKind() != ElementKind.CONSTRUCTOR) continue;
+            ExecutableElement c = (ExecutableElement) e;
+            if (c.getParameters().isEmpty() && c.getModifiers().contains(Modifier.PUBLIC)) return true;
+        }
+        return false;
+    }
+
+    private boolean tieneMetodo(TypeElement modelo, String nombre, TypeMirror tipo, boolean esSetter) {
+        for (Element e : modelo.getEnclosedElements()) {
+            if (e.getKind() != ElementKind.METHOD || !e.getSimpleName().contentEquals(nombre)) continue;
+            if (!e.getModifiers().contains(Modifier.PUBLIC)) continue;
+            ExecutableElement m = (ExecutableElement) e;
+            if (esSetter) {
+                if (m.getParameters().size() == 1
+                        && processingEnv.getTypeUtils().isSameType(m.getParameters().get(0).asType(), tipo)) return true;
+            } else if (m.getParameters().isEmpty() && processingEnv.getTypeUtils().isSameType(m.getReturnType(), tipo)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // --- GENERACIÓN ---
+
+    private void generar(TypeElement modelo, List<Propiedad> propiedades) throws IOException {
+        PackageElement paquete = processingEnv.getElementUtils().getPackageOf(modelo);
+        String nombreModelo = modelo.getSimpleName().toString();
+        String nombreClase = nombreModelo + SUFIJO;
+        int escritos = 0;
+        for (Propiedad p : propiedades) if (!p.esId) escritos++;
+        int capacidad = (int) Math.ceil(escritos / 0.75);
+
+        StringBuilder s = new StringBuilder();
+        if (!paquete.isUnnamed()) s.append("package ").append(paquete.getQualifiedName()).append(";\n\n");
+        s.append("import com.google.firebase.firestore.DocumentSnapshot;\n\n")
+                .append("import java.util.HashMap;\n")
+                .append("import java.util.Map;\n\n")
+                .append("/**\n")
+                .append(" * Mapeador de {@link ").append(nombreModelo).append("} generado por ProcesadorMapeadores. No editar.\n")
+                .append(" */\n")
+                .append("public final class ").append(nombreClase).append(" {\n\n")
+                .append("    private ").append(nombreClase).append("() {}\n\n");
+
+        // Lectura
+        s.append("    /**\n     * Modelo con los campos del documento.\n     */\n")
+                .append("    public static ").append(nombreModelo).append(" desde(DocumentSnapshot doc) {\n")
+                .append("        ").append(nombreModelo).append(" m = new ").append(nombreModelo).append("();\n");
+        int n = 0;
+        for (Propiedad p : propiedades) {
+            if (p.esId) {
+                s.append("        m.").append(p.setter).append("(doc.getId());\n");
+            } else if (p.primitivo) {
+                String v = "v" + n++;
+                s.append("        ").append(p.tipo.leido).append(' ').append(v).append(" = doc.")
+                        .append(p.tipo.lectura).append("(\"").append(p.clave).append("\");\n")
+                        .append("        if (").append(v).append(" != null) m.").append(p.setter).append('(')
+                        .append(v).append(p.tipo.aPrimitivo).append(");\n");
+            } else if (!p.tipo.conversion.isEmpty()) {
+                String v = "v" + n++;
+                s.append("        ").append(p.tipo.leido).append(' ').append(v).append(" = doc.")
+                        .append(p.tipo.lectura).append("(\"").append(p.clave).append("\");\n")
+                        .append("        m.").append(p.setter).append('(').append(v).append(" != null ? ")
+                        .append(String.format(p.tipo.conversion, v)).append(" : null);\n");
+            } else {
+                s.append("        m.").append(p.setter).append("(doc.").append(p.tipo.lectura)
+                        .append("(\"").append(p.clave).append("\"));\n");
+            }
+        }
+        s.append("        return m;\n    }\n\n");
+
+        // Escritura
+        s.append("    /**\n     * Campos no nulos del modelo, para set/update.\n     */\n")
+                .append("    public static Map<String, Object> aMapa(").append(nombreModelo).append(" m) {\n")
+                .append("        Map<String, Object> d = new HashMap<>(").append(capacidad).append(");\n");
+        for (Propiedad p : propiedades) {
+            if (p.esId) continue;
+            if (p.primitivo) {
+                s.append("        d.put(\"").append(p.clave).append("\", m.").append(p.getter).append("());\n");
+            } else {
+                String v = "v" + n++;
+                s.append("        Object ").append(v).append(" = m.").append(p.getter).append("();\n")
+                        .append("        if (").append(v).append(" != null) d.put(\"").append(p.clave)
+                        .append("\", ").append(v).append(");\n");
+            }
+        }
+        s.append("        return d;\n    }\n}\n");
+
+        String nombreCompleto = paquete.isUnnamed() ? nombreClase : paquete.getQualifiedName() + "." + nombreClase;
+        JavaFileObject fichero = processingEnv.getFiler().createSourceFile(nombreCompleto, modelo);
+        try (Writer w = fichero.openWriter()) {
+            w.write(s.toString());
+        }
+    }
+
+    private void error(Element e, String mensaje) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, mensaje, e);
+    }
+
+    // --- TIPOS SOPORTADOS ---
+
+    /**
+     * Tipo Java del campo y cómo leerlo del snapshot.
+     */
+    private enum Tipo {
+        STRING("getString", "String", "", ""),
+        LONG("getLong", "Long", "", ""),
+        INTEGER("getLong", "Long", "Integer.valueOf(%s.intValue())", ".intValue()"),
+        DOUBLE("getDouble", "Double", "", ""),
+        BOOLEAN("getBoolean", "Boolean", "", ""),
+        TIMESTAMP("getTimestamp", "com.google.firebase.Timestamp", "", ""),
+        DATE("getDate", "java.util.Date", "", ""),
+        GEOPOINT("getGeoPoint", "com.google.firebase.firestore.GeoPoint", "", ""),
+        REFERENCIA("getDocumentReference", "com.google.firebase.firestore.DocumentReference", "", ""),
+        BLOB("getBlob", "com.google.firebase.firestore.Blob", "", "");
+
+        final String lectura;
+        final String leido;
+        final String conversion;
+        final String aPrimitivo;
+
+        Tipo(String lectura, String leido, String conversion, String aPrimitivo) {
+            this.lectura = lectura;
+            this.leido = leido;
+            this.conversion = conversion;
+            this.aPrimitivo = aPrimitivo;
+        }
+
+        static Tipo de(TypeMirror tipo) {
+            switch (tipo.getKind()) {
+                case LONG: return LONG;
+                case INT: return INTEGER;
+                case DOUBLE: return DOUBLE;
+                case BOOLEAN: return BOOLEAN;
+                case DECLARED: break;
+                default: return null;
+            }
+            switch (tipo.toString()) {
+                case "java.lang.String": return STRING;
+                case "java.lang.Long": return LONG;
+                case "java.lang.Integer": return INTEGER;
+                case "java.lang.Double": return DOUBLE;
+                case "java.lang.Boolean": return BOOLEAN;
+                case "com.google.firebase.Timestamp": return TIMESTAMP;
+                case "java.util.Date": return DATE;
+                case "com.google.firebase.firestore.GeoPoint": return GEOPOINT;
+                case "com.google.firebase.firestore.DocumentReference": return REFERENCIA;
+                case "com.google.firebase.firestore.Blob": return BLOB;
+                default: return null;
+            }
+        }
+    }
+
+    private static final class Propiedad {
+        final String clave;
+        final Tipo tipo;
+        final boolean primitivo;
+        final boolean esId;
+        final String setter;
+        final String getter;
+
+        Propiedad(String clave, Tipo tipo, boolean primitivo, boolean esId, String setter, String getter) {
+            this.clave = clave;
+            this.tipo = tipo;
+            this.primitivo = primitivo;
+            this.esId = esId;
+            this.setter = setter;
+            this.getter = getter;
+        }
+    }
+}